@@ -33,10 +33,18 @@ android {
             )
         }
     }
+    androidResources {
+        // 模型文件不压缩，运行时可直接内存映射APK中的模型，无需解压或读入Java堆
+        noCompress.addAll(listOf("onnx", "pt"))
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_17
         targetCompatibility = JavaVersion.VERSION_17
     }
+    testOptions {
+        // JVM单元测试中android.util.Log等返回默认值，离线回放PdrLocalOri时不需要Android环境
+        unitTests.isReturnDefaultValues = true
+    }
 //    packaging {
 //        resources.excludes.add("META-INF/native-image/**/jnijavacpp/jni-config.json")
 //        jniLibs.excludes.add("META-INF/native-image/**/jnijavacpp/jni-config.json")
@@ -0,0 +1,87 @@
+package com.example.pdr_locator.algorithm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.utils.OrtSessionProfile;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 运行ModelVariantBenchmark，输出基准模型和量化变体（由tools/quantize_models.py生成）的评估结果。
+ * 回放应用外部存储目录下录制的IMU数据（IMU_Data_*.csv）；没有录制文件时使用固定种子生成的数据
+ */
+@RunWith(AndroidJUnit4.class)
+public class ModelVariantBenchmarkTest {
+    private static final String TAG = "ModelVariantBenchmark";
+
+    @Test
+    public void reportsVariants() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        List<File> recordings = findRecordings(context);
+        if (recordings.isEmpty()) {
+            recordings.add(writeSeededRecording(context));
+        }
+        ModelVariantBenchmark benchmark = new ModelVariantBenchmark(context, PdrLocalOri.WINDOW_SIZE,
+                OrtSessionProfile.DEFAULT);
+        for (File recording : recordings) {
+            List<ModelVariantBenchmark.Report> reports = benchmark.run(recording);
+            assertEquals(1 + ModelVariantBenchmark.VARIANT_MODELS.length, reports.size());
+            ModelVariantBenchmark.Report baseline = reports.get(0);
+            assertEquals(ModelVariantBenchmark.BASELINE_MODEL, baseline.getModel());
+            assertTrue(baseline.getWindows() > 0);
+            for (ModelVariantBenchmark.Report report : reports) {
+                Log.i(TAG, recording.getName() + " " + report);
+                assertEquals(baseline.getWindows(), report.getWindows());
+            }
+        }
+    }
+
+    private static List<File> findRecordings(Context context) {
+        List<File> recordings = new ArrayList<>();
+        File[] files = context.getExternalFilesDir(null).listFiles(
+                (dir, name) -> name.startsWith("IMU_Data_") && name.endsWith(".csv"));
+        if (files != null) {
+            for (File file : files) {
+                recordings.add(file);
+            }
+        }
+        return recordings;
+    }
+
+    /**
+     * 生成50Hz、20秒的IMU数据
+     */
+    private static File writeSeededRecording(Context context) throws IOException {
+        File file = new File(context.getCacheDir(), "model_variant_benchmark.csv");
+        Random random = new Random(2025);
+        try (Writer writer = new FileWriter(file)) {
+            for (int i = 0; i < 1000; i++) {
+                float[] acce = new float[3];
+                float[] gyro = new float[3];
+                for (int c = 0; c < 3; c++) {
+                    gyro[c] = (float) (random.nextGaussian() * 0.5);  // 角速度（rad/s）
+                    acce[c] = (float) (random.nextGaussian() * 2.0 + (c == 2 ? 9.8 : 0.0));  // 加速度（m/s^2）
+                }
+                writer.write(new SensorData(i * 20L, acce, gyro, new float[3]).buildRowData());
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.pdr_locator.algorithm;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 流式推理（gru_stream.onnx）与整窗口推理（gru.onnx）的一致性测试，运行StreamingParityChecker。
+ * 校验应用外部存储目录下录制的IMU数据（IMU_Data_*.csv）；没有录制文件时使用固定种子生成的数据
+ */
+@RunWith(AndroidJUnit4.class)
+public class StreamingParityTest {
+    private static final String TAG = "StreamingParity";
+    private static final int[] SLIDE_STEPS = {PdrLocalOri.DEFAULT_SLIDE_STEP, 5};  // 校验的滑动步长，需要整除窗口大小
+    private static final double TOLERANCE = 1e-4;  // 速度输出允许的最大误差（m/s）
+
+    @Test
+    public void streamingMatchesFullWindow() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        List<File> recordings = findRecordings(context);
+        if (recordings.isEmpty()) {
+            recordings.add(writeSeededRecording(context));
+        }
+        for (int slideStep : SLIDE_STEPS) {
+            StreamingParityChecker checker = new StreamingParityChecker(context, "gru.onnx", "gru_stream.onnx", slideStep);
+            for (File recording : recordings) {
+                StreamingParityChecker.Report report = checker.check(recording);
+                Log.i(TAG, "slideStep=" + slideStep + " " + report);
+                assertTrue(report.getWindows() > 0);
+                assertTrue(report.toString(), report.isWithin(TOLERANCE));
+            }
+        }
+    }
+
+    private static List<File> findRecordings(Context context) {
+        List<File> recordings = new ArrayList<>();
+        File[] files = context.getExternalFilesDir(null).listFiles(
+                (dir, name) -> name.startsWith("IMU_Data_") && name.endsWith(".csv"));
+        if (files != null) {
+            for (File file : files) {
+                recordings.add(file);
+            }
+        }
+        return recordings;
+    }
+
+    /**
+     * 生成50Hz、20秒的IMU数据
+     */
+    private static File writeSeededRecording(Context context) throws IOException {
+        File file = new File(context.getCacheDir(), "streaming_parity.csv");
+        Random random = new Random(2025);
+        try (Writer writer = new FileWriter(file)) {
+            for (int i = 0; i < 1000; i++) {
+                float[] acce = new float[3];
+                float[] gyro = new float[3];
+                for (int c = 0; c < 3; c++) {
+                    gyro[c] = (float) (random.nextGaussian() * 0.5);  // 角速度（rad/s）
+                    acce[c] = (float) (random.nextGaussian() * 2.0 + (c == 2 ? 9.8 : 0.0));  // 加速度（m/s^2）
+                }
+                writer.write(new SensorData(i * 20L, acce, gyro, new float[3]).buildRowData());
+            }
+        }
+        return file;
+    }
+}
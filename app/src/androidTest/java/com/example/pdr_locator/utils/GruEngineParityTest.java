@@ -0,0 +1,133 @@
+package com.example.pdr_locator.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 纯Java GRU引擎与ONNX Runtime的一致性测试。
+ * 窗口取自应用外部存储目录下录制的IMU数据（IMU_Data_*.csv），按[gyro, acce]顺序组成模型输入；
+ * 没有录制文件时使用固定种子生成的窗口
+ */
+@RunWith(AndroidJUnit4.class)
+public class GruEngineParityTest {
+    private static final String TAG = "GruEngineParity";
+    private static final int WINDOW_SIZE = 50;
+    private static final int SLIDE_STEP = 10;
+    private static final int MAX_WINDOWS = 500;
+    private static final float TOLERANCE = 1e-4f;  // 速度输出允许的最大误差（m/s）
+
+    private OnnxInferenceHelper onnx;
+    private JavaGruInferenceHelper javaGru;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        onnx = new OnnxInferenceHelper(context, "gru.onnx");
+        javaGru = new JavaGruInferenceHelper(context, "gru.weights", WINDOW_SIZE);
+        assertTrue(onnx.isLoaded());
+        assertTrue(javaGru.isLoaded());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        onnx.close();
+        javaGru.close();
+    }
+
+    @Test
+    public void javaEngineMatchesOnnxRuntime() throws Exception {
+        List<double[]> windows = loadRecordedWindows();
+        if (windows.isEmpty()) {
+            windows = seededWindows(100);
+        }
+        float maxError = 0.0f;
+        for (double[] window : windows) {
+            float[] expected = onnx.runInference(window);
+            float[] actual = javaGru.runInference(window);
+            for (int i = 0; i < expected.length; i++) {
+                maxError = Math.max(maxError, Math.abs(expected[i] - actual[i]));
+                assertEquals(expected[i], actual[i], TOLERANCE);
+            }
+        }
+        Log.i(TAG, "窗口数: " + windows.size() + ", 最大误差: " + maxError
+                + ", ORT平均耗时: " + onnx.getStats().getAverageMs()
+                + " ms, Java平均耗时: " + javaGru.getStats().getAverageMs()
+                + " ms, Java加载: " + javaGru.getLoadTimeMs() + " ms, ORT加载: " + onnx.getLoadTimeMs() + " ms");
+    }
+
+    /**
+     * 按滑动窗口读取录制文件中的窗口
+     */
+    private List<double[]> loadRecordedWindows() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        List<double[]> windows = new ArrayList<>();
+        File[] files = context.getExternalFilesDir(null).listFiles(
+                (dir, name) -> name.startsWith("IMU_Data_") && name.endsWith(".csv"));
+        if (files == null) {
+            return windows;
+        }
+        for (File file : files) {
+            List<SensorData> samples = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        samples.add(SensorData.parseRowData(line));
+                    }
+                }
+            }
+            for (int start = 0; start + WINDOW_SIZE <= samples.size(); start += SLIDE_STEP) {
+                double[] window = new double[WINDOW_SIZE * 6];
+                for (int t = 0; t < WINDOW_SIZE; t++) {
+                    SensorData data = samples.get(start + t);
+                    for (int c = 0; c < 3; c++) {
+                        window[t * 6 + c] = data.getGyroscopeData()[c];
+                        window[t * 6 + 3 + c] = data.getAccelerometerData()[c];
+                    }
+                }
+                windows.add(window);
+                if (windows.size() >= MAX_WINDOWS) {
+                    return windows;
+                }
+            }
+        }
+        return windows;
+    }
+
+    private static List<double[]> seededWindows(int count) {
+        Random random = new Random(2025);
+        List<double[]> windows = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            double[] window = new double[WINDOW_SIZE * 6];
+            for (int t = 0; t < WINDOW_SIZE; t++) {
+                for (int c = 0; c < 3; c++) {
+                    window[t * 6 + c] = random.nextGaussian() * 0.5;  // 角速度（rad/s）
+                    window[t * 6 + 3 + c] = random.nextGaussian() * 2.0 + (c == 2 ? 9.8 : 0.0);  // 加速度（m/s^2）
+                }
+            }
+            windows.add(window);
+        }
+        return windows;
+    }
+}
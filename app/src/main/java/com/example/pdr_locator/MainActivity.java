@@ -154,6 +154,9 @@ public class MainActivity extends AppCompatActivity {
             case 1: return "CollectData";
             case 2: return "PdrAdvanced";
             case 3: return "PdrWithFilter";
+            case 4: return "PdrLocalOriStream";
+            case 5: return "PdrLocalOriFp16";
+            case 6: return "PdrLocalOriInt8";
             default: return "PdrLocalOri";
         }
     }
@@ -249,11 +252,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Activity销毁时调用，确保停止定位
+     * Activity销毁时调用，确保停止定位并释放算法资源
      */
     @Override
     protected void onDestroy() {
         super.onDestroy();
         stopLocating();
+        locator.shutdown();  // 释放模型Session和预热线程
     }
 }
\ No newline at end of file
@@ -28,7 +28,14 @@ public class LocateThread extends Thread{
     public void run() {
         running = true;
         locator.onCreate();
-        if(!locator.getAlgorithmName().equals("CollectData")){
+        if(locator.getSensorRequirement().consumesWindows()){
+            try {
+                // 等待模型预热完成，期间采集的窗口在队列中排队，之后批量追上
+                locator.awaitAlgorithmReady();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
             while (running) {
                 try {
                     locator.locate();
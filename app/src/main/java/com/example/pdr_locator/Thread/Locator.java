@@ -7,18 +7,22 @@ import android.util.Log;
 
 import com.example.pdr_locator.algorithm.AlgorithmFactory;
 import com.example.pdr_locator.algorithm.IAlgorithm;
-import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.algorithm.SensorRequirement;
 import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.record.ImuRecorder;
 import com.example.pdr_locator.sensor.SensorDataCollector;
+import com.example.pdr_locator.utils.SensorWindow;
 import com.example.pdr_locator.utils.SlidingWindowManager;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -35,28 +39,29 @@ import lombok.Setter;
 @Getter
 @Setter
 public class Locator {
-    private static final Map<String, List<SensorType>> ALGORITHM_SENSOR_MAPPING = new HashMap<>();  // 算法名称与传感器组合的映射
-
-    static {
-        // 初始化映射关系
-        ALGORITHM_SENSOR_MAPPING.put("PdrLocalOri", Arrays.asList(SensorType.ACCELEROMETER, SensorType.GYROSCOPE));
-        ALGORITHM_SENSOR_MAPPING.put("CollectData", Arrays.asList(SensorType.ACCELEROMETER, SensorType.GYROSCOPE, SensorType.MAGNETOMETER));
-        // 下面可以继续添加其他算法和传感器组合
-    }
-
     private Context context;  // 上下文
     private String algorithmName;  // 算法名称
     private List<SensorType> sensorType;  // 传感器类型
-    private IAlgorithm algorithm;  // 算法
+    private SensorRequirement sensorRequirement;  // 算法声明的传感器、采样率和窗口要求
+    private volatile IAlgorithm algorithm;  // 算法，在主线程中切换，在定位线程中使用
     private SensorDataCollector collector;  // 传感器数据采集器
     private SlidingWindowManager slidingWindowManager;  // 滑动窗口管理器
 
     private String directoryName = "SensorData";
     private String fileName = "sensor_data.csv";
     private boolean append = true;
-    private FileWriter fileWriter;
+    private ImuRecorder recorder;  // 异步记录器，由采集器在停止采集时关闭
 
     private Handler mHandler;  // 定位结果消息处理器
+    private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor();  // 算法预热和释放的后台线程
+    private Future<?> warmUpFuture;  // 当前算法的预热任务
+
+    private int maxBatchSize = 8;  // 积压时一次推理的最大窗口数，1表示不批量推理
+    private long maxBatchWaitMs = 0;  // 积压时等待凑满一批的最长时间（毫秒）
+    private final List<SensorWindow> batch = new ArrayList<>();  // 本次定位处理的窗口，处理完后归还
+    private boolean[] intact = new boolean[0];  // 本次定位的各窗口在推理期间是否未被覆盖
+    private final long[] batchSizeCounts = new long[65];  // 批大小计数，下标为批大小，超过64的计入64
+    private long batchCount;  // 累计推理批次数
 
     /**
      * 构造函数
@@ -76,12 +81,12 @@ public class Locator {
                 boolean is = csvFile.createNewFile(); // 创建文件
                 System.out.println(is);
             }
-            this.fileWriter = new FileWriter(csvFile, append);
+            this.recorder = ImuRecorder.open(csvFile, append);
         } catch (IOException e) {
             Log.i("ExternalStoragePath", "IO问题");
             e.printStackTrace();
         }
-        this.collector = new SensorDataCollector(context, sensorType, this.fileWriter);
+        this.collector = new SensorDataCollector(context, sensorRequirement, this.recorder);
         this.slidingWindowManager = collector.slidingWindowManager;
     }
 
@@ -98,10 +103,74 @@ public class Locator {
      * @param algorithmName 算法名称
      */
     public void setAlgorithm(String algorithmName){
+        closeAlgorithm();  // 释放上一个算法持有的模型资源
         this.algorithmName = algorithmName;
-        this.sensorType = ALGORITHM_SENSOR_MAPPING.get(algorithmName);
-        // 动态加载算法和传感器
+        // 动态加载算法，传感器和采样率由算法声明，采集器按要求注册传感器
         this.algorithm = AlgorithmFactory.createAlgorithm(context, algorithmName);
+        this.sensorRequirement = algorithm.getSensorRequirement();
+        this.sensorType = sensorRequirement.getSensorTypes();
+        // 后台预热：加载模型并推理几个假窗口，开始定位时引擎已就绪
+        final IAlgorithm selected = this.algorithm;
+        this.warmUpFuture = warmUpExecutor.submit(() -> {
+            long startNs = System.nanoTime();
+            try {
+                selected.warmUp();
+                Log.i("Locator", algorithmName + " 预热耗时: " + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+            } catch (Exception e) {
+                Log.e("Locator", algorithmName + " 预热失败", e);
+            }
+        });
+    }
+
+    /**
+     * 当前算法是否已完成预热
+     * @return 预热完成（包括预热失败）时返回true
+     */
+    public boolean isAlgorithmReady() {
+        return warmUpFuture == null || warmUpFuture.isDone();
+    }
+
+    /**
+     * 等待当前算法预热完成
+     * @throws InterruptedException 等待时被中断
+     */
+    public void awaitAlgorithmReady() throws InterruptedException {
+        if (warmUpFuture == null) {
+            return;
+        }
+        try {
+            warmUpFuture.get();
+        } catch (ExecutionException e) {
+            Log.e("Locator", "预热失败", e);
+        }
+    }
+
+    /**
+     * 释放当前算法持有的资源
+     */
+    public void closeAlgorithm() {
+        if (algorithm == null) {
+            return;
+        }
+        // 在预热线程上释放，保证排在该算法的预热任务之后执行
+        final IAlgorithm closing = algorithm;
+        warmUpExecutor.execute(() -> {
+            try {
+                closing.close();
+            } catch (Exception e) {
+                Log.e("Locator", "算法资源释放失败", e);
+            }
+        });
+        algorithm = null;
+        warmUpFuture = null;
+    }
+
+    /**
+     * 释放当前算法并关闭预热线程，定位器不再使用时调用
+     */
+    public void shutdown() {
+        closeAlgorithm();
+        warmUpExecutor.shutdown();
     }
 
     /**
@@ -109,16 +178,83 @@ public class Locator {
      * @throws InterruptedException
      */
     public void locate() throws Exception {
-        List<SensorData> sensorData = slidingWindowManager.getTask(); // 获取传感器数据
-        double[] coordinate = algorithm.getCoordinate(sensorData);
-        // 将结果传递到主线程
+        batch.clear();
+        batch.add(slidingWindowManager.getTask()); // 获取传感器数据
+        if (maxBatchSize > 1) {
+            // 推理跟不上采集时队列中会有积压，一次取出多个窗口批量推理
+            slidingWindowManager.drainTasks(batch, maxBatchSize - 1, maxBatchWaitMs);
+        }
+        IAlgorithm current = algorithm;  // 定位过程中可能切换算法，本批窗口使用同一个实例
+        if (current == null) {
+            // 已调用closeAlgorithm()，没有算法可用，窗口直接归还
+            for (int i = 0; i < batch.size(); i++) {
+                slidingWindowManager.release(batch.get(i));
+            }
+            Log.w("Locator", "算法已释放，丢弃" + batch.size() + "个窗口");
+            return;
+        }
+        List<double[]> coordinates;
+        try {
+            coordinates = current.getCoordinates(batch);
+        } catch (IllegalStateException e) {
+            if (current == algorithm) {
+                throw e;
+            }
+            Log.w("Locator", "算法已切换并释放，丢弃" + batch.size() + "个窗口");
+            return;
+        } finally {
+            if (intact.length < batch.size()) {
+                intact = new boolean[batch.size()];
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                // 定位结果已复制，窗口可以复用；推理期间数据被采集线程覆盖的窗口，其结果需要丢弃
+                intact[i] = slidingWindowManager.releaseChecked(batch.get(i));
+            }
+        }
+        recordBatchSize(batch.size());
+        // 将结果按顺序传递到主线程
         if (mHandler != null) {
-            Message msg = mHandler.obtainMessage();
-            msg.obj = coordinate;
-            mHandler.sendMessage(msg);
+            for (int i = 0; i < coordinates.size(); i++) {
+                if (i < batch.size() && !intact[i]) {
+                    continue;
+                }
+                Message msg = mHandler.obtainMessage();
+                msg.obj = coordinates.get(i);
+                mHandler.sendMessage(msg);
+            }
         }
     }
 
+    /**
+     * 记录一次推理的批大小，每100批输出一次批大小分布和任务队列的积压情况
+     * @param size 批大小
+     */
+    private void recordBatchSize(int size) {
+        batchSizeCounts[Math.min(size, batchSizeCounts.length - 1)]++;
+        batchCount++;
+        if (batchCount % 100 == 0) {
+            StringBuilder sb = new StringBuilder("批大小分布:");
+            for (int i = 1; i < batchSizeCounts.length; i++) {
+                if (batchSizeCounts[i] > 0) {
+                    sb.append(' ').append(i).append('=').append(batchSizeCounts[i]);
+                }
+            }
+            sb.append(String.format(Locale.US, ", 队列深度=%d(最大%d), 丢弃=%d, 过期=%d, 最旧窗口等待=%.1fms",
+                    slidingWindowManager.getQueueDepth(), slidingWindowManager.getMaxQueueDepth(),
+                    slidingWindowManager.getDroppedTasks(), slidingWindowManager.getStaleTasks(),
+                    slidingWindowManager.getOldestTaskAgeNs() / 1e6));
+            Log.i("Locator", sb.toString());
+        }
+    }
+
+    /**
+     * 获取批大小计数
+     * @return 下标为批大小的计数数组副本
+     */
+    public long[] getBatchSizeCounts() {
+        return batchSizeCounts.clone();
+    }
+
     /**
      * 数据采集器启动
      */
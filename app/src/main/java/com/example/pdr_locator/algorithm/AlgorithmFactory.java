@@ -1,6 +1,15 @@
 package com.example.pdr_locator.algorithm;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.pdr_locator.R;
+import com.example.pdr_locator.sensor.SensorDataCollector;
+import com.example.pdr_locator.utils.InferenceBackendFactory;
+import com.example.pdr_locator.utils.ModelLoader;
+import com.example.pdr_locator.utils.OrtSessionProfile;
+import com.example.pdr_locator.utils.WindowSpec;
 /**
  * @Author: Liu Wenbin
  * @Date: 2025/4/14
@@ -14,14 +23,78 @@ import java.net.ContentHandler;
  * 算法工厂类，根据算法名称返回定位算法对象
  */
 public class AlgorithmFactory {
+    private static final String TAG = "AlgorithmFactory";
+    private static final String PDR_MODEL = "gru.onnx";  // PdrLocalOri的整窗口模型，其他后端按扩展名替换
     public static IAlgorithm createAlgorithm(Context context,String algorithmName) {
+        OrtSessionProfile profile = getSessionProfile(context);
         switch (algorithmName) {
             case "PdrLocalOri":
-                return new PdrLocalOri(context, "gru.onnx");
+                return new PdrLocalOri(context, InferenceBackendFactory.modelNameFor(PDR_MODEL,
+                        getInferenceBackend(context)), null, profile, getPdrWindowSpec(context));
+            case "PdrLocalOriFp16":
+                return new PdrLocalOri(context, "gru_fp16.onnx", null, profile, getPdrWindowSpec(context));
+            case "PdrLocalOriInt8":
+                return new PdrLocalOri(context, "gru_int8.onnx", null, profile, getPdrWindowSpec(context));
+            case "PdrLocalOriStream":
+                return new PdrLocalOri(context, "gru.onnx", "gru_stream.onnx", profile, getPdrWindowSpec(context));
             case "CollectData":
                 return new CollectData();
             default:
                 throw new IllegalArgumentException("Unknown algorithm: " + algorithmName);
         }
     }
+
+    /**
+     * 读取上下文中的全局配置参数ortProfile，获取ORT Session配置
+     *
+     * @param context 上下文
+     * @return Session配置，未配置时使用低延迟配置
+     */
+    private static OrtSessionProfile getSessionProfile(Context context) {
+        SharedPreferences sharedPref = context.getSharedPreferences("app_settings", Context.MODE_PRIVATE);
+        String profileKey = context.getResources().getString(R.string.ort_profile_key);
+        return OrtSessionProfile.forName(sharedPref.getString(profileKey, OrtSessionProfile.LOW_LATENCY.getName()));
+    }
+
+    /**
+     * 读取上下文中的全局配置参数，获取PdrLocalOri的窗口划分方式，窗口大小固定为模型输入的时间步数，不读取窗口大小的配置。
+     * 按时间划分时读取窗口时长和步长，否则读取滑动步长。SensorDataCollector通过getSensorRequirement()使用同一个窗口划分方式
+     *
+     * @param context 上下文
+     * @return 窗口划分方式，未配置时使用默认值
+     */
+    private static WindowSpec getPdrWindowSpec(Context context) {
+        SharedPreferences sharedPref = context.getSharedPreferences("app_settings", Context.MODE_PRIVATE);
+        String windowingModeKey = context.getResources().getString(R.string.windowing_mode_key);
+        if (SensorDataCollector.WINDOWING_TIME.equals(
+                sharedPref.getString(windowingModeKey, SensorDataCollector.WINDOWING_COUNT))) {
+            String durationKey = context.getResources().getString(R.string.window_duration_key);
+            String strideKey = context.getResources().getString(R.string.window_stride_key);
+            return WindowSpec.ofDuration(sharedPref.getLong(durationKey, 1000),
+                    sharedPref.getLong(strideKey, 200), PdrLocalOri.WINDOW_SIZE);
+        }
+        String slideStepKey = context.getResources().getString(R.string.slide_step_key);
+        int slideStep = sharedPref.getInt(slideStepKey, PdrLocalOri.DEFAULT_SLIDE_STEP);
+        return WindowSpec.ofCount(PdrLocalOri.WINDOW_SIZE, slideStep);
+    }
+
+    /**
+     * 读取上下文中的全局配置参数inferenceBackend，获取推理后端。
+     * torch后端需要tools/export_torch_lite.py导出的gru.ptl，assets中没有时不提供该选项，使用ONNX Runtime，
+     * 推理统计和getBackendName()报告的是实际使用的onnx后端
+     *
+     * @param context 上下文
+     * @return 推理后端配置名，未配置时使用ONNX Runtime
+     */
+    private static String getInferenceBackend(Context context) {
+        SharedPreferences sharedPref = context.getSharedPreferences("app_settings", Context.MODE_PRIVATE);
+        String backendKey = context.getResources().getString(R.string.inference_backend_key);
+        String backend = sharedPref.getString(backendKey, InferenceBackendFactory.ONNX);
+        String torchModel = InferenceBackendFactory.modelNameFor(PDR_MODEL, InferenceBackendFactory.TORCH);
+        if (InferenceBackendFactory.TORCH.equals(backend) && !ModelLoader.hasAsset(context, torchModel)) {
+            Log.w(TAG, "assets中没有" + torchModel + "，torch后端不可用，使用onnx");
+            return InferenceBackendFactory.ONNX;
+        }
+        return backend;
+    }
 }
@@ -1,8 +1,7 @@
 package com.example.pdr_locator.algorithm;
 
-import com.example.pdr_locator.model.SensorData;
-
-import java.util.List;
+import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.utils.SensorWindow;
 
 /**
  * @Author: Liu Wenbin
@@ -14,11 +13,22 @@ import java.util.List;
  * 采集数据的算法类，返回原点位置，即不返回定位结果，只采集数据
  */
 public class CollectData implements IAlgorithm{
+    /**
+     * 采集原始数据，以最快频率采集三个传感器，不重采样，不取出窗口任务
+     */
+    @Override
+    public SensorRequirement getSensorRequirement() {
+        return SensorRequirement.recordOnly(SensorType.ACCELEROMETER, SensorType.GYROSCOPE, SensorType.MAGNETOMETER);
+    }
+
     @Override
-    public double[] getCoordinate(List<SensorData> input) throws Exception{
+    public double[] getCoordinate(SensorWindow input) throws Exception{
         return new double[]{0.0, 0.0, 0.0};
     }
     @Override
     public void reset(){
     }
+    @Override
+    public void close(){
+    }
 }
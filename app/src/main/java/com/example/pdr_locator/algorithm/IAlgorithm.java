@@ -6,8 +6,10 @@ package com.example.pdr_locator.algorithm;
  * @Time: 17:00
  */
 
-import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.utils.SensorWindow;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -16,9 +18,48 @@ import java.util.List;
 public interface IAlgorithm {
     /**
      * 获得一次定位结果
-     * @param input 输入IMU数据
+     * @param input 输入IMU数据，指向滑动窗口缓冲区的视图，只在本次调用期间有效
      * @return 返回一次定位结果（x,y,z）
      */
-    double[] getCoordinate(List<SensorData> input) throws Exception;
+    double[] getCoordinate(SensorWindow input) throws Exception;
+
+    /**
+     * 按顺序获得多个连续窗口的定位结果，默认逐窗口调用getCoordinate()，支持批量推理的算法可以重写
+     * @param inputs 按时间顺序排列的多个窗口
+     * @return 每个窗口对应的定位结果（x,y,z），每个结果都是独立的数组
+     */
+    default List<double[]> getCoordinates(List<SensorWindow> inputs) throws Exception {
+        List<double[]> coordinates = new ArrayList<>(inputs.size());
+        for (SensorWindow input : inputs) {
+            coordinates.add(getCoordinate(input).clone());
+        }
+        return coordinates;
+    }
+
+    /**
+     * 算法对传感器数据的要求，采集器据此选择注册传感器的采样率、重采样频率和窗口划分方式。
+     * 默认不要求采样率，使用加速度计和陀螺仪，窗口按全局配置划分
+     *
+     * @return 传感器数据要求
+     */
+    default SensorRequirement getSensorRequirement() {
+        return new SensorRequirement(SensorRequirement.RAW_RATE, null, SensorType.ACCELEROMETER, SensorType.GYROSCOPE);
+    }
+
+    /**
+     * 预热算法，如加载模型并用假数据推理几次，在后台线程调用，使第一个窗口不承担模型加载和首次推理的开销。
+     * 默认不做任何事
+     */
+    default void warmUp() throws Exception {
+    }
+
+    /**
+     * 重置定位结果
+     */
     void reset();
+
+    /**
+     * 释放算法持有的资源（如模型Session），算法对象不再使用时调用
+     */
+    void close() throws Exception;
 }
@@ -0,0 +1,229 @@
+package com.example.pdr_locator.algorithm;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import com.example.pdr_locator.record.ISampleSource;
+import com.example.pdr_locator.replay.ReplayEngine;
+import com.example.pdr_locator.replay.ReplayResult;
+import com.example.pdr_locator.utils.ModelLoader;
+import com.example.pdr_locator.utils.OrtSessionProfile;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 模型变体评估工具。将录制的IMU数据（IMU_Data_*.csv）用ReplayEngine按与SlidingWindowManager相同的窗口，
+ * 依次用基准模型（gru.onnx）和各量化变体（gru_fp16.onnx、gru_int8.onnx）的PdrLocalOri回放，
+ * 统计每个变体的模型大小、逐窗口耗时，以及轨迹相对基准模型的漂移，用于选择满足误差预算的最小模型
+ */
+public class ModelVariantBenchmark {
+    private static final String TAG = "ModelVariantBenchmark";
+    public static final String BASELINE_MODEL = "gru.onnx";  // FP32基准模型
+    public static final String[] VARIANT_MODELS = {"gru_fp16.onnx", "gru_int8.onnx"};  // 量化变体
+
+    private final Context context;  // 上下文
+    private final int windowSize;  // 窗口大小
+    private final OrtSessionProfile profile;  // 所有模型使用相同的Session配置
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param windowSize 窗口大小，与采集时的配置一致
+     * @param profile Session配置
+     */
+    public ModelVariantBenchmark(Context context, int windowSize, OrtSessionProfile profile) {
+        this.context = context;
+        this.windowSize = windowSize;
+        this.profile = profile;
+    }
+
+    /**
+     * 用基准模型和默认的量化变体回放一个录制文件
+     *
+     * @param csvFile 录制的IMU数据文件
+     * @return 各模型的评估结果，第一个为基准模型
+     * @throws Exception 读取文件或推理失败时抛出
+     */
+    public List<Report> run(File csvFile) throws Exception {
+        return run(csvFile, BASELINE_MODEL, VARIANT_MODELS);
+    }
+
+    /**
+     * 用基准模型和各变体回放一个录制文件。变体不存在时报错而不是跳过或换成基准模型，
+     * 否则报告中变体名下的耗时和精度实际是基准模型的
+     *
+     * @param csvFile 录制的IMU数据文件
+     * @param baselineModel 基准模型文件名
+     * @param variantModels 变体模型文件名
+     * @return 各模型的评估结果，第一个为基准模型
+     * @throws Exception 读取文件或推理失败、变体不存在时抛出
+     */
+    public List<Report> run(File csvFile, String baselineModel, String... variantModels) throws Exception {
+        List<Report> reports = new ArrayList<>();
+        Report baseline = replay(baselineModel, csvFile, null);
+        reports.add(baseline);
+        for (String model : variantModels) {
+            if (getModelSize(model) < 0) {
+                throw new FileNotFoundException(model + " 不存在，用tools/quantize_models.py生成");
+            }
+            reports.add(replay(model, csvFile, baseline.trajectory));
+        }
+        for (Report report : reports) {
+            Log.i(TAG, csvFile.getName() + " " + report);
+        }
+        return reports;
+    }
+
+    /**
+     * 用一个模型回放录制文件，窗口由ReplayEngine按采集时的规则生成
+     *
+     * @param model 模型文件名
+     * @param recording 录制文件
+     * @param baselineTrajectory 基准轨迹，为null时表示本次即为基准
+     * @return 评估结果
+     */
+    private Report replay(String model, File recording, double[][] baselineTrajectory) throws Exception {
+        PdrLocalOri algorithm = new PdrLocalOri(context, model, null, profile);
+        ReplayEngine engine = new ReplayEngine(WindowSpec.ofCount(windowSize, PdrLocalOri.DEFAULT_SLIDE_STEP),
+                algorithm.getSensorRequirement().getSampleRateHz(), ReplayEngine.MAX_SPEED);
+        ReplayResult result;
+        try (ISampleSource source = ISampleSource.open(recording)) {
+            algorithm.warmUp();
+            result = engine.run(algorithm, source);
+        } finally {
+            algorithm.close();
+        }
+        Report report = new Report(model, getModelSize(model), result);
+        if (baselineTrajectory != null) {
+            report.computeDrift(baselineTrajectory);
+        }
+        return report;
+    }
+
+    /**
+     * @return assets中模型的大小（字节），模型不存在时返回-1
+     */
+    private long getModelSize(String model) {
+        try (AssetFileDescriptor afd = context.getAssets().openFd(model)) {
+            return afd.getLength();
+        } catch (IOException e) {
+            // 压缩存储的asset无法获取文件描述符，解压后取文件大小
+            try {
+                return ModelLoader.getModelFile(context, model).length();
+            } catch (IOException missing) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 单个模型的评估结果
+     */
+    public static class Report {
+        private final String model;  // 模型文件名
+        private final long modelSize;  // 模型大小（字节）
+        private final long[] latencyNs;  // 每个窗口的定位耗时（纳秒），包括姿态解算和推理
+        private final double[][] trajectory;  // 每个窗口的位置[x, y]
+        private double meanDrift;  // 与基准轨迹的平均位置差（m）
+        private double maxDrift;  // 与基准轨迹的最大位置差（m）
+        private double finalDrift;  // 与基准轨迹的最终位置差（m）
+
+        Report(String model, long modelSize, ReplayResult result) {
+            this.model = model;
+            this.modelSize = modelSize;
+            this.latencyNs = new long[result.getWindows()];
+            for (int i = 0; i < latencyNs.length; i++) {
+                latencyNs[i] = result.getLatencyNs(i);
+            }
+            this.trajectory = result.getTrajectory();
+        }
+
+        private void computeDrift(double[][] baseline) {
+            double sum = 0.0;
+            for (int i = 0; i < trajectory.length; i++) {
+                double drift = Math.hypot(trajectory[i][0] - baseline[i][0], trajectory[i][1] - baseline[i][1]);
+                sum += drift;
+                maxDrift = Math.max(maxDrift, drift);
+                finalDrift = drift;
+            }
+            meanDrift = trajectory.length == 0 ? 0.0 : sum / trajectory.length;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public long getModelSize() {
+            return modelSize;
+        }
+
+        public int getWindows() {
+            return latencyNs.length;
+        }
+
+        /**
+         * @return 平均每窗口耗时（毫秒）
+         */
+        public double getMeanLatencyMs() {
+            if (latencyNs.length == 0) {
+                return 0.0;
+            }
+            long sum = 0;
+            for (long ns : latencyNs) {
+                sum += ns;
+            }
+            return sum / 1e6 / latencyNs.length;
+        }
+
+        /**
+         * @param percentile 百分位，0~100
+         * @return 每窗口耗时的百分位数（毫秒）
+         */
+        public double getLatencyPercentileMs(double percentile) {
+            if (latencyNs.length == 0) {
+                return 0.0;
+            }
+            long[] sorted = latencyNs.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+        }
+
+        public double getMeanDrift() {
+            return meanDrift;
+        }
+
+        public double getMaxDrift() {
+            return maxDrift;
+        }
+
+        public double getFinalDrift() {
+            return finalDrift;
+        }
+
+        /**
+         * @param budget 允许的最大位置差（m）
+         * @return 整条轨迹与基准的位置差是否都在误差预算内
+         */
+        public boolean isWithin(double budget) {
+            return maxDrift <= budget;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: size=%d KB, windows=%d, latency mean=%.3f p50=%.3f p95=%.3f ms, "
+                            + "drift mean=%.3f max=%.3f final=%.3f m",
+                    model, modelSize / 1024, getWindows(), getMeanLatencyMs(), getLatencyPercentileMs(50),
+                    getLatencyPercentileMs(95), meanDrift, maxDrift, finalDrift);
+        }
+    }
+}
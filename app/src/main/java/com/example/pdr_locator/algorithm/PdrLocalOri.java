@@ -5,10 +5,16 @@ import android.util.Log;
 
 import com.example.pdr_locator.model.Quat;
 import com.example.pdr_locator.model.QuatModel;
-import com.example.pdr_locator.model.SensorData;
-import com.example.pdr_locator.utils.OnnxInferenceHelper;
+import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.utils.IInferenceBackend;
+import com.example.pdr_locator.utils.InferenceBackendFactory;
+import com.example.pdr_locator.utils.OrtSessionProfile;
 import com.example.pdr_locator.utils.QuaternionUtil;
+import com.example.pdr_locator.utils.SensorWindow;
+import com.example.pdr_locator.utils.StreamingGruHelper;
+import com.example.pdr_locator.utils.WindowSpec;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
@@ -23,36 +29,260 @@ import java.util.Arrays;
  * PdrLocalOri算法类
  */
 public class PdrLocalOri implements IAlgorithm{
+    static final int SAMPLE_RATE_HZ = 50;  // 模型训练数据的采样率，样本间隔20ms
+    static final int WINDOW_SIZE = 50;  // 模型输入的时间步数
+    static final int DEFAULT_SLIDE_STEP = 10;  // 默认的滑动步长，即相邻窗口之间新增的样本数
+    private static final int WARM_UP_RUNS = 3;  // 预热时的假数据推理次数
     private PDR pdr;  // pdr模型对象
-    private boolean firstWin;  // 首个窗口
+    private final WindowSpec windowSpec;  // 窗口划分方式，与采集器使用的一致
+    private final int slideStep;  // 相邻窗口之间新增的样本数
     private double minVar;  // acce数据方差最小阈值
     private QuatModel oriM;  // 四元数模型对象，存储当前四元数和历史四元数
     private int halfResetWindow;
     private double[] pxy;  // 此时的位置[x,y,z]
+    private final float[] vxy = new float[2];  // 每个窗口预测的速度[vx, vy]，复用
+    private boolean streamPrimed;  // 流式模式下GRU隐状态是否已用完整窗口初始化
+    private int newFrom;  // 当前窗口中未参与过姿态和位置更新的第一个样本的下标，首个窗口和不连续的窗口为0
+    private boolean hasPrevious;  // 是否处理过窗口，reset()后为false
+    private long lastStartSequence;  // 上一个处理过的窗口第一个样本的序号
+    private long lastEndTimestamp;  // 上一个处理过的窗口最后一个样本的时间戳
+    private final float[] meanAcce = new float[3];  // 窗口内加速度计三轴数据的平均值，复用
+    private final float[] quatParams = new float[4];  // 四元数更新参数[相邻时间间隔, gyro三轴数据]，复用
+    private Quat savedQ;  // 处理当前窗口前的四元数，oriM未初始化时为null
+    private int savedHistorySize;  // 处理当前窗口前的四元数历史记录长度
+    private double savedMinVar;  // 处理当前窗口前的minVar
+    private boolean savedHasPrevious;  // 处理当前窗口前的hasPrevious
+    private long savedStartSequence;  // 处理当前窗口前的lastStartSequence
+    private long savedEndTimestamp;  // 处理当前窗口前的lastEndTimestamp
+    private boolean[] intact = new boolean[0];  // 批量计算时各窗口读取后是否仍未被覆盖，复用
+    private int[] newFroms = new int[0];  // 批量计算时各窗口的newFrom，复用
+
+    /**
+     * 构造函数，整窗口推理模式
+     *
+     * @param context 上下文
+     * @param modelName 模型文件名
+     */
     public PdrLocalOri(Context context, String modelName) {
-        this.pdr = new PDR(context, modelName);
-        this.firstWin = true;
+        this(context, modelName, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param modelName 整窗口模型文件名
+     * @param streamModelName 流式模型文件名，为null时使用整窗口推理
+     */
+    public PdrLocalOri(Context context, String modelName, String streamModelName) {
+        this(context, modelName, streamModelName, OrtSessionProfile.DEFAULT);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param modelName 整窗口模型文件名
+     * @param streamModelName 流式模型文件名，为null时使用整窗口推理
+     * @param profile ORT Session配置
+     */
+    public PdrLocalOri(Context context, String modelName, String streamModelName, OrtSessionProfile profile) {
+        this(context, modelName, streamModelName, profile, WindowSpec.ofCount(WINDOW_SIZE, DEFAULT_SLIDE_STEP));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param modelName 整窗口模型文件名
+     * @param streamModelName 流式模型文件名，为null时使用整窗口推理；指定后流式模型加载失败时推理抛出异常
+     * @param profile ORT Session配置
+     * @param windowSpec 窗口划分方式，每个窗口WINDOW_SIZE个样本，流式推理每步输入相邻窗口之间新增的样本
+     */
+    public PdrLocalOri(Context context, String modelName, String streamModelName, OrtSessionProfile profile,
+                       WindowSpec windowSpec) {
+        this.windowSpec = windowSpec;
+        this.slideStep = checkWindowSpec(windowSpec, streamModelName != null);
+        this.pdr = new PDR(context, modelName, streamModelName, profile, slideStep);
+        this.minVar = 1000;
+        this.halfResetWindow = 25;
+        this.pxy = new double[]{0.0, 0.0, 0.0};
+    }
+
+    /**
+     * 构造函数，使用已创建的整窗口推理后端，不依赖Context，可在普通JVM中回放录制数据，
+     * 如new PdrLocalOri(new JavaGruInferenceHelper(engine, "gru.weights", WINDOW_SIZE), spec)
+     *
+     * @param backend 整窗口推理后端，输入形状[WINDOW_SIZE, 6]，输出[vx, vy]，随算法一起关闭
+     * @param windowSpec 窗口划分方式，每个窗口WINDOW_SIZE个样本
+     */
+    public PdrLocalOri(IInferenceBackend backend, WindowSpec windowSpec) {
+        this.windowSpec = windowSpec;
+        this.slideStep = checkWindowSpec(windowSpec, false);
+        this.pdr = new PDR(backend, slideStep);
         this.minVar = 1000;
         this.halfResetWindow = 25;
         this.pxy = new double[]{0.0, 0.0, 0.0};
     }
 
+    /**
+     * 检查窗口划分方式与模型输入是否一致
+     *
+     * @param windowSpec 窗口划分方式
+     * @param streaming 是否使用流式推理
+     * @return 相邻窗口之间新增的样本数
+     */
+    private static int checkWindowSpec(WindowSpec windowSpec, boolean streaming) {
+        if (windowSpec.getSamples() != WINDOW_SIZE) {
+            throw new IllegalArgumentException("窗口大小" + windowSpec.getSamples() + "与模型输入的时间步数" + WINDOW_SIZE + "不一致");
+        }
+        int slideStep = newSamplesPerWindow(windowSpec);
+        if (slideStep < 1 || slideStep > WINDOW_SIZE) {
+            throw new IllegalArgumentException("相邻窗口之间新增" + slideStep + "个样本，应在1到" + WINDOW_SIZE + "之间: " + windowSpec);
+        }
+        if (streaming && windowSpec.isTimeBased()
+                && windowSpec.getStrideMs() * windowSpec.getSamples() % windowSpec.getDurationMs() != 0) {
+            // 流式推理每步输入的样本必须恰好是新增的样本，否则隐状态与整窗口推理不一致
+            throw new IllegalArgumentException("流式推理要求步长是重采样间隔的整数倍: " + windowSpec);
+        }
+        return slideStep;
+    }
+
+    /**
+     * 相邻窗口之间新增的样本数。按样本数划分时为滑动步长；
+     * 按时间划分时窗口已重采样为等间隔，为步长时间除以重采样间隔，四舍五入
+     *
+     * @param spec 窗口划分方式
+     * @return 新增的样本数
+     */
+    static int newSamplesPerWindow(WindowSpec spec) {
+        if (!spec.isTimeBased()) {
+            return spec.getSlideStep();
+        }
+        return (int) Math.round(spec.getStrideMs() / spec.getSampleIntervalMs());
+    }
+
+    /**
+     * 模型按50Hz采样、50个样本的窗口训练，滑动步长由构造时的窗口划分方式决定，只需要加速度计和陀螺仪
+     *
+     * @return 传感器数据要求
+     */
+    @Override
+    public SensorRequirement getSensorRequirement() {
+        return new SensorRequirement(SAMPLE_RATE_HZ, windowSpec,
+                SensorType.ACCELEROMETER, SensorType.GYROSCOPE);
+    }
+
     /**
      * 计算定位结果[x,y,z]
      * @param inputs 输入IMU数据
      * @return 返回定位结果double[] (x,y,z)
      */
     @Override
-    public double[] getCoordinate(List<SensorData> inputs) throws Exception {
-        long[][] timestamp = getTimestamp(inputs);  // 时间戳
-        float[][] accelerometerData = getAccelerometer(inputs);  //加速度计三轴数据
-        float[][] gyroscopeData = getGyroscope(inputs);  // 陀螺仪三轴数据
-//        double[][] magnetometerData = getMagnetometer(inputs);  // 磁力计三轴数据
+    public double[] getCoordinate(SensorWindow inputs) throws Exception {
+        saveOrientation();
+        float[] vxy = getVxy(inputs);  // 测得此时的x、y轴方向的速度
+        if (!checkIntact(inputs)) {
+            return pxy;  // 位置不变，调用方releaseChecked()时同样会发现窗口已被覆盖并丢弃该结果
+        }
+        return applyVelocity(inputs, vxy, newFrom);
+    }
+
+    /**
+     * 批量计算多个连续窗口的定位结果。各窗口的姿态按顺序更新并旋转后写入同一个输入缓冲区，
+     * 只执行一次推理，再按顺序用各窗口的速度更新位置。流式推理或模型不支持batch时逐窗口计算。
+     * 写入后发现已被覆盖的窗口不更新姿态和位置，对应的结果为不变的位置
+     *
+     * @param inputs 按时间顺序排列的多个窗口
+     * @return 每个窗口对应的定位结果
+     */
+    @Override
+    public List<double[]> getCoordinates(List<SensorWindow> inputs) throws Exception {
+        int batch = inputs.size();
+        if (batch == 1 || pdr.isStreaming() || !pdr.supportsBatch()) {
+            return IAlgorithm.super.getCoordinates(inputs);
+        }
+        FloatBuffer input = pdr.getInputBuffer(batch);
+        if (intact.length < batch) {
+            intact = new boolean[batch];
+            newFroms = new int[batch];
+        }
+        for (int k = 0; k < batch; k++) {
+            saveOrientation();
+            updateOrientation(inputs.get(k));
+            writeRotatedWindow(inputs.get(k), input);  // 必须在下一个窗口更新姿态前写入
+            newFroms[k] = newFrom;
+            intact[k] = checkIntact(inputs.get(k));  // 被覆盖的窗口仍占用输入缓冲区中的位置，结果不使用
+        }
+
+        FloatBuffer output = pdr.runBatch(batch);
+        List<double[]> coordinates = new ArrayList<>(batch);
+        for (int k = 0; k < batch; k++) {
+            output.get(vxy, 0, vxy.length);
+            coordinates.add(intact[k] ? applyVelocity(inputs.get(k), vxy, newFroms[k]).clone() : pxy.clone());
+        }
+        return coordinates;
+    }
 
-        float[] vxy = getVxy(timestamp, accelerometerData, gyroscopeData);  // 测得此时的x、y轴方向的速度
+    /**
+     * 记录处理一个窗口前的姿态状态，窗口数据在读取期间被覆盖时由restoreOrientation()回滚
+     */
+    private void saveOrientation() {
+        savedQ = oriM == null ? null : oriM.getQ();  // 四元数更新时替换为新对象，保存引用即可
+        savedHistorySize = oriM == null ? 0 : oriM.getQArrayList().size();
+        savedMinVar = minVar;
+        savedHasPrevious = hasPrevious;
+        savedStartSequence = lastStartSequence;
+        savedEndTimestamp = lastEndTimestamp;
+    }
 
+    /**
+     * 恢复saveOrientation()记录的姿态状态，丢弃被覆盖的窗口对四元数及其历史记录的更新
+     */
+    private void restoreOrientation() {
+        minVar = savedMinVar;
+        hasPrevious = savedHasPrevious;
+        lastStartSequence = savedStartSequence;
+        lastEndTimestamp = savedEndTimestamp;
+        if (savedQ == null) {
+            oriM = null;  // 由被覆盖的窗口初始化的姿态也不可信，下一个窗口重新初始化
+            return;
+        }
+        oriM.setQ(savedQ);
+        List<Quat> qList = oriM.getQList();
+        qList.subList(savedHistorySize, qList.size()).clear();
+        List<double[]> qArrayList = oriM.getQArrayList();
+        qArrayList.subList(savedHistorySize, qArrayList.size()).clear();
+    }
+
+    /**
+     * 在窗口数据全部读取之后确认其未被采集线程覆盖。已被覆盖时回滚本窗口对姿态的更新；
+     * 流式推理的隐状态无法回滚，下一个窗口重新初始化
+     *
+     * @param window 已读取完的窗口
+     * @return 窗口数据是否完整，返回false时不应再用该窗口更新位置
+     */
+    private boolean checkIntact(SensorWindow window) {
+        if (window.isValid()) {
+            return true;
+        }
+        restoreOrientation();
+        streamPrimed = false;
+        Log.w("PdrLocalOri", "窗口数据在读取期间被覆盖，不更新姿态和位置");
+        return false;
+    }
+
+    /**
+     * 用一个窗口预测的速度更新位置
+     *
+     * @param window 窗口数据
+     * @param vxy 窗口预测的速度[vx, vy]
+     * @param from 未参与过位置更新的第一个样本的下标，窗口与上一个窗口不连续时为0，按整个窗口的时长累计
+     * @return 更新后的位置
+     */
+    private double[] applyVelocity(SensorWindow window, float[] vxy, int from) {
         Log.d("vxy", Arrays.toString(vxy));
-        double timeDiff = (timestamp[timestamp.length-1][0] - timestamp[40][0])/1000.0;  // 窗口时间
+        double timeDiff = (window.getTimestamp(window.size()-1) - window.getTimestamp(from))/1000.0;  // 窗口时间
         Log.d("timeDiff", String.valueOf(timeDiff));
         if(!Float.isInfinite(vxy[0]) && !Float.isInfinite(vxy[1]) && !Float.isNaN(vxy[0]) && !Float.isNaN(vxy[1])){
             pxy[0] = pxy[0] + vxy[0]*timeDiff;  // 计算当前坐标x
@@ -62,207 +292,265 @@ public class PdrLocalOri implements IAlgorithm{
         return pxy;
     }
 
+    /**
+     * 重置定位结果，推理引擎保持加载状态，下次开始定位时无需重新加载模型
+     */
     @Override
     public void reset(){
         this.pxy = new double[]{0.0, 0.0, 0.0};
+        this.streamPrimed = false;  // 重新开始定位时数据不连续，隐状态需要重新初始化
+        this.hasPrevious = false;
+    }
+
+    /**
+     * 加载模型并用全零窗口推理几次，不改变定位状态
+     */
+    @Override
+    public void warmUp() throws Exception {
+        pdr.warmUp(WARM_UP_RUNS);
+    }
+
+    /**
+     * 释放推理引擎
+     */
+    @Override
+    public void close() throws Exception {
+        pdr.close();
     }
 
     /**
      * 根据IMU数据预测速度vx和vy
-     * @param time double[][] 二维数组，windowSize行，时间戳
-     * @param acce double[][] 二维数组，windowSize行，加速度计三轴数据
-     * @param gyro double[][] 二维数组，windowSize行，陀螺仪三轴数据
+     * @param window 窗口数据，windowSize行，包括时间戳、加速度计和陀螺仪三轴数据
      * @return [vx, vy] x轴预测的速度、y轴预测的速度
      */
-    public float[] getVxy(long[][] time, float[][] acce, float[][] gyro) throws Exception {
+    public float[] getVxy(SensorWindow window) throws Exception {
+        updateOrientation(window);
 
+        // 5. 执行旋转和推理
+        return processImuData(window);
+    }
+
+    /**
+     * 用一个窗口的IMU数据更新姿态四元数
+     *
+     * @param window 窗口数据
+     */
+    private void updateOrientation(SensorWindow window) {
+        newFrom = followsPrevious(window) ? window.size() - slideStep : 0;
+        hasPrevious = true;
+        lastStartSequence = window.getStartSequence();
+        lastEndTimestamp = window.getTimestamp(window.size() - 1);
 
         // 1. 确保 oriM 初始化
         if (oriM == null) {
-            initializeOrientationModel(acce);
+            initializeOrientationModel(window);
         }
 
-        // 2. 构建缓存数据
-        float[][] cache = buildCache(time, acce, gyro);
+        // 2. 计算加速度方差
+        double var = calculateAccelerationVariance(window);
+        handleVarianceConditions(var, window);
 
+        // 3. 更新四元数
+        updateQuaternions(window);
 
-        // 3. 计算加速度方差
-        double var = calculateAccelerationVariance(acce);
-        handleVarianceConditions(var, acce);
-
-        // 4. 更新四元数
-        updateQuaternions(cache);
-
-        firstWin = false;
+    }
 
-        // 5. 执行旋转和推理
-        return processImuData(time, acce, gyro);
+    /**
+     * 判断窗口是否紧接上一个处理过的窗口。队列满时丢弃的窗口、被覆盖而跳过的窗口和采集暂停都会造成间隔。
+     * 按样本数划分时比较第一个样本的序号；按时间划分的窗口已重采样，比较新增的第一个样本与上一个窗口末尾的时间间隔
+     *
+     * @param window 窗口数据
+     * @return 是否恰好比上一个窗口新增slideStep个样本，首个窗口返回false
+     */
+    private boolean followsPrevious(SensorWindow window) {
+        if (!hasPrevious) {
+            return false;
+        }
+        if (!window.isResampled()) {
+            return window.getStartSequence() == lastStartSequence + slideStep;
+        }
+        double interval = windowSpec.getSampleIntervalMs();
+        long gap = window.getTimestamp(window.size() - slideStep) - lastEndTimestamp;
+        return Math.abs(gap - interval) <= interval / 2;  // 步长不是重采样间隔的整数倍时有不到半个间隔的偏差
     }
 
     /**
      * oriM初始化，根据第一次的acce数据进行初始化
      *
-     * @param acce 加速度计数据
+     * @param window 窗口数据
      */
-    private void initializeOrientationModel(float[][] acce) {
-        // 记录acce数据
-//        for (float[] sample : acce) {
-//            Log.d("acceFloat", Arrays.toString(sample));
-//        }
-
+    private void initializeOrientationModel(SensorWindow window) {
         // 计算初始重力方向(重力方向吗？还是运动加速度和重力加速度的合方向)
-        float[] initGrav = new float[3];
-        for (int i = 0; i < 3; i++) {
-            double sum = 0;
-            for (float[] sample : acce) {
-                sum += sample[i];
-            }
-            initGrav[i] = (float) (sum / acce.length);
-        }
+        float[] initGrav = computeMeanAcce(window);
         normalizeVector(initGrav);
         Quat initialQ = QuaternionUtil.getQFromGrav(initGrav, 0);
-        this.oriM = new QuatModel(0.02, initialQ);
+        this.oriM = new QuatModel(1.0 / SAMPLE_RATE_HZ, initialQ);
         this.halfResetWindow = 25;
     }
 
     /**
-     * 构建数据缓存
+     * 计算窗口内加速度计三轴数据的平均值
      *
-     * @param time 时间戳数据 [50,1]
-     * @param acce 加速度计数据[50,3]
-     * @param gyro 陀螺仪数据[50,3]
-     * @return 返回cache数据[相邻时间间隔，acce三轴数据，gyro三轴数据] [50,7]
-     */
-    private float[][] buildCache(long[][] time, float[][] acce, float[][] gyro) {
-        int rows = time.length;
-        if(!firstWin){
-            rows = 10;
-        }
-        int cols = time[0].length + gyro[0].length + acce[0].length;
-
-        float[][] cache = new float[rows][cols];
-        if(firstWin){
-            for (int i = 0; i < rows; i++) {
-                if(i==0){
-                    cache[i][0] = 20.0f;
-                }
-                else{
-                    cache[i][0] = time[i][0] - time[i-1][0];
-                }
-
-                // 传感器数据填充
-                int sensorStart = 1;
-
-                System.arraycopy(
-                        gyro[i], 0,
-                        cache[i], sensorStart,
-                        gyro[i].length
-                );
-
-                System.arraycopy(
-                        acce[i], 0,
-                        cache[i], sensorStart + 3,
-                        acce[i].length
-                );
-            }
-        }
-        else{
-            for (int i = 0; i < rows; i++) {
-                cache[i][0] = time[i+40][0] - time[i+39][0];
-
-                // 传感器数据填充
-                int sensorStart = 1;
-
-                System.arraycopy(
-                        gyro[i+40], 0,
-                        cache[i], sensorStart,
-                        gyro[i].length
-                );
-
-                System.arraycopy(
-                        acce[i+40], 0,
-                        cache[i], sensorStart + 3,
-                        acce[i].length
-                );
+     * @param window 窗口数据
+     * @return 平均值，复用同一个数组
+     */
+    private float[] computeMeanAcce(SensorWindow window) {
+        for (int i = 0; i < 3; i++) {
+            double sum = 0;
+            for (int t = 0; t < window.size(); t++) {
+                sum += window.getAccelerometer(t, i);
             }
+            meanAcce[i] = (float) (sum / window.size());
         }
-        return cache;
+        return meanAcce;
     }
 
     /**
-     * 计算加速度计数据方差
+     * 计算加速度计数据模长的方差
      *
-     * @param acce 加速度计三轴数据
+     * @param window 窗口数据
      * @return 返回方差结果
      */
-    private double calculateAccelerationVariance(float[][] acce) {
-        double[] norms = new double[acce.length];
-        for (int i = 0; i < acce.length; i++) {
-            double sumSq = 0;
-            for (int j = 0; j < 3; j++) {
-                sumSq += Math.pow(acce[i][j], 2);
-            }
-            norms[i] = Math.sqrt(sumSq);
+    private double calculateAccelerationVariance(SensorWindow window) {
+        int n = window.size();
+        double sum = 0;
+        for (int t = 0; t < n; t++) {
+            sum += accelerationNorm(window, t);
         }
-        return calculateVariance(norms);
+        double mean = sum / n;
+        double sumSq = 0;
+        for (int t = 0; t < n; t++) {
+            sumSq += Math.pow(accelerationNorm(window, t) - mean, 2);
+        }
+        return sumSq / n;
+    }
+
+    private static double accelerationNorm(SensorWindow window, int t) {
+        double sumSq = 0;
+        for (int j = 0; j < 3; j++) {
+            sumSq += Math.pow(window.getAccelerometer(t, j), 2);
+        }
+        return Math.sqrt(sumSq);
     }
 
     /**
      * 根据方差重置四元数
      *
      * @param var  acce数据方差
-     * @param acce  acce数据
+     * @param window  窗口数据
      */
-    private void handleVarianceConditions(double var, float[][] acce) {
+    private void handleVarianceConditions(double var, SensorWindow window) {
         if (var < minVar) {
             minVar = var;
-            oriM.reset_q(acce);
+            oriM.reset_q(computeMeanAcce(window));
         }
         if (var < 0.005) {
-            oriM.reset_q(acce);
+            oriM.reset_q(computeMeanAcce(window));  // reset_q会归一化传入的数组，需要重新计算
         }
     }
 
-    private void updateQuaternions(float[][] cache) {
-        for (float[] row : cache) {
-            float[] params = Arrays.copyOfRange(row, 0, 4);
-            oriM.update(params);
+    /**
+     * 用陀螺仪数据更新四元数。首个窗口和与上一个窗口不连续的窗口使用全部样本（第一个样本的时间间隔取与第二个样本的间隔），
+     * 之后的窗口只使用最新的slideStep个样本。按时间划分的窗口已重采样为等间隔，采样率变化时无需修改
+     *
+     * @param window 窗口数据
+     */
+    private void updateQuaternions(SensorWindow window) {
+        for (int i = newFrom; i < window.size(); i++) {
+            int prev = i == 0 ? 1 : i;  // 第一个样本没有前一个样本，用第二个样本的间隔代替
+            quatParams[0] = window.getTimestamp(prev) - window.getTimestamp(prev - 1);
+            for (int axis = 0; axis < 3; axis++) {
+                quatParams[axis + 1] = window.getGyroscope(i, axis);
+            }
+            oriM.update(quatParams);
         }
     }
 
-    private float[] processImuData(long[][] time, float[][] acce, float[][] gyro) throws Exception {
-        // 获取最新的50个四元数
-        List<double[]> qArrayList = oriM.getQArrayList();
-        int start = Math.max(0, qArrayList.size() - 50);
-        double[][] latestQ = new double[50][4];
-        for (int i = 0; i < 50 && (start + i) < qArrayList.size(); i++) {
-            latestQ[i] = qArrayList.get(start + i);
+    /**
+     * 将窗口内的IMU数据旋转到导航坐标系，直接写入推理引擎的输入缓冲区并执行推理
+     *
+     * @param window 窗口数据
+     * @return [vx, vy]，复用同一个数组
+     */
+    private float[] processImuData(SensorWindow window) throws Exception {
+        if (pdr.isStreaming()) {
+            // 最新的WINDOW_SIZE个四元数在历史记录中的起始下标
+            List<double[]> qArrayList = oriM.getQArrayList();
+            int start = Math.max(0, qArrayList.size() - WINDOW_SIZE);
+            int last = qArrayList.size() - start - 1;
+            return processImuDataStreaming(window, qArrayList, start, last);
         }
+        writeRotatedWindow(window, pdr.getInputBuffer(1));
+        return pdr.run(vxy);
+    }
 
-        // 执行旋转
-        double[][][] rotatedData = new double[time.length][2][3]; // [gyro, acce]
-        for (int i = 0; i < time.length; i++) {
-            double[] q = latestQ[Math.min(i, latestQ.length-1)];
-
-            // 陀螺仪旋转
-            double[] rotatedGyro = rotateVector(q, gyro[i]);
-            System.arraycopy(rotatedGyro, 0, rotatedData[i][0], 0, 3);
-
-            // 加速度计旋转
-            double[] rotatedAcce = rotateVector(q, acce[i]);
-            System.arraycopy(rotatedAcce, 0, rotatedData[i][1], 0, 3);
+    /**
+     * 用最新的WINDOW_SIZE个四元数旋转一个窗口的IMU数据，按[gyro, acce]顺序写入输入缓冲区的当前位置
+     *
+     * @param window 窗口数据，长度必须等于模型输入的时间步数
+     * @param input 输入缓冲区
+     * @throws IllegalArgumentException 窗口长度与模型输入不一致
+     */
+    private void writeRotatedWindow(SensorWindow window, FloatBuffer input) {
+        if (window.size() != WINDOW_SIZE) {
+            throw new IllegalArgumentException("窗口长度" + window.size() + "与模型输入的时间步数" + WINDOW_SIZE + "不一致");
+        }
+        // 最新的WINDOW_SIZE个四元数在历史记录中的起始下标
+        List<double[]> qArrayList = oriM.getQArrayList();
+        int start = Math.max(0, qArrayList.size() - WINDOW_SIZE);
+        int last = qArrayList.size() - start - 1;
+        for (int i = 0; i < window.size(); i++) {
+            double[] q = qArrayList.get(start + Math.min(i, last));
+            putRotated(q, window.getGyroscope(i, 0), window.getGyroscope(i, 1), window.getGyroscope(i, 2), input);  // 陀螺仪旋转
+            putRotated(q, window.getAccelerometer(i, 0), window.getAccelerometer(i, 1), window.getAccelerometer(i, 2), input);  // 加速度计旋转
         }
+    }
 
-        Log.d("acceInput", Arrays.toString(rotatedData[0][0]));
-        Log.d("gyroInput", Arrays.toString(rotatedData[0][1]));
-        // 转换为模型输入
-        double[] inputData = flattenImuData(rotatedData);
-        for(int i=0; i<10; i++){
-            double[] subData = Arrays.copyOfRange(inputData, i*30, i*30+30);
-            Log.d("InputData", Arrays.toString(subData));
+    /**
+     * 流式推理：首个窗口按滑动步长分块依次输入全部样本以初始化隐状态，之后每个窗口只输入最新的滑动步长个样本。
+     * 窗口与上一个窗口不连续时，隐状态中缺少中间的样本，与首个窗口一样重新初始化
+     *
+     * @param window 窗口数据
+     * @param qArrayList 四元数历史记录
+     * @param start 窗口首个样本对应的四元数下标
+     * @param last 窗口内最后一个可用四元数的相对下标
+     * @return [vx, vy]，复用同一个数组
+     */
+    private float[] processImuDataStreaming(SensorWindow window, List<double[]> qArrayList,
+                                            int start, int last) throws Exception {
+        int length = window.size();
+        int from = length - slideStep;  // 本次输入的第一个样本
+        if (!streamPrimed || newFrom == 0) {
+            pdr.resetState();
+            from = length % slideStep;
+            streamPrimed = true;
+        }
+        for (int chunk = from; chunk < length; chunk += slideStep) {
+            FloatBuffer input = pdr.getStepBuffer();
+            for (int i = chunk; i < chunk + slideStep; i++) {
+                double[] q = qArrayList.get(start + Math.min(i, last));
+                putRotated(q, window.getGyroscope(i, 0), window.getGyroscope(i, 1), window.getGyroscope(i, 2), input);  // 陀螺仪旋转
+                putRotated(q, window.getAccelerometer(i, 0), window.getAccelerometer(i, 1), window.getAccelerometer(i, 2), input);  // 加速度计旋转
+            }
+            pdr.runStep(vxy);
         }
-        Log.d("InputData", Arrays.toString(inputData));
-        return pdr.run(inputData);
+        return vxy;
+    }
+
+    /**
+     * @return 是否使用流式推理
+     */
+    public boolean isStreaming() {
+        return pdr.isStreaming();
+    }
+
+    /**
+     * 获取最近一个窗口预测的速度
+     *
+     * @return [vx, vy]，下一个窗口推理后会被覆盖
+     */
+    public float[] getLastVelocity() {
+        return vxy;
     }
 
     //=== 数学工具方法 ===//
@@ -274,171 +562,233 @@ public class PdrLocalOri implements IAlgorithm{
         Log.d("normGrav", Arrays.toString(vec));
     }
 
-    private static double calculateVariance(double[] data) {
-        double mean = Arrays.stream(data).average().orElse(0);
-        return Arrays.stream(data)
-                .map(v -> Math.pow(v - mean, 2))
-                .average()
-                .orElse(0);
+    /**
+     * 用四元数旋转三维向量（q * v * q^-1），结果直接写入缓冲区，不产生中间数组
+     *
+     * @param q 四元数[w, x, y, z]
+     * @param vx 三维向量x分量
+     * @param vy 三维向量y分量
+     * @param vz 三维向量z分量
+     * @param out 输出缓冲区，写入旋转后的x, y, z
+     */
+    private static void putRotated(double[] q, float vx, float vy, float vz, FloatBuffer out) {
+        // t = q * (0, v)
+        double tw = -q[1] * vx - q[2] * vy - q[3] * vz;
+        double tx = q[0] * vx + q[2] * vz - q[3] * vy;
+        double ty = q[0] * vy - q[1] * vz + q[3] * vx;
+        double tz = q[0] * vz + q[1] * vy - q[2] * vx;
+        // q^-1 = conj(q) / |q|^2
+        double norm = q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3];
+        double cw = q[0] / norm;
+        double cx = -q[1] / norm;
+        double cy = -q[2] / norm;
+        double cz = -q[3] / norm;
+        // t * q^-1 的向量部分
+        out.put((float) (tw * cx + tx * cw + ty * cz - tz * cy));
+        out.put((float) (tw * cy - tx * cz + ty * cw + tz * cx));
+        out.put((float) (tw * cz + tx * cy - ty * cx + tz * cw));
     }
+}
 
-    private static double[] rotateVector(double[] quaternion, float[] vector) {
-        double[] vec4 = {0, vector[0], vector[1], vector[2]};
-        double[] conj = QuaternionUtil.inverseQuaternion(quaternion);
-        double[] temp = QuaternionUtil.multiplyQuaternion(quaternion, vec4);
-        double[] result = QuaternionUtil.multiplyQuaternion(temp, conj);
-        return new double[]{result[1], result[2], result[3]};
+/**
+ * PDR类，仅供PdrLocalOri算法使用。持有一个长期存在的推理引擎，首次推理时加载模型，之后的窗口复用同一个Session。
+ * 指定了流式模型时使用流式推理。模型加载失败时抛出异常，不会静默回退到其他模型。
+ * 推理在定位线程中执行，close()在预热线程中执行，所有使用推理引擎的方法都持有同一把锁，
+ * close()会等待正在进行的推理结束，之后的调用抛出IllegalStateException，不会访问已释放的Session
+ */
+class PDR{
+    private Context context;  // 上下文
+    private String modelName;  // 模型名称
+    private final String streamModelName;  // 流式模型名称，可为null
+    private final int stepSize;  // 流式推理每步输入的样本数，等于滑动步长
+    private OrtSessionProfile profile;  // ORT Session配置
+    private static final long[] WINDOW_SHAPE = {PdrLocalOri.WINDOW_SIZE, 6};  // 单个窗口的输入形状[时间步, gyro+acce]
+    private static final int OUTPUT_SIZE = 2;  // 单个窗口的输出[vx, vy]
+    private IInferenceBackend helper;  // 推理引擎，懒加载，close()后置空
+    private boolean closed;  // 是否已调用close()，之后不再加载模型
+    /**
+     * 构造函数
+     *
+     * @param modelName 选择的模型文件名，.onnx使用ONNX Runtime，.ptl使用PyTorch Lite
+     * @param streamModelName 流式模型文件名，为null时不使用流式推理
+     * @param profile ORT Session配置
+     * @param stepSize 流式推理每步输入的样本数
+     */
+    public PDR(Context context, String modelName, String streamModelName, OrtSessionProfile profile, int stepSize) {
+        this.context = context;
+        this.modelName = modelName;
+        this.streamModelName = streamModelName;
+        this.profile = profile;
+        this.stepSize = stepSize;
     }
 
-    private static double[] flattenImuData(double[][][] data) {
-        double[] flat = new double[data.length * 6];
-        int idx = 0;
-        for (double[][] sample : data) {
-            for (double[] sensor : sample) {
-                for (double val : sensor) {
-                    flat[idx++] = val;
-                }
-            }
+    /**
+     * 构造函数，使用已创建的整窗口推理后端，不加载模型
+     *
+     * @param backend 推理后端，close()时关闭
+     * @param stepSize 相邻窗口之间新增的样本数
+     */
+    public PDR(IInferenceBackend backend, int stepSize) {
+        if (backend == null) {
+            throw new IllegalArgumentException("推理后端不能为null");
         }
-        return flat;
+        this.modelName = backend.getBackendName();
+        this.streamModelName = null;
+        this.stepSize = stepSize;
+        this.helper = backend;
     }
 
-    // 辅助方法：四元数旋转
-    private static double[] rotateQuaternion(double[] q, double[] p) {
-        double[] qConj = new double[]{q[0], -q[1], -q[2], -q[3]};
-        double[] temp = QuaternionUtil.multiplyQuaternion(q, p);
-        return QuaternionUtil.multiplyQuaternion(temp, qConj);
+    /**
+     * 获取推理引擎的输入缓冲区，调用方依次写入batch个窗口的数据后调用run()或runBatch()
+     *
+     * @param batch 窗口数
+     * @return 输入缓冲区
+     */
+    public synchronized FloatBuffer getInputBuffer(int batch) throws Exception {
+        return getHelper().getInputBuffer(batch);
     }
 
-    // 辅助方法：三维数组转一维
-    private static double[] flatten3DArray(double[][][] arr) {
-        List<Double> list = new ArrayList<>();
-        for (double[][] matrix : arr) {
-            for (double[] row : matrix) {
-                for (double val : row) {
-                    list.add(val);
-                }
-            }
-        }
-        double[] result = new double[list.size()];
-        for (int i = 0; i < result.length; i++) {
-            result[i] = list.get(i);
-        }
+    /**
+     * 运行算法得出结果
+     * @param result 存放结果的数组
+     * @return 返回结果，即传入的result
+     */
+    public synchronized float[] run(float[] result) throws Exception{
+        FloatBuffer output = getHelper().runDirect(1);
+        output.get(result, 0, result.length);
         return result;
     }
 
     /**
-     * 从输入double[数据行数][10]中提取第一列timestamp
+     * 对batch个窗口执行一次推理
      *
-     * @param inputs 输入的IMU数据（包括时间戳、加速度计三轴数据、陀螺仪三轴数据、磁力计三轴数据）
+     * @param batch 窗口数
+     * @return 输出缓冲区，依次为各窗口的[vx, vy]
      */
-    private long[][] getTimestamp(List<SensorData> inputs){
-        // 检查输入是否为空
-        if (inputs == null || inputs.isEmpty()) {
-            return new long[0][0];
-        }
+    public synchronized FloatBuffer runBatch(int batch) throws Exception {
+        return getHelper().runDirect(batch);
+    }
 
-        int rows = inputs.size();  // 获取结果数组的行数
-        long[][] result = new long[rows][1]; // 每一行只有一个元素
+    /**
+     * @return 模型是否支持一次推理多个窗口
+     */
+    public synchronized boolean supportsBatch() throws Exception {
+        return getHelper().supportsBatch();
+    }
 
-        for (int i = 0; i < rows; i++) {
-            result[i][0] = inputs.get(i).getTimestamp();
-        }
-        return result;
+    /**
+     * @return 当前推理引擎是否为流式推理
+     */
+    public synchronized boolean isStreaming() {
+        return getHelper() instanceof StreamingGruHelper;
     }
 
     /**
-     * 从输入double[数据行数][10]中提取第2、3、4列加速度计三轴数据
+     * 获取流式推理本步的输入缓冲区
      *
-     * @param inputs 输入的IMU数据（包括时间戳、加速度计三轴数据、陀螺仪三轴数据、磁力计三轴数据）
+     * @return 输入缓冲区
      */
-    private float[][] getAccelerometer(List<SensorData> inputs){
-        // 检查输入是否为空
-        if (inputs == null || inputs.isEmpty()) {
-            return new float[0][0];
-        }
-
-        int rows = inputs.size();  // 获取结果数组的行数
-        float[][] result = new float[rows][3]; // 每一行只有3个元素
-
-        // 遍历每一行，取第一列的值
-        for (int i = 0; i < rows; i++) {
-            // 检查当前行是否为空
-            result[i] = inputs.get(i).getAccelerometerData();
-        }
-        return result;
+    public synchronized FloatBuffer getStepBuffer() throws Exception {
+        return ((StreamingGruHelper) getHelper()).getStepBuffer();
     }
 
     /**
-     * 从输入double[数据行数][10]中提取第5、6、7列陀螺仪三轴数据
+     * 执行一步流式推理
      *
-     * @param inputs 输入的IMU数据（包括时间戳、加速度计三轴数据、陀螺仪三轴数据、磁力计三轴数据）
+     * @param result 存放结果的数组
+     * @return 返回结果，即传入的result
      */
-    private float[][] getGyroscope(List<SensorData> inputs){
-        // 检查输入是否为空
-        if (inputs == null || inputs.isEmpty()) {
-            return new float[0][0];
-        }
-
-        int rows = inputs.size();  // 获取结果数组的行数
-        float[][] result = new float[rows][3]; // 每一行只有一个元素
-
-        // 遍历每一行，取第一列的值
-        for (int i = 0; i < rows; i++) {
-            result[i] = inputs.get(i).getGyroscopeData();
-        }
+    public synchronized float[] runStep(float[] result) throws Exception {
+        FloatBuffer output = ((StreamingGruHelper) getHelper()).runStep();
+        output.get(result, 0, result.length);
         return result;
     }
 
     /**
-     * 从输入double[数据行数][10]中提取第8、9、10列磁力计三轴数据
+     * 清零流式推理的隐状态
+     */
+    public synchronized void resetState() throws Exception {
+        ((StreamingGruHelper) getHelper()).resetState();
+    }
+
+    /**
+     * 获取推理引擎，若尚未加载则加载模型并创建Session，调用方需持有锁
      *
-     * @param inputs 输入的IMU数据（包括时间戳、加速度计三轴数据、陀螺仪三轴数据、磁力计三轴数据）
+     * @return 推理引擎
+     * @throws IllegalStateException 已调用close()，或模型加载失败
      */
-    private float[][] getMagnetometer(List<SensorData> inputs){
-        // 检查输入是否为空
-        if (inputs == null || inputs.isEmpty()) {
-            return new float[0][0];
+    private IInferenceBackend getHelper() {
+        if (closed) {
+            throw new IllegalStateException("推理引擎已释放: " + modelName);
         }
+        if (helper == null && streamModelName != null) {
+            StreamingGruHelper streaming = new StreamingGruHelper(context, streamModelName, profile, stepSize);
+            if (!streaming.isLoaded()) {
+                throw new IllegalStateException("流式模型 " + streamModelName + " 加载失败");
+            }
+            helper = streaming;
+        }
+        if (helper == null) {
+            IInferenceBackend created = InferenceBackendFactory.create(context, modelName, profile, WINDOW_SHAPE,
+                    OUTPUT_SIZE);
+            if (!created.isLoaded()) {
+                closeQuietly(created);
+                throw new IllegalStateException("模型 " + modelName + " 加载失败");
+            }
+            helper = created;
+        }
+        return helper;
+    }
 
-        int rows = inputs.size();  // 获取结果数组的行数
-        float[][] result = new float[rows][3]; // 每一行只有一个元素
-
-        // 遍历每一行，取第一列的值
-        for (int i = 0; i < rows; i++) {
-            result[i] = inputs.get(i).getMagnetometerData();
+    private static void closeQuietly(IInferenceBackend backend) {
+        try {
+            backend.close();
+        } catch (Exception e) {
+            Log.w("PDR", "释放未加载的推理后端失败", e);
         }
-        return result;
     }
-}
 
-/**
- * PDR类，仅供PdrLocalOri算法使用
- */
-class PDR{
-    private Context context;  // 上下文
-    private String modelName;  // 模型名称
     /**
-     * 构造函数
+     * 加载模型并用全零输入推理若干次，使Session完成首次运行的内存分配等初始化。流式推理预热后清零隐状态，
+     * 预热推理的耗时不计入推理统计
      *
-     * @param modelName 选择的模型文件名
+     * @param runs 推理次数
      */
-    public PDR(Context context, String modelName) {
-        this.context = context;
-        this.modelName = modelName;
+    public synchronized void warmUp(int runs) throws Exception {
+        IInferenceBackend engine = getHelper();
+        if (!engine.isLoaded()) {
+            return;
+        }
+        long startNs = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            FloatBuffer input = engine instanceof StreamingGruHelper
+                    ? ((StreamingGruHelper) engine).getStepBuffer()
+                    : engine.getInputBuffer(1);
+            while (input.hasRemaining()) {
+                input.put(0.0f);
+            }
+            if (engine instanceof StreamingGruHelper) {
+                ((StreamingGruHelper) engine).runStep();
+            } else {
+                engine.runDirect(1);
+            }
+        }
+        if (engine instanceof StreamingGruHelper) {
+            ((StreamingGruHelper) engine).resetState();
+        }
+        engine.getStats().reset();  // 预热推理不计入耗时统计
+        Log.i("PDR", "预热完成[" + engine.getBackendName() + "]: 加载 " + engine.getLoadTimeMs() + " ms, 预热推理 "
+                + (System.nanoTime() - startNs) / 1_000_000 + " ms");
     }
 
     /**
-     * 运行算法得出结果
-     * @param inputData 输入数据
-     * @return 返回结果，
-     */
-    public float[] run(double[] inputData) throws Exception{
-        OnnxInferenceHelper helper = new OnnxInferenceHelper(context, modelName);
-        // 推理
-        float[] output = helper.runInference(inputData);
-        // 使用完后关闭
-        helper.close();
-        return output;
+     * 释放推理引擎，等待正在进行的推理结束后执行，之后不能再推理
+     */
+    public synchronized void close() throws Exception {
+        closed = true;
+        if (helper != null) {
+            helper.close();
+            helper = null;
+        }
     }
 }
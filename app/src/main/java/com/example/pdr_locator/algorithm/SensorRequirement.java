@@ -0,0 +1,142 @@
+package com.example.pdr_locator.algorithm;
+
+import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 算法对传感器数据的要求：需要的传感器、采样率和窗口划分方式。
+ * 采集器按所有算法要求中最高的采样率注册传感器并重采样到该频率，不再一律使用最快频率
+ */
+public class SensorRequirement {
+    public static final int RAW_RATE = 0;  // 不要求采样率，以传感器最快频率采集原始数据，不重采样
+    private static final int[] SUPPORTED_RATES_HZ = {1, 2, 4, 5, 8, 10, 20, 25, 40, 50, 100, 125, 200, 250, 500, 1000};  // 整除1000Hz的采样率，重采样后的毫秒时间戳间隔是精确的
+
+    private final int sampleRateHz;  // 需要的采样率，RAW_RATE表示不要求
+    private final WindowSpec windowSpec;  // 窗口划分方式，为null时使用全局配置
+    private final List<SensorType> sensorTypes;  // 需要的传感器
+    private final boolean consumesWindows;  // 是否从任务流中取出窗口，只采集记录数据时为false
+
+    /**
+     * 构造函数
+     *
+     * @param sampleRateHz 需要的采样率（Hz），RAW_RATE表示不要求
+     * @param windowSpec 窗口划分方式，为null时使用全局配置
+     * @param sensorTypes 需要的传感器
+     */
+    public SensorRequirement(int sampleRateHz, WindowSpec windowSpec, SensorType... sensorTypes) {
+        this(sampleRateHz, windowSpec, Arrays.asList(sensorTypes));
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param sampleRateHz 需要的采样率（Hz），RAW_RATE表示不要求
+     * @param windowSpec 窗口划分方式，为null时使用全局配置
+     * @param sensorTypes 需要的传感器
+     */
+    public SensorRequirement(int sampleRateHz, WindowSpec windowSpec, List<SensorType> sensorTypes) {
+        this(sampleRateHz, windowSpec, sensorTypes, true);
+    }
+
+    private SensorRequirement(int sampleRateHz, WindowSpec windowSpec, List<SensorType> sensorTypes,
+                              boolean consumesWindows) {
+        if (sampleRateHz < 0) {
+            throw new IllegalArgumentException("无效的采样率: " + sampleRateHz);
+        }
+        this.sampleRateHz = sampleRateHz;
+        this.windowSpec = windowSpec;
+        this.sensorTypes = Collections.unmodifiableList(new ArrayList<>(sensorTypes));
+        this.consumesWindows = consumesWindows;
+    }
+
+    /**
+     * 只采集记录原始数据、不取出窗口任务的要求，如CollectData。
+     * 没有消费者时采集器不会使用BLOCK策略，否则队列满后采集线程一直等待
+     *
+     * @param sensorTypes 需要的传感器
+     * @return 以最快频率采集、不划分窗口的要求
+     */
+    public static SensorRequirement recordOnly(SensorType... sensorTypes) {
+        return new SensorRequirement(RAW_RATE, null, Arrays.asList(sensorTypes), false);
+    }
+
+    public int getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public WindowSpec getWindowSpec() {
+        return windowSpec;
+    }
+
+    public List<SensorType> getSensorTypes() {
+        return sensorTypes;
+    }
+
+    /**
+     * @return 是否从任务流中取出窗口，只采集记录数据时为false
+     */
+    public boolean consumesWindows() {
+        return consumesWindows;
+    }
+
+    /**
+     * @return 采样周期（秒），不要求采样率时返回0
+     */
+    public double getSamplePeriodSeconds() {
+        return sampleRateHz == RAW_RATE ? 0 : 1.0 / sampleRateHz;
+    }
+
+    /**
+     * 协商采样率：满足所有要求的最低采样率，即各要求中的最高采样率，再向上取到整除1000Hz的频率
+     *
+     * @param requirements 各算法的要求
+     * @return 采样率（Hz），有任一要求为RAW_RATE或没有要求时返回RAW_RATE
+     */
+    public static int negotiateRateHz(List<SensorRequirement> requirements) {
+        int rate = RAW_RATE;
+        for (SensorRequirement requirement : requirements) {
+            if (requirement.sampleRateHz == RAW_RATE) {
+                return RAW_RATE;
+            }
+            rate = Math.max(rate, requirement.sampleRateHz);
+        }
+        if (rate == RAW_RATE) {
+            return RAW_RATE;
+        }
+        for (int supported : SUPPORTED_RATES_HZ) {
+            if (supported >= rate) {
+                return supported;
+            }
+        }
+        return RAW_RATE;  // 超过1000Hz时以最快频率采集
+    }
+
+    /**
+     * 合并各要求需要的传感器
+     *
+     * @param requirements 各算法的要求
+     * @return 不重复的传感器类型，按首次出现的顺序
+     */
+    public static List<SensorType> mergeSensorTypes(List<SensorRequirement> requirements) {
+        List<SensorType> types = new ArrayList<>();
+        for (SensorRequirement requirement : requirements) {
+            for (SensorType type : requirement.sensorTypes) {
+                if (!types.contains(type)) {
+                    types.add(type);
+                }
+            }
+        }
+        return types;
+    }
+
+    @Override
+    public String toString() {
+        return (sampleRateHz == RAW_RATE ? "raw" : sampleRateHz + "Hz") + ", "
+                + (consumesWindows ? windowSpec : "record only") + ", " + sensorTypes;
+    }
+}
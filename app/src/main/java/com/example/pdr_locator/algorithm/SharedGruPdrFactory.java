@@ -0,0 +1,62 @@
+package com.example.pdr_locator.algorithm;
+
+import com.example.pdr_locator.utils.GruEngine;
+import com.example.pdr_locator.utils.JavaGruInferenceHelper;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * PdrLocalOri的工厂，供BatchReplay等离线回放使用。权重只加载一次，
+ * 每次get()用GruEngine(GruEngine, int)创建共享权重、隐状态独立的推理引擎，
+ * 返回的实例各自持有定位状态，可以在不同线程中同时使用。不依赖Context
+ */
+public class SharedGruPdrFactory implements Supplier<PdrLocalOri> {
+    private final GruEngine shared;  // 提供权重的推理引擎，本身不用于推理
+    private final String modelName;  // 权重文件名，用于日志和错误信息
+    private final WindowSpec windowSpec;  // 每个实例的窗口划分方式
+
+    /**
+     * 构造函数
+     *
+     * @param shared 提供权重的推理引擎
+     * @param modelName 权重文件名，用于日志和错误信息
+     * @param windowSpec 窗口划分方式，每个窗口PdrLocalOri.WINDOW_SIZE个样本
+     */
+    public SharedGruPdrFactory(GruEngine shared, String modelName, WindowSpec windowSpec) {
+        if (shared == null || windowSpec == null) {
+            throw new IllegalArgumentException("推理引擎和窗口划分方式不能为null");
+        }
+        this.shared = shared;
+        this.modelName = modelName;
+        this.windowSpec = windowSpec;
+    }
+
+    /**
+     * 从文件加载tools/export_gru_weights.py导出的权重，使用采集器的默认窗口
+     *
+     * @param weights 权重文件，如app/src/main/assets/gru.weights
+     * @return 工厂
+     * @throws IOException 读取文件失败或格式不正确
+     */
+    public static SharedGruPdrFactory load(File weights) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(weights))) {
+            return new SharedGruPdrFactory(new GruEngine(in, PdrLocalOri.WINDOW_SIZE), weights.getName(),
+                    WindowSpec.ofCount(PdrLocalOri.WINDOW_SIZE, PdrLocalOri.DEFAULT_SLIDE_STEP));
+        }
+    }
+
+    /**
+     * @return 新的算法实例，推理引擎与其他实例共享权重
+     */
+    @Override
+    public PdrLocalOri get() {
+        GruEngine engine = new GruEngine(shared, PdrLocalOri.WINDOW_SIZE);
+        return new PdrLocalOri(new JavaGruInferenceHelper(engine, modelName, PdrLocalOri.WINDOW_SIZE), windowSpec);
+    }
+}
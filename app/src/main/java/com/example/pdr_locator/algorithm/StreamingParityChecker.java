@@ -0,0 +1,133 @@
+package com.example.pdr_locator.algorithm;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.utils.OrtSessionProfile;
+import com.example.pdr_locator.utils.SensorWindow;
+import com.example.pdr_locator.utils.SlidingWindowManager;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.Locale;
+
+/**
+ * 流式推理一致性校验工具。将录制的IMU数据（IMU_Data_*.csv）按与SlidingWindowManager相同的窗口依次输入
+ * 整窗口推理和流式推理两个PdrLocalOri实例，逐窗口比较两者预测的速度，以及最终位置的差异
+ */
+public class StreamingParityChecker {
+    private static final String TAG = "StreamingParity";
+    private final Context context;  // 上下文
+    private final String modelName;  // 整窗口模型文件名
+    private final String streamModelName;  // 流式模型文件名
+    private final WindowSpec spec;  // 窗口划分方式，两个实例使用相同的窗口
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param modelName 整窗口模型文件名，如gru.onnx
+     * @param streamModelName 流式模型文件名，如gru_stream.onnx
+     * @param slideStep 滑动步长，与采集时的配置一致，流式推理每步输入这么多个样本
+     */
+    public StreamingParityChecker(Context context, String modelName, String streamModelName, int slideStep) {
+        this.context = context;
+        this.modelName = modelName;
+        this.streamModelName = streamModelName;
+        this.spec = WindowSpec.ofCount(PdrLocalOri.WINDOW_SIZE, slideStep);
+    }
+
+    /**
+     * 对一个录制文件进行校验
+     *
+     * @param csvFile 录制的IMU数据文件
+     * @return 校验结果
+     * @throws Exception 读取文件或推理失败时抛出；流式模型未能加载时抛出IllegalStateException
+     */
+    public Report check(File csvFile) throws Exception {
+        PdrLocalOri windowAlgorithm = new PdrLocalOri(context, modelName, null, OrtSessionProfile.DEFAULT, spec);
+        PdrLocalOri streamAlgorithm = new PdrLocalOri(context, modelName, streamModelName,
+                OrtSessionProfile.DEFAULT, spec);
+        SlidingWindowManager manager = new SlidingWindowManager(spec.getSamples(), spec.getSlideStep());
+        Report report = new Report(csvFile.getName());
+        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
+            streamAlgorithm.warmUp();  // 流式模型未能加载时抛出IllegalStateException
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                manager.addData(SensorData.parseRowData(line));
+                SensorWindow window;
+                while ((window = manager.pollTask()) != null) {
+                    double[] windowXy = windowAlgorithm.getCoordinate(window);
+                    double[] streamXy = streamAlgorithm.getCoordinate(window);
+                    manager.release(window);
+                    report.addWindow(windowAlgorithm.getLastVelocity(), streamAlgorithm.getLastVelocity());
+                    report.finalPositionError = Math.hypot(windowXy[0] - streamXy[0], windowXy[1] - streamXy[1]);
+                }
+            }
+        } finally {
+            windowAlgorithm.close();
+            streamAlgorithm.close();
+        }
+        Log.i(TAG, report.toString());
+        return report;
+    }
+
+    /**
+     * 校验结果
+     */
+    public static class Report {
+        private final String name;  // 录制文件名
+        private int windows;  // 比较的窗口数
+        private double sumError;  // 速度差的累计值（m/s）
+        private double maxError;  // 速度差的最大值（m/s）
+        private double finalPositionError;  // 最终位置差（m）
+
+        Report(String name) {
+            this.name = name;
+        }
+
+        private void addWindow(float[] windowVxy, float[] streamVxy) {
+            double error = Math.hypot(windowVxy[0] - streamVxy[0], windowVxy[1] - streamVxy[1]);
+            sumError += error;
+            maxError = Math.max(maxError, error);
+            windows++;
+        }
+
+        public int getWindows() {
+            return windows;
+        }
+
+        public double getMeanError() {
+            return windows == 0 ? 0.0 : sumError / windows;
+        }
+
+        public double getMaxError() {
+            return maxError;
+        }
+
+        public double getFinalPositionError() {
+            return finalPositionError;
+        }
+
+        /**
+         * @param tolerance 允许的最大速度差（m/s）
+         * @return 所有窗口的速度差是否都在允许范围内
+         */
+        public boolean isWithin(double tolerance) {
+            return maxError <= tolerance;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: windows=%d, meanVelocityError=%.4f m/s, "
+                            + "maxVelocityError=%.4f m/s, finalPositionError=%.3f m",
+                    name, windows, getMeanError(), maxError, finalPositionError);
+        }
+    }
+}
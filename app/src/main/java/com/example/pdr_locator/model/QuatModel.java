@@ -81,7 +81,15 @@ public class QuatModel {
             }
             grav[i] = (float) (sum / data.length); // 平均值
         }
+        reset_q(grav);
+    }
 
+    /**
+     * 根据加速度计数据的平均值重置四元数。
+     *
+     * @param grav 加速度计三轴数据的平均值，会被归一化
+     */
+    public void reset_q(float[] grav) {
         // 归一化重力方向
         double norm = Math.sqrt(grav[0] * grav[0] + grav[1] * grav[1] + grav[2] * grav[2]);
         if(norm != 0.0){
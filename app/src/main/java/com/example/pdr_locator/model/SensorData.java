@@ -50,11 +50,44 @@ public class SensorData {
 
     public String buildRowData() {
         StringBuilder rowData = new StringBuilder();
+        appendRowData(rowData);
+        return rowData.toString();
+    }
+
+    /**
+     * 把一行CSV数据追加到已有的StringBuilder，格式与buildRowData()相同，容量足够时不分配内存
+     *
+     * @param rowData 追加的目标
+     */
+    public void appendRowData(StringBuilder rowData) {
         rowData.append(timestamp);
-        for (float value : accelerometerData) rowData.append(",").append(value);
-        for (float value : gyroscopeData) rowData.append(",").append(value);
-        for (float value : magnetometerData) rowData.append(",").append(value);
+        for (float value : accelerometerData) rowData.append(',').append(value);
+        for (float value : gyroscopeData) rowData.append(',').append(value);
+        for (float value : magnetometerData) rowData.append(',').append(value);
         rowData.append(System.lineSeparator());
-        return rowData.toString();
+    }
+
+    /**
+     * 解析buildRowData()生成的一行CSV数据
+     *
+     * @param row 一行数据：时间戳, 加速度计xyz, 陀螺仪xyz, 磁力计xyz
+     * @return 传感器数据
+     * @throws IllegalArgumentException 列数不足10列时抛出
+     */
+    public static SensorData parseRowData(String row) {
+        String[] cols = row.trim().split(",");
+        if (cols.length < 10) {
+            throw new IllegalArgumentException("IMU数据列数不足: " + row);
+        }
+        float[] values = new float[9];
+        for (int i = 0; i < 9; i++) {
+            values[i] = Float.parseFloat(cols[i + 1]);
+        }
+        return new SensorData(
+                Long.parseLong(cols[0]),
+                new float[]{values[0], values[1], values[2]},
+                new float[]{values[3], values[4], values[5]},
+                new float[]{values[6], values[7], values[8]}
+        );
     }
 }
@@ -0,0 +1,59 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * 按行读取SensorData.buildRowData()格式的CSV，空行被跳过
+ */
+public class CsvSampleSource implements ISampleSource {
+    private static final int BUFFER_SIZE = 64 * 1024;  // 读取缓冲区大小
+
+    private final BufferedReader reader;  // CSV读取
+    private long line;  // 已读取的行数，用于报告格式错误的位置
+
+    /**
+     * 构造函数
+     *
+     * @param file CSV文件
+     * @throws IOException 打开文件失败
+     */
+    public CsvSampleSource(File file) throws IOException {
+        this.reader = new BufferedReader(new FileReader(file), BUFFER_SIZE);
+    }
+
+    /**
+     * @throws IOException 读文件失败，或某一行的格式不正确
+     */
+    @Override
+    public boolean next(SensorData out) throws IOException {
+        String row;
+        do {
+            row = reader.readLine();
+            if (row == null) {
+                return false;
+            }
+            line++;
+        } while (row.trim().isEmpty());
+        SensorData data;
+        try {
+            data = SensorData.parseRowData(row);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("第 " + line + " 行格式不正确", e);
+        }
+        out.setTimestamp(data.getTimestamp());
+        System.arraycopy(data.getAccelerometerData(), 0, out.getAccelerometerData(), 0, 3);
+        System.arraycopy(data.getGyroscopeData(), 0, out.getGyroscopeData(), 0, 3);
+        System.arraycopy(data.getMagnetometerData(), 0, out.getMagnetometerData(), 0, 3);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 录制数据的顺序读取接口，CSV、二进制日志和压缩记录都按同样的方式读取
+ */
+public interface ISampleSource extends Closeable {
+    /**
+     * 读取下一条记录
+     *
+     * @param out 填入的样本，三个数组需已分配
+     * @return 是否读到记录，已读完时返回false
+     * @throws IOException 读文件失败或数据格式不正确
+     */
+    boolean next(SensorData out) throws IOException;
+
+    /**
+     * 按扩展名打开一个录制文件：ImuLogHeader.FILE_EXTENSION为二进制日志，
+     * ImuArchiveHeader.FILE_EXTENSION为压缩记录，其他按CSV读取
+     *
+     * @param file 录制文件
+     * @return 读取接口，使用后关闭
+     * @throws IOException 打开文件失败
+     */
+    static ISampleSource open(File file) throws IOException {
+        String name = file.getName();
+        if (name.endsWith(ImuLogHeader.FILE_EXTENSION)) {
+            return new ImuLogReader(file);
+        }
+        if (name.endsWith(ImuArchiveHeader.FILE_EXTENSION)) {
+            return new ImuArchiveReader(file);
+        }
+        return new CsvSampleSource(file);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 压缩IMU记录的评估工具。把一个录制的CSV（IMU_Data_*.csv）分别转换为二进制日志和压缩记录，
+ * 统计压缩率、顺序和并行解码速度，以及解码后各传感器相对原始数据的最大误差。不依赖Android
+ */
+public class ImuArchiveBenchmark {
+    private static final int DECODE_ROUNDS = 5;  // 解码的轮数，取最快的一轮
+
+    private ImuArchiveBenchmark() {
+    }
+
+    /**
+     * 评估一个录制文件
+     *
+     * @param csvFile 录制的CSV文件
+     * @param workDir 存放转换结果的目录
+     * @param header 压缩记录的文件头，包括块大小和量化步长
+     * @return 评估结果
+     * @throws IOException 读写文件失败
+     */
+    public static Report run(File csvFile, File workDir, ImuArchiveHeader header) throws IOException {
+        String name = csvFile.getName();
+        File logFile = new File(workDir, name + ImuLogHeader.FILE_EXTENSION);
+        File archiveFile = new File(workDir, name + ImuArchiveHeader.FILE_EXTENSION);
+        Report report = new Report(name);
+        try {
+            report.records = ImuLogConverter.csvToBinary(csvFile, logFile,
+                    new ImuLogHeader(header.getSampleRateHz(), header.getDeviceInfo()));
+            ImuLogConverter.csvToArchive(csvFile, archiveFile, header);
+            report.csvBytes = csvFile.length();
+            report.binaryBytes = logFile.length();
+            report.archiveBytes = archiveFile.length();
+            try (ImuArchiveReader reader = new ImuArchiveReader(archiveFile)) {
+                report.chunks = reader.getChunkCount();
+                report.sequentialNs = Long.MAX_VALUE;
+                report.parallelNs = Long.MAX_VALUE;
+                for (int round = 0; round < DECODE_ROUNDS; round++) {
+                    long begin = System.nanoTime();
+                    reader.readAll();
+                    report.sequentialNs = Math.min(report.sequentialNs, System.nanoTime() - begin);
+                    begin = System.nanoTime();
+                    reader.readAllParallel();
+                    report.parallelNs = Math.min(report.parallelNs, System.nanoTime() - begin);
+                }
+                measureError(csvFile, reader.readAll(), report);
+            }
+        } finally {
+            logFile.delete();
+            archiveFile.delete();
+        }
+        return report;
+    }
+
+    /**
+     * 逐条比较解码结果与CSV中的原始数据
+     */
+    private static void measureError(File csvFile, List<ImuChunk> chunks, Report report) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
+            int chunk = 0;
+            int record = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                SensorData expected = SensorData.parseRowData(line);
+                ImuChunk decoded = chunks.get(chunk);
+                if (decoded.getTimestamp(record) != expected.getTimestamp()) {
+                    report.timestampMismatches++;
+                }
+                float[][] sensors = {expected.getAccelerometerData(), expected.getGyroscopeData(),
+                        expected.getMagnetometerData()};
+                for (int channel = 0; channel < ImuChunkCodec.CHANNELS; channel++) {
+                    double error = Math.abs(decoded.getValue(record, channel) - sensors[channel / 3][channel % 3]);
+                    report.maxError[channel / 3] = Math.max(report.maxError[channel / 3], error);
+                }
+                if (++record == decoded.size()) {
+                    chunk++;
+                    record = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * 评估结果
+     */
+    public static class Report {
+        private final String name;  // 录制文件名
+        private long records;  // 记录数
+        private int chunks;  // 块数
+        private long csvBytes;  // CSV文件大小
+        private long binaryBytes;  // 二进制日志大小
+        private long archiveBytes;  // 压缩记录大小
+        private long sequentialNs;  // 顺序解码全部块的耗时
+        private long parallelNs;  // 并行解码全部块的耗时
+        private long timestampMismatches;  // 时间戳不一致的记录数，应为0
+        private final double[] maxError = new double[3];  // 加速度计、陀螺仪、磁力计的最大误差
+
+        Report(String name) {
+            this.name = name;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return CSV大小与压缩记录大小之比
+         */
+        public double getCompressionRatio() {
+            return archiveBytes == 0 ? 0.0 : (double) csvBytes / archiveBytes;
+        }
+
+        /**
+         * @return 二进制日志大小与压缩记录大小之比
+         */
+        public double getBinaryCompressionRatio() {
+            return archiveBytes == 0 ? 0.0 : (double) binaryBytes / archiveBytes;
+        }
+
+        /**
+         * @return 顺序解码速度（条/秒）
+         */
+        public double getSequentialRecordsPerSecond() {
+            return records / Math.max(1e-9, sequentialNs / 1e9);
+        }
+
+        /**
+         * @return 并行解码速度（条/秒）
+         */
+        public double getParallelRecordsPerSecond() {
+            return records / Math.max(1e-9, parallelNs / 1e9);
+        }
+
+        public long getTimestampMismatches() {
+            return timestampMismatches;
+        }
+
+        /**
+         * @param sensor 0加速度计，1陀螺仪，2磁力计
+         * @return 解码后的最大误差
+         */
+        public double getMaxError(int sensor) {
+            return maxError[sensor];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %d条/%d块, CSV %dB, 二进制 %dB, 压缩 %dB (CSV的1/%.1f, 二进制的1/%.1f), "
+                            + "解码 顺序%.0f条/秒 并行%.0f条/秒, 时间戳不一致%d, 最大误差 %.2e/%.2e/%.2e",
+                    name, records, chunks, csvBytes, binaryBytes, archiveBytes, getCompressionRatio(),
+                    getBinaryCompressionRatio(), getSequentialRecordsPerSecond(), getParallelRecordsPerSecond(),
+                    timestampMismatches, maxError[0], maxError[1], maxError[2]);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.pdr_locator.record;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 压缩IMU记录的文件头和格式说明。文件全部为小端序：
+ * <pre>
+ * 文件头  int    魔数 "IMUC"
+ *        short  版本
+ *        short  文件头长度（字节，8字节对齐，第一个数据块从这里开始）
+ *        int    每块最多的记录数
+ *        int    采样率（Hz），0表示原始频率
+ *        double×3 加速度计、陀螺仪、磁力计的量化步长
+ *        short  设备信息长度，之后为UTF-8设备信息
+ * 数据块  int    记录数
+ *        int    数据长度（字节），之后为ImuChunkCodec编码的数据
+ * 索引    每块一项：long 第一条记录的时间戳, long 最后一条记录的时间戳, long 块在文件中的位置, int 记录数
+ * 文件尾  long   索引的位置
+ *        int    块数
+ *        int    魔数 "IMUC"
+ * </pre>
+ * 时间戳无损；传感器值按步长量化，解码后与原值之差不超过 步长/2 + 原值的ulp/2
+ * （量化误差加上转换回float的舍入）。默认步长比手机传感器的分辨率小一个数量级以上
+ */
+public class ImuArchiveHeader {
+    public static final int MAGIC = 0x43554D49;  // "IMUC"，小端序
+    public static final short VERSION = 1;  // 格式版本
+    public static final String FILE_EXTENSION = ".imuc";  // 文件扩展名
+    public static final int DEFAULT_CHUNK_RECORDS = 1024;  // 默认每块的记录数，50Hz时约20秒
+    public static final double DEFAULT_ACCELEROMETER_STEP = 1e-4;  // 加速度计默认量化步长（m/s²）
+    public static final double DEFAULT_GYROSCOPE_STEP = 1e-5;  // 陀螺仪默认量化步长（rad/s）
+    public static final double DEFAULT_MAGNETOMETER_STEP = 1e-3;  // 磁力计默认量化步长（μT）
+    static final int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 4;  // 索引每项的长度
+    static final int FOOTER_SIZE = 8 + 4 + 4;  // 文件尾的长度
+
+    private final int chunkRecords;  // 每块最多的记录数
+    private final int sampleRateHz;  // 采样率，0表示原始频率
+    private final double[] steps;  // 加速度计、陀螺仪、磁力计的量化步长
+    private final String deviceInfo;  // 设备信息
+
+    /**
+     * 构造函数，使用默认的块大小和量化步长
+     *
+     * @param sampleRateHz 采样率（Hz），0表示原始频率
+     * @param deviceInfo 设备信息，为null时记为空
+     */
+    public ImuArchiveHeader(int sampleRateHz, String deviceInfo) {
+        this(DEFAULT_CHUNK_RECORDS, sampleRateHz, deviceInfo,
+                DEFAULT_ACCELEROMETER_STEP, DEFAULT_GYROSCOPE_STEP, DEFAULT_MAGNETOMETER_STEP);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param chunkRecords 每块最多的记录数
+     * @param sampleRateHz 采样率（Hz），0表示原始频率
+     * @param deviceInfo 设备信息，为null时记为空
+     * @param accelerometerStep 加速度计量化步长（m/s²）
+     * @param gyroscopeStep 陀螺仪量化步长（rad/s）
+     * @param magnetometerStep 磁力计量化步长（μT）
+     */
+    public ImuArchiveHeader(int chunkRecords, int sampleRateHz, String deviceInfo,
+                            double accelerometerStep, double gyroscopeStep, double magnetometerStep) {
+        if (chunkRecords <= 0 || sampleRateHz < 0) {
+            throw new IllegalArgumentException("无效的块大小或采样率: " + chunkRecords + "/" + sampleRateHz);
+        }
+        if (!(accelerometerStep > 0 && gyroscopeStep > 0 && magnetometerStep > 0)) {
+            throw new IllegalArgumentException("量化步长必须为正数");
+        }
+        this.chunkRecords = chunkRecords;
+        this.sampleRateHz = sampleRateHz;
+        this.deviceInfo = deviceInfo == null ? "" : deviceInfo;
+        this.steps = new double[]{accelerometerStep, gyroscopeStep, magnetometerStep};
+    }
+
+    public int getChunkRecords() {
+        return chunkRecords;
+    }
+
+    public int getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public String getDeviceInfo() {
+        return deviceInfo;
+    }
+
+    /**
+     * @param sensor 0加速度计，1陀螺仪，2磁力计
+     * @return 量化步长
+     */
+    public double getStep(int sensor) {
+        return steps[sensor];
+    }
+
+    double[] getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return 文件头长度（字节），8字节对齐
+     */
+    public int getSize() {
+        int size = 16 + 3 * 8 + 2 + deviceInfo.getBytes(StandardCharsets.UTF_8).length;
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * 编码文件头
+     *
+     * @return 小端序的文件头，已flip
+     */
+    ByteBuffer encode() {
+        int size = getSize();
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) size);
+        buffer.putInt(chunkRecords);
+        buffer.putInt(sampleRateHz);
+        for (double step : steps) {
+            buffer.putDouble(step);
+        }
+        byte[] device = deviceInfo.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) device.length);
+        buffer.put(device);
+        buffer.position(size);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 从buffer的当前位置读取文件头
+     *
+     * @param buffer 小端序，包含完整文件头
+     * @return 文件头
+     * @throws IOException 不是压缩IMU记录或版本不支持
+     */
+    static ImuArchiveHeader decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+            throw new IOException("不是压缩IMU记录");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("不支持的压缩IMU记录版本: " + version);
+        }
+        buffer.getShort();  // 文件头长度
+        int chunkRecords = buffer.getInt();
+        int sampleRateHz = buffer.getInt();
+        double accelerometerStep = buffer.getDouble();
+        double gyroscopeStep = buffer.getDouble();
+        double magnetometerStep = buffer.getDouble();
+        byte[] device = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(device);
+        return new ImuArchiveHeader(chunkRecords, sampleRateHz, new String(device, StandardCharsets.UTF_8),
+                accelerometerStep, gyroscopeStep, magnetometerStep);
+    }
+
+    @Override
+    public String toString() {
+        return (sampleRateHz == 0 ? "raw" : sampleRateHz + "Hz") + ", " + deviceInfo + ", "
+                + chunkRecords + " records/chunk, steps " + steps[0] + "/" + steps[1] + "/" + steps[2];
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 压缩IMU记录的读取器。打开时只读取文件头和末尾的索引，按时间定位通过二分查找索引完成，
+ * 只解码需要的块。各块独立编码，用位置读取，可以在多个线程中同时解码。
+ * 格式见{@link ImuArchiveHeader}
+ */
+public class ImuArchiveReader implements ISampleSource {
+    private final FileChannel channel;  // 文件，位置读取是线程安全的
+    private final ImuArchiveHeader header;  // 文件头
+    private final long[] indexFirst;  // 每块第一条记录的时间戳
+    private final long[] indexLast;  // 每块最后一条记录的时间戳
+    private final long[] indexOffset;  // 每块在文件中的位置
+    private final int[] indexRecords;  // 每块的记录数
+    private final long indexPosition;  // 索引的位置，即最后一块的结束位置
+    private final long recordCount;  // 记录数
+    private ImuChunk current;  // 顺序读取的当前块
+    private int nextRecord;  // 顺序读取时当前块的下一条记录
+
+    /**
+     * 构造函数
+     *
+     * @param file 文件
+     * @throws IOException 打开文件失败，或不是完整的压缩IMU记录
+     */
+    public ImuArchiveReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer head = read(0, 8);
+            head.getInt();
+            head.getShort();
+            int headerSize = head.getShort() & 0xFFFF;
+            header = ImuArchiveHeader.decode(read(0, headerSize));
+            long size = channel.size();
+            if (size < headerSize + ImuArchiveHeader.FOOTER_SIZE) {
+                throw new IOException("压缩IMU记录不完整，缺少索引");
+            }
+            ByteBuffer footer = read(size - ImuArchiveHeader.FOOTER_SIZE, ImuArchiveHeader.FOOTER_SIZE);
+            indexPosition = footer.getLong();
+            int chunks = footer.getInt();
+            if (footer.getInt() != ImuArchiveHeader.MAGIC || chunks < 0
+                    || indexPosition + (long) chunks * ImuArchiveHeader.INDEX_ENTRY_SIZE
+                    != size - ImuArchiveHeader.FOOTER_SIZE) {
+                throw new IOException("压缩IMU记录不完整，缺少索引");
+            }
+            ByteBuffer index = read(indexPosition, chunks * ImuArchiveHeader.INDEX_ENTRY_SIZE);
+            indexFirst = new long[chunks];
+            indexLast = new long[chunks];
+            indexOffset = new long[chunks];
+            indexRecords = new int[chunks];
+            long count = 0;
+            for (int i = 0; i < chunks; i++) {
+                indexFirst[i] = index.getLong();
+                indexLast[i] = index.getLong();
+                indexOffset[i] = index.getLong();
+                indexRecords[i] = index.getInt();
+                count += indexRecords[i];
+            }
+            recordCount = count;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public ImuArchiveHeader getHeader() {
+        return header;
+    }
+
+    public int getChunkCount() {
+        return indexFirst.length;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return 第一条记录的时间戳，没有记录时返回Long.MIN_VALUE
+     */
+    public long getStartTimestamp() {
+        return indexFirst.length == 0 ? Long.MIN_VALUE : indexFirst[0];
+    }
+
+    /**
+     * @return 最后一条记录的时间戳，没有记录时返回Long.MIN_VALUE
+     */
+    public long getEndTimestamp() {
+        return indexLast.length == 0 ? Long.MIN_VALUE : indexLast[indexLast.length - 1];
+    }
+
+    /**
+     * 二分查找第一个包含不早于timestamp的记录的块，O(log n)
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @return 块序号，所有记录都早于timestamp时返回块数
+     */
+    public int findChunk(long timestamp) {
+        int low = 0;
+        int high = indexLast.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (indexLast[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 读取并解码一个块，可以在多个线程中同时调用
+     *
+     * @param chunk 块序号
+     * @return 解码后的块
+     * @throws IOException 读文件失败或数据损坏
+     */
+    public ImuChunk readChunk(int chunk) throws IOException {
+        int records = indexRecords[chunk];
+        long offset = indexOffset[chunk];
+        long end = chunk + 1 < indexOffset.length ? indexOffset[chunk + 1] : indexPosition;
+        ByteBuffer buffer = read(offset, (int) (end - offset));
+        int stored = buffer.getInt();
+        int length = buffer.getInt();
+        if (stored != records || length != buffer.remaining()) {
+            throw new IOException("第 " + chunk + " 块已损坏");
+        }
+        long[] timestamps = new long[records];
+        float[] values = new float[records * ImuChunkCodec.CHANNELS];
+        try {
+            int used = ImuChunkCodec.decode(buffer.array(), buffer.position(), records, header.getSteps(),
+                    timestamps, values);
+            if (used != length) {
+                throw new IOException("第 " + chunk + " 块已损坏");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("第 " + chunk + " 块已损坏", e);
+        }
+        return new ImuChunk(chunk, timestamps, values);
+    }
+
+    /**
+     * 读取一段时间内的记录，只解码与这段时间重叠的块
+     *
+     * @param fromTimestamp 起始时间戳（毫秒，包含）
+     * @param toTimestamp 结束时间戳（毫秒，包含）
+     * @return 每条记录一个新的样本对象
+     * @throws IOException 读文件失败或数据损坏
+     */
+    public List<SensorData> read(long fromTimestamp, long toTimestamp) throws IOException {
+        List<SensorData> samples = new ArrayList<>();
+        for (int chunk = findChunk(fromTimestamp); chunk < indexFirst.length; chunk++) {
+            if (indexFirst[chunk] > toTimestamp) {
+                break;
+            }
+            ImuChunk decoded = readChunk(chunk);
+            for (int i = 0; i < decoded.size(); i++) {
+                long timestamp = decoded.getTimestamp(i);
+                if (timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+                    samples.add(decoded.get(i));
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 顺序读取下一条记录，逐块解码
+     *
+     * @param out 填入的样本，三个数组需已分配
+     * @return 是否读到记录，已读完时返回false
+     * @throws IOException 读文件失败或数据损坏
+     */
+    @Override
+    public boolean next(SensorData out) throws IOException {
+        while (current == null || nextRecord == current.size()) {
+            int chunk = current == null ? 0 : current.getIndex() + 1;
+            if (chunk >= indexFirst.length) {
+                return false;
+            }
+            current = readChunk(chunk);
+            nextRecord = 0;
+        }
+        current.get(nextRecord++, out);
+        return true;
+    }
+
+    /**
+     * 依次解码所有块
+     *
+     * @return 按顺序排列的块
+     * @throws IOException 读文件失败或数据损坏
+     */
+    public List<ImuChunk> readAll() throws IOException {
+        List<ImuChunk> chunks = new ArrayList<>(indexFirst.length);
+        for (int chunk = 0; chunk < indexFirst.length; chunk++) {
+            chunks.add(readChunk(chunk));
+        }
+        return chunks;
+    }
+
+    /**
+     * 在公共ForkJoinPool中并行解码所有块
+     *
+     * @return 按顺序排列的块
+     * @throws IOException 读文件失败或数据损坏
+     */
+    public List<ImuChunk> readAllParallel() throws IOException {
+        return readAll(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 在给定的线程池中并行解码所有块，每块一个任务
+     *
+     * @param executor 线程池
+     * @return 按顺序排列的块
+     * @throws IOException 读文件失败或数据损坏
+     */
+    public List<ImuChunk> readAll(ExecutorService executor) throws IOException {
+        List<Callable<ImuChunk>> tasks = new ArrayList<>(indexFirst.length);
+        for (int chunk = 0; chunk < indexFirst.length; chunk++) {
+            int index = chunk;
+            tasks.add(() -> readChunk(index));
+        }
+        List<ImuChunk> chunks = new ArrayList<>(indexFirst.length);
+        try {
+            for (Future<ImuChunk> future : executor.invokeAll(tasks)) {
+                chunks.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("解码被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("解码失败", e.getCause());
+        }
+        return chunks;
+    }
+
+    /**
+     * 从position读取length字节
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("压缩IMU记录不完整");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 压缩IMU记录的写入器。记录先缓存在当前块中，块满后编码写出，关闭时写出最后一块、
+ * 时间到块位置的索引和文件尾。格式见{@link ImuArchiveHeader}。只能由一个线程调用
+ */
+public class ImuArchiveWriter implements Closeable {
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;  // 输出流的缓冲区大小
+
+    private final OutputStream out;  // 输出
+    private final ImuArchiveHeader header;  // 文件头
+    private final long[] timestamps;  // 当前块的时间戳
+    private final float[] values;  // 当前块的传感器值，每条记录9个
+    private final byte[] encoded;  // 编码缓冲区，每块复用
+    private int buffered;  // 当前块的记录数
+    private long position;  // 已写出的字节数，即下一块在文件中的位置
+
+    private long[] indexFirst = new long[16];  // 每块第一条记录的时间戳
+    private long[] indexLast = new long[16];  // 每块最后一条记录的时间戳
+    private long[] indexOffset = new long[16];  // 每块在文件中的位置
+    private int[] indexRecords = new int[16];  // 每块的记录数
+    private int chunks;  // 已写出的块数
+    private long records;  // 已写入的记录数
+    private boolean closed;  // 是否已关闭
+
+    /**
+     * 构造函数，已有的文件会被覆盖
+     *
+     * @param file 文件
+     * @param header 文件头
+     * @throws IOException 打开文件失败
+     */
+    public ImuArchiveWriter(File file, ImuArchiveHeader header) throws IOException {
+        this.header = header;
+        int chunkRecords = header.getChunkRecords();
+        this.timestamps = new long[chunkRecords];
+        this.values = new float[chunkRecords * ImuChunkCodec.CHANNELS];
+        this.encoded = new byte[ImuChunkCodec.maxEncodedSize(chunkRecords)];
+        this.out = new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER_SIZE);
+        ByteBuffer head = header.encode();
+        out.write(head.array(), 0, head.limit());
+        position = head.limit();
+    }
+
+    /**
+     * 写入一条记录。时间戳应不减，否则按时间定位的结果不确定
+     *
+     * @param data 样本，不会被保留
+     * @throws IOException 写文件失败
+     * @throws IllegalArgumentException 传感器值不是有限数
+     */
+    public void write(SensorData data) throws IOException {
+        write(data.getTimestamp(), data.getAccelerometerData(), data.getGyroscopeData(), data.getMagnetometerData());
+    }
+
+    /**
+     * 写入一条记录。时间戳应不减，否则按时间定位的结果不确定
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param accelerometer 加速度计xyz
+     * @param gyroscope 陀螺仪xyz
+     * @param magnetometer 磁力计xyz
+     * @throws IOException 写文件失败
+     * @throws IllegalArgumentException 传感器值不是有限数
+     */
+    public void write(long timestamp, float[] accelerometer, float[] gyroscope, float[] magnetometer)
+            throws IOException {
+        int base = buffered * ImuChunkCodec.CHANNELS;
+        timestamps[buffered] = timestamp;
+        System.arraycopy(accelerometer, 0, values, base, 3);
+        System.arraycopy(gyroscope, 0, values, base + 3, 3);
+        System.arraycopy(magnetometer, 0, values, base + 6, 3);
+        double[] steps = header.getSteps();
+        for (int channel = 0; channel < ImuChunkCodec.CHANNELS; channel++) {
+            ImuChunkCodec.quantize(values[base + channel], steps[channel / 3]);  // 无法量化时在这里抛出，不写入这条记录
+        }
+        buffered++;
+        records++;
+        if (buffered == timestamps.length) {
+            flushChunk();
+        }
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return 已写出的字节数，不包括当前块
+     */
+    public long getBytesWritten() {
+        return position;
+    }
+
+    /**
+     * 写出最后一块、索引和文件尾并关闭
+     *
+     * @throws IOException 写文件失败
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushChunk();
+            ByteBuffer index = ByteBuffer.allocate(chunks * ImuArchiveHeader.INDEX_ENTRY_SIZE
+                    + ImuArchiveHeader.FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < chunks; i++) {
+                index.putLong(indexFirst[i]).putLong(indexLast[i]).putLong(indexOffset[i]).putInt(indexRecords[i]);
+            }
+            index.putLong(position).putInt(chunks).putInt(ImuArchiveHeader.MAGIC);
+            out.write(index.array(), 0, index.position());
+            position += index.position();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 编码并写出当前块，记录索引
+     */
+    private void flushChunk() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        int length = ImuChunkCodec.encode(timestamps, values, buffered, header.getSteps(), encoded);
+        if (chunks == indexFirst.length) {
+            int capacity = chunks * 2;
+            indexFirst = Arrays.copyOf(indexFirst, capacity);
+            indexLast = Arrays.copyOf(indexLast, capacity);
+            indexOffset = Arrays.copyOf(indexOffset, capacity);
+            indexRecords = Arrays.copyOf(indexRecords, capacity);
+        }
+        indexFirst[chunks] = timestamps[0];
+        indexLast[chunks] = timestamps[buffered - 1];
+        indexOffset[chunks] = position;
+        indexRecords[chunks] = buffered;
+        chunks++;
+        writeInt(buffered);
+        writeInt(length);
+        out.write(encoded, 0, length);
+        position += 8 + length;
+        buffered = 0;
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
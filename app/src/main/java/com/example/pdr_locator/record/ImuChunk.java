@@ -0,0 +1,66 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+/**
+ * 解码后的一个数据块，时间戳和传感器值分别连续存放
+ */
+public class ImuChunk {
+    private final int index;  // 块在记录中的序号
+    private final long[] timestamps;  // 时间戳（毫秒）
+    private final float[] values;  // 传感器值，每条记录9个：加速度计xyz、陀螺仪xyz、磁力计xyz
+
+    ImuChunk(int index, long[] timestamps, float[] values) {
+        this.index = index;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 记录数
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long getTimestamp(int record) {
+        return timestamps[record];
+    }
+
+    /**
+     * @param record 记录下标
+     * @param channel 通道，0~8依次为加速度计xyz、陀螺仪xyz、磁力计xyz
+     * @return 传感器值
+     */
+    public float getValue(int record, int channel) {
+        return values[record * ImuChunkCodec.CHANNELS + channel];
+    }
+
+    /**
+     * 把一条记录填入已有的样本对象，不分配内存
+     *
+     * @param record 记录下标
+     * @param out 填入的样本，三个数组需已分配
+     */
+    public void get(int record, SensorData out) {
+        int base = record * ImuChunkCodec.CHANNELS;
+        out.setTimestamp(timestamps[record]);
+        System.arraycopy(values, base, out.getAccelerometerData(), 0, 3);
+        System.arraycopy(values, base + 3, out.getGyroscopeData(), 0, 3);
+        System.arraycopy(values, base + 6, out.getMagnetometerData(), 0, 3);
+    }
+
+    /**
+     * @param record 记录下标
+     * @return 新的样本对象
+     */
+    public SensorData get(int record) {
+        SensorData sample = new SensorData(0, new float[3], new float[3], new float[3]);
+        get(record, sample);
+        return sample;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.pdr_locator.record;
+
+/**
+ * 压缩记录中一个数据块的编解码。块内按列存储：先是时间戳，再依次是9个传感器通道，
+ * 每列的第一个值与0相减，之后的值与前一个值相减，差值经ZigZag变换后以varint写出。
+ * 时间戳是整数，无损；传感器值先按通道的量化步长取整再做差分，误差不超过步长的一半
+ */
+final class ImuChunkCodec {
+    static final int CHANNELS = 9;  // 传感器通道数：加速度计xyz、陀螺仪xyz、磁力计xyz
+    private static final int MAX_VARINT_BYTES = 10;  // 一个long的varint最多10字节
+
+    private ImuChunkCodec() {
+    }
+
+    /**
+     * @param records 块内记录数
+     * @return 编码一个块最多需要的字节数
+     */
+    static int maxEncodedSize(int records) {
+        return records * (1 + CHANNELS) * MAX_VARINT_BYTES;
+    }
+
+    /**
+     * 编码一个块
+     *
+     * @param timestamps 时间戳（毫秒）
+     * @param values 传感器值，每条记录9个，按记录依次存放
+     * @param records 记录数
+     * @param steps 3个传感器的量化步长，每个传感器的3个轴共用
+     * @param out 输出，长度至少为maxEncodedSize(records)
+     * @return 编码后的字节数
+     * @throws IllegalArgumentException 传感器值不是有限数，或量化后超出long的范围
+     */
+    static int encode(long[] timestamps, float[] values, int records, double[] steps, byte[] out) {
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < records; i++) {
+            position = writeVarLong(out, position, zigZag(timestamps[i] - previous));
+            previous = timestamps[i];
+        }
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            double step = steps[channel / 3];
+            previous = 0;
+            for (int i = 0; i < records; i++) {
+                long quantized = quantize(values[i * CHANNELS + channel], step);
+                position = writeVarLong(out, position, zigZag(quantized - previous));
+                previous = quantized;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 解码一个块
+     *
+     * @param in 编码后的数据
+     * @param offset 数据在in中的起始位置
+     * @param records 记录数
+     * @param steps 3个传感器的量化步长
+     * @param timestamps 输出的时间戳，长度至少为records
+     * @param values 输出的传感器值，长度至少为records * 9
+     * @return 读取的字节数
+     */
+    static int decode(byte[] in, int offset, int records, double[] steps, long[] timestamps, float[] values) {
+        int position = offset;
+        long value = 0;
+        for (int i = 0; i < records; i++) {
+            long raw = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in[position++];
+                raw |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += (raw >>> 1) ^ -(raw & 1);
+            timestamps[i] = value;
+        }
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            double step = steps[channel / 3];
+            value = 0;
+            for (int i = 0; i < records; i++) {
+                long raw = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = in[position++];
+                    raw |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += (raw >>> 1) ^ -(raw & 1);
+                values[i * CHANNELS + channel] = (float) (value * step);
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * 按步长量化
+     *
+     * @throws IllegalArgumentException 不是有限数，或量化后超出long的范围
+     */
+    static long quantize(float value, double step) {
+        double scaled = Math.rint(value / step);
+        if (!(Math.abs(scaled) < 0x1p62)) {  // 同时排除NaN，留出差分的余量
+            throw new IllegalArgumentException("传感器值无法按步长 " + step + " 量化: " + value);
+        }
+        return (long) scaled;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int writeVarLong(byte[] out, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * CSV（SensorData.buildRowData()的格式）与二进制IMU日志、压缩IMU记录之间的转换。
+ * CSV中的float是Float.toString()的结果，解析后得到相同的float，与二进制日志之间的转换是无损的
+ */
+public class ImuLogConverter {
+    private static final int CSV_BUFFER_SIZE = 64 * 1024;  // 读写CSV的缓冲区大小
+
+    private ImuLogConverter() {
+    }
+
+    /**
+     * CSV转换为二进制IMU日志，空行被跳过
+     *
+     * @param csvFile CSV文件
+     * @param logFile 二进制日志文件，已有的会被覆盖
+     * @param header 文件头，记录数在写入时填写
+     * @return 转换的记录数
+     * @throws IOException 读写文件失败
+     * @throws IllegalArgumentException CSV某一行的格式不正确
+     */
+    public static long csvToBinary(File csvFile, File logFile, ImuLogHeader header) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile), CSV_BUFFER_SIZE);
+             ImuLogWriter writer = new ImuLogWriter(logFile, header)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                writer.write(SensorData.parseRowData(line));
+            }
+            return writer.getRecords();
+        }
+    }
+
+    /**
+     * 二进制IMU日志转换为CSV
+     *
+     * @param logFile 二进制日志文件
+     * @param csvFile CSV文件，已有的会被覆盖
+     * @return 转换的记录数
+     * @throws IOException 读写文件失败，或不是二进制IMU日志
+     */
+    public static long binaryToCsv(File logFile, File csvFile) throws IOException {
+        try (ImuLogReader reader = new ImuLogReader(logFile);
+             Writer writer = new BufferedWriter(new FileWriter(csvFile), CSV_BUFFER_SIZE)) {
+            SensorData sample = new SensorData(0, new float[3], new float[3], new float[3]);
+            StringBuilder row = new StringBuilder(256);
+            while (reader.next(sample)) {
+                row.setLength(0);
+                sample.appendRowData(row);
+                writer.append(row);
+            }
+            return reader.getRecordCount();
+        }
+    }
+
+    /**
+     * CSV转换为压缩IMU记录，空行被跳过。时间戳无损，传感器值的误差见ImuArchiveHeader
+     *
+     * @param csvFile CSV文件
+     * @param archiveFile 压缩记录文件，已有的会被覆盖
+     * @param header 文件头，包括块大小和量化步长
+     * @return 转换的记录数
+     * @throws IOException 读写文件失败
+     * @throws IllegalArgumentException CSV某一行的格式不正确，或传感器值无法量化
+     */
+    public static long csvToArchive(File csvFile, File archiveFile, ImuArchiveHeader header) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile), CSV_BUFFER_SIZE);
+             ImuArchiveWriter writer = new ImuArchiveWriter(archiveFile, header)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                writer.write(SensorData.parseRowData(line));
+            }
+            return writer.getRecords();
+        }
+    }
+
+    /**
+     * 压缩IMU记录转换为CSV
+     *
+     * @param archiveFile 压缩记录文件
+     * @param csvFile CSV文件，已有的会被覆盖
+     * @return 转换的记录数
+     * @throws IOException 读写文件失败，或不是完整的压缩IMU记录
+     */
+    public static long archiveToCsv(File archiveFile, File csvFile) throws IOException {
+        try (ImuArchiveReader reader = new ImuArchiveReader(archiveFile);
+             Writer writer = new BufferedWriter(new FileWriter(csvFile), CSV_BUFFER_SIZE)) {
+            SensorData sample = new SensorData(0, new float[3], new float[3], new float[3]);
+            StringBuilder row = new StringBuilder(256);
+            for (int chunk = 0; chunk < reader.getChunkCount(); chunk++) {
+                ImuChunk decoded = reader.readChunk(chunk);
+                for (int i = 0; i < decoded.size(); i++) {
+                    decoded.get(i, sample);
+                    row.setLength(0);
+                    sample.appendRowData(row);
+                    writer.append(row);
+                }
+            }
+            return reader.getRecordCount();
+        }
+    }
+}
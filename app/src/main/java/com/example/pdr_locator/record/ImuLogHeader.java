@@ -0,0 +1,168 @@
+package com.example.pdr_locator.record;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 二进制IMU日志的文件头，描述通道、采样率和设备信息。
+ * 文件由文件头和定长记录组成，全部为小端序：
+ * <pre>
+ * 文件头  int    魔数 "IMUL"
+ *        short  版本
+ *        short  文件头长度（字节，8字节对齐，记录从这里开始）
+ *        int    记录长度（字节）
+ *        int    采样率（Hz），0表示原始频率
+ *        long   记录数，写入未正常结束时为-1，此时按文件长度推算
+ *        short  通道数，之后每个通道为 short长度 + UTF-8名称
+ *        short  设备信息长度，之后为UTF-8设备信息
+ * 记录    long   时间戳（毫秒）
+ *        float×9 加速度计xyz、陀螺仪xyz、磁力计xyz
+ * </pre>
+ * 记录的通道与CSV的列一一对应，CSV中的float文本可无损地转换为二进制并还原
+ */
+public class ImuLogHeader {
+    public static final int MAGIC = 0x4C554D49;  // "IMUL"，小端序
+    public static final short VERSION = 1;  // 格式版本
+    public static final String FILE_EXTENSION = ".imul";  // 文件扩展名
+    public static final int RECORD_SIZE = 8 + 9 * 4;  // 记录长度：时间戳 + 9个float
+    public static final long UNKNOWN_COUNT = -1;  // 记录数未知（写入未正常结束）
+    public static final List<String> CHANNELS = Collections.unmodifiableList(Arrays.asList(
+            "timestamp_ms", "acc_x", "acc_y", "acc_z", "gyro_x", "gyro_y", "gyro_z", "mag_x", "mag_y", "mag_z"));  // 通道名称，与CSV的列顺序一致
+    static final int RECORD_COUNT_OFFSET = 16;  // 记录数在文件头中的位置
+
+    private final int sampleRateHz;  // 采样率，0表示原始频率
+    private final String deviceInfo;  // 设备信息，如厂商和型号
+    private final List<String> channels;  // 通道名称
+    private long recordCount;  // 记录数
+
+    /**
+     * 构造函数，通道为CHANNELS
+     *
+     * @param sampleRateHz 采样率（Hz），0表示原始频率
+     * @param deviceInfo 设备信息，为null时记为空
+     */
+    public ImuLogHeader(int sampleRateHz, String deviceInfo) {
+        this(sampleRateHz, deviceInfo, CHANNELS, UNKNOWN_COUNT);
+    }
+
+    private ImuLogHeader(int sampleRateHz, String deviceInfo, List<String> channels, long recordCount) {
+        if (sampleRateHz < 0) {
+            throw new IllegalArgumentException("无效的采样率: " + sampleRateHz);
+        }
+        this.sampleRateHz = sampleRateHz;
+        this.deviceInfo = deviceInfo == null ? "" : deviceInfo;
+        this.channels = channels;
+        this.recordCount = recordCount;
+    }
+
+    public int getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public String getDeviceInfo() {
+        return deviceInfo;
+    }
+
+    public List<String> getChannels() {
+        return channels;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    void setRecordCount(long recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * @return 文件头长度（字节），8字节对齐
+     */
+    public int getSize() {
+        int size = 24 + 2;
+        for (String channel : channels) {
+            size += 2 + channel.getBytes(StandardCharsets.UTF_8).length;
+        }
+        size += 2 + deviceInfo.getBytes(StandardCharsets.UTF_8).length;
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * 把文件头写到buffer的当前位置
+     *
+     * @param buffer 小端序的缓冲区，剩余空间至少为getSize()
+     */
+    void write(ByteBuffer buffer) {
+        int start = buffer.position();
+        int size = getSize();
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) size);
+        buffer.putInt(RECORD_SIZE);
+        buffer.putInt(sampleRateHz);
+        buffer.putLong(recordCount);
+        buffer.putShort((short) channels.size());
+        for (String channel : channels) {
+            putString(buffer, channel);
+        }
+        putString(buffer, deviceInfo);
+        while (buffer.position() < start + size) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * 从buffer的当前位置读取文件头，读取后位置在第一条记录处
+     *
+     * @param buffer 包含完整文件头的缓冲区
+     * @return 文件头
+     * @throws IOException 不是二进制IMU日志或版本、记录格式不支持
+     */
+    static ImuLogHeader read(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int start = buffer.position();
+        if (buffer.remaining() < 26 || buffer.getInt() != MAGIC) {
+            throw new IOException("不是二进制IMU日志");
+        }
+        short version = buffer.getShort();
+        int size = buffer.getShort() & 0xFFFF;
+        int recordSize = buffer.getInt();
+        if (version != VERSION || recordSize != RECORD_SIZE) {
+            throw new IOException("不支持的IMU日志版本: " + version + ", 记录长度 " + recordSize);
+        }
+        int sampleRateHz = buffer.getInt();
+        long recordCount = buffer.getLong();
+        int channelCount = buffer.getShort();
+        String[] channels = new String[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            channels[i] = getString(buffer);
+        }
+        String deviceInfo = getString(buffer);
+        buffer.position(start + size);
+        return new ImuLogHeader(sampleRateHz, deviceInfo, Collections.unmodifiableList(Arrays.asList(channels)),
+                recordCount);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return (sampleRateHz == 0 ? "raw" : sampleRateHz + "Hz") + ", " + deviceInfo + ", "
+                + (recordCount == UNKNOWN_COUNT ? "?" : recordCount) + " records";
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二进制IMU日志的读取器，以只读方式映射整个文件，可顺序读取或按下标随机读取。
+ * 写入未正常结束的文件没有记录数，写入器按块预先扩展文件，末尾是未写入的全零区域，
+ * 此时从文件末尾向前跳过全零的记录，以最后一条非零记录为结尾。
+ * 格式见{@link ImuLogHeader}
+ */
+public class ImuLogReader implements ISampleSource {
+    private final FileChannel channel;  // 文件
+    private final MappedByteBuffer buffer;  // 映射的整个文件
+    private final ImuLogHeader header;  // 文件头
+    private final int recordsStart;  // 第一条记录的位置
+    private final long recordCount;  // 记录数
+    private long next;  // 顺序读取的下一条记录
+
+    /**
+     * 构造函数
+     *
+     * @param file 文件
+     * @throws IOException 打开文件失败，或不是二进制IMU日志
+     */
+    public ImuLogReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("IMU日志超过2GB: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            header = ImuLogHeader.read(buffer);
+            recordsStart = buffer.position();
+            long available = (size - recordsStart) / ImuLogHeader.RECORD_SIZE;
+            long count = header.getRecordCount();
+            recordCount = count == ImuLogHeader.UNKNOWN_COUNT ? countWritten(available) : Math.min(count, available);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 从后向前跳过全零的记录
+     *
+     * @param available 按文件长度能容纳的记录数
+     * @return 到最后一条非零记录为止的记录数
+     */
+    private long countWritten(long available) {
+        long count = available;
+        while (count > 0 && isZero(recordsStart + (int) (count - 1) * ImuLogHeader.RECORD_SIZE)) {
+            count--;
+        }
+        return count;
+    }
+
+    private boolean isZero(int position) {
+        for (int offset = 0; offset + 8 <= ImuLogHeader.RECORD_SIZE; offset += 8) {
+            if (buffer.getLong(position + offset) != 0) {
+                return false;
+            }
+        }
+        for (int offset = ImuLogHeader.RECORD_SIZE & ~7; offset < ImuLogHeader.RECORD_SIZE; offset++) {
+            if (buffer.get(position + offset) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public ImuLogHeader getHeader() {
+        return header;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 按下标读取一条记录，填入已有的样本对象，不分配内存
+     *
+     * @param index 记录下标
+     * @param out 填入的样本，三个数组需已分配
+     */
+    public void read(long index, SensorData out) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("记录下标 " + index + " 超出范围 " + recordCount);
+        }
+        int position = recordsStart + (int) index * ImuLogHeader.RECORD_SIZE;
+        out.setTimestamp(buffer.getLong(position));
+        readAxes(position + 8, out.getAccelerometerData());
+        readAxes(position + 20, out.getGyroscopeData());
+        readAxes(position + 32, out.getMagnetometerData());
+    }
+
+    /**
+     * 顺序读取下一条记录
+     *
+     * @param out 填入的样本，三个数组需已分配
+     * @return 是否读到记录，已读完时返回false
+     */
+    @Override
+    public boolean next(SensorData out) {
+        if (next >= recordCount) {
+            return false;
+        }
+        read(next++, out);
+        return true;
+    }
+
+    /**
+     * 读取全部记录
+     *
+     * @return 每条记录一个新的样本对象
+     */
+    public List<SensorData> readAll() {
+        List<SensorData> samples = new ArrayList<>((int) recordCount);
+        for (long i = 0; i < recordCount; i++) {
+            SensorData sample = new SensorData(0, new float[3], new float[3], new float[3]);
+            read(i, sample);
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+    private void readAxes(int position, float[] axes) {
+        axes[0] = buffer.getFloat(position);
+        axes[1] = buffer.getFloat(position + 4);
+        axes[2] = buffer.getFloat(position + 8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 二进制IMU日志的写入器。记录直接写入内存映射的文件区域，区域写满后在文件末尾映射下一块，
+ * 不经过文本格式化和系统调用，关闭时写入记录数并把文件截断到实际长度。
+ * 格式见{@link ImuLogHeader}。只能由一个线程调用
+ */
+public class ImuLogWriter implements Closeable {
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;  // 默认每次映射的区域大小
+
+    private final FileChannel channel;  // 文件
+    private final ImuLogHeader header;  // 文件头
+    private final int chunkBytes;  // 每次映射的区域大小
+    private MappedByteBuffer region;  // 当前映射的区域
+    private long regionStart;  // 当前区域在文件中的位置
+    private long records;  // 已写入的记录数
+    private boolean closed;  // 是否已关闭
+
+    /**
+     * 构造函数，已有的文件会被覆盖
+     *
+     * @param file 文件
+     * @param header 文件头
+     * @throws IOException 打开文件失败
+     */
+    public ImuLogWriter(File file, ImuLogHeader header) throws IOException {
+        this(file, header, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * 构造函数，已有的文件会被覆盖
+     *
+     * @param file 文件
+     * @param header 文件头
+     * @param chunkBytes 每次映射的区域大小（字节），不小于一条记录
+     * @throws IOException 打开文件失败
+     */
+    public ImuLogWriter(File file, ImuLogHeader header, int chunkBytes) throws IOException {
+        if (chunkBytes < ImuLogHeader.RECORD_SIZE) {
+            throw new IllegalArgumentException("映射区域小于一条记录: " + chunkBytes);
+        }
+        this.header = header;
+        this.chunkBytes = chunkBytes;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        header.setRecordCount(ImuLogHeader.UNKNOWN_COUNT);
+        map(0, Math.max(chunkBytes, header.getSize() + ImuLogHeader.RECORD_SIZE));
+        header.write(region);
+    }
+
+    /**
+     * 写入一条记录
+     *
+     * @param data 样本，不会被保留
+     * @throws IOException 映射下一块区域失败
+     */
+    public void write(SensorData data) throws IOException {
+        write(data.getTimestamp(), data.getAccelerometerData(), data.getGyroscopeData(), data.getMagnetometerData());
+    }
+
+    /**
+     * 写入一条记录
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param accelerometer 加速度计xyz
+     * @param gyroscope 陀螺仪xyz
+     * @param magnetometer 磁力计xyz
+     * @throws IOException 映射下一块区域失败
+     */
+    public void write(long timestamp, float[] accelerometer, float[] gyroscope, float[] magnetometer)
+            throws IOException {
+        if (region.remaining() < ImuLogHeader.RECORD_SIZE) {
+            map(regionStart + region.position(), chunkBytes);
+        }
+        MappedByteBuffer buffer = region;
+        buffer.putLong(timestamp);
+        buffer.putFloat(accelerometer[0]).putFloat(accelerometer[1]).putFloat(accelerometer[2]);
+        buffer.putFloat(gyroscope[0]).putFloat(gyroscope[1]).putFloat(gyroscope[2]);
+        buffer.putFloat(magnetometer[0]).putFloat(magnetometer[1]).putFloat(magnetometer[2]);
+        records++;
+    }
+
+    /**
+     * 把已写入的记录同步到存储，不调用时由系统在适当的时候写回
+     */
+    public void force() {
+        region.force();
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return 文件的有效长度（字节）
+     */
+    public long getSize() {
+        return header.getSize() + records * ImuLogHeader.RECORD_SIZE;
+    }
+
+    /**
+     * 写入记录数，把文件截断到有效长度并关闭。与FileWriter.close()一样不等待数据落盘，需要时先调用force()
+     *
+     * @throws IOException 写文件失败
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            header.setRecordCount(records);
+            ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(records);
+            count.flip();
+            channel.write(count, ImuLogHeader.RECORD_COUNT_OFFSET);
+            channel.truncate(getSize());
+        } finally {
+            region = null;
+            channel.close();
+        }
+    }
+
+    /**
+     * 映射从position开始的一块区域
+     */
+    private void map(long position, int size) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        regionStart = position;
+    }
+}
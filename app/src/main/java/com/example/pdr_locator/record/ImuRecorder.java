@@ -0,0 +1,271 @@
+package com.example.pdr_locator.record;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * 异步的IMU数据记录器。采集线程把CSV行追加到当前缓冲区，缓冲区达到大小阈值或距上次交换超过时间阈值时
+ * 与空闲缓冲区交换，由独立的写文件线程写出，采集线程从不等待文件IO。
+ * 写文件线程还没写完上一个缓冲区时不交换，当前缓冲区继续增长，计入积压。
+ * record()只能由一个线程调用，close()也应由该线程调用
+ */
+public class ImuRecorder {
+    public static final int DEFAULT_FLUSH_CHARS = 32 * 1024;  // 默认的缓冲区大小阈值（字符）
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;  // 默认的时间阈值（毫秒）
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;  // BufferedWriter的缓冲区大小
+
+    private final Writer out;  // 输出，只在写文件线程中使用
+    private final int flushChars;  // 缓冲区大小阈值（字符）
+    private final long flushIntervalNs;  // 时间阈值（纳秒）
+    private final Object lock = new Object();  // 保护缓冲区交换
+    private StringBuilder active;  // 采集线程正在追加的缓冲区
+    private StringBuilder full;  // 等待写文件线程写出的缓冲区，为null表示写文件线程空闲，受lock保护
+    private StringBuilder free;  // 空闲的缓冲区，full为null时一定不为null，受lock保护
+    private boolean closing;  // 是否正在关闭，受lock保护
+    private final Thread writerThread;  // 写文件线程
+    private char[] chars;  // 写出时复用的字符数组，只在写文件线程中使用
+
+    private long lastSwapNs;  // 上次交换缓冲区的时间，只在采集线程中使用
+    private final long startNs;  // 开始记录的时间
+    private volatile int activeChars;  // 当前缓冲区的字符数
+    private volatile int writingChars;  // 正在写出的字符数
+    private volatile int maxQueuedChars;  // 积压的最大字符数
+    private volatile long rows;  // 记录的行数
+    private volatile long bytesWritten;  // 已写出的字节数，CSV只有ASCII字符，字节数等于字符数
+    private volatile long flushes;  // 写出次数
+    private volatile long busySwaps;  // 需要交换时写文件线程还没写完的次数
+    private volatile long writeNs;  // 写文件累计耗时
+    private volatile IOException error;  // 写文件线程遇到的第一个错误，之后的数据被丢弃
+
+    /**
+     * 构造函数，启动写文件线程
+     *
+     * @param out 输出，由记录器在close()时关闭
+     * @param flushChars 缓冲区大小阈值（字符）
+     * @param flushIntervalMs 时间阈值（毫秒），数据最多在内存中停留这么久（采集线程持续有数据时）
+     */
+    public ImuRecorder(Writer out, int flushChars, long flushIntervalMs) {
+        if (flushChars <= 0 || flushIntervalMs <= 0) {
+            throw new IllegalArgumentException("无效的写出阈值: " + flushChars + "/" + flushIntervalMs + "ms");
+        }
+        this.out = out;
+        this.flushChars = flushChars;
+        this.flushIntervalNs = flushIntervalMs * 1_000_000L;
+        this.active = new StringBuilder(flushChars * 2);
+        this.free = new StringBuilder(flushChars * 2);
+        this.chars = new char[flushChars * 2];
+        this.startNs = System.nanoTime();
+        this.lastSwapNs = startNs;
+        this.writerThread = new Thread(this::writeLoop, "ImuRecorder");
+        writerThread.setPriority(Thread.NORM_PRIORITY - 2);  // 低于采集线程，写文件不抢占采样
+        writerThread.start();
+    }
+
+    /**
+     * 打开CSV文件，经FileChannel和BufferedWriter写出
+     *
+     * @param file 文件
+     * @param append 是否追加到已有内容之后
+     * @return 记录器
+     * @throws IOException 打开文件失败
+     */
+    public static ImuRecorder open(File file, boolean append) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.US_ASCII.newEncoder(), -1),
+                WRITER_BUFFER_SIZE);
+        return new ImuRecorder(writer, DEFAULT_FLUSH_CHARS, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * 记录一个样本，只追加到内存缓冲区，不等待文件IO
+     *
+     * @param data 样本，不会被保留
+     */
+    public void record(SensorData data) {
+        data.appendRowData(active);
+        rows++;
+        int length = active.length();
+        activeChars = length;
+        int queued = length + writingChars;
+        if (queued > maxQueuedChars) {
+            maxQueuedChars = queued;
+        }
+        long now = System.nanoTime();
+        if (length >= flushChars || now - lastSwapNs >= flushIntervalNs) {
+            trySwap(now);
+        }
+    }
+
+    /**
+     * 写出剩余数据，停止写文件线程并关闭输出
+     *
+     * @throws IOException 写文件失败或关闭失败
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closing) {
+                return;
+            }
+            while (full != null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (full == null && active.length() > 0) {
+                full = active;
+                active = free;
+                free = null;
+                writingChars = full.length();
+                activeChars = 0;
+            }
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 交换缓冲区，写文件线程忙时不交换
+     */
+    private void trySwap(long now) {
+        synchronized (lock) {
+            if (full != null) {
+                busySwaps++;
+                return;
+            }
+            if (active.length() == 0) {
+                lastSwapNs = now;
+                return;
+            }
+            full = active;
+            active = free;
+            free = null;
+            writingChars = full.length();
+            lock.notifyAll();
+        }
+        activeChars = 0;
+        lastSwapNs = now;
+    }
+
+    /**
+     * 写文件线程：等待写满的缓冲区，写出后归还为空闲缓冲区
+     */
+    private void writeLoop() {
+        while (true) {
+            StringBuilder buffer;
+            synchronized (lock) {
+                while (full == null && !closing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (full == null) {
+                    return;
+                }
+                buffer = full;
+            }
+            write(buffer);
+            synchronized (lock) {
+                buffer.setLength(0);
+                free = buffer;
+                full = null;
+                writingChars = 0;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void write(StringBuilder buffer) {
+        if (error != null) {
+            return;
+        }
+        int length = buffer.length();
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        long begin = System.nanoTime();
+        try {
+            buffer.getChars(0, length, chars, 0);
+            out.write(chars, 0, length);
+            out.flush();
+            bytesWritten += length;
+            flushes++;
+        } catch (IOException e) {
+            error = e;
+        }
+        writeNs += System.nanoTime() - begin;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public long getBusySwaps() {
+        return busySwaps;
+    }
+
+    /**
+     * @return 还没写出的字符数，包括采集线程的当前缓冲区和正在写出的缓冲区
+     */
+    public int getQueuedChars() {
+        return activeChars + writingChars;
+    }
+
+    public int getMaxQueuedChars() {
+        return maxQueuedChars;
+    }
+
+    /**
+     * @return 积压占两个缓冲区阈值之和的比例，超过1表示写文件跟不上、当前缓冲区在增长
+     */
+    public double getQueueOccupancy() {
+        return getQueuedChars() / (2.0 * flushChars);
+    }
+
+    /**
+     * @return 从开始记录到现在的平均写出速率（字节/秒）
+     */
+    public double getBytesPerSecond() {
+        return bytesWritten / Math.max(1e-9, (System.nanoTime() - startNs) / 1e9);
+    }
+
+    /**
+     * @return 统计摘要：行数、写出速率、写出次数和耗时、积压
+     */
+    public String summary() {
+        return String.format(Locale.US, "记录%d行, %.1fKB/s, 写出%d次(平均%.2fms), 积压%d字符(最大%d, 占用%.0f%%), 写线程忙%d次",
+                rows, getBytesPerSecond() / 1024, flushes, flushes == 0 ? 0.0 : writeNs / 1e6 / flushes,
+                getQueuedChars(), maxQueuedChars, getQueueOccupancy() * 100, busySwaps);
+    }
+}
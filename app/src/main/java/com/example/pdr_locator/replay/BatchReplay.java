@@ -0,0 +1,331 @@
+package com.example.pdr_locator.replay;
+
+import com.example.pdr_locator.algorithm.IAlgorithm;
+import com.example.pdr_locator.algorithm.SharedGruPdrFactory;
+import com.example.pdr_locator.record.ISampleSource;
+import com.example.pdr_locator.record.ImuArchiveHeader;
+import com.example.pdr_locator.record.ImuLogHeader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * 批量回放工具。在ForkJoinPool上为每个录制文件调度一个任务，用ReplayEngine不限速地回放，
+ * 输出每个文件的轨迹和整体吞吐量，用于在全部录制数据上重新评估算法或模型版本。
+ * 算法（如PdrLocalOri的pxy、oriM）持有可变的定位状态，每个任务从工厂获取自己的实例；
+ * 模型权重等只读数据应由工厂在实例之间共享（如SharedGruPdrFactory），避免每个任务重复加载。
+ * 任务之间不共享可变状态，吞吐量随核数近似线性增长
+ */
+public class BatchReplay {
+    public static final String TRAJECTORY_SUFFIX = ".trajectory.csv";  // 轨迹文件的后缀
+    private static final List<String> RECORDING_EXTENSIONS = Arrays.asList(
+            ".csv", ImuLogHeader.FILE_EXTENSION, ImuArchiveHeader.FILE_EXTENSION);  // 可回放的录制文件扩展名
+
+    private final Supplier<? extends IAlgorithm> factory;  // 算法工厂，每次调用返回新的实例
+    private final ForkJoinPool pool;  // 执行回放任务的线程池
+
+    /**
+     * 构造函数
+     *
+     * @param factory 算法工厂，每个任务调用一次，返回的实例只在该任务中使用，可能在多个线程中同时调用
+     * @param pool 执行回放任务的线程池，不会被关闭
+     */
+    public BatchReplay(Supplier<? extends IAlgorithm> factory, ForkJoinPool pool) {
+        if (factory == null || pool == null) {
+            throw new IllegalArgumentException("算法工厂和线程池不能为null");
+        }
+        this.factory = factory;
+        this.pool = pool;
+    }
+
+    /**
+     * 回放全部录制文件。单个文件失败时记录错误并继续回放其他文件
+     *
+     * @param recordings 录制文件（.csv/.imul/.imuc）
+     * @param outputDir 轨迹输出目录，为null时不输出轨迹
+     * @return 回放报告，文件顺序与recordings一致
+     * @throws IOException 无法创建输出目录
+     */
+    public Report run(List<File> recordings, File outputDir) throws IOException {
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("无法创建输出目录: " + outputDir);
+        }
+        List<FileTask> tasks = new ArrayList<>(recordings.size());
+        for (File recording : recordings) {
+            tasks.add(new FileTask(factory, recording, outputDir));
+        }
+        // 先调度大的文件，避免最后只剩一个长任务在运行
+        List<FileTask> schedule = new ArrayList<>(tasks);
+        Collections.sort(schedule, (a, b) -> Long.compare(b.recording.length(), a.recording.length()));
+        long startNs = System.nanoTime();
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(schedule);
+                return null;
+            }
+        });
+        long elapsedNs = System.nanoTime() - startNs;
+        List<Entry> entries = new ArrayList<>(tasks.size());
+        for (FileTask task : tasks) {
+            entries.add(task.join());
+        }
+        return new Report(entries, elapsedNs, pool.getParallelism());
+    }
+
+    /**
+     * 列出目录下可回放的录制文件，按文件名排序
+     *
+     * @param dir 目录
+     * @return 录制文件
+     * @throws IOException 目录不存在或无法读取
+     */
+    public static List<File> listRecordings(File dir) throws IOException {
+        File[] files = dir.listFiles(file -> file.isFile() && isRecording(file.getName()));
+        if (files == null) {
+            throw new IOException("无法读取目录: " + dir);
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static boolean isRecording(String name) {
+        if (name.endsWith(TRAJECTORY_SUFFIX)) {
+            return false;
+        }
+        for (String extension : RECORDING_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 回放一个录制文件的任务，算法实例在任务内创建和关闭
+     */
+    private static class FileTask extends RecursiveTask<Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Supplier<? extends IAlgorithm> factory;  // 算法工厂
+        private final File recording;  // 录制文件
+        private final File outputDir;  // 轨迹输出目录，可为null
+
+        FileTask(Supplier<? extends IAlgorithm> factory, File recording, File outputDir) {
+            this.factory = factory;
+            this.recording = recording;
+            this.outputDir = outputDir;
+        }
+
+        @Override
+        protected Entry compute() {
+            try {
+                IAlgorithm algorithm = factory.get();
+                ReplayResult result;
+                try (ISampleSource source = ISampleSource.open(recording)) {
+                    algorithm.warmUp();
+                    result = ReplayEngine.forAlgorithm(algorithm, ReplayEngine.MAX_SPEED).run(algorithm, source);
+                } finally {
+                    algorithm.close();
+                }
+                if (outputDir != null) {
+                    File out = new File(outputDir, recording.getName() + TRAJECTORY_SUFFIX);
+                    try (Writer writer = new BufferedWriter(new FileWriter(out))) {
+                        result.writeTrajectory(writer);
+                    }
+                }
+                return new Entry(recording, result, null);
+            } catch (Exception e) {
+                return new Entry(recording, null, e);
+            }
+        }
+    }
+
+    /**
+     * 一个录制文件的回放结果
+     */
+    public static class Entry {
+        private final File recording;  // 录制文件
+        private final ReplayResult result;  // 回放结果，失败时为null
+        private final Exception error;  // 失败原因，成功时为null
+
+        Entry(File recording, ReplayResult result, Exception error) {
+            this.recording = recording;
+            this.result = result;
+            this.error = error;
+        }
+
+        public File getRecording() {
+            return recording;
+        }
+
+        public ReplayResult getResult() {
+            return result;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return recording.getName() + " " + (error == null ? result : "失败: " + error);
+        }
+    }
+
+    /**
+     * 批量回放报告
+     */
+    public static class Report {
+        private final List<Entry> entries;  // 每个文件的结果
+        private final long elapsedNs;  // 全部回放的墙钟耗时
+        private final int parallelism;  // 线程池并行度
+        private long samples;  // 成功回放的样本总数
+        private long windows;  // 成功回放的窗口总数
+        private long busyNs;  // 各文件回放耗时之和
+        private int failures;  // 失败的文件数
+
+        Report(List<Entry> entries, long elapsedNs, int parallelism) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.elapsedNs = elapsedNs;
+            this.parallelism = parallelism;
+            for (Entry entry : entries) {
+                if (!entry.isSuccess()) {
+                    failures++;
+                    continue;
+                }
+                samples += entry.result.getSamples();
+                windows += entry.result.getWindows();
+                busyNs += entry.result.getElapsedNs();
+            }
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public long getElapsedNs() {
+            return elapsedNs;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        public long getWindows() {
+            return windows;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return 整体样本吞吐量（条/秒，按墙钟时间）
+         */
+        public double getSamplesPerSecond() {
+            return samples / Math.max(1e-9, elapsedNs / 1e9);
+        }
+
+        /**
+         * @return 整体窗口吞吐量（个/秒，按墙钟时间）
+         */
+        public double getWindowsPerSecond() {
+            return windows / Math.max(1e-9, elapsedNs / 1e9);
+        }
+
+        /**
+         * 加速比：各文件回放耗时之和与墙钟耗时之比，理想情况下接近并行度。
+         * 各文件的耗时是墙钟时间，线程数超过空闲核数时包含等待调度的时间，此时加速比偏高，应比较吞吐量
+         *
+         * @return 加速比
+         */
+        public double getSpeedup() {
+            return busyNs / (double) Math.max(1, elapsedNs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d个文件（失败%d）, %d条样本, %d个窗口, 耗时%.1fs, "
+                            + "%.0f条/秒, %.0f窗口/秒, 并行度%d, 加速比%.2f",
+                    entries.size(), failures, samples, windows, elapsedNs / 1e9,
+                    getSamplesPerSecond(), getWindowsPerSecond(), parallelism, getSpeedup());
+        }
+    }
+
+    /**
+     * 命令行入口：回放目录下的全部录制文件。算法类需要有无参构造函数，每个任务创建一个实例；
+     * 用--weights指定GRU权重文件时回放PdrLocalOri，权重只加载一次，各任务的实例共享权重
+     * <pre>
+     * BatchReplay 录制目录 算法类名 [轨迹输出目录] [线程数，默认为核数]
+     * BatchReplay 录制目录 --weights 权重文件 [轨迹输出目录] [线程数，默认为核数]
+     * </pre>
+     *
+     * @param args 命令行参数
+     * @throws Exception 读取目录或创建算法失败时抛出
+     */
+    public static void main(String[] args) throws Exception {
+        boolean shared = args.length > 1 && "--weights".equals(args[1]);
+        if (args.length < (shared ? 3 : 2)) {
+            System.err.println("用法: BatchReplay <录制目录> <算法类名 | --weights 权重文件> [轨迹输出目录] [线程数]");
+            System.exit(2);
+        }
+        Supplier<? extends IAlgorithm> factory = shared
+                ? SharedGruPdrFactory.load(new File(args[2])) : reflectiveFactory(args[1]);
+        int next = shared ? 3 : 2;  // 可选参数的起始位置
+        File outputDir = args.length > next ? new File(args[next]) : null;
+        int threads = args.length > next + 1 ? Integer.parseInt(args[next + 1])
+                : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Report report = new BatchReplay(factory, pool).run(listRecordings(new File(args[0])), outputDir);
+            for (Entry entry : report.getEntries()) {
+                System.out.println(entry);
+            }
+            System.out.println(report);
+            if (report.getFailures() > 0) {
+                System.exit(1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 用无参构造函数创建算法实例的工厂
+     *
+     * @param className 算法类名
+     * @return 工厂
+     * @throws ClassNotFoundException 找不到算法类
+     */
+    private static Supplier<IAlgorithm> reflectiveFactory(String className) throws ClassNotFoundException {
+        Class<? extends IAlgorithm> algorithmClass = Class.forName(className).asSubclass(IAlgorithm.class);
+        return () -> {
+            try {
+                return algorithmClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("无法创建算法: " + algorithmClass.getName(), e);
+            }
+        };
+    }
+}
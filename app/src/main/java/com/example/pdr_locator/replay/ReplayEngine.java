@@ -0,0 +1,193 @@
+package com.example.pdr_locator.replay;
+
+import com.example.pdr_locator.algorithm.IAlgorithm;
+import com.example.pdr_locator.algorithm.SensorRequirement;
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.record.ISampleSource;
+import com.example.pdr_locator.sensor.ImuResampler;
+import com.example.pdr_locator.utils.BackpressurePolicy;
+import com.example.pdr_locator.utils.SensorWindow;
+import com.example.pdr_locator.utils.SlidingWindowManager;
+import com.example.pdr_locator.utils.WaitStrategy;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 离线回放引擎。把录制的IMU数据逐条送入与采集时相同的SlidingWindowManager，
+ * 在同一个线程中取出窗口并调用IAlgorithm.getCoordinate()，记录轨迹和每个窗口的耗时。
+ * 可以不限速地回放，也可以按录制时的时间间隔乘以倍速回放。
+ * 录制文件可能是以传感器最快频率采集的原始数据（如CollectData），指定采样率时先用ImuResampler重采样到该频率，
+ * 与采集时SensorDataCollector的处理一致；已经是该频率等间隔的数据重采样后不变。
+ * 只依赖纯Java的类，不依赖android.*，可以在普通JVM中运行
+ */
+public class ReplayEngine {
+    public static final double MAX_SPEED = 0;  // 不限速，尽可能快地回放
+    public static final WindowSpec DEFAULT_WINDOW_SPEC = WindowSpec.ofCount(50, 10);  // 算法没有声明窗口时使用采集器的默认窗口
+    private static final int QUEUE_CAPACITY = 256;  // 任务队列容量，按时间划分的窗口遇到数据间断时一次可能生成多个窗口
+
+    private final WindowSpec spec;  // 窗口划分方式
+    private final int sampleRateHz;  // 重采样频率，SensorRequirement.RAW_RATE表示不重采样
+    private final double speed;  // 回放倍速，MAX_SPEED表示不限速
+
+    /**
+     * 构造函数，不重采样，录制的样本直接送入窗口
+     *
+     * @param spec 窗口划分方式，与采集时一致
+     * @param speed 回放倍速，如1为实时、10为10倍速，MAX_SPEED表示不限速
+     */
+    public ReplayEngine(WindowSpec spec, double speed) {
+        this(spec, SensorRequirement.RAW_RATE, speed);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param spec 窗口划分方式，与采集时一致
+     * @param sampleRateHz 重采样频率，需要整除1000，SensorRequirement.RAW_RATE表示不重采样
+     * @param speed 回放倍速，如1为实时、10为10倍速，MAX_SPEED表示不限速
+     */
+    public ReplayEngine(WindowSpec spec, int sampleRateHz, double speed) {
+        if (spec == null || speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("无效的窗口或倍速: " + spec + ", " + speed);
+        }
+        if (sampleRateHz != SensorRequirement.RAW_RATE && (sampleRateHz < 0 || 1000 % sampleRateHz != 0)) {
+            throw new IllegalArgumentException("重采样频率需要整除1000Hz: " + sampleRateHz);
+        }
+        this.spec = spec;
+        this.sampleRateHz = sampleRateHz;
+        this.speed = speed;
+    }
+
+    /**
+     * 按算法声明的窗口划分方式和采样率创建回放引擎
+     *
+     * @param algorithm 算法
+     * @param speed 回放倍速，MAX_SPEED表示不限速
+     * @return 回放引擎
+     */
+    public static ReplayEngine forAlgorithm(IAlgorithm algorithm, double speed) {
+        SensorRequirement requirement = algorithm.getSensorRequirement();
+        WindowSpec spec = requirement == null || requirement.getWindowSpec() == null
+                ? DEFAULT_WINDOW_SPEC : requirement.getWindowSpec();
+        int sampleRateHz = requirement == null ? SensorRequirement.RAW_RATE : requirement.getSampleRateHz();
+        return new ReplayEngine(spec, sampleRateHz, speed);
+    }
+
+    public WindowSpec getSpec() {
+        return spec;
+    }
+
+    public int getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * 回放一个录制文件，算法从当前状态继续，需要从原点开始时先调用reset()
+     *
+     * @param algorithm 算法，不会被关闭
+     * @param source 录制数据，不会被关闭
+     * @return 回放结果
+     * @throws Exception 读取数据或定位失败时抛出
+     */
+    public ReplayResult run(IAlgorithm algorithm, ISampleSource source) throws Exception {
+        SlidingWindowManager manager = new SlidingWindowManager(spec, QUEUE_CAPACITY,
+                BackpressurePolicy.DROP_OLDEST, WaitStrategy.SPIN);
+        ReplayResult result = new ReplayResult(spec, speed);
+        SensorData sample = new SensorData(0, new float[3], new float[3], new float[3]);
+        ImuResampler resampler = null;
+        long startNs = System.nanoTime();
+        long firstTimestamp = Long.MIN_VALUE;
+        while (source.next(sample)) {
+            if (firstTimestamp == Long.MIN_VALUE) {
+                firstTimestamp = sample.getTimestamp();
+                if (sampleRateHz != SensorRequirement.RAW_RATE) {
+                    resampler = createResampler(firstTimestamp, manager, result);
+                }
+            }
+            if (speed != MAX_SPEED) {
+                // 按录制时的时间间隔除以倍速等待，回放落后时不等待
+                long dueNs = startNs + (long) ((sample.getTimestamp() - firstTimestamp) * 1_000_000L / speed);
+                long waitNs;
+                while ((waitNs = dueNs - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNs);
+                }
+            }
+            if (resampler == null) {
+                manager.addData(sample);
+                result.addSample();
+            } else {
+                long timestampNs = (sample.getTimestamp() - firstTimestamp) * 1_000_000L;
+                resampler.onSensorSample(ImuResampler.ACCELEROMETER, timestampNs, sample.getAccelerometerData());
+                resampler.onSensorSample(ImuResampler.GYROSCOPE, timestampNs, sample.getGyroscopeData());
+                resampler.onSensorSample(ImuResampler.MAGNETOMETER, timestampNs, sample.getMagnetometerData());
+            }
+            SensorWindow window;
+            while ((window = manager.pollTask()) != null) {
+                long beginNs = System.nanoTime();
+                double[] xyz = algorithm.getCoordinate(window);
+                long latencyNs = System.nanoTime() - beginNs;
+                result.addWindow(window.getTimestamp(window.size() - 1), xyz, latencyNs);
+                manager.release(window);
+            }
+        }
+        result.finish(System.nanoTime() - startNs, manager.getDroppedTasks() + manager.getStaleTasks());
+        return result;
+    }
+
+    /**
+     * 创建把录制数据重采样后送入窗口的重采样器。录制数据的每一行包含三个传感器的数据，
+     * 按行的时间戳作为三个传感器的样本时间；时间戳重复的行被重采样器丢弃。
+     * 网格点从第一行开始，已经是该频率等间隔的数据恰好落在网格点上，重采样后不变
+     *
+     * @param firstTimestamp 第一行的时间戳（毫秒），作为网格的原点
+     * @param manager 接收重采样样本的窗口管理器
+     * @param result 统计送入窗口的样本数
+     * @return 重采样器
+     */
+    private ImuResampler createResampler(long firstTimestamp, SlidingWindowManager manager, ReplayResult result) {
+        return new ImuResampler(sampleRateHz, true, firstTimestamp, data -> {
+            manager.addData(data);
+            result.addSample();
+        });
+    }
+
+    /**
+     * 命令行入口：回放一个录制文件并输出轨迹CSV。算法类需要有无参构造函数
+     * <pre>
+     * ReplayEngine 录制文件 算法类名 [倍速，默认不限速] [轨迹输出文件]
+     * </pre>
+     *
+     * @param args 命令行参数
+     * @throws Exception 读取数据或定位失败时抛出
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("用法: ReplayEngine <录制文件(.csv/.imul/.imuc)> <算法类名> [倍速] [轨迹输出文件]");
+            System.exit(2);
+        }
+        IAlgorithm algorithm = (IAlgorithm) Class.forName(args[1]).getDeclaredConstructor().newInstance();
+        double speed = args.length > 2 ? Double.parseDouble(args[2]) : MAX_SPEED;
+        ReplayResult result;
+        try (ISampleSource source = ISampleSource.open(new File(args[0]))) {
+            algorithm.warmUp();
+            result = forAlgorithm(algorithm, speed).run(algorithm, source);
+        } finally {
+            algorithm.close();
+        }
+        if (args.length > 3) {
+            try (Writer writer = new BufferedWriter(new FileWriter(args[3]))) {
+                result.writeTrajectory(writer);
+            }
+        }
+        System.out.println(args[0] + " " + result);
+    }
+}
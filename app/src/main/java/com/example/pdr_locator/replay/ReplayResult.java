@@ -0,0 +1,188 @@
+package com.example.pdr_locator.replay;
+
+import com.example.pdr_locator.utils.WindowSpec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 一次回放的结果：每个窗口的时间戳、位置和定位耗时，以及整体的吞吐量
+ */
+public class ReplayResult {
+    private final WindowSpec spec;  // 窗口划分方式
+    private final double speed;  // 回放倍速，ReplayEngine.MAX_SPEED表示不限速
+    private long[] timestamps = new long[256];  // 每个窗口最后一个样本的时间戳
+    private double[] positions = new double[256 * 3];  // 每个窗口的位置[x, y, z]
+    private long[] latencyNs = new long[256];  // 每个窗口的定位耗时（纳秒）
+    private int windows;  // 窗口数
+    private long samples;  // 送入窗口的样本数，重采样时为重采样后的样本数
+    private long elapsedNs;  // 回放总耗时
+    private long droppedWindows;  // 任务队列满或数据被覆盖而丢弃的窗口数，正常为0
+
+    ReplayResult(WindowSpec spec, double speed) {
+        this.spec = spec;
+        this.speed = speed;
+    }
+
+    void addSample() {
+        samples++;
+    }
+
+    void addWindow(long timestamp, double[] xyz, long latency) {
+        if (windows == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, windows * 2);
+            positions = Arrays.copyOf(positions, windows * 2 * 3);
+            latencyNs = Arrays.copyOf(latencyNs, windows * 2);
+        }
+        timestamps[windows] = timestamp;
+        for (int i = 0; i < 3; i++) {
+            positions[windows * 3 + i] = i < xyz.length ? xyz[i] : 0.0;
+        }
+        latencyNs[windows] = latency;
+        windows++;
+    }
+
+    void finish(long elapsedNs, long droppedWindows) {
+        this.elapsedNs = elapsedNs;
+        this.droppedWindows = droppedWindows;
+    }
+
+    public WindowSpec getSpec() {
+        return spec;
+    }
+
+    public int getWindows() {
+        return windows;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getElapsedNs() {
+        return elapsedNs;
+    }
+
+    public long getDroppedWindows() {
+        return droppedWindows;
+    }
+
+    /**
+     * @param window 窗口序号
+     * @return 窗口最后一个样本的时间戳（毫秒）
+     */
+    public long getTimestamp(int window) {
+        checkWindow(window);
+        return timestamps[window];
+    }
+
+    /**
+     * @param window 窗口序号
+     * @param axis 0为x，1为y，2为z
+     * @return 窗口的定位结果
+     */
+    public double getPosition(int window, int axis) {
+        checkWindow(window);
+        return positions[window * 3 + axis];
+    }
+
+    /**
+     * @param window 窗口序号
+     * @return 窗口的定位耗时（纳秒）
+     */
+    public long getLatencyNs(int window) {
+        checkWindow(window);
+        return latencyNs[window];
+    }
+
+    /**
+     * @return 每个窗口的位置[x, y]
+     */
+    public double[][] getTrajectory() {
+        double[][] trajectory = new double[windows][2];
+        for (int i = 0; i < windows; i++) {
+            trajectory[i][0] = positions[i * 3];
+            trajectory[i][1] = positions[i * 3 + 1];
+        }
+        return trajectory;
+    }
+
+    /**
+     * @return 每秒处理的窗口数，包括读取数据和划分窗口
+     */
+    public double getWindowsPerSecond() {
+        return windows / Math.max(1e-9, elapsedNs / 1e9);
+    }
+
+    /**
+     * @return 每秒处理的样本数
+     */
+    public double getSamplesPerSecond() {
+        return samples / Math.max(1e-9, elapsedNs / 1e9);
+    }
+
+    /**
+     * @return 平均每窗口定位耗时（毫秒）
+     */
+    public double getMeanLatencyMs() {
+        if (windows == 0) {
+            return 0.0;
+        }
+        long sum = 0;
+        for (int i = 0; i < windows; i++) {
+            sum += latencyNs[i];
+        }
+        return sum / 1e6 / windows;
+    }
+
+    /**
+     * @param percentile 百分位，0~100
+     * @return 每窗口定位耗时的百分位数（毫秒）
+     */
+    public double getLatencyPercentileMs(double percentile) {
+        if (windows == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(latencyNs, windows);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * 以CSV输出轨迹和每个窗口的耗时：时间戳, x, y, z, 耗时（微秒）
+     *
+     * @param writer 输出，不会被关闭
+     * @throws IOException 写出失败
+     */
+    public void writeTrajectory(Writer writer) throws IOException {
+        StringBuilder row = new StringBuilder(96);
+        for (int i = 0; i < windows; i++) {
+            row.setLength(0);
+            row.append(timestamps[i]);
+            for (int axis = 0; axis < 3; axis++) {
+                row.append(',').append(positions[i * 3 + axis]);
+            }
+            row.append(',').append(latencyNs[i] / 1000).append(System.lineSeparator());
+            writer.append(row);
+        }
+        writer.flush();
+    }
+
+    private void checkWindow(int window) {
+        if (window < 0 || window >= windows) {
+            throw new IndexOutOfBoundsException("窗口序号 " + window + " 超出范围 " + windows);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s, %s: %d样本, %d窗口, 丢弃%d, %.1f窗口/秒, %.0f样本/秒, "
+                        + "定位耗时 mean=%.3f p50=%.3f p95=%.3f ms",
+                spec, speed == ReplayEngine.MAX_SPEED ? "不限速" : speed + "倍速", samples, windows, droppedWindows,
+                getWindowsPerSecond(), getSamplesPerSecond(), getMeanLatencyMs(), getLatencyPercentileMs(50),
+                getLatencyPercentileMs(95));
+    }
+}
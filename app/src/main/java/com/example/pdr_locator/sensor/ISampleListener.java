@@ -0,0 +1,16 @@
+package com.example.pdr_locator.sensor;
+
+import com.example.pdr_locator.model.SensorData;
+
+/**
+ * 融合后样本的接收接口
+ */
+public interface ISampleListener {
+
+    /**
+     * 收到一个融合后的样本
+     *
+     * @param data 样本，调用返回后可能被复用，需要保留时应复制数据
+     */
+    void onSample(SensorData data);
+}
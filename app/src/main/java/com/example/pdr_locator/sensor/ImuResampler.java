@@ -0,0 +1,186 @@
+package com.example.pdr_locator.sensor;
+
+import com.example.pdr_locator.model.SensorData;
+
+/**
+ * 按硬件时间戳对齐并重采样IMU数据。每个传感器保留带纳秒时间戳（SensorEvent.timestamp）的最近样本，
+ * 三个传感器按时间线性插值到同一个固定频率的时间网格上，网格点为周期的整数倍，
+ * 输出的样本间隔严格等于采样周期，QuatModel.update()使用的dt是精确的。
+ * 所有需要的传感器的最新样本都越过一个网格点后才输出该点，延迟最多为最慢传感器的一个采样周期。
+ * 不依赖Android，只能由一个线程调用
+ */
+public class ImuResampler {
+    public static final int ACCELEROMETER = 0;  // 加速度计下标
+    public static final int GYROSCOPE = 1;  // 陀螺仪下标
+    public static final int MAGNETOMETER = 2;  // 磁力计下标
+    private static final int SENSORS = 3;  // 传感器个数
+    private static final int HISTORY = 64;  // 每个传感器保留的样本数，需要覆盖最慢传感器一个周期内的快传感器样本，2的幂
+    private static final long NANOS_PER_MS = 1_000_000L;
+
+    private final int rateHz;  // 输出采样率
+    private final long periodNs;  // 输出采样周期（纳秒）
+    private final boolean[] required = new boolean[SENSORS];  // 各传感器是否参与对齐，不参与的输出0
+    private final long[][] timestamps = new long[SENSORS][HISTORY];  // 各传感器最近样本的时间（纳秒），环形存储
+    private final float[][] values = new float[SENSORS][HISTORY * 3];  // 各传感器最近样本的3轴数据，环形存储
+    private final long[] counts = new long[SENSORS];  // 各传感器累计收到的样本数
+    private final ISampleListener listener;  // 重采样样本的接收者
+    private final SensorData frame;  // 复用的输出样本
+    private long clockOffsetMs;  // 传感器时间（纳秒）换算为输出时间戳（毫秒）的偏移
+    private long nextGridNs = -1;  // 下一个输出的网格点，-1表示还没有对齐
+    private long emittedFrames;  // 输出的样本数
+
+    /**
+     * 构造函数
+     *
+     * @param rateHz 输出采样率，需要整除1000，使毫秒时间戳的间隔是精确的，如50、100、200
+     * @param magnetometerRequired 是否需要磁力计，不需要时磁力计输出0，也不等待磁力计数据
+     * @param clockOffsetMs 输出时间戳 = 网格点时间 / 1e6 + clockOffsetMs
+     * @param listener 重采样样本的接收者，收到的样本在回调返回后被复用
+     */
+    public ImuResampler(int rateHz, boolean magnetometerRequired, long clockOffsetMs, ISampleListener listener) {
+        if (rateHz <= 0 || 1000 % rateHz != 0) {
+            throw new IllegalArgumentException("重采样频率需要整除1000Hz: " + rateHz);
+        }
+        this.rateHz = rateHz;
+        this.periodNs = 1_000_000_000L / rateHz;
+        this.required[ACCELEROMETER] = true;
+        this.required[GYROSCOPE] = true;
+        this.required[MAGNETOMETER] = magnetometerRequired;
+        this.clockOffsetMs = clockOffsetMs;
+        this.listener = listener;
+        this.frame = new SensorData(0, new float[3], new float[3], new float[3]);
+    }
+
+    /**
+     * 收到一个传感器样本，输出所有已经可以插值的网格点
+     *
+     * @param sensor 传感器下标，ACCELEROMETER、GYROSCOPE或MAGNETOMETER
+     * @param timestampNs 硬件时间戳（纳秒）
+     * @param data 3轴数据，不会被保留
+     * @return 本次输出的样本数
+     */
+    public int onSensorSample(int sensor, long timestampNs, float[] data) {
+        if (!required[sensor]) {
+            return 0;
+        }
+        long count = counts[sensor];
+        if (count > 0 && timestampNs <= timestamps[sensor][(int) ((count - 1) & (HISTORY - 1))]) {
+            return 0;  // 时间戳重复或倒退的样本无法插值，丢弃
+        }
+        int slot = (int) (count & (HISTORY - 1));
+        timestamps[sensor][slot] = timestampNs;
+        System.arraycopy(data, 0, values[sensor], slot * 3, 3);
+        counts[sensor] = count + 1;
+        return drain();
+    }
+
+    /**
+     * 清空缓存的样本，重新开始采集时调用
+     *
+     * @param clockOffsetMs 新的时间偏移
+     */
+    public void reset(long clockOffsetMs) {
+        this.clockOffsetMs = clockOffsetMs;
+        for (int s = 0; s < SENSORS; s++) {
+            counts[s] = 0;
+        }
+        nextGridNs = -1;
+        emittedFrames = 0;
+    }
+
+    public int getRateHz() {
+        return rateHz;
+    }
+
+    /**
+     * @return 输出采样周期（毫秒），即QuatModel.update()的dt
+     */
+    public long getPeriodMs() {
+        return periodNs / NANOS_PER_MS;
+    }
+
+    /**
+     * @return 输出的样本数
+     */
+    public long getEmittedFrames() {
+        return emittedFrames;
+    }
+
+    /**
+     * 输出所有需要的传感器都已越过的网格点
+     */
+    private int drain() {
+        if (nextGridNs < 0) {
+            long start = 0;
+            for (int s = 0; s < SENSORS; s++) {
+                if (!required[s]) {
+                    continue;
+                }
+                if (counts[s] == 0) {
+                    return 0;
+                }
+                start = Math.max(start, timestamps[s][oldestSlot(s)]);
+            }
+            nextGridNs = (start + periodNs - 1) / periodNs * periodNs;  // 第一个所有传感器都有数据的网格点
+        }
+        int emitted = 0;
+        while (allReached(nextGridNs)) {
+            interpolate(ACCELEROMETER, nextGridNs, frame.getAccelerometerData());
+            interpolate(GYROSCOPE, nextGridNs, frame.getGyroscopeData());
+            interpolate(MAGNETOMETER, nextGridNs, frame.getMagnetometerData());
+            frame.setTimestamp(nextGridNs / NANOS_PER_MS + clockOffsetMs);
+            nextGridNs += periodNs;
+            emittedFrames++;
+            emitted++;
+            listener.onSample(frame);
+        }
+        return emitted;
+    }
+
+    private boolean allReached(long gridNs) {
+        for (int s = 0; s < SENSORS; s++) {
+            if (required[s] && timestamps[s][(int) ((counts[s] - 1) & (HISTORY - 1))] < gridNs) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int oldestSlot(int sensor) {
+        return (int) (Math.max(0, counts[sensor] - HISTORY) & (HISTORY - 1));
+    }
+
+    /**
+     * 在一个传感器的样本之间线性插值，早于保留的最旧样本时取最旧样本
+     *
+     * @param sensor 传感器下标
+     * @param gridNs 插值时间（纳秒），不晚于该传感器的最新样本
+     * @param out 3轴结果
+     */
+    private void interpolate(int sensor, long gridNs, float[] out) {
+        if (!required[sensor]) {
+            out[0] = 0;
+            out[1] = 0;
+            out[2] = 0;
+            return;
+        }
+        long[] times = timestamps[sensor];
+        float[] data = values[sensor];
+        long oldest = Math.max(0, counts[sensor] - HISTORY);
+        long index = counts[sensor] - 1;
+        while (index > oldest && times[(int) ((index - 1) & (HISTORY - 1))] >= gridNs) {
+            index--;
+        }
+        int after = (int) (index & (HISTORY - 1));
+        if (index == oldest || times[after] == gridNs) {
+            System.arraycopy(data, after * 3, out, 0, 3);
+            return;
+        }
+        int before = (int) ((index - 1) & (HISTORY - 1));
+        float weight = (float) (gridNs - times[before]) / (times[after] - times[before]);
+        for (int axis = 0; axis < 3; axis++) {
+            float v0 = data[before * 3 + axis];
+            out[axis] = v0 + (data[after * 3 + axis] - v0) * weight;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.util.Log;
 
+import com.example.pdr_locator.algorithm.SensorRequirement;
 import com.example.pdr_locator.model.SensorType;
 
 import java.lang.reflect.InvocationTargetException;
@@ -29,6 +30,7 @@ public class SensorConfig {
     private List<SensorType> sensorTypes = new ArrayList<>();  // 需要启用的传感器类型
     private Map<SensorType, Integer> sensorClassMap = new HashMap<>();  // SensorType和手机的Sensor类型映射
     private SensorManager sensorManager;  // 手机的传感器管理器，接收得到
+    private int sampleRateHz = SensorRequirement.RAW_RATE;  // 注册传感器的采样率，RAW_RATE表示最快频率
 
     /**
      * 构造函数
@@ -45,6 +47,25 @@ public class SensorConfig {
         sensorClassMap.put(SensorType.MAGNETOMETER, Sensor.TYPE_MAGNETIC_FIELD);
     }
 
+    /**
+     * 注册传感器时使用的采样周期。传感器达不到要求的频率时使用它的最快频率，由重采样补齐
+     *
+     * @param sensor 传感器
+     * @return 采样周期（微秒），不要求采样率时为SENSOR_DELAY_FASTEST
+     */
+    public int getSamplingPeriodUs(Sensor sensor) {
+        if (sampleRateHz == SensorRequirement.RAW_RATE) {
+            return SensorManager.SENSOR_DELAY_FASTEST;
+        }
+        int periodUs = 1_000_000 / sampleRateHz;
+        if (sensor.getMinDelay() > periodUs) {
+            Log.w("SensorConfig", sensor.getName() + " 最高" + 1_000_000 / sensor.getMinDelay()
+                    + "Hz，低于要求的" + sampleRateHz + "Hz");
+            return sensor.getMinDelay();
+        }
+        return periodUs;
+    }
+
     /**
      * 根据需要启用的传感器类型创建对应的传感器对象
      *
@@ -60,12 +81,15 @@ public class SensorConfig {
                         case Sensor.TYPE_ACCELEROMETER:
                             ISensor accelerometer = new AccelerometerSensor(sensorManager);
                             sensors.add(accelerometer);
+                            break;
                         case Sensor.TYPE_GYROSCOPE:
                             ISensor gyroscope = new GyroscopeSensor(sensorManager);
                             sensors.add(gyroscope);
+                            break;
                         case Sensor.TYPE_MAGNETIC_FIELD:
                             ISensor magnetic = new MagnetometerSensor(sensorManager);
                             sensors.add(magnetic);
+                            break;
                     }
                 }
             } catch (NullPointerException e) {
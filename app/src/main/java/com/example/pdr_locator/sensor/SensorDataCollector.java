@@ -5,25 +5,33 @@ import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
+import android.hardware.SensorEventListener2;
 import android.hardware.SensorManager;
 import android.os.Environment;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.pdr_locator.R;
-import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.algorithm.SensorRequirement;
 import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.record.ImuRecorder;
+import com.example.pdr_locator.utils.BackpressurePolicy;
+import com.example.pdr_locator.utils.SensorSampleStore;
 import com.example.pdr_locator.utils.SlidingWindowManager;
+import com.example.pdr_locator.utils.WaitStrategy;
+import com.example.pdr_locator.utils.WindowSpec;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,37 +43,63 @@ import java.util.List;
 /**
  * 传感器数据采集器类，用于注册、监听传感器，并记录存储传感器数据
  */
-public class SensorDataCollector implements SensorEventListener {
+public class SensorDataCollector implements SensorEventListener2 {
+    public static final String WINDOWING_COUNT = "count";  // 按样本数划分窗口
+    public static final String WINDOWING_TIME = "time";  // 按时间划分窗口并重采样
+    private static final int DEFAULT_BATCH_RATE_HZ = 50;  // 批量模式且不重采样时的采样率，与模型的20ms采样周期一致
+    private static final long FLUSH_TIMEOUT_MS = 1000;  // 停止时等待传感器FIFO清空的最长时间
     private final List<SensorType> sensorTypes; // 需要启用的传感器的类型
     private final List<ISensor> sensorList; // 启用的传感器列表
     private final SensorManager sensorManager; // 手机自带的传感器管理器
-    public final SlidingWindowManager slidingWindowManager; // 滑动窗口管理器工具，用于生成消息队列任务
-    private long timestamp; // 最新任务时间戳
-    private float[] latestAccelerometerData; // 最新的加速度计任务
-    private float[] latestGyroscopeData; // 最新的陀螺仪数据
-    private float[] latestMagnetometerData; // 最新的磁力计数据
+    public final SensorSampleStore sampleStore; // 样本存储，各种窗口划分共享同一份数据
+    public final SlidingWindowManager slidingWindowManager; // 按全局配置划分窗口的任务流，用于生成消息队列任务
+    private final SensorIngest ingest; // 事件融合（或重采样）、写入样本存储和记录，只在采集线程中使用
     private String directoryName = "SensorData";
     private String fileName = "sensor_data.csv";
     private boolean append = true;
-    private FileWriter fileWriter;
-    private List<String> bufferList = new ArrayList<>();
-    private Handler handler;
-    private Runnable sensorRunnable;
+    private final ImuRecorder recorder; // 异步记录器，写文件在它自己的线程中进行，为null时不记录
+    private HandlerThread sensorThread; // 采集线程，传感器回调和数据融合都在这里，不占用主线程
+    private Handler sensorHandler; // 采集线程的Handler，注册传感器时传入
+    private final boolean batching; // 是否使用传感器FIFO批量上报，后台长时间定位时减少唤醒
+    private final SensorConfig config; // 传感器配置，按协商的采样率给出注册周期
+    private final int maxReportLatencyUs; // 批量模式的最大上报延迟（微秒），事件在传感器FIFO中最多缓存这么久
+    private final SensorDeliveryStats deliveryStats = new SensorDeliveryStats(); // 唤醒次数和延迟统计，只在采集线程中使用
+    private int registeredSensors; // 已注册的传感器数
+    private int nonWakeUpSensors; // 批量模式下没有唤醒版本、以非唤醒方式注册的传感器数
+    private final PowerManager.WakeLock wakeLock; // 批量模式下有非唤醒传感器时持有，防止系统休眠后FIFO溢出丢失事件
+    private int pendingFlushes; // 停止时还未完成FIFO清空的传感器数，只在采集线程中使用
+    private HandlerThread stoppingThread; // 等待FIFO清空的采集线程，只在采集线程中使用
+    private boolean finished; // 本次采集是否已经结束，只在采集线程中使用
 
     /**
      * 构造函数
      *
      * @param context 应用上下文信息
-     * @param sensorTypes 需要启用的传感器类型
+     * @param requirement 算法对传感器数据的要求
+     * @param recorder 异步记录器，为null时不记录，停止采集时关闭
      */
-    public SensorDataCollector(Context context, List<SensorType> sensorTypes, FileWriter fileWriter){
-        this.sensorTypes = sensorTypes;
-        this.fileWriter = fileWriter;
+    public SensorDataCollector(Context context, SensorRequirement requirement, ImuRecorder recorder){
+        this(context, Collections.singletonList(requirement), recorder);
+    }
+
+    /**
+     * 构造函数。传感器取各要求的并集，采样率取满足所有要求的最低频率并重采样到该频率，
+     * 第一个要求的窗口划分方式作为slidingWindowManager，其余的窗口划分方式通过getWindowManager()获取
+     *
+     * @param context 应用上下文信息
+     * @param requirements 各算法对传感器数据的要求，至少一个
+     * @param recorder 异步记录器，为null时不记录，停止采集时关闭
+     */
+    public SensorDataCollector(Context context, List<SensorRequirement> requirements, ImuRecorder recorder){
+        this.sensorTypes = SensorRequirement.mergeSensorTypes(requirements);
+        this.recorder = recorder;
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-        SensorConfig config = new SensorConfig(context, sensorManager);
+        this.config = new SensorConfig(context, sensorManager);
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "PDR_Locator:SensorCollector");
+        wakeLock.setReferenceCounted(false);
         config.setSensorTypes(sensorTypes);
         this.sensorList = config.createSensors();
-        handler = new Handler(Looper.getMainLooper());
 
         // 读取上下文中的全局配置参数windowSize和slideStep
         SharedPreferences sharedPref = context.getSharedPreferences("app_settings", Context.MODE_PRIVATE);
@@ -73,92 +107,290 @@ public class SensorDataCollector implements SensorEventListener {
         int windowSize = sharedPref.getInt(windowSizeKey, 50);
         String slideStepKey = context.getResources().getString(R.string.slide_step_key);
         int slideStep = sharedPref.getInt(slideStepKey, 10);
+        // 任务队列容量和队列满时的处理策略
+        String queueCapacityKey = context.getResources().getString(R.string.task_queue_capacity_key);
+        int queueCapacity = sharedPref.getInt(queueCapacityKey, SlidingWindowManager.DEFAULT_QUEUE_CAPACITY);
+        String backpressureKey = context.getResources().getString(R.string.backpressure_policy_key);
+        BackpressurePolicy policy = BackpressurePolicy.forName(
+                sharedPref.getString(backpressureKey, BackpressurePolicy.DROP_OLDEST.name()));
+        if (policy == BackpressurePolicy.BLOCK && !consumesWindows(requirements)) {
+            policy = BackpressurePolicy.DROP_OLDEST;  // 没有消费者取任务时BLOCK会使采集线程一直等待
+        }
+
+        // 重采样频率（Hz），全局配置优先，未配置时使用算法要求协商出的频率，0表示不重采样，按陀螺仪节拍输出
+        String resampleRateKey = context.getResources().getString(R.string.resample_rate_key);
+        int resampleRate = sharedPref.getInt(resampleRateKey, 0);
+        if (resampleRate == 0) {
+            resampleRate = SensorRequirement.negotiateRateHz(requirements);
+        }
+
+        // 批量模式：按模型需要的频率采样，事件在传感器FIFO中缓存后成批上报
+        String batchingKey = context.getResources().getString(R.string.sensor_batching_key);
+        this.batching = sharedPref.getBoolean(batchingKey, false);
+        String maxReportLatencyKey = context.getResources().getString(R.string.max_report_latency_key);
+        this.maxReportLatencyUs = sharedPref.getInt(maxReportLatencyKey, 1000) * 1000;
+        // 按重采样频率注册传感器，不重采样时以最快频率注册（批量模式下使用默认频率）
+        config.setSampleRateHz(resampleRate > 0 ? resampleRate
+                : batching ? DEFAULT_BATCH_RATE_HZ : SensorRequirement.RAW_RATE);
+        Log.i("SensorDataCollector", "传感器要求: " + requirements + ", 采样率: "
+                + (resampleRate > 0 ? resampleRate + "Hz" : "最快"));
 
-        slidingWindowManager = new SlidingWindowManager(windowSize, slideStep);
-        this.sensorRunnable = new Runnable() {
-            @Override
-            public void run() {
-                processSensorData();
-                handler.postDelayed(this, 5); // 5毫秒后再次执行
+        String waitStrategyKey = context.getResources().getString(R.string.wait_strategy_key);
+        WaitStrategy waitStrategy = WaitStrategy.forConfig(
+                sharedPref.getString(waitStrategyKey, WaitStrategy.PARK.name()));
+
+        // 窗口划分方式。算法声明了窗口时必须使用声明的窗口，否则窗口长度与模型输入不一致，首个窗口就会推理失败；
+        // 窗口参数的全局配置只用于没有声明窗口的要求（如只采集数据），按时间划分时windowSize为重采样后的样本数
+        String windowingModeKey = context.getResources().getString(R.string.windowing_mode_key);
+        boolean timeWindowing = WINDOWING_TIME.equals(sharedPref.getString(windowingModeKey, WINDOWING_COUNT));
+        WindowSpec declared = requirements.get(0).getWindowSpec();
+        WindowSpec spec;
+        if (declared != null) {
+            spec = declared;
+            if (sharedPref.contains(windowSizeKey) && windowSize != declared.getSamples()) {
+                Log.w("SensorDataCollector", "配置的窗口大小" + windowSize + "与算法要求的" + declared
+                        + "不一致，使用算法要求的窗口");
             }
-        };
+        } else if (timeWindowing) {
+            String durationKey = context.getResources().getString(R.string.window_duration_key);
+            String strideKey = context.getResources().getString(R.string.window_stride_key);
+            spec = WindowSpec.ofDuration(sharedPref.getLong(durationKey, 1000),
+                    sharedPref.getLong(strideKey, 200), windowSize);
+        } else {
+            spec = WindowSpec.ofCount(windowSize, slideStep);
+        }
+
+        List<WindowSpec> specs = new ArrayList<>();
+        specs.add(spec);
+        for (SensorRequirement requirement : requirements) {
+            WindowSpec extra = requirement.getWindowSpec();
+            if (extra != null && !specs.contains(extra)) {
+                specs.add(extra);
+            }
+        }
+        sampleStore = new SensorSampleStore(specs, queueCapacity, policy, waitStrategy);
+        slidingWindowManager = sampleStore.getStream(0);
+        this.ingest = new SensorIngest(sampleStore, sensorTypes.contains(SensorType.MAGNETOMETER), resampleRate,
+                recorder);
+    }
+
+    private static boolean consumesWindows(List<SensorRequirement> requirements) {
+        for (SensorRequirement requirement : requirements) {
+            if (requirement.consumesWindows()) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * 获取一种窗口划分方式的任务流
+     *
+     * @param spec 窗口划分方式
+     * @return 任务流，构造时没有给出该划分方式时返回null
+     */
+    public SlidingWindowManager getWindowManager(WindowSpec spec) {
+        return sampleStore.getStream(spec);
     }
 
     /**
-     * 开始数据采集，注册需要的传感器
+     * 开始数据采集，启动采集线程并注册需要的传感器
      */
     public void startCollecting(){
-        // 初始化文件写入
+        finished = false;
+        sampleStore.resume();
+        sensorThread = new HandlerThread("SensorCollector", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+        // 采集线程处理完一批事件后进入空闲，统计一次唤醒
+        sensorThread.getLooper().getQueue().addIdleHandler(() -> {
+            deliveryStats.onIdle();
+            return true;
+        });
+        // 事件时间是开机以来的纳秒数，换算为与原先一致的毫秒时间戳
+        final long clockOffsetMs = System.currentTimeMillis() - SystemClock.elapsedRealtimeNanos() / 1_000_000;
+        sensorHandler.post(() -> {
+            ingest.reset(clockOffsetMs);
+            deliveryStats.reset(SystemClock.elapsedRealtimeNanos());
+        });
         registerSensors();
-        handler.post(sensorRunnable);
     }
 
     /**
-     * 停止采集，注销所有传感器
+     * 停止采集。批量模式下先清空传感器FIFO，缓存的事件处理完后再注销传感器、写出剩余数据并关闭文件，最后退出采集线程
      */
     public void stopCollecting(){
+        sampleStore.stop();  // 消费者即将停止取任务，BLOCK策略下采集线程不再等待空位，才能处理下面投递的消息
+        if (sensorThread == null) {
+            unregisterSensors();
+            return;
+        }
+        final HandlerThread thread = sensorThread;
+        Handler handler = sensorHandler;
+        sensorThread = null;
+        sensorHandler = null;
+        if (!batching || registeredSensors == 0) {
+            unregisterSensors();
+            handler.post(() -> finishCollecting(thread));
+            return;
+        }
+        handler.post(() -> {
+            pendingFlushes = registeredSensors;
+            stoppingThread = thread;
+            if (!sensorManager.flush(this)) {
+                finishCollecting(thread);
+            }
+        });
+        handler.postDelayed(() -> finishCollecting(thread), FLUSH_TIMEOUT_MS);  // FIFO清空没有按时完成时直接结束
+    }
+
+    /**
+     * 结束本次采集，在采集线程中执行，只执行一次
+     *
+     * @param thread 本次采集的线程，结束后退出
+     */
+    private void finishCollecting(HandlerThread thread) {
+        if (finished) {
+            return;
+        }
+        finished = true;
         unregisterSensors();
-        handler.removeCallbacks(sensorRunnable);
         try {
-            if (fileWriter != null) {
-                fileWriter.flush();
-                fileWriter.close();
+            if (recorder != null) {
+                recorder.close();  // 写出剩余数据，等待写文件线程结束
+                Log.i("SensorDataCollector", recorder.summary());
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        deliveryStats.onIdle();
+        Log.i("SensorDataCollector", "融合样本数: " + ingest.getSamples()
+                + ", 丢弃陀螺仪样本数: " + ingest.getDroppedGyroscopeSamples()
+                + ", " + (batching ? "批量上报" : "逐个上报") + ": "
+                + deliveryStats.summary(SystemClock.elapsedRealtimeNanos()));
+        thread.quitSafely();
     }
 
+    /**
+     * 注册需要的传感器。批量模式下优先使用唤醒传感器，系统休眠时FIFO快满会唤醒处理器上报，不会溢出；
+     * 有传感器只有非唤醒版本时，采集期间持有PARTIAL_WAKE_LOCK，防止休眠期间FIFO溢出丢失事件
+     */
     public void registerSensors() {
+        registeredSensors = 0;
+        nonWakeUpSensors = 0;
         for(ISensor s: sensorList){
             int type = s.getSensorType();
             switch (type){
                 case Sensor.TYPE_ACCELEROMETER:
                     if(s instanceof AccelerometerSensor) {
                         AccelerometerSensor as = (AccelerometerSensor) s;
-                        sensorManager.registerListener(this, as.accelerometer, SensorManager.SENSOR_DELAY_FASTEST);
+                        registerSensor(SensorType.ACCELEROMETER, as.accelerometer);
                     }
+                    break;
                 case Sensor.TYPE_GYROSCOPE:
                     if(s instanceof GyroscopeSensor){
                         GyroscopeSensor gs = (GyroscopeSensor)s;
-                        sensorManager.registerListener(this, gs.gyroscope, SensorManager.SENSOR_DELAY_FASTEST);
+                        registerSensor(SensorType.GYROSCOPE, gs.gyroscope);
                     }
+                    break;
                 case Sensor.TYPE_MAGNETIC_FIELD:
                     if(s instanceof MagnetometerSensor){
                         MagnetometerSensor ms = (MagnetometerSensor)s;
-                        sensorManager.registerListener(this, ms.magnetometer, SensorManager.SENSOR_DELAY_FASTEST);
+                        registerSensor(SensorType.MAGNETOMETER, ms.magnetometer);
                     }
+                    break;
+            }
+        }
+        if (nonWakeUpSensors > 0) {
+            wakeLock.acquire();
+            Log.i("SensorDataCollector", nonWakeUpSensors + "个传感器没有唤醒版本，采集期间持有唤醒锁");
+        }
+    }
+
+    /**
+     * 注册一个传感器，采样周期由协商的采样率决定，批量模式下再加上最大上报延迟，并优先使用唤醒传感器
+     *
+     * @param type 传感器类型
+     * @param sensor 传感器，手机没有该传感器时为null
+     */
+    private void registerSensor(SensorType type, Sensor sensor) {
+        if (sensor == null) {
+            return;
+        }
+        if (batching) {
+            Sensor wakeUp = sensorManager.getDefaultSensor(sensor.getType(), true);
+            if (wakeUp != null) {
+                sensor = wakeUp;
+            }
+        }
+        int samplingPeriodUs = config.getSamplingPeriodUs(sensor);
+        if (sensorHandler != null) {
+            // 在采集线程中设置，先于该传感器的任何事件执行
+            long samplingPeriodNs = samplingPeriodUs * 1000L;
+            sensorHandler.post(() -> deliveryStats.setSamplingPeriod(type, samplingPeriodNs));
+        }
+        boolean registered = batching
+                ? sensorManager.registerListener(this, sensor, samplingPeriodUs, maxReportLatencyUs, sensorHandler)
+                : sensorManager.registerListener(this, sensor, samplingPeriodUs, sensorHandler);
+        if (registered) {
+            registeredSensors++;
+            if (batching && sensor.getFifoMaxEventCount() == 0) {
+                Log.w("SensorDataCollector", sensor.getName() + " 不支持FIFO批量上报，事件会逐个上报");
+            }
+            if (batching && !sensor.isWakeUpSensor()) {
+                nonWakeUpSensors++;
             }
         }
     }
 
     public void unregisterSensors() {
         sensorManager.unregisterListener(this);
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
     }
 
 
     /**
-     * 传感器数据变化的回调函数
+     * 传感器数据变化的回调函数，在采集线程中执行。重采样时按硬件时间戳插值到固定频率，
+     * 否则陀螺仪样本与最近的加速度计样本配对后立即处理。event.values直接复制进预先分配的数组，不分配内存
      *
      * @param event the {@link android.hardware.SensorEvent SensorEvent}.
      */
     @Override
     public void onSensorChanged(SensorEvent event) {
-        timestamp = System.currentTimeMillis();
+        if (finished) {
+            return;
+        }
+        long latencyNs = SystemClock.elapsedRealtimeNanos() - event.timestamp;
         switch (event.sensor.getType()) {
             case Sensor.TYPE_ACCELEROMETER:
-                latestAccelerometerData = event.values.clone();
+                deliveryStats.onEvent(SensorType.ACCELEROMETER, event.timestamp, latencyNs);
+                ingest.onAccelerometer(event.timestamp, event.values);
                 break;
             case Sensor.TYPE_GYROSCOPE:
-                latestGyroscopeData = event.values.clone();
+                deliveryStats.onEvent(SensorType.GYROSCOPE, event.timestamp, latencyNs);
+                ingest.onGyroscope(event.timestamp, event.values);
                 break;
             case Sensor.TYPE_MAGNETIC_FIELD:
-                latestMagnetometerData = event.values.clone();
+                deliveryStats.onEvent(SensorType.MAGNETOMETER, event.timestamp, latencyNs);
+                ingest.onMagnetometer(event.timestamp, event.values);
                 break;
         }
     }
 
+    /**
+     * 传感器FIFO清空完成的回调函数，在采集线程中执行，所有传感器都完成后结束采集
+     *
+     * @param sensor 完成清空的传感器
+     */
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        if (!finished && --pendingFlushes <= 0) {
+            finishCollecting(stoppingThread);
+        }
+    }
+
     /**
      * 传感器精度变化时的回调函数
      *
@@ -170,55 +402,4 @@ public class SensorDataCollector implements SensorEventListener {
     public void onAccuracyChanged(Sensor sensor, int accuracy) {
 
     }
-
-    private void processSensorData() {
-
-        if(!sensorTypes.contains(SensorType.MAGNETOMETER)){
-            latestMagnetometerData = new float[]{0.0f, 0.0f, 0.0f};
-        }
-        // 检查是否所有传感器都有最新数据
-        if (latestAccelerometerData != null &&
-                latestGyroscopeData != null &&
-                latestMagnetometerData != null) {
-            // 整合数据
-            SensorData sensorData = new SensorData(
-                    timestamp,
-                    latestAccelerometerData,
-                    latestGyroscopeData,
-                    latestMagnetometerData
-            );
-
-            // 添加到滑动窗口管理器
-            slidingWindowManager.addData(sensorData);
-
-            // 存储数据到CSV文件中
-            String rowData = sensorData.buildRowData();
-
-            bufferList.add(rowData);
-            if(bufferList.size()>=10){
-                flushBuffer();
-            }
-
-            // 重置缓存
-            latestAccelerometerData = null;
-            latestGyroscopeData = null;
-            latestMagnetometerData = null;
-        }
-    }
-
-    /**
-     * IMU数据缓存存入CSV文件
-     */
-    private void flushBuffer() {
-        try {
-            for (String rowData : bufferList) {
-                Log.d("rowData", rowData);
-                fileWriter.write(rowData);
-            }
-            fileWriter.flush();
-            bufferList.clear();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
 }
@@ -0,0 +1,144 @@
+package com.example.pdr_locator.sensor;
+
+import com.example.pdr_locator.model.SensorType;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 传感器事件投递统计：采集线程被唤醒的次数、每次唤醒处理的事件数和端到端延迟（事件时间到回调时间）。
+ * 逐个投递时每个事件唤醒一次，批量投递时一次唤醒处理一批事件，用于比较两种注册方式的CPU开销。
+ * 给出采样周期的传感器还按事件时间戳的间隔估计丢失的事件数（如传感器FIFO溢出时被覆盖的事件）。
+ * 只能由采集线程调用
+ */
+public class SensorDeliveryStats {
+    private static final double GAP_FACTOR = 1.5;  // 相邻事件间隔超过采样周期的这个倍数时视为中间有事件丢失
+
+    private final long[] periodNs = new long[SensorType.values().length];  // 各传感器的采样周期，0表示未知，不估计丢失
+    private final long[] lastTimestampNs = new long[SensorType.values().length];  // 各传感器上一个事件的时间戳，0表示还没有事件
+    private long droppedEvents;  // 估计丢失的事件数
+    private long events;  // 累计事件数
+    private long deliveries;  // 累计唤醒次数，一次唤醒处理连续到达的一批事件
+    private int eventsInDelivery;  // 本次唤醒已处理的事件数
+    private int maxEventsPerDelivery;  // 一次唤醒处理的最多事件数
+    private long latencySumNs;  // 延迟总和（纳秒）
+    private long maxLatencyNs;  // 最大延迟（纳秒）
+    private long startNs;  // 开始统计的时间（纳秒）
+
+    /**
+     * 记录一个事件
+     *
+     * @param latencyNs 事件时间到处理时间的延迟（纳秒）
+     */
+    public void onEvent(long latencyNs) {
+        events++;
+        eventsInDelivery++;
+        latencySumNs += latencyNs;
+        maxLatencyNs = Math.max(maxLatencyNs, latencyNs);
+    }
+
+    /**
+     * 记录一个事件，并按与同一传感器上一个事件的时间戳间隔估计丢失的事件数
+     *
+     * @param type 传感器类型
+     * @param timestampNs 事件时间戳（纳秒）
+     * @param latencyNs 事件时间到处理时间的延迟（纳秒）
+     */
+    public void onEvent(SensorType type, long timestampNs, long latencyNs) {
+        onEvent(latencyNs);
+        int index = type.ordinal();
+        long last = lastTimestampNs[index];
+        lastTimestampNs[index] = timestampNs;
+        long period = periodNs[index];
+        if (last == 0 || period <= 0) {
+            return;
+        }
+        long gap = timestampNs - last;
+        if (gap > GAP_FACTOR * period) {
+            droppedEvents += Math.round((double) gap / period) - 1;
+        }
+    }
+
+    /**
+     * 设置传感器的采样周期，用于估计丢失的事件数，reset()不会清除
+     *
+     * @param type 传感器类型
+     * @param samplingPeriodNs 采样周期（纳秒），0表示未知（如以最快频率采集），不估计丢失
+     */
+    public void setSamplingPeriod(SensorType type, long samplingPeriodNs) {
+        periodNs[type.ordinal()] = samplingPeriodNs;
+    }
+
+    /**
+     * 采集线程处理完一批事件、进入空闲时调用，本批至少有一个事件时计一次唤醒
+     */
+    public void onIdle() {
+        if (eventsInDelivery == 0) {
+            return;
+        }
+        deliveries++;
+        maxEventsPerDelivery = Math.max(maxEventsPerDelivery, eventsInDelivery);
+        eventsInDelivery = 0;
+    }
+
+    /**
+     * 清空统计
+     *
+     * @param startNs 开始统计的时间（纳秒）
+     */
+    public void reset(long startNs) {
+        events = 0;
+        deliveries = 0;
+        eventsInDelivery = 0;
+        maxEventsPerDelivery = 0;
+        latencySumNs = 0;
+        maxLatencyNs = 0;
+        droppedEvents = 0;
+        Arrays.fill(lastTimestampNs, 0);
+        this.startNs = startNs;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getDeliveries() {
+        return deliveries;
+    }
+
+    public int getMaxEventsPerDelivery() {
+        return maxEventsPerDelivery;
+    }
+
+    /**
+     * @return 按时间戳间隔估计丢失的事件数
+     */
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    public long getMaxLatencyNs() {
+        return maxLatencyNs;
+    }
+
+    /**
+     * @return 平均延迟（纳秒），没有事件时为0
+     */
+    public long getMeanLatencyNs() {
+        return events == 0 ? 0 : latencySumNs / events;
+    }
+
+    /**
+     * 生成统计摘要
+     *
+     * @param nowNs 当前时间（纳秒），与reset()使用同一时钟
+     * @return 唤醒次数、每分钟唤醒次数、每次唤醒的事件数、延迟和估计丢失的事件数
+     */
+    public String summary(long nowNs) {
+        double minutes = Math.max(1, nowNs - startNs) / 60e9;
+        return String.format(Locale.US, "事件=%d, 唤醒=%d(%.1f次/分钟), 每次唤醒事件数=%.1f(最多%d), 延迟=%.1fms(最大%.1fms), "
+                        + "丢失=%d",
+                events, deliveries, deliveries / minutes, deliveries == 0 ? 0.0 : (double) events / deliveries,
+                maxEventsPerDelivery, getMeanLatencyNs() / 1e6, maxLatencyNs / 1e6, droppedEvents);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.pdr_locator.sensor;
+
+import com.example.pdr_locator.model.SensorData;
+
+/**
+ * 事件驱动的传感器数据融合。以陀螺仪样本为节拍，每个陀螺仪样本与时间上最近的加速度计样本配对，
+ * 磁力计取最新值，不依赖定时轮询，样本不会因轮询时机被丢弃或重复。
+ * 陀螺仪样本先挂起，等到时间不早于它的加速度计样本到达后，在前后两个加速度计样本中取较近的一个；
+ * 挂起期间又来了新的陀螺仪样本时，按已有的加速度计样本配对输出，延迟最多一个加速度计采样周期。
+ * 输出样本复用同一个对象，稳定运行时不分配内存。不依赖Android，只能由一个线程调用
+ */
+public class SensorFusion {
+    private final boolean magnetometerRequired;  // 是否需要磁力计数据，不需要时磁力计固定为0
+    private long clockOffsetMs;  // 传感器事件时间（纳秒）换算为输出时间戳（毫秒）的偏移
+
+    private final float[] previousAccelerometer = new float[3];  // 上一个加速度计样本
+    private long previousAccelerometerNs;  // 上一个加速度计样本的时间
+    private final float[] latestAccelerometer = new float[3];  // 最新的加速度计样本
+    private long latestAccelerometerNs;  // 最新的加速度计样本的时间
+    private int accelerometerCount;  // 已收到的加速度计样本数，最多记到2
+
+    private final float[] pendingGyroscope = new float[3];  // 等待配对的陀螺仪样本
+    private long pendingGyroscopeNs;  // 等待配对的陀螺仪样本的时间
+    private boolean hasPendingGyroscope;  // 是否有等待配对的陀螺仪样本
+
+    private final float[] latestMagnetometer = new float[3];  // 最新的磁力计数据
+    private boolean hasMagnetometer;  // 是否收到过磁力计数据
+
+    private final ISampleListener listener;  // 融合样本的接收者
+    private final SensorData frame;  // 复用的输出样本
+    private long fusedSamples;  // 输出的样本数
+    private long droppedGyroscopeSamples;  // 缺少加速度计或磁力计数据而丢弃的陀螺仪样本数
+
+    /**
+     * 构造函数
+     *
+     * @param magnetometerRequired 是否需要磁力计数据，需要时收到第一个磁力计样本前不输出
+     * @param clockOffsetMs 输出时间戳 = 事件时间 / 1e6 + clockOffsetMs
+     * @param listener 融合样本的接收者，收到的样本在回调返回后被复用
+     */
+    public SensorFusion(boolean magnetometerRequired, long clockOffsetMs, ISampleListener listener) {
+        this.magnetometerRequired = magnetometerRequired;
+        this.clockOffsetMs = clockOffsetMs;
+        this.listener = listener;
+        this.frame = new SensorData(0, new float[3], new float[3], new float[3]);
+    }
+
+    /**
+     * 收到加速度计样本，可能使挂起的陀螺仪样本完成配对
+     *
+     * @param timestampNs 事件时间（纳秒）
+     * @param values 3轴数据，不会被保留
+     * @return 输出的样本数，0或1
+     */
+    public int onAccelerometer(long timestampNs, float[] values) {
+        System.arraycopy(latestAccelerometer, 0, previousAccelerometer, 0, 3);
+        previousAccelerometerNs = latestAccelerometerNs;
+        System.arraycopy(values, 0, latestAccelerometer, 0, 3);
+        latestAccelerometerNs = timestampNs;
+        if (accelerometerCount < 2) {
+            accelerometerCount++;
+        }
+        if (hasPendingGyroscope && timestampNs >= pendingGyroscopeNs) {
+            return emitPending();
+        }
+        return 0;
+    }
+
+    /**
+     * 收到陀螺仪样本。加速度计已经越过它的时间时立即配对，否则挂起，之前挂起的样本按已有数据配对输出
+     *
+     * @param timestampNs 事件时间（纳秒）
+     * @param values 3轴数据，不会被保留
+     * @return 输出的样本数，0或1
+     */
+    public int onGyroscope(long timestampNs, float[] values) {
+        int fused = 0;
+        if (hasPendingGyroscope) {
+            fused = emitPending();
+        }
+        System.arraycopy(values, 0, pendingGyroscope, 0, 3);
+        pendingGyroscopeNs = timestampNs;
+        hasPendingGyroscope = true;
+        // 时间戳乱序时两个样本可能同时可配对，本次只输出一个，另一个在下一个加速度计样本到达时输出
+        if (fused == 0 && accelerometerCount > 0 && latestAccelerometerNs >= timestampNs) {
+            fused = emitPending();
+        }
+        return fused;
+    }
+
+    /**
+     * 收到磁力计样本，磁力计采样率较低，只保留最新值
+     *
+     * @param timestampNs 事件时间（纳秒）
+     * @param values 3轴数据，不会被保留
+     */
+    public void onMagnetometer(long timestampNs, float[] values) {
+        if (!magnetometerRequired) {
+            return;
+        }
+        System.arraycopy(values, 0, latestMagnetometer, 0, 3);
+        hasMagnetometer = true;
+    }
+
+    /**
+     * 清空缓存的样本，重新开始采集时调用
+     *
+     * @param clockOffsetMs 新的时间偏移
+     */
+    public void reset(long clockOffsetMs) {
+        this.clockOffsetMs = clockOffsetMs;
+        accelerometerCount = 0;
+        hasPendingGyroscope = false;
+        hasMagnetometer = false;
+        fusedSamples = 0;
+        droppedGyroscopeSamples = 0;
+    }
+
+    /**
+     * @return 输出的样本数
+     */
+    public long getFusedSamples() {
+        return fusedSamples;
+    }
+
+    /**
+     * @return 缺少加速度计或磁力计数据而丢弃的陀螺仪样本数
+     */
+    public long getDroppedGyroscopeSamples() {
+        return droppedGyroscopeSamples;
+    }
+
+    /**
+     * 挂起的陀螺仪样本与最近的加速度计样本配对后输出
+     */
+    private int emitPending() {
+        hasPendingGyroscope = false;
+        if (accelerometerCount == 0 || (magnetometerRequired && !hasMagnetometer)) {
+            droppedGyroscopeSamples++;
+            return 0;
+        }
+        float[] accelerometer = latestAccelerometer;
+        if (accelerometerCount > 1 && Math.abs(previousAccelerometerNs - pendingGyroscopeNs)
+                < Math.abs(latestAccelerometerNs - pendingGyroscopeNs)) {
+            accelerometer = previousAccelerometer;
+        }
+        System.arraycopy(accelerometer, 0, frame.getAccelerometerData(), 0, 3);
+        System.arraycopy(pendingGyroscope, 0, frame.getGyroscopeData(), 0, 3);
+        System.arraycopy(latestMagnetometer, 0, frame.getMagnetometerData(), 0, 3);
+        frame.setTimestamp(pendingGyroscopeNs / 1_000_000 + clockOffsetMs);
+        fusedSamples++;
+        listener.onSample(frame);
+        return 1;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.pdr_locator.sensor;
+
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.record.ImuRecorder;
+import com.example.pdr_locator.utils.SensorSampleStore;
+
+/**
+ * 传感器数据接入：传感器事件经融合（或重采样）得到样本，写入样本存储并交给记录器。
+ * 各传感器的最新值保存在融合器预先分配的数组中，样本对象复用，记录器把CSV行追加到复用的缓冲区，
+ * 稳定运行时每个事件不分配内存。不依赖Android，只能由采集线程调用
+ */
+public class SensorIngest implements ISampleListener {
+    private final SensorSampleStore sampleStore;  // 样本存储
+    private final SensorFusion fusion;  // 以陀螺仪为节拍的融合，重采样时不使用
+    private final ImuResampler resampler;  // 固定频率重采样，不重采样时为null
+    private final ImuRecorder recorder;  // 异步记录器，为null时不记录
+
+    /**
+     * 构造函数
+     *
+     * @param sampleStore 样本存储
+     * @param magnetometerRequired 是否需要磁力计数据
+     * @param resampleRateHz 重采样频率，0表示不重采样
+     * @param recorder 异步记录器，为null时不记录
+     */
+    public SensorIngest(SensorSampleStore sampleStore, boolean magnetometerRequired, int resampleRateHz,
+                        ImuRecorder recorder) {
+        this.sampleStore = sampleStore;
+        this.fusion = new SensorFusion(magnetometerRequired, 0, this);
+        this.resampler = resampleRateHz > 0 ? new ImuResampler(resampleRateHz, magnetometerRequired, 0, this) : null;
+        this.recorder = recorder;
+    }
+
+    /**
+     * @param timestampNs 事件时间（纳秒）
+     * @param values 3轴数据，不会被保留
+     */
+    public void onAccelerometer(long timestampNs, float[] values) {
+        if (resampler != null) {
+            resampler.onSensorSample(ImuResampler.ACCELEROMETER, timestampNs, values);
+        } else {
+            fusion.onAccelerometer(timestampNs, values);
+        }
+    }
+
+    /**
+     * @param timestampNs 事件时间（纳秒）
+     * @param values 3轴数据，不会被保留
+     */
+    public void onGyroscope(long timestampNs, float[] values) {
+        if (resampler != null) {
+            resampler.onSensorSample(ImuResampler.GYROSCOPE, timestampNs, values);
+        } else {
+            fusion.onGyroscope(timestampNs, values);
+        }
+    }
+
+    /**
+     * @param timestampNs 事件时间（纳秒）
+     * @param values 3轴数据，不会被保留
+     */
+    public void onMagnetometer(long timestampNs, float[] values) {
+        if (resampler != null) {
+            resampler.onSensorSample(ImuResampler.MAGNETOMETER, timestampNs, values);
+        } else {
+            fusion.onMagnetometer(timestampNs, values);
+        }
+    }
+
+    /**
+     * 处理一个融合后的样本：写入样本存储并交给记录器
+     *
+     * @param data 样本，返回后被复用
+     */
+    @Override
+    public void onSample(SensorData data) {
+        sampleStore.addData(data);
+        if (recorder != null) {
+            recorder.record(data);
+        }
+    }
+
+    /**
+     * 清空融合和重采样的缓存，重新开始采集时调用
+     *
+     * @param clockOffsetMs 传感器事件时间换算为毫秒时间戳的偏移
+     */
+    public void reset(long clockOffsetMs) {
+        fusion.reset(clockOffsetMs);
+        if (resampler != null) {
+            resampler.reset(clockOffsetMs);
+        }
+    }
+
+    /**
+     * @return 写入样本存储的样本数
+     */
+    public long getSamples() {
+        return resampler != null ? resampler.getEmittedFrames() : fusion.getFusedSamples();
+    }
+
+    /**
+     * @return 缺少加速度计或磁力计数据而丢弃的陀螺仪样本数，重采样时为0
+     */
+    public long getDroppedGyroscopeSamples() {
+        return resampler != null ? 0 : fusion.getDroppedGyroscopeSamples();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.pdr_locator.utils;
+
+/**
+ * 任务队列满时的处理策略，决定推理跟不上采集时牺牲内存、延迟还是数据
+ */
+public enum BackpressurePolicy {
+    /**
+     * 阻塞生产者直到队列有空位，每次最多等待200ms（SlidingWindowManager.MAX_BLOCK_NS），超时后丢弃最旧的窗口。
+     * 实时采集时阻塞的是传感器HandlerThread，等待期间传感器事件的分发被推迟，只适合离线回放等场景
+     */
+    BLOCK,
+    /**
+     * 丢弃队列中最旧的窗口，保留最近queueCapacity个窗口
+     */
+    DROP_OLDEST,
+    /**
+     * 丢弃队列中所有未处理的窗口，只保留最新的一个，定位结果的延迟最小
+     */
+    KEEP_LATEST;
+
+    /**
+     * 根据配置名获取策略
+     *
+     * @param name 策略名，如DROP_OLDEST
+     * @return 对应的策略，名称无效时返回DROP_OLDEST
+     */
+    public static BackpressurePolicy forName(String name) {
+        for (BackpressurePolicy policy : values()) {
+            if (policy.name().equals(name)) {
+                return policy;
+            }
+        }
+        return DROP_OLDEST;
+    }
+}
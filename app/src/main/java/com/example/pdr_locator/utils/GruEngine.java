@@ -0,0 +1,332 @@
+package com.example.pdr_locator.utils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * 纯Java实现的GRU前向推理，不依赖Android和ONNX Runtime，可在普通JVM上运行。
+ * 权重由tools/export_gru_weights.py从gru.onnx导出，计算与ONNX的GRU算子（linear_before_reset=1，单向）一致：
+ * <pre>
+ * z = sigmoid(Wz·x + Wbz + Rz·h + Rbz)
+ * r = sigmoid(Wr·x + Wbr + Rr·h + Rbr)
+ * n = tanh(Wn·x + Wbn + r * (Rn·h + Rbn))
+ * h = (1 - z) * n + z * h
+ * </pre>
+ * 多层GRU逐时间步计算，最后一个时间步最后一层的隐状态依次经过各全连接层得到输出。
+ * 所有中间缓冲区在构造时分配，推理过程中不产生任何对象分配。实例不是线程安全的，
+ * 多线程推理时每个线程用GruEngine(GruEngine, int)创建自己的实例，共享只读的权重
+ */
+public class GruEngine {
+    private static final int MAGIC = 0x57555247;  // 文件头'GRUW'
+    private static final int VERSION = 1;  // 文件格式版本
+
+    private final int layers;  // GRU层数
+    private final int inputSize;  // 每个时间步的输入维度
+    private final int hiddenSize;  // 隐状态维度
+    private final float[][] w;  // 各层输入权重[3H * in]，门顺序z, r, n
+    private final float[][] r;  // 各层循环权重[3H * H]
+    private final float[][] b;  // 各层偏置[6H]，前3H为Wb，后3H为Rb
+    private final float[][] denseW;  // 各全连接层权重[out * in]
+    private final float[][] denseB;  // 各全连接层偏置[out]
+    private final int[] denseOut;  // 各全连接层输出维度
+    private final int[] denseIn;  // 各全连接层输入维度
+
+    private final float[][] h;  // 各层当前隐状态[H]
+    private final float[] gx;  // 输入部分的门值[3H]
+    private final float[] gh;  // 循环部分的门值[3H]
+    private final float[][] denseBuffers;  // 各全连接层的输出缓冲区
+    private final float[] stepInput;  // 第0层单个时间步的输入[inputSize]
+    private final float[] windowBuffer;  // 单个窗口的输入缓冲区，供runInference(double[])使用
+    private final FloatBuffer windowView;  // windowBuffer的缓冲区视图
+
+    /**
+     * 构造函数，读取export_gru_weights.py导出的权重
+     *
+     * @param in 权重数据流，读取完毕后不关闭
+     * @param seqLen 每个窗口的时间步数，用于分配runInference(double[])的输入缓冲区
+     * @throws IOException 读取失败或文件格式不符时抛出
+     */
+    public GruEngine(InputStream in, int seqLen) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] header = new byte[20];
+        data.readFully(header);
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        if (headerBuffer.getInt() != MAGIC || headerBuffer.getInt() != VERSION) {
+            throw new IOException("不是GRU权重文件或版本不支持");
+        }
+        layers = headerBuffer.getInt();
+        inputSize = headerBuffer.getInt();
+        hiddenSize = headerBuffer.getInt();
+
+        w = new float[layers][];
+        r = new float[layers][];
+        b = new float[layers][];
+        for (int k = 0; k < layers; k++) {
+            int layerInput = k == 0 ? inputSize : hiddenSize;
+            w[k] = readFloats(data, 3 * hiddenSize * layerInput);
+            r[k] = readFloats(data, 3 * hiddenSize * hiddenSize);
+            b[k] = readFloats(data, 6 * hiddenSize);
+        }
+
+        int denseLayers = readInts(data, 1)[0];
+        denseW = new float[denseLayers][];
+        denseB = new float[denseLayers][];
+        denseOut = new int[denseLayers];
+        denseIn = new int[denseLayers];
+        denseBuffers = new float[denseLayers][];
+        int previous = hiddenSize;
+        for (int k = 0; k < denseLayers; k++) {
+            int[] dims = readInts(data, 2);
+            if (dims[1] != previous) {
+                throw new IOException("第" + k + "个全连接层的输入维度" + dims[1] + "与上一层输出" + previous + "不一致");
+            }
+            denseOut[k] = dims[0];
+            denseIn[k] = dims[1];
+            denseW[k] = readFloats(data, dims[0] * dims[1]);
+            denseB[k] = readFloats(data, dims[0]);
+            denseBuffers[k] = new float[dims[0]];
+            previous = dims[0];
+        }
+
+        h = new float[layers][hiddenSize];
+        gx = new float[3 * hiddenSize];
+        gh = new float[3 * hiddenSize];
+        stepInput = new float[inputSize];
+        windowBuffer = new float[seqLen * inputSize];
+        windowView = FloatBuffer.wrap(windowBuffer);
+    }
+
+    /**
+     * 构造函数，与已有实例共享权重数组（只读），隐状态和中间缓冲区独立分配，
+     * 两个实例可以在不同线程中同时推理，权重只在内存中保留一份
+     *
+     * @param shared 提供权重的实例
+     * @param seqLen 每个窗口的时间步数，用于分配runInference(double[])的输入缓冲区
+     */
+    public GruEngine(GruEngine shared, int seqLen) {
+        layers = shared.layers;
+        inputSize = shared.inputSize;
+        hiddenSize = shared.hiddenSize;
+        w = shared.w;
+        r = shared.r;
+        b = shared.b;
+        denseW = shared.denseW;
+        denseB = shared.denseB;
+        denseOut = shared.denseOut;
+        denseIn = shared.denseIn;
+
+        denseBuffers = new float[denseOut.length][];
+        for (int k = 0; k < denseOut.length; k++) {
+            denseBuffers[k] = new float[denseOut[k]];
+        }
+        h = new float[layers][hiddenSize];
+        gx = new float[3 * hiddenSize];
+        gh = new float[3 * hiddenSize];
+        stepInput = new float[inputSize];
+        windowBuffer = new float[seqLen * inputSize];
+        windowView = FloatBuffer.wrap(windowBuffer);
+    }
+
+    /**
+     * 执行推理，与OnnxInferenceHelper.runInference()的输入输出约定一致
+     *
+     * @param input 一个窗口的输入，按[时间步][通道]顺序展开
+     * @return 推理输出，新分配的数组
+     */
+    public float[] runInference(double[] input) {
+        return runInference(input, new float[getOutputSize()]);
+    }
+
+    /**
+     * 执行推理，输出写入调用方提供的数组，不产生任何分配
+     *
+     * @param input 一个窗口的输入，按[时间步][通道]顺序展开，长度为构造时seqLen * inputSize
+     * @param result 存放结果的数组，长度为getOutputSize()
+     * @return 传入的result
+     */
+    public float[] runInference(double[] input, float[] result) {
+        if (input.length != windowBuffer.length) {
+            throw new IllegalArgumentException("输入长度应为" + windowBuffer.length + "，实际为" + input.length);
+        }
+        for (int i = 0; i < input.length; i++) {
+            windowBuffer[i] = (float) input[i];
+        }
+        float[] output = runWindow(windowView, 0, windowBuffer.length / inputSize);
+        System.arraycopy(output, 0, result, 0, output.length);
+        return result;
+    }
+
+    /**
+     * 对batch个窗口依次推理，不产生任何分配
+     *
+     * @param input 输入缓冲区，从position开始依次为各窗口，每个窗口按[时间步][通道]顺序展开，position不变
+     * @param seqLen 每个窗口的时间步数
+     * @param batch 窗口数
+     * @param output 输出缓冲区，从position开始依次写入各窗口的输出
+     */
+    public void forward(FloatBuffer input, int seqLen, int batch, FloatBuffer output) {
+        int windowLength = seqLen * inputSize;
+        for (int n = 0; n < batch; n++) {
+            output.put(runWindow(input, input.position() + n * windowLength, seqLen));
+        }
+    }
+
+    /**
+     * 清零各层隐状态，流式推理开始前调用
+     */
+    public void resetState() {
+        for (float[] state : h) {
+            Arrays.fill(state, 0.0f);
+        }
+    }
+
+    /**
+     * 流式推理：从当前隐状态开始输入seqLen个时间步，隐状态保留到下一次调用，
+     * 与gru_stream.onnx每次输入滑动步长个样本、h0_k/hn_k在两次调用之间传递的约定一致。
+     * resetState()后分块输入一个窗口的全部样本，最后一块的输出与runInference()对整个窗口的输出相同
+     *
+     * @param input 输入缓冲区，从position开始按[时间步][通道]顺序展开，position不变
+     * @param seqLen 本次输入的时间步数
+     * @param result 存放结果的数组，长度为getOutputSize()
+     * @return 传入的result
+     */
+    public float[] stream(FloatBuffer input, int seqLen, float[] result) {
+        advance(input, input.position(), seqLen);
+        float[] output = dense();
+        System.arraycopy(output, 0, result, 0, output.length);
+        return result;
+    }
+
+    /**
+     * 从零隐状态开始对一个窗口推理
+     *
+     * @param input 输入缓冲区
+     * @param offset 窗口在缓冲区中的起始下标
+     * @param seqLen 时间步数
+     * @return 输出，为内部缓冲区，在下一次推理前有效
+     */
+    private float[] runWindow(FloatBuffer input, int offset, int seqLen) {
+        resetState();
+        advance(input, offset, seqLen);
+        return dense();
+    }
+
+    /**
+     * 从当前隐状态开始依次计算seqLen个时间步
+     *
+     * @param input 输入缓冲区
+     * @param offset 第一个时间步在缓冲区中的起始下标
+     * @param seqLen 时间步数
+     */
+    private void advance(FloatBuffer input, int offset, int seqLen) {
+        for (int t = 0; t < seqLen; t++) {
+            int x = offset + t * inputSize;
+            for (int i = 0; i < inputSize; i++) {
+                stepInput[i] = input.get(x + i);
+            }
+            step(0, stepInput);
+            for (int k = 1; k < layers; k++) {
+                step(k, h[k - 1]);
+            }
+        }
+    }
+
+    /**
+     * 计算第k层的一个时间步，更新h[k]
+     *
+     * @param k 层号
+     * @param x 输入
+     */
+    private void step(int k, float[] x) {
+        int inSize = k == 0 ? inputSize : hiddenSize;
+        float[] wk = w[k];
+        float[] rk = r[k];
+        float[] bk = b[k];
+        float[] hk = h[k];
+        int gates = 3 * hiddenSize;
+        for (int g = 0; g < gates; g++) {
+            float sx = bk[g];
+            int row = g * inSize;
+            for (int i = 0; i < inSize; i++) {
+                sx += wk[row + i] * x[i];
+            }
+            gx[g] = sx;
+            float sh = bk[gates + g];
+            row = g * hiddenSize;
+            for (int i = 0; i < hiddenSize; i++) {
+                sh += rk[row + i] * hk[i];
+            }
+            gh[g] = sh;
+        }
+        // gx和gh已基于旧的h计算完毕，可以原地更新h
+        for (int i = 0; i < hiddenSize; i++) {
+            float z = sigmoid(gx[i] + gh[i]);
+            float rGate = sigmoid(gx[hiddenSize + i] + gh[hiddenSize + i]);
+            float n = (float) Math.tanh(gx[2 * hiddenSize + i] + rGate * gh[2 * hiddenSize + i]);
+            hk[i] = (1.0f - z) * n + z * hk[i];
+        }
+    }
+
+    /**
+     * 最后一层隐状态依次经过各全连接层
+     *
+     * @return 最后一个全连接层的输出缓冲区
+     */
+    private float[] dense() {
+        float[] x = h[layers - 1];
+        for (int k = 0; k < denseW.length; k++) {
+            float[] y = denseBuffers[k];
+            float[] wk = denseW[k];
+            int in = denseIn[k];
+            for (int o = 0; o < denseOut[k]; o++) {
+                float s = denseB[k][o];
+                int row = o * in;
+                for (int i = 0; i < in; i++) {
+                    s += wk[row + i] * x[i];
+                }
+                y[o] = s;
+            }
+            x = y;
+        }
+        return x;
+    }
+
+    private static float sigmoid(float x) {
+        return (float) (1.0 / (1.0 + Math.exp(-x)));
+    }
+
+    private static float[] readFloats(DataInputStream data, int count) throws IOException {
+        byte[] bytes = new byte[count * 4];
+        data.readFully(bytes);
+        float[] values = new float[count];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+
+    private static int[] readInts(DataInputStream data, int count) throws IOException {
+        byte[] bytes = new byte[count * 4];
+        data.readFully(bytes);
+        int[] values = new int[count];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * @return 每个时间步的输入维度
+     */
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * @return 每个窗口的输出维度
+     */
+    public int getOutputSize() {
+        return denseOut.length == 0 ? hiddenSize : denseOut[denseOut.length - 1];
+    }
+}
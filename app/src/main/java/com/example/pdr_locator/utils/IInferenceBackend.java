@@ -0,0 +1,55 @@
+package com.example.pdr_locator.utils;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 推理后端接口。调用方通过getInputBuffer()按[窗口][时间步][通道]顺序写入输入，调用runDirect()得到输出，
+ * 输入输出缓冲区由后端持有并复用
+ */
+public interface IInferenceBackend {
+    /**
+     * 获取batch个窗口的输入缓冲区
+     *
+     * @param batch 窗口数，supportsBatch()为false时只能为1
+     * @return 输入缓冲区，position为0，limit为batch个窗口的长度
+     */
+    FloatBuffer getInputBuffer(int batch) throws Exception;
+
+    /**
+     * 对getInputBuffer(batch)写入的batch个窗口执行一次推理
+     *
+     * @param batch 窗口数
+     * @return 输出缓冲区，position为0，limit为batch个窗口的输出长度，在下一次推理前有效
+     */
+    FloatBuffer runDirect(int batch) throws Exception;
+
+    /**
+     * @return 是否支持一次推理多个窗口
+     */
+    boolean supportsBatch() throws Exception;
+
+    /**
+     * @return 模型是否已加载可用
+     */
+    boolean isLoaded();
+
+    /**
+     * @return 后端名称，如"onnx"、"torch_lite"
+     */
+    String getBackendName();
+
+    /**
+     * @return 模型就绪耗时（毫秒）
+     */
+    long getLoadTimeMs();
+
+    /**
+     * @return 推理耗时统计
+     */
+    InferenceStats getStats();
+
+    /**
+     * 释放模型资源
+     */
+    void close() throws Exception;
+}
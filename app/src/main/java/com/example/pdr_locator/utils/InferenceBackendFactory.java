@@ -0,0 +1,58 @@
+package com.example.pdr_locator.utils;
+
+import android.content.Context;
+
+/**
+ * 推理后端工厂类，根据模型文件扩展名创建对应的推理后端：
+ * .onnx使用ONNX Runtime，.ptl使用PyTorch Lite，.weights使用纯Java的GRU引擎。
+ * 模型加载失败（文件缺失或格式不对）时不替换为其他模型，否则以量化变体或torch后端名义测得的耗时、
+ * 内存和精度实际是FP32 ONNX模型的，由调用方根据isLoaded()报错
+ */
+public class InferenceBackendFactory {
+    public static final String ONNX = "onnx";  // ONNX Runtime后端配置名
+    public static final String TORCH = "torch";  // PyTorch Lite后端配置名
+    public static final String JAVA = "java";  // 纯Java GRU后端配置名
+
+    /**
+     * 创建推理后端
+     *
+     * @param context 上下文
+     * @param modelName assets中的模型文件名
+     * @param profile ORT Session配置，仅ONNX后端使用
+     * @param sampleShape 单个窗口的输入形状，不含batch维（ONNX后端从模型中读取）
+     * @param outputStride 单个窗口的输出元素个数，仅PyTorch后端使用
+     * @return 推理后端，模型加载失败时isLoaded()为false
+     */
+    public static IInferenceBackend create(Context context, String modelName, OrtSessionProfile profile,
+                                           long[] sampleShape, int outputStride) {
+        if (modelName.endsWith(".onnx")) {
+            return new OnnxInferenceHelper(context, modelName, profile);
+        }
+        if (modelName.endsWith(".pt") || modelName.endsWith(".ptl")) {
+            return new TorchLiteInferenceHelper(context, modelName, sampleShape, outputStride);
+        }
+        if (modelName.endsWith(".weights")) {
+            return new JavaGruInferenceHelper(context, modelName, (int) sampleShape[0]);
+        }
+        throw new IllegalArgumentException("Unknown model format: " + modelName);
+    }
+
+    /**
+     * 将模型文件名的扩展名替换为后端对应的扩展名，如gru.onnx在torch后端下为gru.ptl
+     *
+     * @param modelName 模型文件名
+     * @param backend 后端配置名，ONNX、TORCH或JAVA
+     * @return 对应后端的模型文件名
+     */
+    public static String modelNameFor(String modelName, String backend) {
+        int dot = modelName.lastIndexOf('.');
+        String baseName = dot < 0 ? modelName : modelName.substring(0, dot);
+        if (TORCH.equals(backend)) {
+            return baseName + ".ptl";
+        }
+        if (JAVA.equals(backend)) {
+            return baseName + ".weights";
+        }
+        return baseName + ".onnx";
+    }
+}
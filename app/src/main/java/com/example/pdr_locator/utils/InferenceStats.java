@@ -0,0 +1,77 @@
+package com.example.pdr_locator.utils;
+
+import android.util.Log;
+
+/**
+ * 推理耗时统计，记录首次、最近一次和平均推理耗时，每100次推理输出一次平均耗时
+ */
+public class InferenceStats {
+    private static final String TAG = "InferenceStats";
+    private final String name;  // 统计对象名称，用于日志
+    private long count;  // 累计推理次数
+    private long totalNs;  // 累计推理耗时（纳秒）
+    private long lastNs;  // 最近一次推理耗时（纳秒）
+    private long firstNs;  // 首次推理耗时（纳秒），包含推理引擎的首次运行开销
+
+    /**
+     * 构造函数
+     *
+     * @param name 统计对象名称，如"gru.onnx [low_latency]"
+     */
+    public InferenceStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 记录一次推理耗时
+     *
+     * @param elapsedNs 本次推理耗时（纳秒）
+     */
+    public void record(long elapsedNs) {
+        if (firstNs == 0) {
+            firstNs = elapsedNs;
+            Log.i(TAG, name + " 首次推理耗时: " + elapsedNs / 1e6 + " ms");
+        }
+        lastNs = elapsedNs;
+        totalNs += elapsedNs;
+        count++;
+        if (count % 100 == 0) {
+            Log.i(TAG, name + " 推理次数: " + count + ", 平均耗时: " + getAverageMs() + " ms");
+        }
+    }
+
+    /**
+     * 清空推理次数和耗时，预热推理结束后调用，使平均耗时只反映真实数据的推理。
+     * 首次推理耗时保留，它反映的是推理引擎的首次运行开销
+     */
+    public void reset() {
+        count = 0;
+        totalNs = 0;
+        lastNs = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return 首次推理耗时（毫秒），尚未推理时返回0
+     */
+    public double getFirstMs() {
+        return firstNs / 1e6;
+    }
+
+    /**
+     * @return 最近一次推理耗时（毫秒）
+     */
+    public double getLastMs() {
+        return lastNs / 1e6;
+    }
+
+    /**
+     * @return 平均推理耗时（毫秒），尚未推理时返回0
+     */
+    public double getAverageMs() {
+        return count == 0 ? 0.0 : totalNs / 1e6 / count;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.pdr_locator.utils;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+
+/**
+ * 纯Java推理后端，加载assets中由tools/export_gru_weights.py导出的GRU权重（如gru.weights），
+ * 用GruEngine计算。不依赖ONNX Runtime的本地库，模型就绪只需读取权重
+ */
+public class JavaGruInferenceHelper implements IInferenceBackend {
+    private static final String TAG = "JavaGruInference";
+
+    private final String modelName;  // 权重文件名
+    private final int seqLen;  // 每个窗口的时间步数
+    private final InferenceStats stats;  // 推理耗时统计
+    private GruEngine engine;  // 推理引擎
+    private long loadTimeMs;  // 权重加载耗时（毫秒）
+    private int batchCapacity;  // 缓冲区能容纳的窗口数
+    private FloatBuffer inputBuffer;  // 输入缓冲区[batchCapacity * seqLen * inputSize]
+    private FloatBuffer outputBuffer;  // 输出缓冲区[batchCapacity * outputSize]
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param modelName assets中的权重文件名
+     * @param seqLen 每个窗口的时间步数
+     */
+    public JavaGruInferenceHelper(Context context, String modelName, int seqLen) {
+        this.modelName = modelName;
+        this.seqLen = seqLen;
+        this.stats = new InferenceStats(modelName + " [java]");
+        long startNs = System.nanoTime();
+        long heapBefore = ModelLoader.usedHeap();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        try (InputStream in = new BufferedInputStream(context.getAssets().open(modelName))) {
+            long bytes = in.available();  // asset流的available()为剩余的全部长度
+            engine = new GruEngine(in, seqLen);
+            ModelLoader.logLoad(modelName, "java", bytes, startNs, heapBefore, nativeBefore);
+        } catch (Exception e) {
+            Log.e("model_load", "模型加载失败: " + modelName, e);
+        }
+        loadTimeMs = (System.nanoTime() - startNs) / 1_000_000;
+        Log.i(TAG, modelName + " 模型就绪耗时: " + loadTimeMs + " ms");
+    }
+
+    /**
+     * 使用已加载的推理引擎，不依赖Context，可在普通JVM中使用（如离线回放）。
+     * 多个实例需要同时推理时，每个实例传入用GruEngine(GruEngine, int)共享权重的引擎
+     *
+     * @param engine 推理引擎，只由本实例使用
+     * @param modelName 权重文件名，用于日志和错误信息
+     * @param seqLen 每个窗口的时间步数
+     */
+    public JavaGruInferenceHelper(GruEngine engine, String modelName, int seqLen) {
+        if (engine == null) {
+            throw new IllegalArgumentException("推理引擎不能为null: " + modelName);
+        }
+        this.modelName = modelName;
+        this.seqLen = seqLen;
+        this.stats = new InferenceStats(modelName + " [java]");
+        this.engine = engine;
+    }
+
+    /**
+     * 执行推理，与OnnxInferenceHelper.runInference()的约定一致
+     *
+     * @param accelGyroInput 一个窗口的输入，按[时间步][通道]顺序展开
+     * @return 推理输出
+     */
+    public float[] runInference(double[] accelGyroInput) {
+        if (engine == null) {
+            throw new IllegalStateException("模型未加载或已关闭: " + modelName);
+        }
+        long startNs = System.nanoTime();
+        try {
+            return engine.runInference(accelGyroInput);
+        } finally {
+            stats.record(System.nanoTime() - startNs);
+        }
+    }
+
+    @Override
+    public FloatBuffer getInputBuffer(int batch) {
+        ensureBatchCapacity(batch);
+        inputBuffer.clear();
+        inputBuffer.limit(batch * seqLen * engine.getInputSize());
+        return inputBuffer;
+    }
+
+    @Override
+    public FloatBuffer runDirect(int batch) {
+        ensureBatchCapacity(batch);
+        inputBuffer.clear();
+        outputBuffer.clear();
+        long startNs = System.nanoTime();
+        try {
+            engine.forward(inputBuffer, seqLen, batch, outputBuffer);
+        } finally {
+            stats.record(System.nanoTime() - startNs);
+        }
+        outputBuffer.flip();
+        return outputBuffer;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    /**
+     * 确保缓冲区能容纳batch个窗口，容量不足时重新分配
+     *
+     * @param batch 窗口数
+     */
+    private void ensureBatchCapacity(int batch) {
+        if (engine == null) {
+            throw new IllegalStateException("模型未加载或已关闭: " + modelName);
+        }
+        if (batch < 1) {
+            throw new IllegalArgumentException(modelName + " 不支持batch=" + batch);
+        }
+        if (batch > batchCapacity) {
+            inputBuffer = FloatBuffer.allocate(batch * seqLen * engine.getInputSize());
+            outputBuffer = FloatBuffer.allocate(batch * engine.getOutputSize());
+            batchCapacity = batch;
+        }
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return engine != null;
+    }
+
+    @Override
+    public String getBackendName() {
+        return "java";
+    }
+
+    @Override
+    public long getLoadTimeMs() {
+        return loadTimeMs;
+    }
+
+    @Override
+    public InferenceStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        engine = null;
+        inputBuffer = null;
+        outputBuffer = null;
+        batchCapacity = 0;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.pdr_locator.utils;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 模型文件加载工具类。
+ * ONNX模型通过内存映射读取，不在Java堆中复制整个模型：assets中未压缩的模型直接映射APK中的对应区域，
+ * 否则先解压到应用私有目录再映射该文件。
+ * TorchScript模型（.pt）的加载接口只接受文件路径，因此解压到应用私有目录后返回文件路径
+ */
+public class ModelLoader {
+    private static final String TAG = "ModelLoader";
+    private static final String MODEL_DIR = "models";  // 解压模型的目录，位于应用私有目录下
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;  // 解压时的拷贝缓冲区大小
+
+    /**
+     * 判断assets中是否有某个模型文件
+     *
+     * @param context 上下文
+     * @param modelName 模型文件名
+     * @return 存在时返回true
+     */
+    public static boolean hasAsset(Context context, String modelName) {
+        try (InputStream ignored = context.getAssets().open(modelName)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 以只读内存映射的方式读取assets中的模型
+     *
+     * @param context 上下文
+     * @param modelName assets中的模型文件名
+     * @return 映射模型内容的直接缓冲区
+     * @throws IOException 读取失败时抛出
+     */
+    public static MappedByteBuffer mapAsset(Context context, String modelName) throws IOException {
+        long startNs = System.nanoTime();
+        long heapBefore = usedHeap();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        MappedByteBuffer buffer;
+        try (AssetFileDescriptor afd = context.getAssets().openFd(modelName);
+             FileInputStream fis = new FileInputStream(afd.getFileDescriptor());
+             FileChannel channel = fis.getChannel()) {
+            // 未压缩的asset可以直接映射APK中的对应区域
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getDeclaredLength());
+        } catch (IOException e) {
+            // 压缩存储的asset无法获取文件描述符，解压后映射
+            buffer = mapFile(getModelFile(context, modelName));
+        }
+        logLoad(modelName, "mmap", buffer.capacity(), startNs, heapBefore, nativeBefore);
+        return buffer;
+    }
+
+    /**
+     * 获取assets中模型在应用私有目录下的文件，文件不存在或大小不一致时重新解压
+     *
+     * @param context 上下文
+     * @param modelName assets中的模型文件名
+     * @return 模型文件
+     * @throws IOException 解压失败时抛出
+     */
+    public static File getModelFile(Context context, String modelName) throws IOException {
+        long startNs = System.nanoTime();
+        long heapBefore = usedHeap();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        File dir = new File(context.getFilesDir(), MODEL_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建模型目录: " + dir);
+        }
+        File file = new File(dir, modelName);
+        long assetLength = getAssetLength(context, modelName);
+        if (file.exists() && (assetLength < 0 || file.length() == assetLength)) {
+            return file;
+        }
+        // 先写入临时文件再重命名，避免中途失败留下不完整的模型
+        File tmp = new File(dir, modelName + ".tmp");
+        try (InputStream is = context.getAssets().open(modelName);
+             OutputStream os = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("无法保存模型文件: " + file);
+        }
+        logLoad(modelName, "extract", file.length(), startNs, heapBefore, nativeBefore);
+        return file;
+    }
+
+    /**
+     * 以只读内存映射的方式读取模型文件
+     *
+     * @param file 模型文件
+     * @return 映射文件内容的直接缓冲区
+     * @throws IOException 读取失败时抛出
+     */
+    public static MappedByteBuffer mapFile(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file);
+             FileChannel channel = fis.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 获取asset的长度
+     *
+     * @return asset长度，压缩存储无法获取时返回-1
+     */
+    private static long getAssetLength(Context context, String modelName) {
+        try (AssetFileDescriptor afd = context.getAssets().openFd(modelName)) {
+            return afd.getLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return 当前Java堆占用（字节）
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 输出模型加载耗时和加载前后的Java堆、Native堆增量
+     */
+    static void logLoad(String modelName, String method, long bytes, long startNs, long heapBefore, long nativeBefore) {
+        Log.i(TAG, modelName + " [" + method + "] " + bytes / 1024 + " KB, 耗时: "
+                + (System.nanoTime() - startNs) / 1_000_000 + " ms, Java堆增量: "
+                + (usedHeap() - heapBefore) / 1024 + " KB, Native堆增量: "
+                + (Debug.getNativeHeapAllocatedSize() - nativeBefore) / 1024 + " KB");
+    }
+}
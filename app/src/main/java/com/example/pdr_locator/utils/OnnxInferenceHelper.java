@@ -6,34 +6,147 @@ package com.example.pdr_locator.utils;
  * @Time: 22:52
  */
 import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Debug;
 import ai.onnxruntime.*;
-import java.io.InputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import android.util.Log;
 
-public class OnnxInferenceHelper {
+/**
+ * ONNX模型推理工具类。一个对象持有一个长期存在的OrtSession，创建时加载一次模型，之后的每个窗口复用该Session，
+ * 使用完毕后调用close()释放Session。
+ * 除了传入double[]的runInference()外，还提供直接缓冲区模式：输入输出张量建立在预分配的直接FloatBuffer上，
+ * 调用方通过getInputBuffer()直接写入输入数据，再调用runDirect()，稳定运行时Java端不产生数组分配。
+ * 模型batch维为动态维度时，直接缓冲区模式可一次写入多个窗口，用一次推理得到所有窗口的输出
+ */
+public class OnnxInferenceHelper implements IInferenceBackend {
+    private static final String TAG = "OnnxInference";
+    private static final String CACHE_DIR = "ort_cache";  // 优化模型缓存目录，位于应用私有目录下
 
-    private OrtEnvironment env;
-    private OrtSession session;
+    protected OrtEnvironment env;  // ORT环境，进程内共享
+    protected OrtSession session;  // 推理Session
+    protected final String modelName;  // 模型文件名
+    private final OrtSessionProfile profile;  // Session配置
+    private boolean optimizedModelCached;  // 是否从优化模型缓存加载
+    private long loadTimeMs;  // 模型加载及Session创建耗时（毫秒）
+    private final InferenceStats stats;  // 推理耗时统计
 
+    private String inputName = "input";  // 模型输入名
+    private String outputName;  // 模型输出名
+    private long[] inputShape;  // 输入张量形状，batch维固定为1
+    private long[] outputShape;  // 输出张量形状，batch维固定为1
+    private int inputStride;  // 单个窗口的输入元素个数
+    private int outputStride;  // 单个窗口的输出元素个数
+    private boolean dynamicBatch;  // 模型的batch维是否为动态维度
+    private int batchCapacity;  // 直接缓冲区能容纳的窗口数
+    private FloatBuffer inputBuffer;  // 直接缓冲区模式的输入缓冲区[batchCapacity * inputStride]
+    private FloatBuffer outputBuffer;  // 直接缓冲区模式的输出缓冲区[batchCapacity * outputStride]
+    private OnnxTensor[] inputTensors;  // 下标为batch-1，建立在inputBuffer前batch个窗口上的输入张量，懒创建
+    private OnnxTensor[] outputTensors;  // 下标为batch-1，建立在outputBuffer上的固定输出张量，懒创建
+    private List<Map<String, OnnxTensor>> directInputs;  // 下标为batch-1的输入映射
+    private List<Map<String, OnnxTensor>> directOutputs;  // 下标为batch-1的固定输出映射
+
+    /**
+     * 构造函数，使用默认Session配置
+     *
+     * @param context 上下文
+     * @param modelName assets中的模型文件名
+     */
     public OnnxInferenceHelper(Context context, String modelName){
-        try{
-            // 加载模型到字节数组
-            InputStream is = context.getAssets().open(modelName);
-            byte[] modelBytes = new byte[is.available()];
-            is.read(modelBytes);
-            is.close();
+        this(context, modelName, OrtSessionProfile.DEFAULT);
+    }
 
-            // 初始化 ONNX Runtime 环境和 Session
-            env = OrtEnvironment.getEnvironment();
-            session = env.createSession(modelBytes);
+    /**
+     * 构造函数。首次使用某个配置加载模型时，将ORT优化后的模型保存到应用私有目录，
+     * 之后直接加载优化后的模型，跳过图优化以缩短冷启动时间
+     *
+     * @param context 上下文
+     * @param modelName assets中的模型文件名
+     * @param profile Session配置
+     */
+    public OnnxInferenceHelper(Context context, String modelName, OrtSessionProfile profile){
+        this.modelName = modelName;
+        this.profile = profile;
+        this.stats = new InferenceStats(modelName + " [" + profile.getName() + "]");
+        long startNs = System.nanoTime();
+        File cacheFile = getOptimizedModelFile(context, modelName, profile);
+        env = OrtEnvironment.getEnvironment();
+        if (cacheFile != null && cacheFile.exists()) {
+            // 缓存命中：加载已优化的模型
+            try (OrtSession.SessionOptions options = profile.createOptions()) {
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+                session = env.createSession(cacheFile.getAbsolutePath(), options);
+                optimizedModelCached = true;
+            } catch (Exception e) {
+                Log.w(TAG, "优化模型缓存加载失败，重新从assets加载: " + cacheFile, e);
+                cacheFile.delete();
+            }
         }
-        catch (Exception e){
-            Log.e("model_load", "模型加载失败");
+        if (session == null) {
+            long heapBefore = ModelLoader.usedHeap();
+            long nativeBefore = Debug.getNativeHeapAllocatedSize();
+            try (OrtSession.SessionOptions options = profile.createOptions()) {
+                // 内存映射模型文件，不在Java堆中复制模型
+                MappedByteBuffer modelBuffer = ModelLoader.mapAsset(context, modelName);
+
+                // 初始化 ONNX Runtime Session，同时保存优化后的模型
+                if (cacheFile != null) {
+                    options.setOptimizedModelFilePath(cacheFile.getAbsolutePath());
+                }
+                session = env.createSession(modelBuffer, options);
+                ModelLoader.logLoad(modelName, "session", modelBuffer.capacity(), startNs, heapBefore, nativeBefore);
+            }
+            catch (Exception e){
+                Log.e("model_load", "模型加载失败", e);
+            }
         }
+        loadTimeMs = (System.nanoTime() - startNs) / 1_000_000;
+        Log.i(TAG, modelName + " [" + profile + "] 模型就绪耗时: " + loadTimeMs + " ms, 优化模型缓存"
+                + (optimizedModelCached ? "命中" : "未命中"));
+    }
 
+    /**
+     * 获取优化模型缓存文件，文件名包含模型名、配置名和应用安装更新时间，应用更新后旧缓存自动失效并被删除
+     *
+     * @param context 上下文
+     * @param modelName 模型文件名
+     * @param profile Session配置
+     * @return 缓存文件，无法确定应用更新时间时返回null（不使用缓存）
+     */
+    private static File getOptimizedModelFile(Context context, String modelName, OrtSessionProfile profile) {
+        long lastUpdateTime;
+        try {
+            lastUpdateTime = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        File dir = new File(context.getFilesDir(), CACHE_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            return null;
+        }
+        String prefix = modelName + "." + profile.getName() + ".";
+        String fileName = prefix + lastUpdateTime + ".ort.onnx";
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // 删除同一模型、同一配置的旧缓存
+                if (file.getName().startsWith(prefix) && !file.getName().equals(fileName)) {
+                    file.delete();
+                }
+            }
+        }
+        return new File(dir, fileName);
     }
 
     /**
@@ -42,38 +155,295 @@ public class OnnxInferenceHelper {
      * @return 推理输出（以 float[] 为例）
      */
     public float[] runInference(double[] accelGyroInput) throws Exception{
-        // 模型输入名（请根据你的模型实际情况修改）
-//        String inputName = session.getInputNames().iterator().next(); // 或写死："input" 等
-        String inputName = "input"; // 或写死："input" 等
+        ensureBatchCapacity(1);  // 读取模型的输入形状，与直接缓冲区模式使用同一个形状
+        if (inputShape.length != 3 || accelGyroInput.length != inputStride) {
+            throw new IllegalArgumentException("输入长度" + accelGyroInput.length + "与模型输入"
+                    + Arrays.toString(inputShape) + "不一致");
+        }
+        long startNs = System.nanoTime();
 
-        float[][][] inputArray = new float[1][50][6];
+        float[][][] inputArray = new float[1][(int) inputShape[1]][(int) inputShape[2]];
         for(int i = 0; i<inputArray[0].length; i++){
             for(int j=0; j<inputArray[0][0].length; j++){
-                inputArray[0][i][j] = (float)accelGyroInput[i*6+j];
+                inputArray[0][i][j] = (float)accelGyroInput[i*inputArray[0][0].length+j];
             }
         }
 
         // 构造 ONNX 输入张量
-        OnnxTensor tensor = OnnxTensor.createTensor(env, inputArray);// 输入映射
-        Map<String, OnnxTensor> inputs = new HashMap<>();
-        inputs.put(inputName, tensor);
-
-        // 推理
-        try (OrtSession.Result output = session.run(inputs)) {
-            // 假设输出名同样只有一个
-            OnnxValue ov = output.get(0);
-            if (ov instanceof OnnxTensor) {
-                // 输出类型和 shape 根据模型实际修改
-                float[][] result = (float[][]) ((OnnxTensor) ov).getValue();
-                return result[0]; // 或处理成你需要的格式
-            } else {
-                throw new Exception("Output is not a tensor");
+        try (OnnxTensor tensor = OnnxTensor.createTensor(env, inputArray)) {
+            Map<String, OnnxTensor> inputs = new HashMap<>();  // 输入映射
+            inputs.put(inputName, tensor);
+
+            // 推理
+            try (OrtSession.Result output = session.run(inputs)) {
+                // 假设输出名同样只有一个
+                OnnxValue ov = output.get(0);
+                if (ov instanceof OnnxTensor) {
+                    // 输出类型和 shape 根据模型实际修改
+                    float[][] result = (float[][]) ((OnnxTensor) ov).getValue();
+                    return result[0]; // 或处理成你需要的格式
+                } else {
+                    throw new Exception("Output is not a tensor");
+                }
+            }
+        } finally {
+            recordLatency(System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * 获取直接缓冲区模式的输入缓冲区，首次调用时按模型输入形状分配。
+     * 返回的缓冲区position已置0，调用方按[时间步][通道]顺序依次put数据后调用runDirect()
+     *
+     * @return 输入缓冲区
+     * @throws OrtException 创建张量失败时抛出
+     */
+    public FloatBuffer getInputBuffer() throws OrtException {
+        return getInputBuffer(1);
+    }
+
+    /**
+     * 获取batch个窗口的输入缓冲区，窗口按顺序依次写入，limit为batch个窗口的长度。
+     * 缓冲区容量不足时按batch重新分配
+     *
+     * @param batch 窗口数，模型batch维为固定维度时只能为1
+     * @return 输入缓冲区，position为0
+     * @throws OrtException 创建张量失败时抛出
+     */
+    @Override
+    public FloatBuffer getInputBuffer(int batch) throws OrtException {
+        ensureBatchCapacity(batch);
+        inputBuffer.clear();
+        inputBuffer.limit(batch * inputStride);
+        return inputBuffer;
+    }
+
+    /**
+     * 使用直接缓冲区模式执行推理，输入数据需已通过getInputBuffer()写入
+     *
+     * @return 输出缓冲区，position为0，在下一次推理前有效
+     * @throws Exception 推理失败时抛出
+     */
+    public FloatBuffer runDirect() throws Exception {
+        return runDirect(1);
+    }
+
+    /**
+     * 对getInputBuffer(batch)写入的batch个窗口执行一次推理
+     *
+     * @param batch 窗口数
+     * @return 输出缓冲区，position为0，limit为batch个窗口的输出长度，在下一次推理前有效
+     * @throws Exception 推理失败时抛出
+     */
+    @Override
+    public FloatBuffer runDirect(int batch) throws Exception {
+        ensureBatchCapacity(batch);
+        if (inputTensors[batch - 1] == null) {
+            createBatchTensors(batch);
+        }
+        long startNs = System.nanoTime();
+        try (OrtSession.Result ignored = session.run(directInputs.get(batch - 1), directOutputs.get(batch - 1))) {
+            // 输出已写入固定的输出张量，即outputBuffer
+        } finally {
+            recordLatency(System.nanoTime() - startNs);
+        }
+        outputBuffer.clear();
+        outputBuffer.limit(batch * outputStride);
+        return outputBuffer;
+    }
+
+    /**
+     * @return 模型是否支持一次推理多个窗口
+     */
+    @Override
+    public boolean supportsBatch() throws OrtException {
+        ensureBatchCapacity(1);
+        return dynamicBatch;
+    }
+
+    /**
+     * 确保直接缓冲区能容纳batch个窗口，首次调用时读取模型的输入输出信息
+     *
+     * @param batch 窗口数
+     * @throws OrtException 读取模型信息或创建张量失败时抛出
+     */
+    private void ensureBatchCapacity(int batch) throws OrtException {
+        if (session == null) {
+            throw new IllegalStateException("模型未加载或已关闭: " + modelName);
+        }
+        if (inputShape == null) {
+            long[] declaredShape = ((TensorInfo) session.getInputInfo().get(inputName).getInfo()).getShape();
+            dynamicBatch = declaredShape[0] < 0;
+            inputShape = fixBatchDim(declaredShape);
+            outputName = session.getOutputNames().iterator().next();
+            outputShape = fixBatchDim(((TensorInfo) session.getOutputInfo().get(outputName).getInfo()).getShape());
+            inputStride = elementCount(inputShape);
+            outputStride = elementCount(outputShape);
+        }
+        if (batch < 1 || (batch > 1 && !dynamicBatch)) {
+            throw new IllegalArgumentException(modelName + " 不支持batch=" + batch);
+        }
+        if (batch > batchCapacity) {
+            allocateDirectBuffers(batch);
+        }
+    }
+
+    /**
+     * 分配能容纳capacity个窗口的直接缓冲区，并释放之前在旧缓冲区上创建的张量
+     *
+     * @param capacity 窗口数
+     */
+    private void allocateDirectBuffers(int capacity) {
+        closeDirectTensors();
+        inputBuffer = allocateFloatBuffer(capacity * inputStride);
+        outputBuffer = allocateFloatBuffer(capacity * outputStride);
+        inputTensors = new OnnxTensor[capacity];
+        outputTensors = new OnnxTensor[capacity];
+        directInputs = new ArrayList<>(Collections.nCopies(capacity, (Map<String, OnnxTensor>) null));
+        directOutputs = new ArrayList<>(Collections.nCopies(capacity, (Map<String, OnnxTensor>) null));
+        batchCapacity = capacity;
+    }
+
+    /**
+     * 在直接缓冲区的前batch个窗口上创建输入张量和固定输出张量。
+     * 直接缓冲区上创建的OnnxTensor与缓冲区共享内存，之后写入缓冲区即更新张量数据
+     *
+     * @param batch 窗口数
+     * @throws OrtException 创建张量失败时抛出
+     */
+    private void createBatchTensors(int batch) throws OrtException {
+        long[] batchInputShape = inputShape.clone();
+        long[] batchOutputShape = outputShape.clone();
+        batchInputShape[0] = batch;
+        batchOutputShape[0] = batch;
+        inputTensors[batch - 1] = OnnxTensor.createTensor(env, slice(inputBuffer, batch * inputStride), batchInputShape);
+        outputTensors[batch - 1] = OnnxTensor.createTensor(env, slice(outputBuffer, batch * outputStride), batchOutputShape);
+        directInputs.set(batch - 1, Collections.singletonMap(inputName, inputTensors[batch - 1]));
+        directOutputs.set(batch - 1, Collections.singletonMap(outputName, outputTensors[batch - 1]));
+    }
+
+    /**
+     * 获取与buffer共享内存、从0开始、长度为length的视图
+     */
+    private static FloatBuffer slice(FloatBuffer buffer, int length) {
+        FloatBuffer view = buffer.duplicate();
+        view.clear();
+        view.limit(length);
+        return view.slice();
+    }
+
+    /**
+     * 释放直接缓冲区上创建的所有张量
+     */
+    private void closeDirectTensors() {
+        if (inputTensors == null) {
+            return;
+        }
+        for (int i = 0; i < inputTensors.length; i++) {
+            if (inputTensors[i] != null) {
+                inputTensors[i].close();
+                outputTensors[i].close();
+            }
+        }
+        inputTensors = null;
+        outputTensors = null;
+        batchCapacity = 0;
+    }
+
+    /**
+     * 将形状中的动态维度（-1）固定为1
+     *
+     * @param shape 模型声明的形状
+     * @return 固定后的形状
+     */
+    protected static long[] fixBatchDim(long[] shape) {
+        long[] fixed = shape.clone();
+        for (int i = 0; i < fixed.length; i++) {
+            if (fixed[i] < 0) {
+                fixed[i] = 1;
             }
         }
+        return fixed;
+    }
+
+    protected static int elementCount(long[] shape) {
+        long count = 1;
+        for (long dim : shape) {
+            count *= dim;
+        }
+        return (int) count;
+    }
+
+    /**
+     * 分配本地字节序的直接FloatBuffer，ORT可直接使用其内存而不拷贝
+     *
+     * @param size float元素个数
+     * @return 直接缓冲区
+     */
+    protected static FloatBuffer allocateFloatBuffer(int size) {
+        return ByteBuffer.allocateDirect(size * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
     }
 
+    /**
+     * 记录一次推理耗时
+     *
+     * @param elapsedNs 本次推理耗时（纳秒）
+     */
+    protected void recordLatency(long elapsedNs) {
+        stats.record(elapsedNs);
+    }
+
+    /**
+     * @return 模型就绪耗时（毫秒），即模型加载及Session创建耗时
+     */
+    @Override
+    public long getLoadTimeMs() {
+        return loadTimeMs;
+    }
+
+    /**
+     * @return 是否从优化模型缓存加载
+     */
+    public boolean isOptimizedModelCached() {
+        return optimizedModelCached;
+    }
+
+    /**
+     * @return Session配置
+     */
+    public OrtSessionProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public InferenceStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String getBackendName() {
+        return "onnx";
+    }
+
+    /**
+     * @return Session是否可用
+     */
+    @Override
+    public boolean isLoaded() {
+        return session != null;
+    }
+
+    /**
+     * 关闭Session。OrtEnvironment是进程内共享的单例，这里不关闭它，否则其他Session会失效
+     */
+    @Override
     public void close() throws Exception {
-        if (session != null) session.close();
-        if (env != null) env.close();
+        closeDirectTensors();
+        inputBuffer = null;
+        outputBuffer = null;
+        if (session != null) {
+            session.close();
+            session = null;
+        }
     }
 }
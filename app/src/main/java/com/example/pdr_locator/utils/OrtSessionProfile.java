@@ -0,0 +1,102 @@
+package com.example.pdr_locator.utils;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * ONNX Runtime的Session参数配置，包括线程数、图优化级别、内存模式和内存池设置。
+ * 配置名会写入优化模型缓存文件名，不同配置的缓存互不影响
+ */
+public class OrtSessionProfile {
+    /**
+     * ORT默认参数：线程数由ORT决定，全部图优化
+     */
+    public static final OrtSessionProfile DEFAULT = new OrtSessionProfile(
+            "default", 0, 0, OrtSession.SessionOptions.OptLevel.ALL_OPT, true, true);
+    /**
+     * 低延迟：2个算子内线程，顺序执行，全部图优化
+     */
+    public static final OrtSessionProfile LOW_LATENCY = new OrtSessionProfile(
+            "low_latency", 2, 1, OrtSession.SessionOptions.OptLevel.ALL_OPT, true, true);
+    /**
+     * 低功耗：单线程，全部图优化，关闭内存池以降低常驻内存
+     */
+    public static final OrtSessionProfile LOW_POWER = new OrtSessionProfile(
+            "low_power", 1, 1, OrtSession.SessionOptions.OptLevel.ALL_OPT, true, false);
+
+    private final String name;  // 配置名
+    private final int intraOpThreads;  // 算子内线程数，0表示由ORT决定
+    private final int interOpThreads;  // 算子间线程数，0表示由ORT决定
+    private final OrtSession.SessionOptions.OptLevel optLevel;  // 图优化级别
+    private final boolean memoryPattern;  // 是否启用内存模式优化
+    private final boolean cpuArena;  // 是否启用CPU内存池
+
+    /**
+     * 构造函数
+     *
+     * @param name 配置名，用于缓存文件名，只能包含字母、数字和下划线
+     * @param intraOpThreads 算子内线程数，0表示由ORT决定
+     * @param interOpThreads 算子间线程数，0表示由ORT决定
+     * @param optLevel 图优化级别
+     * @param memoryPattern 是否启用内存模式优化
+     * @param cpuArena 是否启用CPU内存池
+     */
+    public OrtSessionProfile(String name, int intraOpThreads, int interOpThreads,
+                             OrtSession.SessionOptions.OptLevel optLevel, boolean memoryPattern, boolean cpuArena) {
+        this.name = name;
+        this.intraOpThreads = intraOpThreads;
+        this.interOpThreads = interOpThreads;
+        this.optLevel = optLevel;
+        this.memoryPattern = memoryPattern;
+        this.cpuArena = cpuArena;
+    }
+
+    /**
+     * 根据配置名获取预置配置
+     *
+     * @param name 配置名
+     * @return 预置配置，未知的配置名返回DEFAULT
+     */
+    public static OrtSessionProfile forName(String name) {
+        if (LOW_LATENCY.name.equals(name)) {
+            return LOW_LATENCY;
+        }
+        if (LOW_POWER.name.equals(name)) {
+            return LOW_POWER;
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * 创建对应的SessionOptions，调用方负责关闭
+     *
+     * @return SessionOptions
+     * @throws OrtException 设置参数失败时抛出
+     */
+    public OrtSession.SessionOptions createOptions() throws OrtException {
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        if (intraOpThreads > 0) {
+            options.setIntraOpNumThreads(intraOpThreads);
+        }
+        if (interOpThreads > 0) {
+            options.setInterOpNumThreads(interOpThreads);
+        }
+        options.setExecutionMode(interOpThreads > 1
+                ? OrtSession.SessionOptions.ExecutionMode.PARALLEL
+                : OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+        options.setOptimizationLevel(optLevel);
+        options.setMemoryPatternOptimization(memoryPattern);
+        options.setCPUArenaAllocator(cpuArena);
+        return options;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(intra=" + intraOpThreads + ", inter=" + interOpThreads + ", opt=" + optLevel
+                + ", memPattern=" + memoryPattern + ", arena=" + cpuArena + ")";
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.pdr_locator.utils;
+
+/**
+ * 两侧填充到独占缓存行的volatile序号。生产者和消费者各自频繁写入自己的序号，
+ * 填充后两个序号不会落在同一缓存行，避免伪共享
+ */
+public class PaddedSequence extends SequenceRhsPadding {
+    /**
+     * 构造函数
+     *
+     * @param initialValue 初始值
+     */
+    public PaddedSequence(long initialValue) {
+        this.value = initialValue;
+    }
+
+    public long get() {
+        return value;
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+}
+
+/**
+ * 序号左侧的填充，父类字段排在子类字段之前
+ */
+class SequenceLhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+/**
+ * 序号
+ */
+class SequenceValue extends SequenceLhsPadding {
+    protected volatile long value;
+}
+
+/**
+ * 序号右侧的填充
+ */
+class SequenceRhsPadding extends SequenceValue {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
@@ -0,0 +1,152 @@
+package com.example.pdr_locator.utils;
+
+import com.example.pdr_locator.model.SensorData;
+
+/**
+ * IMU数据的环形缓冲区，按通道分别存放在基本类型数组中（时间戳一个long[]，加速度计、陀螺仪、磁力计各轴一个float[]）。
+ * 每个样本有一个从0开始递增的序号，序号对容量取模即为其在数组中的位置，写满后覆盖最旧的样本。
+ * 只允许一个线程写入；读线程通过序号读取，读取后用isIntact()确认这段数据在读取期间没有被覆盖。
+ * 与seqlock相同，写线程声明覆盖位置后、改写数据前需要StoreStore屏障，读线程读取数据后、检查声明前需要LoadLoad屏障。
+ * minSdk 24没有VarHandle的fence方法（API 33），两个屏障都用一对volatile访问实现：
+ * volatile写与其后的volatile读不会重排，volatile读之后的访问不会提前到它之前，volatile写之前的访问不会推迟到它之后
+ */
+public class SensorRingBuffer {
+    public static final int ACCELEROMETER = 0;  // 加速度计x轴的通道号，y、z轴依次加1
+    public static final int GYROSCOPE = 3;  // 陀螺仪x轴的通道号
+    public static final int MAGNETOMETER = 6;  // 磁力计x轴的通道号
+    static final int CHANNELS = 9;  // float通道数
+
+    private final int capacity;  // 容量，2的幂
+    private final int mask;  // 取模掩码
+    private final long[] timestamps;  // 时间戳通道
+    private final float[][] channels;  // 各轴数据通道[CHANNELS][capacity]
+    private volatile long claimSequence;  // 正在写入或已写入的样本数，写入样本前递增
+    private volatile long writeSequence;  // 已写入完成、可以读取的样本数
+    private volatile int fence;  // 只用于实现内存屏障，见storeStoreFence()、loadLoadFence()
+
+    /**
+     * 构造函数
+     *
+     * @param minCapacity 最少能保存的样本数，实际容量向上取整为2的幂
+     */
+    public SensorRingBuffer(int minCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.channels = new float[CHANNELS][size];
+    }
+
+    /**
+     * 写入一个样本，只能由一个线程调用
+     *
+     * @param data 传感器数据
+     */
+    public void append(SensorData data) {
+        append(data.getTimestamp(), data.getAccelerometerData(), data.getGyroscopeData(), data.getMagnetometerData());
+    }
+
+    /**
+     * 写入一个样本，只能由一个线程调用
+     *
+     * @param timestamp 时间戳
+     * @param acce 加速度计三轴数据
+     * @param gyro 陀螺仪三轴数据
+     * @param mag 磁力计三轴数据
+     */
+    public void append(long timestamp, float[] acce, float[] gyro, float[] mag) {
+        long sequence = writeSequence;
+        claimSequence = sequence + 1;  // 先声明要覆盖的位置，读线程据此判断数据是否可能已被改写
+        storeStoreFence();  // 声明必须先于数据的改写可见
+        int index = (int) (sequence & mask);
+        timestamps[index] = timestamp;
+        for (int axis = 0; axis < 3; axis++) {
+            channels[ACCELEROMETER + axis][index] = acce[axis];
+            channels[GYROSCOPE + axis][index] = gyro[axis];
+            channels[MAGNETOMETER + axis][index] = mag[axis];
+        }
+        writeSequence = sequence + 1;
+    }
+
+    /**
+     * @param sequence 样本序号
+     * @return 样本的时间戳
+     */
+    public long getTimestamp(long sequence) {
+        return timestamps[(int) (sequence & mask)];
+    }
+
+    /**
+     * @param channel 通道号，如ACCELEROMETER + 1为加速度计y轴
+     * @param sequence 样本序号
+     * @return 样本在该通道的值
+     */
+    public float get(int channel, long sequence) {
+        return channels[channel][(int) (sequence & mask)];
+    }
+
+    /**
+     * 判断从start开始的样本是否仍未被覆盖。读线程应在读取数据之后调用，返回false时读到的数据不可用
+     *
+     * @param start 第一个样本的序号
+     * @return 序号不小于start的样本都还在缓冲区中
+     */
+    public boolean isIntact(long start) {
+        loadLoadFence();  // 之前对数据的读取不能推迟到读取声明之后
+        return claimSequence - start <= capacity;
+    }
+
+    /**
+     * 写线程的StoreStore屏障：claimSequence的volatile写之后紧跟一次volatile读，之后对数据的写入不会提前到声明之前
+     */
+    private void storeStoreFence() {
+        int ignored = fence;
+    }
+
+    /**
+     * 读线程的LoadLoad屏障：读取claimSequence之前先做一次volatile写，之前对数据的读取不会推迟到读取声明之后
+     */
+    private void loadLoadFence() {
+        fence = 0;
+    }
+
+    /**
+     * 在[from, to)内二分查找第一个时间戳大于timestamp的样本，要求时间戳单调不减
+     *
+     * @param timestamp 时间戳
+     * @param from 查找范围的第一个序号
+     * @param to 查找范围的结束序号（不包含）
+     * @return 样本序号，都不大于timestamp时返回to
+     */
+    public long findFirstAfter(double timestamp, long from, long to) {
+        long lo = from;
+        long hi = to;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (getTimestamp(mid) > timestamp) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return 仍未被覆盖的最旧样本的序号
+     */
+    public long getOldestSequence() {
+        return Math.max(0, claimSequence - capacity);
+    }
+
+    /**
+     * @return 已写入完成的样本数，即下一个样本的序号
+     */
+    public long getWriteSequence() {
+        return writeSequence;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.pdr_locator.utils;
+
+import com.example.pdr_locator.model.SensorData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 多种窗口划分共享的样本存储。每个样本只写入一个SensorRingBuffer一次，
+ * 每种WindowSpec对应一个SlidingWindowManager任务流，各自生成指向同一缓冲区的窗口，
+ * 增加一种窗口划分只增加一个任务流，不增加数据复制。
+ * 缓冲区容量取各任务流需要的最大值，所以任务流需要在构造时全部给出。
+ * addData()只能由一个线程调用，每个任务流各有一个消费者线程。
+ * 策略为BLOCK时任意一个消费者跟不上都会阻塞所有任务流
+ */
+public class SensorSampleStore {
+    private final SensorRingBuffer buffer;  // 共享的数据缓冲区
+    private final SlidingWindowManager[] streams;  // 各窗口划分的任务流，与specs顺序一致
+    private final List<WindowSpec> specs;  // 窗口划分方式
+
+    /**
+     * 构造函数
+     *
+     * @param specs 窗口划分方式，不能重复
+     * @param queueCapacity 每个任务流最多积压的任务数
+     * @param policy 队列满时的处理策略
+     * @param waitStrategy 等待方式
+     */
+    public SensorSampleStore(List<WindowSpec> specs, int queueCapacity,
+                             BackpressurePolicy policy, WaitStrategy waitStrategy) {
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一种窗口划分方式");
+        }
+        int capacity = 0;
+        for (int i = 0; i < specs.size(); i++) {
+            if (specs.indexOf(specs.get(i)) != i) {
+                throw new IllegalArgumentException("重复的窗口划分方式: " + specs.get(i));
+            }
+            capacity = Math.max(capacity, SlidingWindowManager.requiredCapacity(specs.get(i), queueCapacity));
+        }
+        this.buffer = new SensorRingBuffer(capacity);
+        this.specs = Collections.unmodifiableList(new ArrayList<>(specs));
+        this.streams = new SlidingWindowManager[specs.size()];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = new SlidingWindowManager(specs.get(i), buffer, false, queueCapacity, policy, waitStrategy);
+        }
+    }
+
+    /**
+     * 停止所有任务流，BLOCK策略下正在等待空位的写线程立即返回，见SlidingWindowManager.stop()
+     */
+    public void stop() {
+        for (SlidingWindowManager stream : streams) {
+            stream.stop();
+        }
+    }
+
+    /**
+     * 恢复所有任务流的BLOCK等待
+     */
+    public void resume() {
+        for (SlidingWindowManager stream : streams) {
+            stream.resume();
+        }
+    }
+
+    /**
+     * 写入一个样本，各任务流在数据足够时生成任务
+     *
+     * @param data 传感器数据
+     */
+    public void addData(SensorData data) {
+        buffer.append(data);
+        long timestamp = data.getTimestamp();
+        for (SlidingWindowManager stream : streams) {
+            stream.onSampleAppended(timestamp);
+        }
+    }
+
+    /**
+     * @param index 窗口划分方式在构造参数中的下标
+     * @return 对应的任务流
+     */
+    public SlidingWindowManager getStream(int index) {
+        return streams[index];
+    }
+
+    /**
+     * @param spec 窗口划分方式
+     * @return 对应的任务流，没有注册时返回null
+     */
+    public SlidingWindowManager getStream(WindowSpec spec) {
+        int index = specs.indexOf(spec);
+        return index < 0 ? null : streams[index];
+    }
+
+    /**
+     * @return 窗口划分方式，与任务流的下标一致
+     */
+    public List<WindowSpec> getSpecs() {
+        return specs;
+    }
+
+    /**
+     * @return 共享缓冲区的容量（样本数）
+     */
+    public int getCapacity() {
+        return buffer.getCapacity();
+    }
+}
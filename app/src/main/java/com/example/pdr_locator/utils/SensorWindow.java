@@ -0,0 +1,193 @@
+package com.example.pdr_locator.utils;
+
+import com.example.pdr_locator.model.SensorData;
+
+/**
+ * 一个滑动窗口，是SensorRingBuffer中一段连续样本的视图（起始序号 + 长度），不复制数据。
+ * 按时间划分的窗口则是从缓冲区重采样得到的固定个数的样本，存放在窗口对象自己的数组中。
+ * 窗口对象由SlidingWindowManager复用，消费者处理完后应调用SlidingWindowManager.release()归还；
+ * 若处理期间数据可能被覆盖，可在读取之后调用isValid()确认
+ */
+public class SensorWindow {
+    private final SensorRingBuffer buffer;  // 数据所在的环形缓冲区
+    private long start;  // 第一个样本的序号
+    private int length;  // 样本数
+    private long enqueueTimeNs;  // 加入任务队列的时间（System.nanoTime()）
+    private boolean resampled;  // 数据是否为重采样得到的副本
+    private long[] sampleTimestamps;  // 重采样后的时间戳，首次重采样时分配
+    private float[][] sampleChannels;  // 重采样后的各轴数据[通道][样本]
+
+    /**
+     * 构造函数
+     *
+     * @param buffer 数据所在的环形缓冲区
+     */
+    public SensorWindow(SensorRingBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * 指向缓冲区中的另一段样本
+     *
+     * @param start 第一个样本的序号
+     * @param length 样本数
+     */
+    void set(long start, int length) {
+        this.start = start;
+        this.length = length;
+        this.resampled = false;
+    }
+
+    /**
+     * 从缓冲区按时间戳线性插值重采样，第i个样本的时间为startTime + i * intervalMs。
+     * 超出已有数据范围的时间取最近的样本；缓冲区已回绕且startTime之前的样本已被覆盖时返回false，
+     * 不用更晚的样本代替窗口开头的数据
+     *
+     * @param startTime 第一个样本的时间（毫秒）
+     * @param intervalMs 样本间隔（毫秒）
+     * @param samples 样本数
+     * @return 读取期间数据是否未被覆盖，返回false时窗口数据不可用
+     */
+    boolean resample(double startTime, double intervalMs, int samples) {
+        if (sampleTimestamps == null || sampleTimestamps.length != samples) {
+            sampleTimestamps = new long[samples];
+            sampleChannels = new float[SensorRingBuffer.CHANNELS][samples];
+        }
+        long oldest = buffer.getOldestSequence();
+        if (oldest > 0 && buffer.getTimestamp(oldest) > startTime) {
+            return false;
+        }
+        long newest = buffer.getWriteSequence() - 1;
+        long next = buffer.findFirstAfter(startTime, oldest, newest + 1);  // 第一个时间戳大于当前时间的样本
+        long first = Math.max(oldest, next - 1);
+        for (int i = 0; i < samples; i++) {
+            double t = startTime + i * intervalMs;
+            while (next <= newest && buffer.getTimestamp(next) <= t) {
+                next++;
+            }
+            long before = Math.max(oldest, next - 1);
+            long after = Math.min(next, newest);
+            long t0 = buffer.getTimestamp(before);
+            long t1 = buffer.getTimestamp(after);
+            float ratio = t1 > t0 ? (float) Math.min(1.0, Math.max(0.0, (t - t0) / (t1 - t0))) : 0.0f;
+            sampleTimestamps[i] = Math.round(t);
+            for (int channel = 0; channel < SensorRingBuffer.CHANNELS; channel++) {
+                float v0 = buffer.get(channel, before);
+                sampleChannels[channel][i] = v0 + (buffer.get(channel, after) - v0) * ratio;
+            }
+        }
+        this.start = first;
+        this.length = samples;
+        this.resampled = true;
+        return buffer.isIntact(first);
+    }
+
+    /**
+     * 记录加入任务队列的时间
+     *
+     * @param enqueueTimeNs System.nanoTime()
+     */
+    void setEnqueueTimeNs(long enqueueTimeNs) {
+        this.enqueueTimeNs = enqueueTimeNs;
+    }
+
+    /**
+     * @return 加入任务队列的时间（System.nanoTime()），与当前时间的差即为窗口等待的时间
+     */
+    public long getEnqueueTimeNs() {
+        return enqueueTimeNs;
+    }
+
+    /**
+     * @return 窗口内的样本数
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * @param i 窗口内的下标
+     * @return 时间戳
+     */
+    public long getTimestamp(int i) {
+        if (resampled) {
+            return sampleTimestamps[i];
+        }
+        return buffer.getTimestamp(start + i);
+    }
+
+    /**
+     * @param i 窗口内的下标
+     * @param axis 轴，0、1、2分别为x、y、z
+     * @return 加速度计数据
+     */
+    public float getAccelerometer(int i, int axis) {
+        if (resampled) {
+            return sampleChannels[SensorRingBuffer.ACCELEROMETER + axis][i];
+        }
+        return buffer.get(SensorRingBuffer.ACCELEROMETER + axis, start + i);
+    }
+
+    /**
+     * @param i 窗口内的下标
+     * @param axis 轴，0、1、2分别为x、y、z
+     * @return 陀螺仪数据
+     */
+    public float getGyroscope(int i, int axis) {
+        if (resampled) {
+            return sampleChannels[SensorRingBuffer.GYROSCOPE + axis][i];
+        }
+        return buffer.get(SensorRingBuffer.GYROSCOPE + axis, start + i);
+    }
+
+    /**
+     * @param i 窗口内的下标
+     * @param axis 轴，0、1、2分别为x、y、z
+     * @return 磁力计数据
+     */
+    public float getMagnetometer(int i, int axis) {
+        if (resampled) {
+            return sampleChannels[SensorRingBuffer.MAGNETOMETER + axis][i];
+        }
+        return buffer.get(SensorRingBuffer.MAGNETOMETER + axis, start + i);
+    }
+
+    /**
+     * 复制出第i个样本，会分配新对象，只用于非实时路径，如保存数据
+     *
+     * @param i 窗口内的下标
+     * @return 传感器数据
+     */
+    public SensorData getSensorData(int i) {
+        float[] acce = new float[3];
+        float[] gyro = new float[3];
+        float[] mag = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            acce[axis] = getAccelerometer(i, axis);
+            gyro[axis] = getGyroscope(i, axis);
+            mag[axis] = getMagnetometer(i, axis);
+        }
+        return new SensorData(getTimestamp(i), acce, gyro, mag);
+    }
+
+    /**
+     * @return 窗口数据是否仍未被覆盖，应在读取数据之后调用。重采样的窗口在重采样时已确认，之后始终有效
+     */
+    public boolean isValid() {
+        return resampled || buffer.isIntact(start);
+    }
+
+    /**
+     * @return 是否为按时间重采样得到的窗口
+     */
+    public boolean isResampled() {
+        return resampled;
+    }
+
+    /**
+     * @return 第一个样本的序号，重采样的窗口为参与插值的第一个原始样本的序号
+     */
+    public long getStartSequence() {
+        return start;
+    }
+}
@@ -7,21 +7,58 @@ package com.example.pdr_locator.utils;
  */
 import com.example.pdr_locator.model.SensorData;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * SlidingWindowManager 类是基于滑动窗口方式读取采集的数据，并使用消息队列生成任务的工具
+ * SlidingWindowManager 类是基于滑动窗口方式读取采集的数据，并使用消息队列生成任务的工具。
+ * 数据保存在按通道存放基本类型的环形缓冲区中，任务是指向缓冲区的窗口视图，生成任务时不复制数据。
+ * 窗口对象预先分配并循环使用，消费者处理完任务后调用release()归还，稳定运行时生成任务不产生对象分配。
+ * 任务队列有界，队列满时按BackpressurePolicy阻塞生产者、丢弃最旧的窗口或只保留最新的窗口，
+ * 队列深度、丢弃数和最旧窗口的等待时间可用于限制内存和定位结果的延迟。
+ * <p>
+ * 窗口可以按样本数划分，也可以按时间戳划分为固定时长、固定步长的窗口并重采样为固定个数的样本（见WindowSpec），
+ * 重采样在消费者取出任务时进行。
+ * <p>
+ * 生产者和消费者之间是无锁的单生产者/单消费者交接：第k个窗口的起点固定为k * slideStep
+ * （按时间划分时为第一个样本的时间 + k * strideMs），生产者只需发布已生成的窗口数，消费者维护已取出的窗口数，两个序号各占一个缓存行。
+ * addData()只能由一个线程调用，getTask()、pollTask()、drainTasks()和release()只能由另一个线程调用
+ * （也可以是同一个线程）。等待时按WaitStrategy忙等、让出CPU或挂起
  */
 public class SlidingWindowManager {
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;  // 默认最多积压的任务数
+    private static final int MAX_IN_FLIGHT = 16;  // 消费者同时持有、尚未归还的任务数上限，超过时额外分配窗口对象
+    private static final long MAX_PARK_NS = TimeUnit.MILLISECONDS.toNanos(10);  // 挂起等待的最长时间，防止错过唤醒
+    private static final long MAX_BLOCK_NS = TimeUnit.MILLISECONDS.toNanos(200);  // BLOCK策略下生产者等待一个空位的最长时间
+    private static final int MAX_SAMPLE_RATE_HZ = 400;  // 按时间划分时缓冲区按此采样率估算容量，更高的采样率下积压的窗口可能过期
+
+    private final WindowSpec spec;  // 窗口划分方式
     private final int WINDOW_SIZE; // 窗口大小
     private final int SLIDE_STEP;  // 滑动步长
-    private Queue<SensorData> dataBuffer = new LinkedList<>(); // 数据缓冲区
-    private LinkedBlockingQueue<List<SensorData>> taskQueue = new LinkedBlockingQueue<>(); // 任务队列
+    private final int queueCapacity;  // 最多积压的任务数
+    private final BackpressurePolicy policy;  // 队列满时的处理策略
+    private final WaitStrategy waitStrategy;  // 等待方式
+    private final SensorRingBuffer dataBuffer;  // 数据缓冲区
+    private final boolean ownsBuffer;  // 缓冲区是否由本对象写入，共享缓冲区时为false
+    private final long[] enqueueTimes;  // 各窗口加入队列的时间，按窗口序号取模存放
+    private final int enqueueMask;  // enqueueTimes的取模掩码
+
+    // 生产者写入的状态
+    private final PaddedSequence publishedWindows = new PaddedSequence(0);  // 已发布的窗口数
+    private long nextWindowStart;  // 下一个窗口第一个样本的序号
+    private long originTimestamp = -1;  // 按时间划分时第一个样本的时间戳，-1表示还没有数据
+    private volatile int maxQueueDepth;  // 队列深度的最大值
+    private volatile Thread parkedProducer;  // 等待队列空位而挂起的生产者
+    private volatile boolean stopped;  // 是否已停止，停止后BLOCK策略不再等待空位
+
+    // 消费者写入的状态
+    private final PaddedSequence consumedWindows = new PaddedSequence(0);  // 已取出或跳过的窗口数
+    private final SensorWindow[] freeWindows = new SensorWindow[MAX_IN_FLIGHT];  // 空闲的窗口对象
+    private int freeCount;  // 空闲的窗口对象数
+    private volatile long droppedTasks;  // 队列满时丢弃的任务数
+    private volatile long staleTasks;  // 取出时或处理完后发现数据已被覆盖而丢弃的任务数
+    private volatile Thread parkedConsumer;  // 等待新任务而挂起的消费者
 
     /**
      * 构造函数，初始化滑动窗口管理器的窗口大小和滑动步长
@@ -29,55 +66,433 @@ public class SlidingWindowManager {
      * @param slideStep 滑动步长
      */
     public SlidingWindowManager(int windowSize, int slideStep){
-        this.WINDOW_SIZE = windowSize;
-        this.SLIDE_STEP = slideStep;
+        this(windowSize, slideStep, DEFAULT_QUEUE_CAPACITY);
+    }
 
+    /**
+     * 构造函数
+     * @param windowSize 滑动窗口大小
+     * @param slideStep 滑动步长
+     * @param queueCapacity 最多积压的任务数，队列满时丢弃最旧的任务
+     */
+    public SlidingWindowManager(int windowSize, int slideStep, int queueCapacity){
+        this(windowSize, slideStep, queueCapacity, BackpressurePolicy.DROP_OLDEST);
     }
 
     /**
-     * 将最新采集到的IMU数据添加到数据缓冲区，并且当数据达到窗口大小时则生成一个任务
-     * @param data double[10],一条数据，包括timepstamp(时间戳), 加速度计x,y,z, 陀螺仪x,y,z, 磁力计x,y,z
+     * 构造函数
+     * @param windowSize 滑动窗口大小
+     * @param slideStep 滑动步长
+     * @param queueCapacity 最多积压的任务数
+     * @param policy 队列满时的处理策略
      */
-    public synchronized void addData(SensorData data) {
-        dataBuffer.add(data);
+    public SlidingWindowManager(int windowSize, int slideStep, int queueCapacity, BackpressurePolicy policy){
+        this(windowSize, slideStep, queueCapacity, policy, WaitStrategy.PARK);
+    }
 
+    /**
+     * 构造函数
+     * @param windowSize 滑动窗口大小
+     * @param slideStep 滑动步长
+     * @param queueCapacity 最多积压的任务数
+     * @param policy 队列满时的处理策略
+     * @param waitStrategy 消费者等待新任务、BLOCK策略下生产者等待空位时的等待方式
+     */
+    public SlidingWindowManager(int windowSize, int slideStep, int queueCapacity,
+                                BackpressurePolicy policy, WaitStrategy waitStrategy){
+        this(WindowSpec.ofCount(windowSize, slideStep), queueCapacity, policy, waitStrategy);
+    }
+
+    /**
+     * 构造函数
+     * @param spec 窗口划分方式
+     * @param queueCapacity 最多积压的任务数
+     * @param policy 队列满时的处理策略
+     * @param waitStrategy 消费者等待新任务、BLOCK策略下生产者等待空位时的等待方式
+     */
+    public SlidingWindowManager(WindowSpec spec, int queueCapacity,
+                                BackpressurePolicy policy, WaitStrategy waitStrategy){
+        this(spec, new SensorRingBuffer(requiredCapacity(spec, queueCapacity)), true,
+                queueCapacity, policy, waitStrategy);
+    }
+
+    /**
+     * 构造函数，供SensorSampleStore在共享的缓冲区上创建多个任务流
+     * @param spec 窗口划分方式
+     * @param dataBuffer 数据缓冲区，容量不小于requiredCapacity()
+     * @param ownsBuffer 是否由本对象写入缓冲区，为false时由SensorSampleStore写入后调用onSampleAppended()
+     * @param queueCapacity 最多积压的任务数
+     * @param policy 队列满时的处理策略
+     * @param waitStrategy 等待方式
+     */
+    SlidingWindowManager(WindowSpec spec, SensorRingBuffer dataBuffer, boolean ownsBuffer, int queueCapacity,
+                         BackpressurePolicy policy, WaitStrategy waitStrategy){
+        this.spec = spec;
+        this.WINDOW_SIZE = spec.getSamples();
+        this.SLIDE_STEP = spec.getSlideStep();
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.waitStrategy = waitStrategy;
+        this.dataBuffer = dataBuffer;
+        this.ownsBuffer = ownsBuffer;
+        int slots = Integer.highestOneBit(Math.max(2, queueCapacity) - 1) << 1;
+        this.enqueueTimes = new long[slots];
+        this.enqueueMask = slots - 1;
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) {
+            freeWindows[freeCount++] = new SensorWindow(dataBuffer);
+        }
+    }
+
+    /**
+     * 计算一个任务流需要的缓冲区容量：能同时容纳所有排队和处理中的窗口，以及正在积累的下一个窗口
+     * @param spec 窗口划分方式
+     * @param queueCapacity 最多积压的任务数
+     * @return 最少需要保存的样本数
+     */
+    static int requiredCapacity(WindowSpec spec, int queueCapacity) {
+        int windows = queueCapacity + MAX_IN_FLIGHT + 1;
+        if (spec.isTimeBased()) {
+            long spanMs = spec.getDurationMs() + spec.getStrideMs() * windows;
+            return (int) (spanMs * MAX_SAMPLE_RATE_HZ / 1000);
+        }
+        return spec.getSamples() + spec.getSlideStep() * windows;
+    }
+
+    /**
+     * 将最新采集到的IMU数据添加到数据缓冲区，并且当数据达到窗口大小时则生成一个任务。
+     * 策略为BLOCK且队列已满时等待，直到消费者取出任务
+     * @param data 一条数据，包括timepstamp(时间戳), 加速度计x,y,z, 陀螺仪x,y,z, 磁力计x,y,z
+     */
+    public void addData(SensorData data) {
+        if (!ownsBuffer) {
+            throw new IllegalStateException("共享缓冲区的数据应通过SensorSampleStore.addData()写入");
+        }
+        dataBuffer.append(data);
+        onSampleAppended(data.getTimestamp());
+    }
+
+    /**
+     * 缓冲区写入一个样本后调用，数据足够时生成任务
+     * @param timestamp 最新样本的时间戳
+     */
+    void onSampleAppended(long timestamp) {
+        if (spec.isTimeBased()) {
+            addTimeBasedTasks(timestamp);
+            return;
+        }
         // 当数据足够形成一个窗口时，生成任务
-        if (dataBuffer.size() >= SLIDE_STEP) {
+        while (dataBuffer.getWriteSequence() - nextWindowStart >= WINDOW_SIZE) {
+            generateTask();
+            nextWindowStart += SLIDE_STEP;
+        }
+    }
+
+    /**
+     * 按时间划分时，最新样本的时间到达窗口最后一个重采样时间点后生成任务
+     * @param timestamp 最新样本的时间戳
+     */
+    private void addTimeBasedTasks(long timestamp) {
+        if (originTimestamp < 0) {
+            originTimestamp = timestamp;
+        }
+        double lastOffset = spec.getDurationMs() - spec.getSampleIntervalMs();  // 最后一个重采样点相对窗口起点的时间
+        while (timestamp >= originTimestamp + publishedWindows.get() * spec.getStrideMs() + lastOffset) {
             generateTask();
         }
     }
 
     /**
-     * 生成一个任务，将任务加入消息队列，并删除已使用的、窗口外的缓存数据
+     * 发布下一个窗口任务。队列满时BLOCK策略等待空位，其他策略直接发布，由消费者跳过超出容量的旧任务
+     */
+    private void generateTask() {
+        long published = publishedWindows.get();
+        if (policy == BackpressurePolicy.BLOCK) {
+            awaitSpace(published);
+        }
+        enqueueTimes[(int) (published & enqueueMask)] = System.nanoTime();
+        publishedWindows.set(published + 1);
+        LockSupport.unpark(parkedConsumer);
+
+        int depth = depth(published + 1, consumedWindows.get());
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    /**
+     * BLOCK策略下等待消费者腾出空位。等待超过MAX_BLOCK_NS、被中断或已调用stop()时不再等待，
+     * 本次发布会使消费者丢弃最旧的任务，采集线程不会因为消费者停止取任务而一直挂起
+     * @param published 已发布的窗口数
+     */
+    private void awaitSpace(long published) {
+        int attempt = 0;
+        long deadline = 0;
+        while (published - consumedWindows.get() >= queueCapacity) {
+            if (stopped || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (attempt == 0) {
+                deadline = System.nanoTime() + MAX_BLOCK_NS;
+            } else if (System.nanoTime() - deadline >= 0) {
+                return;
+            }
+            parkedProducer = Thread.currentThread();
+            if (published - consumedWindows.get() >= queueCapacity) {
+                waitStrategy.idle(attempt++, MAX_PARK_NS);
+            }
+            parkedProducer = null;
+        }
+    }
+
+    /**
+     * 从消息队列中获取一个任务，没有任务时按WaitStrategy等待，数据已被覆盖的任务会被跳过
+     * @return 一个任务，即包含一个窗口大小长度的数据
+     * @throws InterruptedException 等待时被中断
      */
-    private synchronized void generateTask() {
-        int startIndex = 0;  // 数据遍历的开始下标
-        while (startIndex + WINDOW_SIZE <= dataBuffer.size()) {
-//            float[][] windowData = new float[WINDOW_SIZE][];
-            List<SensorData> windowData = new ArrayList<>();
-            int count = 0;
-            Iterator<SensorData> iterator = dataBuffer.iterator();
-            while (count < WINDOW_SIZE && iterator.hasNext()) {
-                SensorData data = iterator.next();
-                windowData.add(data);
-                count++;
+    public SensorWindow getTask() throws InterruptedException {
+        int attempt = 0;
+        while (true) {
+            SensorWindow window = pollTask();
+            if (window != null) {
+                return window;
             }
-            taskQueue.add(windowData);
-            startIndex += SLIDE_STEP;
+            awaitTask(attempt++, MAX_PARK_NS);
         }
+    }
+
+    /**
+     * 从消息队列中获取一个任务，队列为空时立即返回
+     * @return 一个任务，队列为空时返回null
+     */
+    public SensorWindow pollTask() {
+        long consumed = consumedWindows.get();
+        while (true) {
+            long published = publishedWindows.get();
+            long lag = published - consumed;
+            if (lag <= 0) {
+                return null;
+            }
+            int depth = depth(published, consumed);
+            if (lag > depth) {
+                // 超出容量的旧任务视为在队列满时被丢弃
+                droppedTasks += lag - depth;
+                consumed = published - depth;
+            }
+            long sequence = consumed++;
+            // 取出后生产者可以复用这个位置，入队时间要在更新consumedWindows之前读取
+            long enqueueTimeNs = enqueueTimes[(int) (sequence & enqueueMask)];
+            consumedWindows.set(consumed);
+            LockSupport.unpark(parkedProducer);
 
-        // 移除已经处理的数据
-        for (int i = 0; i < startIndex; i++) {
-            dataBuffer.poll();
+            SensorWindow window = acquireWindow();
+            window.setEnqueueTimeNs(enqueueTimeNs);
+            if (spec.isTimeBased()) {
+                double startTime = originTimestamp + sequence * spec.getStrideMs();
+                if (window.resample(startTime, spec.getSampleIntervalMs(), WINDOW_SIZE)) {
+                    return window;
+                }
+                staleTasks++;
+                release(window);
+                continue;
+            }
+            window.set(sequence * SLIDE_STEP, WINDOW_SIZE);
+            if (checkValid(window)) {
+                return window;
+            }
         }
     }
 
     /**
-     * 从消息队列中获取一个任务
-     * @return float[][] 一个任务，即包含一个窗口大小长度的数据，一行为一条数据
-     * @throws InterruptedException 可能抛出InterruptedException
+     * 在已有积压任务时批量取出任务。先取出队列中已有的任务，若有积压且数量不足maxTasks，
+     * 则在maxWaitMs内继续等待新任务；没有积压时立即返回，不增加正常情况下的延迟
+     * @param tasks 存放取出任务的列表，按生成顺序追加
+     * @param maxTasks 最多取出的任务数
+     * @param maxWaitMs 有积压时等待凑满maxTasks的最长时间（毫秒）
+     * @return 取出的任务数
+     * @throws InterruptedException 等待时被中断
+     */
+    public int drainTasks(List<SensorWindow> tasks, int maxTasks, long maxWaitMs) throws InterruptedException {
+        int drained = 0;
+        SensorWindow window;
+        while (drained < maxTasks && (window = pollTask()) != null) {
+            tasks.add(window);
+            drained++;
+        }
+        if (drained == 0 || drained >= maxTasks || maxWaitMs <= 0) {
+            return drained;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        int attempt = 0;
+        while (drained < maxTasks) {
+            window = pollTask();
+            if (window != null) {
+                tasks.add(window);
+                drained++;
+                continue;
+            }
+            long remainingNs = deadline - System.nanoTime();
+            if (remainingNs <= 0) {
+                break;
+            }
+            awaitTask(attempt++, Math.min(remainingNs, MAX_PARK_NS));
+        }
+        return drained;
+    }
+
+    /**
+     * 消费者等待一次新任务
+     * @param attempt 本轮已等待的次数
+     * @param maxNanos 最长等待时间（纳秒）
+     * @throws InterruptedException 等待时被中断
+     */
+    private void awaitTask(int attempt, long maxNanos) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        parkedConsumer = Thread.currentThread();
+        if (publishedWindows.get() == consumedWindows.get()) {
+            waitStrategy.idle(attempt, maxNanos);
+        }
+        parkedConsumer = null;
+    }
+
+    /**
+     * 归还处理完的任务，窗口对象会被之后的任务复用，归还后不能再读取。只能在消费者线程调用
+     * @param window 处理完的任务
+     */
+    public void release(SensorWindow window) {
+        if (freeCount < freeWindows.length) {
+            freeWindows[freeCount++] = window;  // 额外分配的窗口对象在空闲列表满时直接丢弃
+        }
+    }
+
+    /**
+     * 归还处理完的任务，并确认处理期间数据没有被覆盖。只能在消费者线程调用
+     * @param window 处理完的任务，处理时对数据的读取都应在调用之前完成
+     * @return 数据是否仍完整，返回false时已计入过期任务数，调用方应丢弃基于该窗口得到的结果
+     */
+    public boolean releaseChecked(SensorWindow window) {
+        boolean valid = window.isValid();
+        if (!valid) {
+            staleTasks++;
+        }
+        release(window);
+        return valid;
+    }
+
+    /**
+     * 取一个空闲的窗口对象，消费者持有的窗口超过MAX_IN_FLIGHT时额外分配
+     */
+    private SensorWindow acquireWindow() {
+        if (freeCount > 0) {
+            SensorWindow window = freeWindows[--freeCount];
+            freeWindows[freeCount] = null;
+            return window;
+        }
+        return new SensorWindow(dataBuffer);
+    }
+
+    /**
+     * 检查取出的任务数据是否仍完整，已被覆盖时归还并计数
+     */
+    private boolean checkValid(SensorWindow window) {
+        if (window.isValid()) {
+            return true;
+        }
+        staleTasks++;
+        release(window);
+        return false;
+    }
+
+    /**
+     * 停止：正在等待空位的生产者立即返回，之后BLOCK策略也不再等待，队列满时按DROP_OLDEST处理。
+     * 消费者停止取任务前调用，可以在任意线程调用
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(parkedProducer);
+    }
+
+    /**
+     * 恢复BLOCK策略的等待，重新开始采集时调用
+     */
+    public void resume() {
+        stopped = false;
+    }
+
+    /**
+     * 按策略计算的队列深度
+     * @param published 已发布的窗口数
+     * @param consumed 已取出的窗口数
+     * @return 可被取出的任务数，超出容量的旧任务不计入
+     */
+    private int depth(long published, long consumed) {
+        int capacity = policy == BackpressurePolicy.KEEP_LATEST ? 1 : queueCapacity;
+        return (int) Math.min(published - consumed, capacity);
+    }
+
+    /**
+     * @return 窗口划分方式
+     */
+    public WindowSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * @return 队列满时的处理策略
+     */
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return 等待方式
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * @return 当前排队的任务数
+     */
+    public int getQueueDepth() {
+        return depth(publishedWindows.get(), consumedWindows.get());
+    }
+
+    /**
+     * @return 队列深度的最大值
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * 队列中最旧任务的等待时间，即此刻取出任务时定位结果相对数据额外增加的延迟。
+     * 读取时不加锁，与生产者并发时结果只是近似值
+     * @return 等待时间（纳秒），队列为空时返回0
+     */
+    public long getOldestTaskAgeNs() {
+        long published = publishedWindows.get();
+        int depth = depth(published, consumedWindows.get());
+        if (depth <= 0) {
+            return 0;
+        }
+        return System.nanoTime() - enqueueTimes[(int) ((published - depth) & enqueueMask)];
+    }
+
+    /**
+     * @return 队列满时丢弃的任务数，KEEP_LATEST策略下被新窗口替换的任务也计入
+     */
+    public long getDroppedTasks() {
+        long consumed = consumedWindows.get();
+        long published = publishedWindows.get();
+        return droppedTasks + published - consumed - depth(published, consumed);  // 包括下次取出时才会跳过的任务
+    }
+
+    /**
+     * @return 取出时数据已被覆盖而丢弃的任务数
      */
-    public List<SensorData> getTask() throws InterruptedException {
-        return taskQueue.take();
+    public long getStaleTasks() {
+        return staleTasks;
     }
 }
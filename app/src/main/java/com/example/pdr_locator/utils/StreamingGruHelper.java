@@ -0,0 +1,184 @@
+package com.example.pdr_locator.utils;
+
+import android.content.Context;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+/**
+ * 流式GRU推理工具类。使用带隐状态输入输出的模型（由tools/make_stream_model.py从gru.onnx生成），
+ * 每次只输入滑动步长个新样本，GRU各层的隐状态在两次调用之间保留。
+ * 隐状态使用两组直接缓冲区交替作为输入和输出，每步推理后只交换下标，不拷贝数据
+ */
+public class StreamingGruHelper extends OnnxInferenceHelper {
+    private static final String STATE_INPUT_PREFIX = "h0_";  // 隐状态输入名前缀，h0_0, h0_1, ...
+    private static final String STATE_OUTPUT_PREFIX = "hn_";  // 隐状态输出名前缀，hn_0, hn_1, ...
+    private static final String INPUT_NAME = "input";  // 样本输入名
+    private static final String OUTPUT_NAME = "output";  // 速度输出名
+
+    private final int stepSize;  // 每次推理输入的样本数
+    private int layers;  // GRU层数，即隐状态输入个数
+    private FloatBuffer stepBuffer;  // 样本输入缓冲区[1, stepSize, 6]
+    private FloatBuffer velocityBuffer;  // 速度输出缓冲区[1, 2]
+    private FloatBuffer[][] stateBuffers;  // 两组隐状态缓冲区[2][layers]
+    private final List<OnnxTensor> tensors = new ArrayList<>();  // 创建的所有张量，关闭时释放
+    private final List<Map<String, OnnxTensor>> stepInputs = new ArrayList<>();  // 两组输入映射
+    private final List<Map<String, OnnxTensor>> stepOutputs = new ArrayList<>();  // 两组固定输出映射
+    private int current;  // 当前作为输入的隐状态组下标
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param modelName 流式模型文件名
+     * @param profile Session配置
+     * @param stepSize 每次推理输入的样本数，等于滑动步长
+     */
+    public StreamingGruHelper(Context context, String modelName, OrtSessionProfile profile, int stepSize) {
+        super(context, modelName, profile);
+        this.stepSize = stepSize;
+    }
+
+    /**
+     * 获取本步的样本输入缓冲区，调用方写入stepSize个样本后调用runStep()
+     *
+     * @return 输入缓冲区，position为0
+     * @throws OrtException 创建张量失败时抛出
+     */
+    public FloatBuffer getStepBuffer() throws OrtException {
+        if (stepBuffer == null) {
+            initStreamBuffers();
+        }
+        stepBuffer.clear();
+        return stepBuffer;
+    }
+
+    /**
+     * 执行一步流式推理，输入上一步的隐状态，输出本步的速度和新的隐状态
+     *
+     * @return 速度输出缓冲区，position为0，在下一步推理前有效
+     * @throws Exception 推理失败时抛出
+     */
+    public FloatBuffer runStep() throws Exception {
+        if (session == null) {
+            throw new IllegalStateException("模型未加载或已关闭: " + modelName);
+        }
+        if (stepBuffer == null) {
+            initStreamBuffers();
+        }
+        long startNs = System.nanoTime();
+        try (OrtSession.Result ignored = session.run(stepInputs.get(current), stepOutputs.get(current))) {
+            // 速度和新的隐状态已写入固定输出张量
+        } finally {
+            recordLatency(System.nanoTime() - startNs);
+        }
+        current = 1 - current;  // 本步输出的隐状态作为下一步的输入
+        velocityBuffer.clear();
+        return velocityBuffer;
+    }
+
+    /**
+     * 将隐状态清零，下一步推理从初始状态开始
+     *
+     * @throws OrtException 创建张量失败时抛出
+     */
+    public void resetState() throws OrtException {
+        if (stepBuffer == null) {
+            initStreamBuffers();
+        }
+        for (FloatBuffer[] group : stateBuffers) {
+            for (FloatBuffer state : group) {
+                state.clear();
+                while (state.hasRemaining()) {
+                    state.put(0.0f);
+                }
+            }
+        }
+        current = 0;
+    }
+
+    /**
+     * @return 每次推理输入的样本数
+     */
+    public int getStepSize() {
+        return stepSize;
+    }
+
+    /**
+     * 根据模型的隐状态输入分配缓冲区和张量，并预先构造两组输入输出映射
+     *
+     * @throws OrtException 读取模型信息或创建张量失败时抛出
+     */
+    private void initStreamBuffers() throws OrtException {
+        if (session == null) {
+            throw new IllegalStateException("模型未加载或已关闭: " + modelName);
+        }
+        layers = 0;
+        while (session.getInputNames().contains(STATE_INPUT_PREFIX + layers)) {
+            layers++;
+        }
+        if (layers == 0) {
+            throw new IllegalStateException(modelName + " 没有隐状态输入，不是流式模型");
+        }
+
+        long[] inputShape = fixBatchDim(((TensorInfo) session.getInputInfo().get(INPUT_NAME).getInfo()).getShape());
+        inputShape[1] = stepSize;  // 序列长度维度为动态维度，固定为滑动步长
+        long[] outputShape = fixBatchDim(((TensorInfo) session.getOutputInfo().get(OUTPUT_NAME).getInfo()).getShape());
+        stepBuffer = allocateFloatBuffer(elementCount(inputShape));
+        velocityBuffer = allocateFloatBuffer(elementCount(outputShape));
+        OnnxTensor stepTensor = createTensor(stepBuffer, inputShape);
+        OnnxTensor velocityTensor = createTensor(velocityBuffer, outputShape);
+
+        stateBuffers = new FloatBuffer[2][layers];
+        OnnxTensor[][] stateTensors = new OnnxTensor[2][layers];
+        for (int k = 0; k < layers; k++) {
+            long[] stateShape = fixBatchDim(((TensorInfo) session.getInputInfo()
+                    .get(STATE_INPUT_PREFIX + k).getInfo()).getShape());
+            for (int g = 0; g < 2; g++) {
+                stateBuffers[g][k] = allocateFloatBuffer(elementCount(stateShape));
+                stateTensors[g][k] = createTensor(stateBuffers[g][k], stateShape);
+            }
+        }
+
+        // 第g组：输入隐状态取自第g组缓冲区，输出隐状态写入另一组缓冲区
+        for (int g = 0; g < 2; g++) {
+            Map<String, OnnxTensor> inputs = new HashMap<>();
+            Map<String, OnnxTensor> outputs = new HashMap<>();
+            inputs.put(INPUT_NAME, stepTensor);
+            outputs.put(OUTPUT_NAME, velocityTensor);
+            for (int k = 0; k < layers; k++) {
+                inputs.put(STATE_INPUT_PREFIX + k, stateTensors[g][k]);
+                outputs.put(STATE_OUTPUT_PREFIX + k, stateTensors[1 - g][k]);
+            }
+            stepInputs.add(inputs);
+            stepOutputs.add(outputs);
+        }
+        current = 0;
+    }
+
+    private OnnxTensor createTensor(FloatBuffer buffer, long[] shape) throws OrtException {
+        OnnxTensor tensor = OnnxTensor.createTensor(env, buffer, shape);
+        tensors.add(tensor);
+        return tensor;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (OnnxTensor tensor : tensors) {
+            tensor.close();
+        }
+        tensors.clear();
+        stepInputs.clear();
+        stepOutputs.clear();
+        stepBuffer = null;
+        super.close();
+    }
+}
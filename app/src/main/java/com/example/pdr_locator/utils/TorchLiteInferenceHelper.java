@@ -0,0 +1,163 @@
+package com.example.pdr_locator.utils;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+
+import org.pytorch.IValue;
+import org.pytorch.LiteModuleLoader;
+import org.pytorch.Module;
+import org.pytorch.Tensor;
+
+import java.io.File;
+import java.nio.FloatBuffer;
+
+/**
+ * PyTorch Lite推理后端，加载assets中用Lite解释器格式保存的TorchScript模型（如gru.ptl，由tools/export_torch_lite.py导出）。
+ * assets中的gru.pt、resnet.pt是训练检查点（torch.save保存的state_dict），LiteModuleLoader无法加载。
+ * 输入张量建立在预分配的直接缓冲区上，输出拷贝到复用的输出缓冲区
+ */
+public class TorchLiteInferenceHelper implements IInferenceBackend {
+    private static final String TAG = "TorchLiteInference";
+
+    private final String modelName;  // 模型文件名
+    private final long[] sampleShape;  // 单个窗口的输入形状，不含batch维，如[50, 6]
+    private final int outputStride;  // 单个窗口的输出元素个数
+    private final InferenceStats stats;  // 推理耗时统计
+    private Module module;  // TorchScript模块
+    private long loadTimeMs;  // 模型就绪耗时（毫秒）
+    private int inputStride;  // 单个窗口的输入元素个数
+    private int batchCapacity;  // 缓冲区能容纳的窗口数
+    private FloatBuffer inputBuffer;  // 输入缓冲区[batchCapacity * inputStride]
+    private FloatBuffer outputBuffer;  // 输出缓冲区[batchCapacity * outputStride]
+    private Tensor[] inputTensors;  // 下标为batch-1，建立在inputBuffer前batch个窗口上的输入张量，懒创建
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     * @param modelName assets中的模型文件名
+     * @param sampleShape 单个窗口的输入形状，不含batch维
+     * @param outputStride 单个窗口的输出元素个数
+     */
+    public TorchLiteInferenceHelper(Context context, String modelName, long[] sampleShape, int outputStride) {
+        this.modelName = modelName;
+        this.sampleShape = sampleShape.clone();
+        this.outputStride = outputStride;
+        this.stats = new InferenceStats(modelName + " [torch_lite]");
+        this.inputStride = 1;
+        for (long dim : sampleShape) {
+            inputStride *= (int) dim;
+        }
+        long startNs = System.nanoTime();
+        long heapBefore = ModelLoader.usedHeap();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        try {
+            // LiteModuleLoader只接受文件路径，模型需先解压到应用私有目录
+            File modelFile = ModelLoader.getModelFile(context, modelName);
+            module = LiteModuleLoader.load(modelFile.getAbsolutePath());
+            ModelLoader.logLoad(modelName, "torch_lite", modelFile.length(), startNs, heapBefore, nativeBefore);
+        } catch (Exception e) {
+            Log.e("model_load", "模型加载失败: " + modelName, e);
+        }
+        loadTimeMs = (System.nanoTime() - startNs) / 1_000_000;
+        Log.i(TAG, modelName + " 模型就绪耗时: " + loadTimeMs + " ms");
+    }
+
+    @Override
+    public FloatBuffer getInputBuffer(int batch) {
+        ensureBatchCapacity(batch);
+        inputBuffer.clear();
+        inputBuffer.limit(batch * inputStride);
+        return inputBuffer;
+    }
+
+    @Override
+    public FloatBuffer runDirect(int batch) {
+        ensureBatchCapacity(batch);
+        if (inputTensors[batch - 1] == null) {
+            long[] shape = new long[sampleShape.length + 1];
+            shape[0] = batch;
+            System.arraycopy(sampleShape, 0, shape, 1, sampleShape.length);
+            inputTensors[batch - 1] = Tensor.fromBlob(slice(inputBuffer, batch * inputStride), shape);
+        }
+        long startNs = System.nanoTime();
+        float[] output;
+        try {
+            output = module.forward(IValue.from(inputTensors[batch - 1])).toTensor().getDataAsFloatArray();
+        } finally {
+            stats.record(System.nanoTime() - startNs);
+        }
+        outputBuffer.clear();
+        outputBuffer.put(output, 0, batch * outputStride);
+        outputBuffer.flip();
+        return outputBuffer;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    /**
+     * 确保缓冲区能容纳batch个窗口，容量不足时重新分配
+     *
+     * @param batch 窗口数
+     */
+    private void ensureBatchCapacity(int batch) {
+        if (module == null) {
+            throw new IllegalStateException("模型未加载或已关闭: " + modelName);
+        }
+        if (batch < 1) {
+            throw new IllegalArgumentException(modelName + " 不支持batch=" + batch);
+        }
+        if (batch > batchCapacity) {
+            inputBuffer = Tensor.allocateFloatBuffer(batch * inputStride);
+            outputBuffer = FloatBuffer.allocate(batch * outputStride);
+            inputTensors = new Tensor[batch];
+            batchCapacity = batch;
+        }
+    }
+
+    /**
+     * 获取与buffer共享内存、从0开始、长度为length的视图
+     */
+    private static FloatBuffer slice(FloatBuffer buffer, int length) {
+        FloatBuffer view = buffer.duplicate();
+        view.clear();
+        view.limit(length);
+        return view.slice();
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return module != null;
+    }
+
+    @Override
+    public String getBackendName() {
+        return "torch_lite";
+    }
+
+    @Override
+    public long getLoadTimeMs() {
+        return loadTimeMs;
+    }
+
+    @Override
+    public InferenceStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (module != null) {
+            module.destroy();
+            module = null;
+        }
+        inputTensors = null;
+        inputBuffer = null;
+        outputBuffer = null;
+        batchCapacity = 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.pdr_locator.utils;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 生产者和消费者之间无锁交接时的等待方式，在延迟和CPU占用之间取舍
+ */
+public enum WaitStrategy {
+    /**
+     * 忙等，延迟最低，等待期间占满一个CPU核心。生产者和消费者不能各占一个核心时会互相抢占，吞吐量反而最差
+     */
+    SPIN {
+        @Override
+        public void idle(int attempt, long maxNanos) {
+        }
+    },
+    /**
+     * 每次等待让出CPU，延迟和占用都居中
+     */
+    YIELD {
+        @Override
+        public void idle(int attempt, long maxNanos) {
+            Thread.yield();
+        }
+    },
+    /**
+     * 先短暂忙等，之后挂起线程直到被对方唤醒（最长maxNanos），空闲时几乎不占CPU
+     */
+    PARK {
+        @Override
+        public void idle(int attempt, long maxNanos) {
+            if (attempt < SPIN_TRIES) {
+                return;
+            }
+            if (attempt < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+                return;
+            }
+            LockSupport.parkNanos(this, maxNanos);
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;  // PARK策略挂起前的忙等次数
+    private static final int YIELD_TRIES = 10;  // PARK策略挂起前的让出次数
+
+    /**
+     * 等待一次，调用方在返回后重新检查条件
+     *
+     * @param attempt 本轮已等待的次数，从0开始
+     * @param maxNanos 本次最长等待时间（纳秒），只有PARK会挂起
+     */
+    public abstract void idle(int attempt, long maxNanos);
+
+    /**
+     * 根据配置名获取等待方式
+     *
+     * @param name 等待方式名，如PARK
+     * @return 对应的等待方式，名称无效时返回PARK
+     */
+    public static WaitStrategy forName(String name) {
+        for (WaitStrategy strategy : values()) {
+            if (strategy.name().equals(name)) {
+                return strategy;
+            }
+        }
+        return PARK;
+    }
+
+    /**
+     * 根据用户配置（wait_strategy_key）获取定位线程使用的等待方式。
+     * 定位线程大部分时间在等待下一个窗口，SPIN会使其持续占满一个核心，因此不对配置开放，按PARK处理
+     *
+     * @param name 配置的等待方式名
+     * @return YIELD或PARK，名称无效或为SPIN时返回PARK
+     */
+    public static WaitStrategy forConfig(String name) {
+        WaitStrategy strategy = forName(name);
+        return strategy == SPIN ? PARK : strategy;
+    }
+}
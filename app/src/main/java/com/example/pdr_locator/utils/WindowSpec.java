@@ -0,0 +1,103 @@
+package com.example.pdr_locator.utils;
+
+import java.util.Objects;
+
+/**
+ * 滑动窗口的划分方式。按样本数划分时每个窗口包含固定个数的原始样本；
+ * 按时间划分时每个窗口覆盖固定时长、按固定时间步长滑动，并按时间戳线性插值重采样为固定个数的样本，
+ * 不同采样率、不规则到达的数据得到的窗口是可比的
+ */
+public class WindowSpec {
+    private final boolean timeBased;  // 是否按时间划分
+    private final int samples;  // 每个窗口的样本数（按时间划分时为重采样后的样本数）
+    private final int slideStep;  // 按样本数划分时的滑动步长
+    private final long durationMs;  // 按时间划分时窗口覆盖的时长（毫秒）
+    private final long strideMs;  // 按时间划分时的滑动步长（毫秒）
+
+    private WindowSpec(boolean timeBased, int samples, int slideStep, long durationMs, long strideMs) {
+        this.timeBased = timeBased;
+        this.samples = samples;
+        this.slideStep = slideStep;
+        this.durationMs = durationMs;
+        this.strideMs = strideMs;
+    }
+
+    /**
+     * 按样本数划分窗口
+     *
+     * @param windowSize 窗口大小
+     * @param slideStep 滑动步长
+     * @return 窗口划分方式
+     */
+    public static WindowSpec ofCount(int windowSize, int slideStep) {
+        return new WindowSpec(false, windowSize, slideStep, 0, 0);
+    }
+
+    /**
+     * 按时间划分窗口。第i个重采样样本的时间为窗口起点 + i * durationMs / samples
+     *
+     * @param durationMs 窗口覆盖的时长（毫秒）
+     * @param strideMs 滑动步长（毫秒）
+     * @param samples 重采样后的样本数，即模型输入的时间步数
+     * @return 窗口划分方式
+     */
+    public static WindowSpec ofDuration(long durationMs, long strideMs, int samples) {
+        if (durationMs <= 0 || strideMs <= 0 || samples < 2) {
+            throw new IllegalArgumentException("无效的时间窗口: " + durationMs + "ms/" + strideMs + "ms/" + samples);
+        }
+        return new WindowSpec(true, samples, 0, durationMs, strideMs);
+    }
+
+    public boolean isTimeBased() {
+        return timeBased;
+    }
+
+    /**
+     * @return 每个窗口的样本数
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    public int getSlideStep() {
+        return slideStep;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public long getStrideMs() {
+        return strideMs;
+    }
+
+    /**
+     * @return 按时间划分时重采样的时间间隔（毫秒）
+     */
+    public double getSampleIntervalMs() {
+        return (double) durationMs / samples;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WindowSpec)) {
+            return false;
+        }
+        WindowSpec other = (WindowSpec) o;
+        return timeBased == other.timeBased && samples == other.samples && slideStep == other.slideStep
+                && durationMs == other.durationMs && strideMs == other.strideMs;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeBased, samples, slideStep, durationMs, strideMs);
+    }
+
+    @Override
+    public String toString() {
+        return timeBased ? durationMs + "ms/" + strideMs + "ms@" + samples : samples + "/" + slideStep;
+    }
+}
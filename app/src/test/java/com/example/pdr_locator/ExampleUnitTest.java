@@ -1,7 +1,6 @@
 package com.example.pdr_locator;
 
 import org.junit.Test;
-import org.nd4j.linalg.factory.Nd4j;
 
 import static org.junit.Assert.*;
 
@@ -0,0 +1,112 @@
+package com.example.pdr_locator.algorithm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.utils.SensorWindow;
+import com.example.pdr_locator.utils.SlidingWindowManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * PdrLocalOri的JVM单元测试，使用assets中的gru.weights
+ */
+public class PdrLocalOriTest {
+    private static final String WEIGHTS = "src/main/assets/gru.weights";  // 相对于app模块目录
+    private SharedGruPdrFactory factory;
+    private SlidingWindowManager manager;
+    private SensorData data;
+    private int written;  // 已写入的样本数
+
+    @Before
+    public void setUp() throws IOException {
+        factory = SharedGruPdrFactory.load(new File(WEIGHTS));
+        manager = new SlidingWindowManager(PdrLocalOri.WINDOW_SIZE, PdrLocalOri.DEFAULT_SLIDE_STEP);
+        data = new SensorData(0, new float[3], new float[3], new float[3]);
+    }
+
+    /**
+     * 读取期间被覆盖的窗口不改变姿态和位置，之后的结果与从未处理过该窗口一致，逐窗口和批量计算都是如此
+     */
+    @Test
+    public void ignoresOverwrittenWindow() throws Exception {
+        PdrLocalOri algorithm = factory.get();
+        PdrLocalOri reference = factory.get();
+        SensorWindow first = next(PdrLocalOri.WINDOW_SIZE);
+        double[] start = algorithm.getCoordinate(first).clone();
+        reference.getCoordinate(first);
+        manager.release(first);
+
+        SensorWindow stale = next(PdrLocalOri.DEFAULT_SLIDE_STEP);
+        SensorWindow stale2 = next(PdrLocalOri.DEFAULT_SLIDE_STEP);
+        SensorWindow latest = next(4096);  // 写入足够多的样本，覆盖stale和stale2的数据
+        assertFalse(stale.isValid());
+        assertFalse(stale2.isValid());
+
+        assertArrayEquals(start, algorithm.getCoordinate(stale), 0.0);
+        List<double[]> batch = algorithm.getCoordinates(Arrays.asList(stale2, latest));
+        assertArrayEquals(start, batch.get(0), 0.0);
+        assertArrayEquals(reference.getCoordinate(latest), batch.get(1), 1e-9);
+    }
+
+    /**
+     * 连续的窗口只按新增的样本累计位移，跳过窗口造成间隔后与首个窗口一样按整个窗口的时长累计
+     */
+    @Test
+    public void integratesWholeWindowAfterGap() throws Exception {
+        PdrLocalOri algorithm = factory.get();
+        double[] position = new double[3];
+        position = assertDisplacement(algorithm, next(PdrLocalOri.WINDOW_SIZE), position, 0);
+        position = assertDisplacement(algorithm, next(PdrLocalOri.DEFAULT_SLIDE_STEP), position,
+                PdrLocalOri.WINDOW_SIZE - PdrLocalOri.DEFAULT_SLIDE_STEP);
+        assertDisplacement(algorithm, next(3 * PdrLocalOri.DEFAULT_SLIDE_STEP), position, 0);  // 跳过两个窗口
+    }
+
+    /**
+     * 处理一个窗口，检查位移等于预测的速度乘以从第from个样本到窗口末尾的时长
+     *
+     * @return 处理后的位置
+     */
+    private static double[] assertDisplacement(PdrLocalOri algorithm, SensorWindow window, double[] before,
+                                               int from) throws Exception {
+        double[] after = algorithm.getCoordinate(window).clone();
+        float[] v = algorithm.getLastVelocity();
+        double seconds = (window.getTimestamp(window.size() - 1) - window.getTimestamp(from)) / 1000.0;
+        for (int axis = 0; axis < 2; axis++) {
+            assertEquals(before[axis] + v[axis] * seconds, after[axis], 1e-9);
+        }
+        return after;
+    }
+
+    /**
+     * 写入count个样本，返回最新的窗口，其余窗口直接归还
+     */
+    private SensorWindow next(int count) {
+        SensorWindow latest = null;
+        for (int i = 0; i < count; i++, written++) {
+            data.setTimestamp(written * 20L);
+            data.getAccelerometerData()[0] = 0.5f * (float) Math.sin(written * 0.3);
+            data.getAccelerometerData()[2] = 9.81f;
+            data.getGyroscopeData()[2] = 0.2f;
+            manager.addData(data);
+            SensorWindow window;
+            while ((window = manager.pollTask()) != null) {
+                if (latest != null) {
+                    manager.release(latest);
+                }
+                latest = window;
+            }
+        }
+        assertNotNull(latest);
+        return latest;
+    }
+}
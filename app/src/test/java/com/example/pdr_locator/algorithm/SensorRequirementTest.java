@@ -0,0 +1,70 @@
+package com.example.pdr_locator.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * SensorRequirement的JVM单元测试
+ */
+public class SensorRequirementTest {
+    private static final SensorRequirement GRU =
+            new SensorRequirement(50, WindowSpec.ofCount(50, 10), SensorType.ACCELEROMETER, SensorType.GYROSCOPE);
+    private static final SensorRequirement HEAVY =
+            new SensorRequirement(100, WindowSpec.ofCount(200, 50), SensorType.GYROSCOPE, SensorType.MAGNETOMETER);
+    private static final SensorRequirement RAW =
+            new SensorRequirement(SensorRequirement.RAW_RATE, null, SensorType.ACCELEROMETER);
+
+    /**
+     * 取满足所有要求的最低采样率，即最高的要求
+     */
+    @Test
+    public void negotiatesLowestSatisfyingRate() {
+        assertEquals(50, SensorRequirement.negotiateRateHz(Collections.singletonList(GRU)));
+        assertEquals(100, SensorRequirement.negotiateRateHz(Arrays.asList(GRU, HEAVY)));
+        assertEquals(SensorRequirement.RAW_RATE, SensorRequirement.negotiateRateHz(Collections.emptyList()));
+    }
+
+    /**
+     * 不整除1000Hz的频率向上取整，使重采样后的毫秒间隔精确
+     */
+    @Test
+    public void roundsUpToExactPeriod() {
+        assertEquals(40, SensorRequirement.negotiateRateHz(Collections.singletonList(requirement(30))));
+        assertEquals(125, SensorRequirement.negotiateRateHz(Collections.singletonList(requirement(120))));
+        assertEquals(200, SensorRequirement.negotiateRateHz(Collections.singletonList(requirement(200))));
+        assertEquals(SensorRequirement.RAW_RATE,
+                SensorRequirement.negotiateRateHz(Collections.singletonList(requirement(2000))));
+    }
+
+    /**
+     * 任一要求原始数据时以最快频率采集
+     */
+    @Test
+    public void rawRateWins() {
+        assertEquals(SensorRequirement.RAW_RATE, SensorRequirement.negotiateRateHz(Arrays.asList(GRU, RAW)));
+        assertEquals(0.02, GRU.getSamplePeriodSeconds(), 1e-12);
+        assertEquals(0.0, RAW.getSamplePeriodSeconds(), 0.0);
+    }
+
+    @Test
+    public void mergesSensorTypesInOrder() {
+        assertEquals(Arrays.asList(SensorType.ACCELEROMETER, SensorType.GYROSCOPE, SensorType.MAGNETOMETER),
+                SensorRequirement.mergeSensorTypes(Arrays.asList(GRU, HEAVY, RAW)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeRate() {
+        requirement(-1);
+    }
+
+    private static SensorRequirement requirement(int rateHz) {
+        return new SensorRequirement(rateHz, null, SensorType.ACCELEROMETER);
+    }
+}
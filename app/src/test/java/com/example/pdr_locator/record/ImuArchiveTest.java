@@ -0,0 +1,200 @@
+package com.example.pdr_locator.record;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ImuArchiveWriter、ImuArchiveReader和ImuArchiveBenchmark的JVM单元测试
+ */
+public class ImuArchiveTest {
+    private static final int RECORDS = 50_000;  // 50Hz约17分钟
+    private File dir;
+    private File archive;
+    private File csv;
+    private SensorData[] samples;
+
+    @Before
+    public void setUp() throws IOException {
+        archive = File.createTempFile("imu", ".imuc");
+        csv = File.createTempFile("imu", ".csv");
+        dir = csv.getParentFile();
+        samples = walk(RECORDS);
+    }
+
+    @After
+    public void tearDown() {
+        archive.delete();
+        csv.delete();
+    }
+
+    /**
+     * 时间戳无损，传感器值误差在文档给出的范围内
+     */
+    @Test
+    public void roundTripsWithinBound() throws IOException {
+        ImuArchiveHeader header = new ImuArchiveHeader(50, "test");
+        write(header);
+        try (ImuArchiveReader reader = new ImuArchiveReader(archive)) {
+            assertEquals(RECORDS, reader.getRecordCount());
+            assertEquals((RECORDS + header.getChunkRecords() - 1) / header.getChunkRecords(), reader.getChunkCount());
+            assertEquals("test", reader.getHeader().getDeviceInfo());
+            int i = 0;
+            for (ImuChunk chunk : reader.readAll()) {
+                for (int record = 0; record < chunk.size(); record++, i++) {
+                    assertClose(samples[i], chunk.get(record), header);
+                }
+            }
+            assertEquals(RECORDS, i);
+        }
+    }
+
+    /**
+     * 按时间定位只解码重叠的块，结果与逐条筛选一致
+     */
+    @Test
+    public void seeksByTime() throws IOException {
+        ImuArchiveHeader header = new ImuArchiveHeader(100, 50, null, 1e-4, 1e-5, 1e-3);
+        write(header);
+        try (ImuArchiveReader reader = new ImuArchiveReader(archive)) {
+            long from = samples[12_345].getTimestamp() + 1;
+            long to = samples[12_500].getTimestamp();
+            List<SensorData> range = reader.read(from, to);
+            int first = 12_346;
+            assertEquals(to, range.get(range.size() - 1).getTimestamp());
+            assertEquals(12_500 - first + 1, range.size());
+            for (int i = 0; i < range.size(); i++) {
+                assertClose(samples[first + i], range.get(i), header);
+            }
+            assertEquals(0, reader.findChunk(Long.MIN_VALUE));
+            assertEquals(123, reader.findChunk(samples[12_345].getTimestamp()));
+            assertEquals(reader.getChunkCount(), reader.findChunk(reader.getEndTimestamp() + 1));
+            assertEquals(0, reader.read(reader.getEndTimestamp() + 1, Long.MAX_VALUE).size());
+        }
+    }
+
+    /**
+     * 并行解码的结果与顺序解码一致
+     */
+    @Test
+    public void parallelDecodeMatchesSequential() throws IOException {
+        write(new ImuArchiveHeader(256, 50, null, 1e-4, 1e-5, 1e-3));
+        try (ImuArchiveReader reader = new ImuArchiveReader(archive)) {
+            List<ImuChunk> sequential = reader.readAll();
+            List<ImuChunk> parallel = reader.readAllParallel();
+            assertEquals(sequential.size(), parallel.size());
+            for (int chunk = 0; chunk < sequential.size(); chunk++) {
+                assertEquals(chunk, parallel.get(chunk).getIndex());
+                for (int record = 0; record < sequential.get(chunk).size(); record++) {
+                    SensorData expected = sequential.get(chunk).get(record);
+                    SensorData actual = parallel.get(chunk).get(record);
+                    assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                    assertArrayEquals(expected.getGyroscopeData(), actual.getGyroscopeData(), 0f);
+                }
+            }
+        }
+    }
+
+    /**
+     * 压缩率和解码速度的评估，记录可比CSV小得多，误差在量化步长的一半以内
+     */
+    @Test
+    public void benchmarkReportsRatioAndThroughput() throws IOException {
+        try (Writer writer = new FileWriter(csv)) {
+            for (SensorData sample : samples) {
+                writer.write(sample.buildRowData());
+            }
+        }
+        ImuArchiveHeader header = new ImuArchiveHeader(50, "test");
+        ImuArchiveBenchmark.Report report = ImuArchiveBenchmark.run(csv, dir, header);
+        System.out.println(report);
+        assertEquals(RECORDS, report.getRecords());
+        assertEquals(0, report.getTimestampMismatches());
+        assertTrue(report.getCompressionRatio() > 4);
+        assertTrue(report.getBinaryCompressionRatio() > 1.5);
+        for (int sensor = 0; sensor < 3; sensor++) {
+            assertTrue(report.getMaxError(sensor) <= header.getStep(sensor) / 2 + 1e-5);
+        }
+        assertTrue(report.getSequentialRecordsPerSecond() > 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedArchive() throws IOException {
+        write(new ImuArchiveHeader(50, null));
+        try (java.io.RandomAccessFile file = new java.io.RandomAccessFile(archive, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        new ImuArchiveReader(archive).close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonFiniteValues() throws IOException {
+        try (ImuArchiveWriter writer = new ImuArchiveWriter(archive, new ImuArchiveHeader(50, null))) {
+            writer.write(0, new float[]{Float.NaN, 0, 0}, new float[3], new float[3]);
+        }
+    }
+
+    private void write(ImuArchiveHeader header) throws IOException {
+        try (ImuArchiveWriter writer = new ImuArchiveWriter(archive, header)) {
+            for (SensorData sample : samples) {
+                writer.write(sample);
+            }
+            assertEquals(RECORDS, writer.getRecords());
+        }
+    }
+
+    private static void assertClose(SensorData expected, SensorData actual, ImuArchiveHeader header) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        float[][] expectedSensors = {expected.getAccelerometerData(), expected.getGyroscopeData(),
+                expected.getMagnetometerData()};
+        float[][] actualSensors = {actual.getAccelerometerData(), actual.getGyroscopeData(),
+                actual.getMagnetometerData()};
+        for (int sensor = 0; sensor < 3; sensor++) {
+            for (int axis = 0; axis < 3; axis++) {
+                float value = expectedSensors[sensor][axis];
+                assertEquals(value, actualSensors[sensor][axis], header.getStep(sensor) / 2 + Math.ulp(value) / 2);
+            }
+        }
+    }
+
+    /**
+     * 模拟50Hz步行数据：带抖动的时间戳，按手机传感器分辨率取整的加速度、角速度和磁场
+     */
+    private static SensorData[] walk(int count) {
+        Random random = new Random(11);
+        SensorData[] samples = new SensorData[count];
+        long timestamp = 1_716_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            double phase = i * 2 * Math.PI / 25;  // 2步/秒
+            timestamp += 20 + random.nextInt(3) - 1;
+            samples[i] = new SensorData(timestamp,
+                    new float[]{resolve(1.5 * Math.sin(phase) + random.nextGaussian() * 0.05, 0.0023956299),
+                            resolve(9.8 + 2 * Math.cos(phase) + random.nextGaussian() * 0.05, 0.0023956299),
+                            resolve(0.3 * Math.sin(phase / 2) + random.nextGaussian() * 0.05, 0.0023956299)},
+                    new float[]{resolve(0.2 * Math.sin(phase) + random.nextGaussian() * 0.01, 0.0010652645),
+                            resolve(0.1 * Math.cos(phase) + random.nextGaussian() * 0.01, 0.0010652645),
+                            resolve(random.nextGaussian() * 0.01, 0.0010652645)},
+                    new float[]{resolve(20 + random.nextGaussian() * 0.3, 0.15),
+                            resolve(-5 + random.nextGaussian() * 0.3, 0.15),
+                            resolve(-40 + random.nextGaussian() * 0.3, 0.15)});
+        }
+        return samples;
+    }
+
+    private static float resolve(double value, double resolution) {
+        return (float) (Math.rint(value / resolution) * resolution);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.pdr_locator.record;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * ImuChunkCodec的JVM单元测试
+ */
+public class ImuChunkCodecTest {
+    private static final double[] STEPS = {1e-4, 1e-5, 1e-3};
+
+    /**
+     * 时间戳无损，包括回退和极端值；传感器值误差不超过 步长/2 + ulp/2
+     */
+    @Test
+    public void roundTripsWithinBound() {
+        Random random = new Random(3);
+        int records = 500;
+        long[] timestamps = new long[records];
+        float[] values = new float[records * ImuChunkCodec.CHANNELS];
+        for (int i = 0; i < records; i++) {
+            timestamps[i] = 1_700_000_000_000L + i * 20L + random.nextInt(3);
+            for (int channel = 0; channel < ImuChunkCodec.CHANNELS; channel++) {
+                values[i * ImuChunkCodec.CHANNELS + channel] = (float) (random.nextGaussian() * 50);
+            }
+        }
+        timestamps[100] = timestamps[99] - 5;  // 时间戳回退
+        timestamps[200] = Long.MIN_VALUE;
+        timestamps[201] = Long.MAX_VALUE;
+        byte[] encoded = new byte[ImuChunkCodec.maxEncodedSize(records)];
+        int length = ImuChunkCodec.encode(timestamps, values, records, STEPS, encoded);
+        long[] decodedTimestamps = new long[records];
+        float[] decodedValues = new float[values.length];
+        assertEquals(length, ImuChunkCodec.decode(encoded, 0, records, STEPS, decodedTimestamps, decodedValues));
+        assertArrayEquals(timestamps, decodedTimestamps);
+        for (int i = 0; i < values.length; i++) {
+            int channel = i % ImuChunkCodec.CHANNELS;
+            double bound = STEPS[channel / 3] / 2 + Math.ulp(values[i]) / 2;
+            assertTrue("通道" + channel + ": " + values[i] + " -> " + decodedValues[i],
+                    Math.abs(decodedValues[i] - values[i]) <= bound);
+        }
+    }
+
+    /**
+     * 小的差值只占一个字节
+     */
+    @Test
+    public void smallDeltasTakeOneByte() {
+        byte[] out = new byte[10];
+        assertEquals(1, ImuChunkCodec.writeVarLong(out, 0, ImuChunkCodec.zigZag(-64)));
+        assertEquals(2, ImuChunkCodec.writeVarLong(out, 0, ImuChunkCodec.zigZag(64)));
+        assertEquals(10, ImuChunkCodec.writeVarLong(out, 0, ImuChunkCodec.zigZag(Long.MIN_VALUE)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNaN() {
+        ImuChunkCodec.quantize(Float.NaN, 1e-4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOverflow() {
+        ImuChunkCodec.quantize(Float.MAX_VALUE, 1e-4);
+    }
+}
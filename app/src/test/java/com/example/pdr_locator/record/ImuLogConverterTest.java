@@ -0,0 +1,75 @@
+package com.example.pdr_locator.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * ImuLogConverter的JVM单元测试
+ */
+public class ImuLogConverterTest {
+    private File csv;
+    private File log;
+    private File back;
+
+    @Before
+    public void setUp() throws IOException {
+        csv = File.createTempFile("imu", ".csv");
+        log = File.createTempFile("imu", ".bin");
+        back = File.createTempFile("imu", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        csv.delete();
+        log.delete();
+        back.delete();
+    }
+
+    /**
+     * CSV转换为二进制再转换回CSV，内容不变，二进制文件更小
+     */
+    @Test
+    public void roundTripIsLossless() throws IOException {
+        Random random = new Random(7);
+        try (Writer writer = new FileWriter(csv)) {
+            for (int i = 0; i < 2000; i++) {
+                SensorData data = new SensorData(1_700_000_000_000L + i * 5L,
+                        new float[]{random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, 9.8f},
+                        new float[]{(float) random.nextGaussian(), 0, -1e-7f},
+                        new float[]{random.nextFloat() * 100, Float.MIN_VALUE, -45.5f});
+                writer.write(data.buildRowData());
+                if (i % 500 == 0) {
+                    writer.write(System.lineSeparator());  // 空行被跳过
+                }
+            }
+        }
+        assertEquals(2000, ImuLogConverter.csvToBinary(csv, log, new ImuLogHeader(200, "test")));
+        assertEquals(2000, ImuLogConverter.binaryToCsv(log, back));
+        String expected = new String(Files.readAllBytes(csv.toPath())).replace(
+                System.lineSeparator() + System.lineSeparator(), System.lineSeparator());
+        assertEquals(expected, new String(Files.readAllBytes(back.toPath())));
+        System.out.printf("CSV %d 字节, 二进制 %d 字节%n", csv.length(), log.length());
+        assertTrue(log.length() * 3 < csv.length() * 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedRow() throws IOException {
+        try (Writer writer = new FileWriter(csv)) {
+            writer.write("1,2,3" + System.lineSeparator());
+        }
+        ImuLogConverter.csvToBinary(csv, log, new ImuLogHeader(0, null));
+    }
+}
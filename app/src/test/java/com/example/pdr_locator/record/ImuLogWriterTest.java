@@ -0,0 +1,138 @@
+package com.example.pdr_locator.record;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * ImuLogWriter和ImuLogReader的JVM单元测试
+ */
+public class ImuLogWriterTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("imu", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * 写入跨越多块映射区域，读出的记录和文件头与写入的一致，文件截断到有效长度
+     */
+    @Test
+    public void roundTripsAcrossChunks() throws IOException {
+        ImuLogHeader header = new ImuLogHeader(50, "Xiaomi 23049RAD8C");
+        try (ImuLogWriter writer = new ImuLogWriter(file, header, 1000)) {
+            for (int i = 0; i < 500; i++) {
+                writer.write(sample(i));
+            }
+        }
+        assertEquals(header.getSize() + 500L * ImuLogHeader.RECORD_SIZE, file.length());
+        try (ImuLogReader reader = new ImuLogReader(file)) {
+            assertEquals(50, reader.getHeader().getSampleRateHz());
+            assertEquals("Xiaomi 23049RAD8C", reader.getHeader().getDeviceInfo());
+            assertEquals(ImuLogHeader.CHANNELS, reader.getHeader().getChannels());
+            assertEquals(500, reader.getHeader().getRecordCount());
+            List<SensorData> samples = reader.readAll();
+            assertEquals(500, samples.size());
+            for (int i = 0; i < 500; i++) {
+                assertSameSample(sample(i), samples.get(i));
+            }
+        }
+    }
+
+    /**
+     * 写入未正常结束时按文件长度推算记录数，跳过映射区域末尾未写入的全零记录
+     */
+    @Test
+    public void readsUnfinishedLog() throws IOException {
+        ImuLogWriter writer = new ImuLogWriter(file, new ImuLogHeader(0, null), 4096);
+        for (int i = 0; i < 10; i++) {
+            writer.write(sample(i));
+        }
+        writer.force();
+        try (ImuLogReader reader = new ImuLogReader(file)) {
+            assertEquals(ImuLogHeader.UNKNOWN_COUNT, reader.getHeader().getRecordCount());
+            assertEquals(10, reader.getRecordCount());
+            SensorData out = new SensorData(0, new float[3], new float[3], new float[3]);
+            for (int i = 0; i < 10; i++) {
+                assertTrue(reader.next(out));
+                assertSameSample(sample(i), out);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(sample(0).buildRowData());
+        }
+        new ImuLogReader(file).close();
+    }
+
+    /**
+     * 同样的数据，二进制文件比CSV小，且读出的记录数与CSV的行数一致
+     */
+    @Test
+    public void smallerThanCsv() throws IOException {
+        int count = 1000;
+        File csvFile = File.createTempFile("imu", ".csv");
+        try {
+            try (Writer csv = new BufferedWriter(new FileWriter(csvFile));
+                 ImuLogWriter writer = new ImuLogWriter(file, new ImuLogHeader(0, null))) {
+                StringBuilder row = new StringBuilder(256);
+                for (int i = 0; i < count; i++) {
+                    SensorData data = sample(i);
+                    row.setLength(0);
+                    data.appendRowData(row);
+                    csv.append(row);
+                    writer.write(data);
+                }
+            }
+            assertTrue(file.length() < csvFile.length());
+            SensorData out = new SensorData(0, new float[3], new float[3], new float[3]);
+            long rows = 0;
+            try (ISampleSource source = new CsvSampleSource(csvFile)) {
+                while (source.next(out)) {
+                    rows++;
+                }
+            }
+            try (ImuLogReader reader = new ImuLogReader(file)) {
+                assertEquals(rows, reader.getRecordCount());
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    private static SensorData sample(int i) {
+        return new SensorData(1_700_000_000_000L + i * 20L, new float[]{i * 0.1f, 9.81f, -0.3f},
+                new float[]{0.01f, -0.002f * i, 0.5f}, new float[]{31.5f, -4.25f, i});
+    }
+
+    private static void assertSameSample(SensorData expected, SensorData actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertArrayEquals(expected.getAccelerometerData(), actual.getAccelerometerData(), 0f);
+        assertArrayEquals(expected.getGyroscopeData(), actual.getGyroscopeData(), 0f);
+        assertArrayEquals(expected.getMagnetometerData(), actual.getMagnetometerData(), 0f);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.pdr_locator.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * ImuRecorder的JVM单元测试
+ */
+public class ImuRecorderTest {
+
+    /**
+     * 关闭后所有行按顺序写出，与SensorData.buildRowData()一致
+     */
+    @Test
+    public void writesAllRowsInOrder() throws IOException {
+        StringWriter writer = new StringWriter();
+        ImuRecorder recorder = new ImuRecorder(writer, 256, 60_000);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            SensorData data = sample(i);
+            recorder.record(data);
+            expected.append(data.buildRowData());
+        }
+        recorder.close();
+        assertEquals(expected.toString(), writer.toString());
+        assertEquals(1000, recorder.getRows());
+        assertEquals(expected.length(), recorder.getBytesWritten());
+        assertTrue(recorder.getFlushes() > 1);
+        assertEquals(0, recorder.getQueuedChars());
+    }
+
+    /**
+     * 缓冲区达到大小阈值后由写文件线程写出，不等到关闭
+     */
+    @Test
+    public void flushesWhenBufferFills() throws Exception {
+        StringWriter writer = new StringWriter();
+        ImuRecorder recorder = new ImuRecorder(writer, 64, 60_000);
+        for (int i = 0; i < 10; i++) {
+            recorder.record(sample(i));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (recorder.getBytesWritten() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(recorder.getBytesWritten() > 0);
+        recorder.close();
+    }
+
+    /**
+     * 写文件很慢时采集线程不等待，数据在当前缓冲区积压，关闭后仍全部写出
+     */
+    @Test
+    public void slowWriterNeverBlocksProducer() throws IOException {
+        SlowWriter writer = new SlowWriter(50);
+        ImuRecorder recorder = new ImuRecorder(writer, 64, 60_000);
+        StringBuilder expected = new StringBuilder();
+        long begin = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            SensorData data = sample(i);
+            recorder.record(data);
+            expected.append(data.buildRowData());
+        }
+        long elapsedMs = (System.nanoTime() - begin) / 1_000_000;
+        assertTrue("记录耗时 " + elapsedMs + "ms", elapsedMs < 50);
+        assertTrue(recorder.getBusySwaps() > 0);
+        assertTrue(recorder.getQueueOccupancy() > 1);
+        recorder.close();
+        assertEquals(expected.toString(), writer.content.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidThreshold() {
+        new ImuRecorder(new StringWriter(), 0, 1000);
+    }
+
+    private static SensorData sample(int i) {
+        return new SensorData(1_700_000_000_000L + i * 5L, new float[]{i, 9.8f, 0.1f},
+                new float[]{0.01f * i, 0, 0}, new float[]{30, 5, -40});
+    }
+
+    /**
+     * 每次写出前等待一段时间的Writer，模拟慢速存储
+     */
+    private static class SlowWriter extends Writer {
+        private final long delayMs;
+        private final StringBuilder content = new StringBuilder();
+
+        SlowWriter(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            content.append(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.pdr_locator.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.algorithm.IAlgorithm;
+import com.example.pdr_locator.algorithm.SharedGruPdrFactory;
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.record.ISampleSource;
+import com.example.pdr_locator.utils.SensorWindow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BatchReplay的JVM单元测试
+ */
+public class BatchReplayTest {
+    private static final int FILES = 12;
+    private File dir;
+    private File out;
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("batch", "");
+        dir.delete();
+        dir.mkdirs();
+        out = new File(dir, "out");
+        for (int f = 0; f < FILES; f++) {
+            try (Writer writer = new FileWriter(new File(dir, String.format("IMU_Data_%02d.csv", f)))) {
+                for (int i = 0; i < 300 + f * 50; i++) {
+                    writer.write(new SensorData(i * 20L, new float[]{f + i * 0.01f, 0, 9.81f},
+                            new float[]{0, 0, 0.1f}, new float[]{20, 0, 40}).buildRowData());
+                }
+            }
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        File[] outputs = out.listFiles();
+        if (outputs != null) {
+            for (File file : outputs) {
+                file.delete();
+            }
+        }
+        out.delete();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * 每个文件的轨迹与单独顺序回放一致，并写出轨迹文件
+     */
+    @Test
+    public void matchesSequentialReplay() throws Exception {
+        List<File> recordings = BatchReplay.listRecordings(dir);
+        assertEquals(FILES, recordings.size());
+        BatchReplay.Report report = new BatchReplay(ReplayEngineTest.SumAlgorithm::new, pool).run(recordings, out);
+        assertEquals(0, report.getFailures());
+        long windows = 0;
+        for (int f = 0; f < FILES; f++) {
+            BatchReplay.Entry entry = report.getEntries().get(f);
+            assertEquals(recordings.get(f), entry.getRecording());
+            ReplayResult expected;
+            try (ISampleSource source = ISampleSource.open(recordings.get(f))) {
+                expected = ReplayEngine.forAlgorithm(new ReplayEngineTest.SumAlgorithm(), ReplayEngine.MAX_SPEED)
+                        .run(new ReplayEngineTest.SumAlgorithm(), source);
+            }
+            double[][] actual = entry.getResult().getTrajectory();
+            assertEquals(expected.getWindows(), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                assertArrayEquals(expected.getTrajectory()[i], actual[i], 0);
+            }
+            File trajectory = new File(out, recordings.get(f).getName() + BatchReplay.TRAJECTORY_SUFFIX);
+            assertEquals(actual.length, countLines(trajectory));
+            windows += actual.length;
+        }
+        assertEquals(windows, report.getWindows());
+        assertTrue(report.getSamplesPerSecond() > 0);
+        assertTrue(report.getSpeedup() > 0);
+        // 轨迹文件不会被当作录制文件
+        assertEquals(FILES, BatchReplay.listRecordings(dir).size());
+    }
+
+    /**
+     * 每个任务使用自己的算法实例，实例用完后关闭
+     */
+    @Test
+    public void givesEachTaskItsOwnAlgorithm() throws Exception {
+        Set<ReplayEngineTest.SumAlgorithm> created = Collections.newSetFromMap(new IdentityHashMap<>());
+        AtomicInteger closed = new AtomicInteger();
+        BatchReplay batch = new BatchReplay(() -> {
+            ReplayEngineTest.SumAlgorithm algorithm = new ReplayEngineTest.SumAlgorithm() {
+                @Override
+                public void close() {
+                    closed.incrementAndGet();
+                }
+            };
+            synchronized (created) {
+                created.add(algorithm);
+            }
+            return algorithm;
+        }, pool);
+        BatchReplay.Report report = batch.run(BatchReplay.listRecordings(dir), null);
+        assertEquals(FILES, created.size());
+        assertEquals(FILES, closed.get());
+        assertEquals(0, report.getFailures());
+        assertFalse(out.exists());
+    }
+
+    /**
+     * 共享权重的PdrLocalOri并行回放，每个文件的轨迹与单独顺序回放一致
+     */
+    @Test
+    public void sharesGruWeightsAcrossTasks() throws Exception {
+        SharedGruPdrFactory factory = SharedGruPdrFactory.load(new File("src/main/assets/gru.weights"));
+        List<File> recordings = BatchReplay.listRecordings(dir);
+        BatchReplay.Report report = new BatchReplay(factory, pool).run(recordings, null);
+        assertEquals(0, report.getFailures());
+        for (int f = 0; f < FILES; f++) {
+            IAlgorithm algorithm = factory.get();
+            ReplayResult expected;
+            try (ISampleSource source = ISampleSource.open(recordings.get(f))) {
+                expected = ReplayEngine.forAlgorithm(algorithm, ReplayEngine.MAX_SPEED).run(algorithm, source);
+            } finally {
+                algorithm.close();
+            }
+            double[][] actual = report.getEntries().get(f).getResult().getTrajectory();
+            assertEquals(expected.getWindows(), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                assertArrayEquals(expected.getTrajectory()[i], actual[i], 0);
+            }
+        }
+    }
+
+    /**
+     * 单个文件失败不影响其他文件
+     */
+    @Test
+    public void reportsFailedRecording() throws Exception {
+        File broken = new File(dir, "IMU_Data_broken.csv");
+        try (Writer writer = new FileWriter(broken)) {
+            writer.write("1,2,3\n");
+        }
+        List<File> recordings = new ArrayList<>(BatchReplay.listRecordings(dir));
+        BatchReplay.Report report = new BatchReplay(ReplayEngineTest.SumAlgorithm::new, pool).run(recordings, null);
+        assertEquals(1, report.getFailures());
+        for (BatchReplay.Entry entry : report.getEntries()) {
+            if (entry.getRecording().equals(broken)) {
+                assertNotNull(entry.getError());
+            } else {
+                assertTrue(entry.isSuccess());
+            }
+        }
+    }
+
+    /**
+     * CPU密集的算法在多线程下的吞吐量，核数足够时应接近线性
+     */
+    @Test
+    public void reportsThroughput() throws Exception {
+        List<File> recordings = BatchReplay.listRecordings(dir);
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            BatchReplay.Report serial = new BatchReplay(BusyAlgorithm::new, single).run(recordings, null);
+            BatchReplay.Report parallel = new BatchReplay(BusyAlgorithm::new, pool).run(recordings, null);
+            System.out.println("1线程: " + serial);
+            System.out.println("4线程: " + parallel);
+            assertEquals(serial.getWindows(), parallel.getWindows());
+            if (Runtime.getRuntime().availableProcessors() >= 4) {
+                assertTrue(parallel.getSamplesPerSecond() > 2 * serial.getSamplesPerSecond());
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    private static int countLines(File file) throws IOException {
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            while (reader.readLine() != null) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 每个窗口做一定量计算的测试算法
+     */
+    static class BusyAlgorithm extends ReplayEngineTest.SumAlgorithm {
+        private double sink;  // 防止计算被优化掉
+
+        @Override
+        public double[] getCoordinate(SensorWindow input) {
+            for (int k = 0; k < 200; k++) {
+                for (int i = 0; i < input.size(); i++) {
+                    sink += Math.sin(input.getAccelerometer(i, 0) + k);
+                }
+            }
+            double[] position = super.getCoordinate(input);
+            position[2] = sink == Double.MAX_VALUE ? 1 : 0;
+            return position;
+        }
+    }
+}
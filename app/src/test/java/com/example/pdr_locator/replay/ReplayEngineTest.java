@@ -0,0 +1,234 @@
+package com.example.pdr_locator.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.algorithm.IAlgorithm;
+import com.example.pdr_locator.algorithm.PdrLocalOri;
+import com.example.pdr_locator.algorithm.SensorRequirement;
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.model.SensorType;
+import com.example.pdr_locator.record.ISampleSource;
+import com.example.pdr_locator.record.ImuArchiveHeader;
+import com.example.pdr_locator.record.ImuLogConverter;
+import com.example.pdr_locator.record.ImuLogHeader;
+import com.example.pdr_locator.utils.GruEngine;
+import com.example.pdr_locator.utils.JavaGruInferenceHelper;
+import com.example.pdr_locator.utils.SensorWindow;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * ReplayEngine、ReplayResult和ISampleSource的JVM单元测试
+ */
+public class ReplayEngineTest {
+    private static final int SAMPLES = 1000;  // 50Hz共20秒
+    private static final long INTERVAL_MS = 20;  // 采样间隔
+    private File csv;
+    private File log;
+    private File archive;
+
+    @Before
+    public void setUp() throws IOException {
+        csv = File.createTempFile("replay", ".csv");
+        log = new File(csv.getPath() + ImuLogHeader.FILE_EXTENSION);
+        archive = new File(csv.getPath() + ImuArchiveHeader.FILE_EXTENSION);
+        try (Writer writer = new FileWriter(csv)) {
+            for (int i = 0; i < SAMPLES; i++) {
+                float phase = i * 0.05f;
+                writer.write(new SensorData(1_000_000L + i * INTERVAL_MS,
+                        new float[]{(float) Math.sin(phase), (float) Math.cos(phase), 9.81f},
+                        new float[]{0.01f * i % 1, -0.02f, 0.03f},
+                        new float[]{20.5f, -3.25f, 41.0f}).buildRowData());
+            }
+            writer.write("\n");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        csv.delete();
+        log.delete();
+        archive.delete();
+    }
+
+    /**
+     * 窗口数和每个窗口的时间戳与采集时的滑动窗口一致
+     */
+    @Test
+    public void replaysWindowsLikeCollector() throws Exception {
+        ReplayResult result = replay(csv, WindowSpec.ofCount(50, 10));
+        assertEquals(SAMPLES, result.getSamples());
+        assertEquals((SAMPLES - 50) / 10 + 1, result.getWindows());
+        assertEquals(0, result.getDroppedWindows());
+        for (int i = 0; i < result.getWindows(); i++) {
+            assertEquals(1_000_000L + (49 + i * 10) * INTERVAL_MS, result.getTimestamp(i));
+            assertEquals((i + 1) * 50, result.getPosition(i, 1), 0);
+        }
+        assertTrue(result.getWindowsPerSecond() > 0);
+        assertTrue(result.getLatencyPercentileMs(99) >= result.getLatencyPercentileMs(50));
+    }
+
+    /**
+     * CSV、二进制日志和压缩记录回放得到相同的轨迹，压缩记录只有量化误差
+     */
+    @Test
+    public void sourcesGiveSameTrajectory() throws Exception {
+        ImuLogConverter.csvToBinary(csv, log, new ImuLogHeader(50, "test"));
+        ImuLogConverter.csvToArchive(csv, archive, new ImuArchiveHeader(50, "test"));
+        WindowSpec spec = WindowSpec.ofCount(50, 10);
+        double[][] fromCsv = replay(csv, spec).getTrajectory();
+        double[][] fromLog = replay(log, spec).getTrajectory();
+        double[][] fromArchive = replay(archive, spec).getTrajectory();
+        assertEquals(fromCsv.length, fromLog.length);
+        assertEquals(fromCsv.length, fromArchive.length);
+        for (int i = 0; i < fromCsv.length; i++) {
+            assertArrayEquals(fromCsv[i], fromLog[i], 0);
+            assertArrayEquals(fromCsv[i], fromArchive[i], 1e-3);
+        }
+    }
+
+    /**
+     * 按倍速回放时总耗时不少于录制时长除以倍速
+     */
+    @Test
+    public void pacesBySpeed() throws Exception {
+        ReplayEngine engine = new ReplayEngine(WindowSpec.ofCount(50, 10), 100);
+        try (ISampleSource source = ISampleSource.open(csv)) {
+            ReplayResult result = engine.run(new SumAlgorithm(), source);
+            long recordedNs = (SAMPLES - 1) * INTERVAL_MS * 1_000_000L;
+            assertTrue(result.getElapsedNs() >= recordedNs / 100);
+            assertEquals((SAMPLES - 50) / 10 + 1, result.getWindows());
+        }
+    }
+
+    /**
+     * 轨迹CSV每个窗口一行
+     */
+    @Test
+    public void writesTrajectory() throws Exception {
+        ReplayResult result = replay(csv, WindowSpec.ofCount(100, 50));
+        StringWriter writer = new StringWriter();
+        result.writeTrajectory(writer);
+        String[] lines = writer.toString().trim().split("\n");
+        assertEquals(result.getWindows(), lines.length);
+        assertTrue(lines[0].startsWith(result.getTimestamp(0) + ","));
+    }
+
+    /**
+     * 使用算法声明的窗口，未声明时使用采集器的默认窗口
+     */
+    @Test
+    public void usesDeclaredWindow() {
+        assertEquals(ReplayEngine.DEFAULT_WINDOW_SPEC,
+                ReplayEngine.forAlgorithm(new SumAlgorithm(), ReplayEngine.MAX_SPEED).getSpec());
+        WindowSpec spec = WindowSpec.ofDuration(2000, 1000, 100);
+        IAlgorithm declared = new SumAlgorithm() {
+            @Override
+            public SensorRequirement getSensorRequirement() {
+                return new SensorRequirement(50, spec, SensorType.ACCELEROMETER);
+            }
+        };
+        assertEquals(spec, ReplayEngine.forAlgorithm(declared, 10).getSpec());
+        assertEquals(50, ReplayEngine.forAlgorithm(declared, 10).getSampleRateHz());
+    }
+
+    /**
+     * 按算法声明的采样率重采样：降采样到25Hz时样本数减半，已经是50Hz等间隔的数据重采样后轨迹不变
+     */
+    @Test
+    public void resamplesToDeclaredRate() throws Exception {
+        WindowSpec spec = WindowSpec.ofCount(50, 10);
+        ReplayResult raw = replay(csv, spec);
+        ReplayResult same = replay(csv, new ReplayEngine(spec, 50, ReplayEngine.MAX_SPEED));
+        assertEquals(SAMPLES, same.getSamples());
+        assertEquals(raw.getWindows(), same.getWindows());
+        for (int i = 0; i < raw.getWindows(); i++) {
+            assertEquals(raw.getTimestamp(i), same.getTimestamp(i));
+            assertArrayEquals(raw.getTrajectory()[i], same.getTrajectory()[i], 1e-9);
+        }
+
+        ReplayResult half = replay(csv, new ReplayEngine(spec, 25, ReplayEngine.MAX_SPEED));
+        assertEquals(SAMPLES / 2, half.getSamples());
+        assertEquals((SAMPLES / 2 - 50) / 10 + 1, half.getWindows());
+        assertEquals(1_000_000L + (49 + 10) * 2 * INTERVAL_MS, half.getTimestamp(1));
+    }
+
+    /**
+     * PdrLocalOri使用共享权重的纯Java推理后端，不需要Context即可回放
+     */
+    @Test
+    public void replaysPdrLocalOriWithoutContext() throws Exception {
+        GruEngine engine;
+        try (InputStream in = new FileInputStream("src/main/assets/gru.weights")) {  // 相对于app模块目录
+            engine = new GruEngine(in, 50);
+        }
+        WindowSpec spec = WindowSpec.ofCount(50, 10);
+        PdrLocalOri algorithm = new PdrLocalOri(new JavaGruInferenceHelper(engine, "gru.weights", 50), spec);
+        ReplayResult result;
+        try (ISampleSource source = ISampleSource.open(csv)) {
+            algorithm.warmUp();
+            result = ReplayEngine.forAlgorithm(algorithm, ReplayEngine.MAX_SPEED).run(algorithm, source);
+        } finally {
+            algorithm.close();
+        }
+        assertEquals((SAMPLES - 50) / 10 + 1, result.getWindows());
+        double[] last = result.getTrajectory()[result.getWindows() - 1];
+        assertTrue(Double.isFinite(last[0]) && Double.isFinite(last[1]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeSpeed() {
+        new ReplayEngine(WindowSpec.ofCount(50, 10), -1);
+    }
+
+    private ReplayResult replay(File file, WindowSpec spec) throws Exception {
+        return replay(file, new ReplayEngine(spec, ReplayEngine.MAX_SPEED));
+    }
+
+    private ReplayResult replay(File file, ReplayEngine engine) throws Exception {
+        try (ISampleSource source = ISampleSource.open(file)) {
+            return engine.run(new SumAlgorithm(), source);
+        }
+    }
+
+    /**
+     * 确定性的测试算法：x累加窗口内加速度计x的均值，y累加窗口长度
+     */
+    static class SumAlgorithm implements IAlgorithm {
+        private final double[] position = new double[3];  // 当前位置
+
+        @Override
+        public double[] getCoordinate(SensorWindow input) {
+            double sum = 0;
+            for (int i = 0; i < input.size(); i++) {
+                sum += input.getAccelerometer(i, 0);
+            }
+            position[0] += sum / input.size();
+            position[1] += input.size();
+            return position;
+        }
+
+        @Override
+        public void reset() {
+            position[0] = 0;
+            position[1] = 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
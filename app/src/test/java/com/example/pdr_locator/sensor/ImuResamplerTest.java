@@ -0,0 +1,143 @@
+package com.example.pdr_locator.sensor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ImuResampler的JVM单元测试，使用合成的传感器数据流，时间单位为纳秒
+ */
+public class ImuResamplerTest {
+    private static final long MS = 1_000_000L;
+
+    /**
+     * 三个传感器采样率不同且有抖动，线性信号插值到网格点后应与信号在该时刻的值一致，间隔严格等于周期
+     */
+    @Test
+    public void alignsStreamsOnFixedGrid() {
+        for (int rate : new int[]{50, 100, 200}) {
+            List<float[]> frames = new ArrayList<>();
+            ImuResampler resampler = new ImuResampler(rate, true, 1000, collect(frames));
+            Random random = new Random(rate);
+            long accelerometerNs = 3 * MS;
+            long gyroscopeNs = 1 * MS;
+            long magnetometerNs = 7 * MS;
+            long endNs = 2000 * MS;
+            while (accelerometerNs < endNs || gyroscopeNs < endNs || magnetometerNs < endNs) {
+                // 每次推进最早的传感器，模拟交错到达
+                if (accelerometerNs <= gyroscopeNs && accelerometerNs <= magnetometerNs) {
+                    resampler.onSensorSample(ImuResampler.ACCELEROMETER, accelerometerNs, signal(accelerometerNs, 1));
+                    accelerometerNs += 2500_000 + random.nextInt(500_000);  // 约400Hz
+                } else if (gyroscopeNs <= magnetometerNs) {
+                    resampler.onSensorSample(ImuResampler.GYROSCOPE, gyroscopeNs, signal(gyroscopeNs, 2));
+                    gyroscopeNs += 4_500_000 + random.nextInt(1_000_000);  // 约200Hz
+                } else {
+                    resampler.onSensorSample(ImuResampler.MAGNETOMETER, magnetometerNs, signal(magnetometerNs, 3));
+                    magnetometerNs += 19_000_000 + random.nextInt(2_000_000);  // 约50Hz
+                }
+            }
+
+            long periodMs = 1000 / rate;
+            assertEquals(periodMs, resampler.getPeriodMs());
+            long first = (long) frames.get(0)[0];
+            assertEquals(0, (first - 1000) % periodMs);  // 网格点为周期的整数倍
+            assertEquals(resampler.getEmittedFrames(), frames.size());
+            for (int k = 0; k < frames.size(); k++) {
+                float[] frame = frames.get(k);
+                long timestampMs = first + k * periodMs;
+                assertEquals(timestampMs, (long) frame[0]);
+                long gridNs = (timestampMs - 1000) * MS;
+                for (int axis = 0; axis < 3; axis++) {
+                    assertEquals(signal(gridNs, 1)[axis], frame[1 + axis], 1e-3f);
+                    assertEquals(signal(gridNs, 2)[axis], frame[4 + axis], 1e-3f);
+                    assertEquals(signal(gridNs, 3)[axis], frame[7 + axis], 1e-3f);
+                }
+            }
+            assertTrue(frames.size() >= (2000 - 30) / periodMs - 1);  // 首尾最多差一个磁力计周期
+        }
+    }
+
+    /**
+     * 最慢的传感器越过网格点之前不输出该点
+     */
+    @Test
+    public void waitsForSlowestSensor() {
+        List<float[]> frames = new ArrayList<>();
+        ImuResampler resampler = new ImuResampler(100, true, 0, collect(frames));
+        resampler.onSensorSample(ImuResampler.MAGNETOMETER, 0, signal(0, 3));
+        for (long t = 0; t <= 50 * MS; t += 5 * MS) {
+            resampler.onSensorSample(ImuResampler.ACCELEROMETER, t, signal(t, 1));
+            resampler.onSensorSample(ImuResampler.GYROSCOPE, t, signal(t, 2));
+        }
+        assertEquals(1, frames.size());  // 只有0ms被磁力计覆盖
+        assertEquals(2, resampler.onSensorSample(ImuResampler.MAGNETOMETER, 25 * MS, signal(25 * MS, 3)));
+        assertEquals(3, frames.size());
+        assertEquals(20, (long) frames.get(2)[0]);
+        assertEquals(signal(20 * MS, 3)[0], frames.get(2)[7], 1e-4f);
+    }
+
+    /**
+     * 不需要磁力计时磁力计输出0，也不等待磁力计
+     */
+    @Test
+    public void magnetometerIsOptional() {
+        List<float[]> frames = new ArrayList<>();
+        ImuResampler resampler = new ImuResampler(200, false, 0, collect(frames));
+        for (long t = 0; t <= 20 * MS; t += 2 * MS) {
+            resampler.onSensorSample(ImuResampler.ACCELEROMETER, t, signal(t, 1));
+            resampler.onSensorSample(ImuResampler.GYROSCOPE, t + MS, signal(t + MS, 2));
+            resampler.onSensorSample(ImuResampler.MAGNETOMETER, t, signal(t, 3));
+        }
+        assertEquals(4, frames.size());  // 陀螺仪从1ms开始，网格点为5,10,15,20ms
+        assertEquals(5, (long) frames.get(0)[0]);
+        for (float[] frame : frames) {
+            assertEquals(0, frame[7], 0.0f);
+        }
+    }
+
+    /**
+     * 时间戳重复或倒退的样本被丢弃
+     */
+    @Test
+    public void ignoresNonMonotonicSamples() {
+        List<float[]> frames = new ArrayList<>();
+        ImuResampler resampler = new ImuResampler(100, false, 0, collect(frames));
+        resampler.onSensorSample(ImuResampler.ACCELEROMETER, 0, signal(0, 1));
+        resampler.onSensorSample(ImuResampler.GYROSCOPE, 0, signal(0, 2));
+        resampler.onSensorSample(ImuResampler.ACCELEROMETER, 20 * MS, signal(20 * MS, 1));
+        resampler.onSensorSample(ImuResampler.ACCELEROMETER, 15 * MS, new float[]{99, 99, 99});
+        resampler.onSensorSample(ImuResampler.GYROSCOPE, 20 * MS, signal(20 * MS, 2));
+        assertEquals(3, frames.size());
+        assertEquals(signal(10 * MS, 1)[0], frames.get(1)[1], 1e-4f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRateWithInexactPeriod() {
+        new ImuResampler(300, false, 0, data -> { });
+    }
+
+    /**
+     * 合成的线性信号，各传感器、各轴斜率不同
+     */
+    private static float[] signal(long timestampNs, int sensor) {
+        float seconds = timestampNs / 1e9f;
+        return new float[]{sensor * seconds, -seconds * 0.5f + sensor, seconds * 2 * sensor};
+    }
+
+    private static ISampleListener collect(List<float[]> frames) {
+        return data -> frames.add(flatten(data));
+    }
+
+    private static float[] flatten(SensorData data) {
+        float[] flat = data.toFlatArray();
+        flat[0] = data.getTimestamp();
+        return flat;
+    }
+}
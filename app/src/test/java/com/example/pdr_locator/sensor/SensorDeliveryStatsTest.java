@@ -0,0 +1,70 @@
+package com.example.pdr_locator.sensor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.model.SensorType;
+
+import org.junit.Test;
+
+/**
+ * SensorDeliveryStats的JVM单元测试
+ */
+public class SensorDeliveryStatsTest {
+
+    /**
+     * 连续到达的一批事件计一次唤醒，空闲时没有事件不计
+     */
+    @Test
+    public void countsOneDeliveryPerBatch() {
+        SensorDeliveryStats stats = new SensorDeliveryStats();
+        stats.reset(0);
+        for (int batch = 0; batch < 3; batch++) {
+            for (int i = 0; i < 50; i++) {
+                stats.onEvent((50 - i) * 1_000_000L);  // 批内越早的事件等待越久
+            }
+            stats.onIdle();
+            stats.onIdle();
+        }
+        assertEquals(150, stats.getEvents());
+        assertEquals(3, stats.getDeliveries());
+        assertEquals(50, stats.getMaxEventsPerDelivery());
+        assertEquals(50_000_000L, stats.getMaxLatencyNs());
+        assertEquals(25_500_000L, stats.getMeanLatencyNs());
+        assertTrue(stats.summary(60_000_000_000L).contains("唤醒=3(3.0次/分钟)"));
+    }
+
+    /**
+     * 按各传感器的时间戳间隔估计丢失的事件数，未给出采样周期的传感器不估计
+     */
+    @Test
+    public void estimatesDroppedEvents() {
+        SensorDeliveryStats stats = new SensorDeliveryStats();
+        stats.setSamplingPeriod(SensorType.ACCELEROMETER, 20_000_000L);
+        stats.reset(0);
+        long t = 1_000_000_000L;
+        for (int i = 0; i < 10; i++) {
+            stats.onEvent(SensorType.ACCELEROMETER, t, 0);
+            stats.onEvent(SensorType.GYROSCOPE, t, 0);
+            t += i == 4 ? 100_000_000L : 21_000_000L;  // 第5个事件之后丢失4个事件，其余间隔有抖动
+        }
+        assertEquals(20, stats.getEvents());
+        assertEquals(4, stats.getDroppedEvents());
+        assertTrue(stats.summary(60_000_000_000L).contains("丢失=4"));
+
+        stats.reset(0);
+        stats.onEvent(SensorType.ACCELEROMETER, t + 1_000_000_000L, 0);  // reset后的第一个事件不与之前的比较
+        assertEquals(0, stats.getDroppedEvents());
+    }
+
+    @Test
+    public void resetClearsCounters() {
+        SensorDeliveryStats stats = new SensorDeliveryStats();
+        stats.onEvent(1);
+        stats.onIdle();
+        stats.reset(0);
+        assertEquals(0, stats.getEvents());
+        assertEquals(0, stats.getDeliveries());
+        assertEquals(0, stats.getMeanLatencyNs());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.pdr_locator.sensor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SensorFusion的JVM单元测试，时间单位为纳秒
+ */
+public class SensorFusionTest {
+    private static final long MS = 1_000_000L;
+
+    /**
+     * 陀螺仪样本挂起到越过它的加速度计样本到达，再与前后两个中较近的一个配对
+     */
+    @Test
+    public void pairsGyroscopeWithNearestAccelerometer() {
+        List<float[]> frames = new ArrayList<>();
+        SensorFusion fusion = new SensorFusion(false, 0, collect(frames));
+        assertEquals(0, fusion.onAccelerometer(0, values(1)));
+        assertEquals(0, fusion.onGyroscope(3 * MS, values(10)));
+        assertEquals(1, fusion.onAccelerometer(10 * MS, values(2)));
+        assertEquals(3, (long) frames.get(0)[0]);
+        assertEquals(1, frames.get(0)[1], 0.0f);  // 0ms比10ms更近
+        assertEquals(10, frames.get(0)[4], 0.0f);
+
+        assertEquals(0, fusion.onGyroscope(18 * MS, values(11)));
+        assertEquals(1, fusion.onAccelerometer(20 * MS, values(3)));
+        assertEquals(3, frames.get(1)[1], 0.0f);  // 20ms比10ms更近
+        assertArrayEquals(new float[3], new float[]{frames.get(1)[7], frames.get(1)[8], frames.get(1)[9]}, 0.0f);
+    }
+
+    /**
+     * 加速度计先于陀螺仪到达时立即配对，不等待
+     */
+    @Test
+    public void emitsImmediatelyWhenAccelerometerIsAhead() {
+        List<float[]> frames = new ArrayList<>();
+        SensorFusion fusion = new SensorFusion(false, 5, collect(frames));
+        fusion.onAccelerometer(0, values(1));
+        fusion.onAccelerometer(10 * MS, values(2));
+        assertEquals(1, fusion.onGyroscope(8 * MS, values(10)));
+        assertEquals(8 + 5, (long) frames.get(0)[0]);
+        assertEquals(2, frames.get(0)[1], 0.0f);
+    }
+
+    /**
+     * 陀螺仪比加速度计快时，每个陀螺仪样本都输出一次，不丢弃也不重复
+     */
+    @Test
+    public void fasterGyroscopeIsNotDropped() {
+        List<float[]> frames = new ArrayList<>();
+        SensorFusion fusion = new SensorFusion(false, 0, collect(frames));
+        int fused = 0;
+        for (int i = 0; i < 400; i++) {
+            if (i % 2 == 0) {
+                fused += fusion.onAccelerometer(i * 5 * MS, values(i));
+            }
+            fused += fusion.onGyroscope(i * 5 * MS + MS, values(i));
+        }
+        assertEquals(399, fused);  // 最后一个样本仍在等待加速度计
+        assertEquals(399, frames.size());
+        assertEquals(399, fusion.getFusedSamples());
+        assertEquals(0, fusion.getDroppedGyroscopeSamples());
+        for (int i = 0; i < frames.size(); i++) {
+            assertEquals(i, frames.get(i)[4], 0.0f);
+        }
+    }
+
+    /**
+     * 需要磁力计时，收到第一个磁力计样本前的陀螺仪样本被丢弃，之后使用最新的磁力计数据
+     */
+    @Test
+    public void waitsForMagnetometerWhenRequired() {
+        List<float[]> frames = new ArrayList<>();
+        SensorFusion fusion = new SensorFusion(true, 0, collect(frames));
+        fusion.onAccelerometer(0, values(1));
+        assertEquals(0, fusion.onGyroscope(0, values(10)));
+        assertEquals(1, fusion.getDroppedGyroscopeSamples());
+        fusion.onMagnetometer(MS, values(30));
+        fusion.onMagnetometer(2 * MS, values(31));
+        fusion.onGyroscope(5 * MS, values(11));
+        fusion.onAccelerometer(10 * MS, values(2));
+        assertEquals(31, frames.get(0)[7], 0.0f);
+    }
+
+    /**
+     * 输出的样本复用同一个对象，不引用调用方传入的数组
+     */
+    @Test
+    public void reusesOneFrame() {
+        List<SensorData> received = new ArrayList<>();
+        SensorFusion fusion = new SensorFusion(false, 0, received::add);
+        float[] accelerometer = values(1);
+        fusion.onAccelerometer(10 * MS, accelerometer);
+        fusion.onGyroscope(0, values(10));
+        accelerometer[0] = 99;
+        assertEquals(1, received.get(0).getAccelerometerData()[0], 0.0f);
+        fusion.onAccelerometer(20 * MS, values(2));
+        fusion.onGyroscope(15 * MS, values(11));
+        assertSame(received.get(0), received.get(1));
+        assertEquals(11, received.get(0).getGyroscopeData()[0], 0.0f);
+    }
+
+    private static float[] values(float x) {
+        return new float[]{x, 0, 0};
+    }
+
+    private static ISampleListener collect(List<float[]> frames) {
+        return data -> {
+            float[] flat = data.toFlatArray();
+            flat[0] = data.getTimestamp();
+            frames.add(flat);
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.pdr_locator.sensor;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.pdr_locator.model.SensorData;
+import com.example.pdr_locator.record.ImuRecorder;
+import com.example.pdr_locator.utils.BackpressurePolicy;
+import com.example.pdr_locator.utils.SensorSampleStore;
+import com.example.pdr_locator.utils.SensorWindow;
+import com.example.pdr_locator.utils.SlidingWindowManager;
+import com.example.pdr_locator.utils.WaitStrategy;
+import com.example.pdr_locator.utils.WindowSpec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+/**
+ * SensorIngest的JVM单元测试，时间单位为纳秒
+ */
+public class SensorIngestTest {
+    private static final long MS = 1_000_000L;
+
+    /**
+     * 样本写入样本存储并交给记录器，CSV行与SensorData.buildRowData()的格式一致
+     */
+    @Test
+    public void writesStoreAndCsv() throws IOException {
+        SensorSampleStore store = newStore();
+        StringWriter writer = new StringWriter();
+        ImuRecorder recorder = new ImuRecorder(writer, ImuRecorder.DEFAULT_FLUSH_CHARS, 60_000);
+        SensorIngest ingest = new SensorIngest(store, false, 0, recorder);
+        float[] values = new float[]{1.5f, -2, 3};
+        ingest.onAccelerometer(0, values);
+        ingest.onGyroscope(0, values);
+        ingest.onGyroscope(5 * MS, values);
+        assertEquals(1, ingest.getSamples());
+        assertEquals(1, recorder.getRows());
+        recorder.close();
+        SensorData expected = new SensorData(0, values.clone(), values.clone(), new float[3]);
+        assertEquals(expected.buildRowData(), writer.toString());
+    }
+
+    /**
+     * 不记录时只写入样本存储
+     */
+    @Test
+    public void recorderIsOptional() {
+        SensorIngest ingest = new SensorIngest(newStore(), false, 100, null);
+        float[] values = new float[3];
+        for (long t = 0; t <= 105 * MS; t += 5 * MS) {
+            ingest.onAccelerometer(t, values);
+            ingest.onGyroscope(t, values);
+        }
+        assertEquals(11, ingest.getSamples());  // 0~100ms的网格点
+    }
+
+    /**
+     * 稳定运行时采集线程的每个事件都不分配内存：融合、写入样本存储、生成窗口和CSV行都复用预先分配的对象，
+     * 写文件在记录器自己的线程中进行，不计入
+     */
+    @Test
+    public void steadyStateAllocatesNothing() throws IOException {
+        for (int resampleRate : new int[]{0, 100}) {
+            SensorSampleStore store = newStore();
+            ImuRecorder recorder = new ImuRecorder(new NullWriter(), 1 << 20, 60_000);
+            SensorIngest ingest = new SensorIngest(store, true, resampleRate, recorder);
+            float[] accelerometer = new float[]{0.1f, 9.8f, 0.2f};
+            float[] gyroscope = new float[]{0.01f, -0.02f, 0.03f};
+            float[] magnetometer = new float[]{30, 5, -40};
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            feed(ingest, store, accelerometer, gyroscope, magnetometer, 0, 100_000);  // 预热
+            long before = threads.getThreadAllocatedBytes(threadId);
+            feed(ingest, store, accelerometer, gyroscope, magnetometer, 100_000, 120_000);
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            recorder.close();
+            assertEquals("重采样" + resampleRate + "Hz时接入分配了 " + allocated + " 字节", 0, allocated);
+        }
+    }
+
+    /**
+     * 模拟200Hz加速度计、200Hz陀螺仪和50Hz磁力计交错到达，同时消费生成的窗口
+     */
+    private static void feed(SensorIngest ingest, SensorSampleStore store, float[] accelerometer,
+                             float[] gyroscope, float[] magnetometer, int from, int to) {
+        SlidingWindowManager stream = store.getStream(0);
+        for (int i = from; i < to; i++) {
+            long t = i * 5 * MS;
+            accelerometer[0] = i;
+            gyroscope[0] = i;
+            ingest.onAccelerometer(t, accelerometer);
+            ingest.onGyroscope(t + MS, gyroscope);
+            if (i % 4 == 0) {
+                ingest.onMagnetometer(t + 2 * MS, magnetometer);
+            }
+            SensorWindow window;
+            while ((window = stream.pollTask()) != null) {
+                stream.release(window);
+            }
+        }
+    }
+
+    private static SensorSampleStore newStore() {
+        return new SensorSampleStore(Collections.singletonList(WindowSpec.ofCount(50, 10)),
+                SlidingWindowManager.DEFAULT_QUEUE_CAPACITY, BackpressurePolicy.DROP_OLDEST, WaitStrategy.PARK);
+    }
+
+    /**
+     * 丢弃写入内容的Writer，只用于测量接入路径本身的分配
+     */
+    private static class NullWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.pdr_locator.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * GruEngine的JVM单元测试。与ONNX Runtime的一致性测试见androidTest中的GruEngineParityTest
+ */
+public class GruEngineTest {
+    private static final String WEIGHTS = "src/main/assets/gru.weights";  // 相对于app模块目录
+    private static final int SEQ_LEN = 50;
+
+    /**
+     * 小模型（2层GRU，输入2维，隐状态3维，一个全连接层）与按公式逐项计算的双精度结果一致
+     */
+    @Test
+    public void forwardMatchesReference() throws IOException {
+        int layers = 2, inputSize = 2, hidden = 3, seqLen = 4;
+        Random random = new Random(1);
+        float[][] w = new float[layers][];
+        float[][] r = new float[layers][];
+        float[][] b = new float[layers][];
+        for (int k = 0; k < layers; k++) {
+            w[k] = randomArray(random, 3 * hidden * (k == 0 ? inputSize : hidden));
+            r[k] = randomArray(random, 3 * hidden * hidden);
+            b[k] = randomArray(random, 6 * hidden);
+        }
+        float[] denseW = randomArray(random, 2 * hidden);
+        float[] denseB = randomArray(random, 2);
+        double[] input = new double[seqLen * inputSize];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextGaussian();
+        }
+
+        GruEngine engine = new GruEngine(writeWeights(inputSize, hidden, w, r, b, denseW, denseB), seqLen);
+        float[] actual = engine.runInference(input);
+
+        double[] expected = reference(input, seqLen, inputSize, hidden, w, r, b, denseW, denseB);
+        assertEquals(expected[0], actual[0], 1e-5);
+        assertEquals(expected[1], actual[1], 1e-5);
+    }
+
+    /**
+     * gru.weights的输出与独立实现（按ONNX GRU公式直接读取gru.onnx初始化器计算）的结果一致
+     */
+    @Test
+    public void exportedWeightsMatchReference() throws IOException {
+        GruEngine engine = loadExported();
+        float[] output = engine.runInference(seededWindow(42));
+        assertEquals(1.2919210f, output[0], 1e-5f);
+        assertEquals(1.5050990f, output[1], 1e-5f);
+    }
+
+    /**
+     * 共享权重的实例在多个线程中同时推理，结果与单独加载的实例一致
+     */
+    @Test
+    public void sharedWeightsInferConcurrently() throws Exception {
+        GruEngine shared = loadExported();
+        float[] expected = shared.runInference(seededWindow(7));
+        Thread[] threads = new Thread[4];
+        float[][] results = new float[threads.length][];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            GruEngine engine = new GruEngine(shared, SEQ_LEN);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    results[index] = engine.runInference(seededWindow(7));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (float[] result : results) {
+            assertArrayEquals(expected, result, 0f);
+        }
+    }
+
+    /**
+     * 流式推理按滑动步长分块输入一个窗口，隐状态在块之间保留，结果与整窗口推理一致，
+     * 与StreamingParityChecker对gru_stream.onnx和gru.onnx的比较相对应
+     */
+    @Test
+    public void streamingMatchesFullWindow() throws IOException {
+        GruEngine engine = loadExported();
+        double[] window = seededWindow(42);
+        float[] expected = engine.runInference(window);
+        FloatBuffer input = toBuffer(window);
+        float[] result = new float[2];
+        for (int slideStep : new int[]{1, 5, 10, 25}) {
+            engine.resetState();
+            for (int chunk = 0; chunk < SEQ_LEN; chunk += slideStep) {
+                input.position(chunk * 6);
+                engine.stream(input, slideStep, result);
+            }
+            assertArrayEquals("slideStep=" + slideStep, expected, result, 0.0f);
+        }
+    }
+
+    /**
+     * 流式推理的隐状态在调用之间保留：继续输入后一个窗口的新样本，
+     * 结果与从头输入两个窗口拼接后的全部样本一致，与只输入后一个窗口的整窗口推理不同
+     */
+    @Test
+    public void streamingCarriesHiddenState() throws IOException {
+        GruEngine engine = loadExported();
+        double[] first = seededWindow(1);
+        double[] second = seededWindow(2);
+        float[] continued = new float[2];
+        engine.resetState();
+        engine.stream(toBuffer(first), SEQ_LEN, continued);
+        engine.stream(toBuffer(second), SEQ_LEN, continued);
+
+        GruEngine joined = new GruEngine(engine, 2 * SEQ_LEN);
+        double[] both = new double[first.length + second.length];
+        System.arraycopy(first, 0, both, 0, first.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        assertArrayEquals(joined.runInference(both), continued, 0.0f);
+        assertNotEquals(engine.runInference(second)[0], continued[0], 1e-6f);
+    }
+
+    /**
+     * 批量推理与逐个窗口推理的结果一致，窗口之间隐状态不互相影响
+     */
+    @Test
+    public void batchForwardMatchesSingleWindows() throws IOException {
+        GruEngine engine = loadExported();
+        int batch = 3;
+        FloatBuffer input = FloatBuffer.allocate(batch * SEQ_LEN * 6);
+        float[] expected = new float[batch * 2];
+        for (int n = 0; n < batch; n++) {
+            double[] window = seededWindow(n);
+            for (double v : window) {
+                input.put((float) v);
+            }
+            float[] single = engine.runInference(window);
+            System.arraycopy(single, 0, expected, n * 2, 2);
+        }
+        input.flip();
+        FloatBuffer output = FloatBuffer.allocate(batch * 2);
+        engine.forward(input, SEQ_LEN, batch, output);
+        assertArrayEquals(expected, output.array(), 0.0f);
+    }
+
+    /**
+     * 预热后推理不产生任何堆分配
+     */
+    @Test
+    public void inferenceDoesNotAllocate() throws IOException {
+        GruEngine engine = loadExported();
+        double[] window = seededWindow(7);
+        float[] result = new float[2];
+        FloatBuffer input = FloatBuffer.allocate(SEQ_LEN * 6);
+        FloatBuffer output = FloatBuffer.allocate(2);
+        for (int i = 0; i < 200; i++) {
+            engine.runInference(window, result);
+            output.clear();
+            engine.forward(input, SEQ_LEN, 1, output);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100; i++) {
+            engine.runInference(window, result);
+            output.clear();
+            engine.forward(input, SEQ_LEN, 1, output);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals("推理过程中分配了 " + allocated + " 字节", 0, allocated);
+    }
+
+    private static GruEngine loadExported() throws IOException {
+        try (InputStream in = new FileInputStream(WEIGHTS)) {
+            return new GruEngine(in, SEQ_LEN);
+        }
+    }
+
+    private static FloatBuffer toBuffer(double[] window) {
+        FloatBuffer buffer = FloatBuffer.allocate(window.length);
+        for (double v : window) {
+            buffer.put((float) v);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static double[] seededWindow(long seed) {
+        Random random = new Random(seed);
+        double[] window = new double[SEQ_LEN * 6];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = random.nextGaussian();
+        }
+        return window;
+    }
+
+    private static float[] randomArray(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) (random.nextGaussian() * 0.5);
+        }
+        return values;
+    }
+
+    /**
+     * 按export_gru_weights.py的格式写出权重
+     */
+    private static InputStream writeWeights(int inputSize, int hidden, float[][] w, float[][] r, float[][] b,
+                                            float[] denseW, float[] denseB) {
+        int floats = denseW.length + denseB.length;
+        for (int k = 0; k < w.length; k++) {
+            floats += w[k].length + r[k].length + b[k].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (5 + 1 + 2 + floats)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x57555247).putInt(1).putInt(w.length).putInt(inputSize).putInt(hidden);
+        for (int k = 0; k < w.length; k++) {
+            putAll(buffer, w[k]);
+            putAll(buffer, r[k]);
+            putAll(buffer, b[k]);
+        }
+        buffer.putInt(1).putInt(denseB.length).putInt(hidden);
+        putAll(buffer, denseW);
+        putAll(buffer, denseB);
+        return new ByteArrayInputStream(buffer.array());
+    }
+
+    private static void putAll(ByteBuffer buffer, float[] values) {
+        for (float v : values) {
+            buffer.putFloat(v);
+        }
+    }
+
+    /**
+     * 双精度参考实现，逐层计算整个序列
+     */
+    private static double[] reference(double[] input, int seqLen, int inputSize, int hidden, float[][] w,
+                                      float[][] r, float[][] b, float[] denseW, float[] denseB) {
+        double[][] sequence = new double[seqLen][];
+        for (int t = 0; t < seqLen; t++) {
+            sequence[t] = new double[inputSize];
+            System.arraycopy(input, t * inputSize, sequence[t], 0, inputSize);
+        }
+        for (int k = 0; k < w.length; k++) {
+            int in = sequence[0].length;
+            double[] h = new double[hidden];
+            double[][] outputs = new double[seqLen][];
+            for (int t = 0; t < seqLen; t++) {
+                double[] next = new double[hidden];
+                for (int i = 0; i < hidden; i++) {
+                    double[] x = new double[3];
+                    double[] rh = new double[3];
+                    for (int g = 0; g < 3; g++) {
+                        int row = g * hidden + i;
+                        x[g] = b[k][row];
+                        rh[g] = b[k][3 * hidden + row];
+                        for (int j = 0; j < in; j++) {
+                            x[g] += w[k][row * in + j] * sequence[t][j];
+                        }
+                        for (int j = 0; j < hidden; j++) {
+                            rh[g] += r[k][row * hidden + j] * h[j];
+                        }
+                    }
+                    double z = 1.0 / (1.0 + Math.exp(-(x[0] + rh[0])));
+                    double reset = 1.0 / (1.0 + Math.exp(-(x[1] + rh[1])));
+                    double n = Math.tanh(x[2] + reset * rh[2]);
+                    next[i] = (1 - z) * n + z * h[i];
+                }
+                h = next;
+                outputs[t] = h;
+            }
+            sequence = outputs;
+        }
+        double[] last = sequence[seqLen - 1];
+        double[] result = new double[denseB.length];
+        for (int o = 0; o < result.length; o++) {
+            result[o] = denseB[o];
+            for (int j = 0; j < hidden; j++) {
+                result[o] += denseW[o * hidden + j] * last[j];
+            }
+        }
+        return result;
+    }
+}
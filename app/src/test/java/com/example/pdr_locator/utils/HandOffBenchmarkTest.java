@@ -0,0 +1,146 @@
+package com.example.pdr_locator.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 采集线程与定位线程之间任务交接的竞争基准：生产者线程不停写入样本，消费者线程取出窗口、读取一个值后立即归还，
+ * 比较无锁交接（三种等待方式）与原先synchronized + ArrayBlockingQueue交接的吞吐量和交接延迟。
+ * 队列满时阻塞生产者，两种实现都不丢弃窗口，结果输出到标准输出。
+ * 耗时长且结果取决于机器负载，不随单元测试运行，需要时去掉@Ignore手动运行
+ */
+@Ignore("基准测试，手动运行")
+public class HandOffBenchmarkTest {
+    private static final int WINDOW_SIZE = 50;
+    private static final int SLIDE_STEP = 10;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int SAMPLES = 200_000;
+    private static final int WINDOWS = (SAMPLES - WINDOW_SIZE) / SLIDE_STEP + 1;
+
+    @Test
+    public void compareHandOff() throws Exception {
+        System.out.println(run("synchronized", new SynchronizedHandOff()));  // 预热
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            run("warm-up", new LockFreeHandOff(strategy));
+        }
+        System.out.println(run("synchronized", new SynchronizedHandOff()));
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            System.out.println(run("lock-free " + strategy, new LockFreeHandOff(strategy)));
+        }
+    }
+
+    private static String run(String name, HandOff handOff) throws Exception {
+        long[] latencyNs = new long[WINDOWS];
+        SensorData data = new SensorData(0, new float[3], new float[3], new float[3]);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < SAMPLES; i++) {
+                data.setTimestamp(i);
+                handOff.add(data);
+            }
+        });
+        long startNs = System.nanoTime();
+        producer.start();
+        long checksum = 0;
+        for (int k = 0; k < WINDOWS; k++) {
+            SensorWindow window = handOff.take();
+            latencyNs[k] = System.nanoTime() - window.getEnqueueTimeNs();
+            checksum += window.getTimestamp(0);
+            handOff.release(window);
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+        producer.join();
+        assertEquals((long) SLIDE_STEP * WINDOWS * (WINDOWS - 1) / 2, checksum);  // 窗口不丢失、不重复
+
+        Arrays.sort(latencyNs);
+        return String.format(Locale.US, "%-20s %8.0f windows/s, latency p50=%6.1fus p99=%8.1fus max=%9.1fus",
+                name, WINDOWS / (elapsedNs / 1e9), latencyNs[WINDOWS / 2] / 1e3,
+                latencyNs[WINDOWS * 99 / 100] / 1e3, latencyNs[WINDOWS - 1] / 1e3);
+    }
+
+    private interface HandOff {
+        void add(SensorData data);
+
+        SensorWindow take() throws InterruptedException;
+
+        void release(SensorWindow window);
+    }
+
+    private static class LockFreeHandOff implements HandOff {
+        private final SlidingWindowManager manager;
+
+        LockFreeHandOff(WaitStrategy strategy) {
+            manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP, QUEUE_CAPACITY,
+                    BackpressurePolicy.BLOCK, strategy);
+        }
+
+        @Override
+        public void add(SensorData data) {
+            manager.addData(data);
+        }
+
+        @Override
+        public SensorWindow take() throws InterruptedException {
+            return manager.getTask();
+        }
+
+        @Override
+        public void release(SensorWindow window) {
+            manager.release(window);
+        }
+    }
+
+    /**
+     * 原先的交接方式：addData()加锁，任务和空闲窗口放在ArrayBlockingQueue中
+     */
+    private static class SynchronizedHandOff implements HandOff {
+        private final SensorRingBuffer buffer =
+                new SensorRingBuffer(WINDOW_SIZE + SLIDE_STEP * (QUEUE_CAPACITY + 17));
+        private final ArrayBlockingQueue<SensorWindow> taskQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final ArrayBlockingQueue<SensorWindow> freeWindows = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 16);
+        private long nextWindowStart;
+
+        SynchronizedHandOff() {
+            for (int i = 0; i < QUEUE_CAPACITY + 16; i++) {
+                freeWindows.add(new SensorWindow(buffer));
+            }
+        }
+
+        @Override
+        public synchronized void add(SensorData data) {
+            buffer.append(data);
+            while (buffer.getWriteSequence() - nextWindowStart >= WINDOW_SIZE) {
+                SensorWindow window = freeWindows.poll();
+                if (window == null) {
+                    window = new SensorWindow(buffer);
+                }
+                window.set(nextWindowStart, WINDOW_SIZE);
+                window.setEnqueueTimeNs(System.nanoTime());
+                try {
+                    taskQueue.put(window);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                nextWindowStart += SLIDE_STEP;
+            }
+        }
+
+        @Override
+        public SensorWindow take() throws InterruptedException {
+            return taskQueue.take();
+        }
+
+        @Override
+        public void release(SensorWindow window) {
+            freeWindows.offer(window);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.pdr_locator.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * SensorSampleStore的JVM单元测试
+ */
+public class SensorSampleStoreTest {
+    private static final WindowSpec GRU = WindowSpec.ofCount(50, 10);
+    private static final WindowSpec HEAVY = WindowSpec.ofCount(200, 50);
+    private static final WindowSpec TIMED = WindowSpec.ofDuration(1000, 200, 50);
+
+    /**
+     * 每个任务流按各自的窗口划分生成任务，互不影响
+     */
+    @Test
+    public void streamsFollowTheirOwnSpecs() {
+        SensorSampleStore store = newStore();
+        int[] windows = new int[3];
+        for (int i = 0; i < 1000; i++) {
+            store.addData(sample(i * 10L, i));  // 100Hz
+            for (int s = 0; s < 3; s++) {
+                SlidingWindowManager stream = store.getStream(s);
+                SensorWindow window;
+                while ((window = stream.pollTask()) != null) {
+                    WindowSpec spec = stream.getSpec();
+                    assertEquals(spec.getSamples(), window.size());
+                    if (spec.isTimeBased()) {
+                        assertEquals(windows[s] * 200L, window.getTimestamp(0));
+                        assertEquals(windows[s] * 20.0f, window.getAccelerometer(0, 0), 1e-3f);
+                    } else {
+                        long first = (long) windows[s] * spec.getSlideStep();
+                        assertEquals(first * 10, window.getTimestamp(0));
+                        assertEquals(first + spec.getSamples() - 1, window.getAccelerometer(spec.getSamples() - 1, 0), 0.0f);
+                    }
+                    stream.release(window);
+                    windows[s]++;
+                }
+            }
+        }
+        assertEquals((1000 - 50) / 10 + 1, windows[0]);
+        assertEquals((1000 - 200) / 50 + 1, windows[1]);
+        assertEquals((9990 - 980) / 200 + 1, windows[2]);
+    }
+
+    /**
+     * 缓冲区容量取各任务流需要的最大值，任务流可以按窗口划分方式查找
+     */
+    @Test
+    public void sharesOneBuffer() {
+        SensorSampleStore store = newStore();
+        int largest = 0;
+        for (WindowSpec spec : store.getSpecs()) {
+            largest = Math.max(largest, singleStore(spec).getCapacity());
+        }
+        assertEquals(largest, store.getCapacity());
+        assertSame(store.getStream(1), store.getStream(WindowSpec.ofCount(200, 50)));
+        assertNull(singleStore(GRU).getStream(HEAVY));
+    }
+
+    /**
+     * 写入共享缓冲区的任务流不能直接写入数据
+     */
+    @Test(expected = IllegalStateException.class)
+    public void sharedStreamRejectsDirectWrites() {
+        newStore().getStream(0).addData(sample(0, 0));
+    }
+
+    /**
+     * 增加任务流不增加数据复制，稳定运行时写入和取出都不分配对象
+     */
+    @Test
+    public void fanOutAllocatesNothing() {
+        SensorSampleStore store = newStore();
+        SensorData data = sample(0, 0);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        feed(store, data, 0, 50000);  // 预热
+        long before = threads.getThreadAllocatedBytes(threadId);
+        feed(store, data, 50000, 60000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals("生成窗口时分配了 " + allocated + " 字节", 0, allocated);
+    }
+
+    private static SensorSampleStore newStore() {
+        return new SensorSampleStore(Arrays.asList(GRU, HEAVY, TIMED), SlidingWindowManager.DEFAULT_QUEUE_CAPACITY,
+                BackpressurePolicy.DROP_OLDEST, WaitStrategy.PARK);
+    }
+
+    private static SensorSampleStore singleStore(WindowSpec spec) {
+        return new SensorSampleStore(Collections.singletonList(spec), SlidingWindowManager.DEFAULT_QUEUE_CAPACITY,
+                BackpressurePolicy.DROP_OLDEST, WaitStrategy.PARK);
+    }
+
+    private static void feed(SensorSampleStore store, SensorData data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            data.setTimestamp(i * 10L);
+            store.addData(data);
+            for (int s = 0; s < store.getSpecs().size(); s++) {
+                SlidingWindowManager stream = store.getStream(s);
+                SensorWindow window;
+                while ((window = stream.pollTask()) != null) {
+                    stream.release(window);
+                }
+            }
+        }
+    }
+
+    private static SensorData sample(long timestamp, float value) {
+        return new SensorData(timestamp, new float[]{value, 0, 0}, new float[3], new float[3]);
+    }
+}
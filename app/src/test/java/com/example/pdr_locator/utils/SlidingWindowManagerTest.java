@@ -0,0 +1,318 @@
+package com.example.pdr_locator.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.pdr_locator.model.SensorData;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * SlidingWindowManager、SensorRingBuffer和SensorWindow的JVM单元测试
+ */
+public class SlidingWindowManagerTest {
+    private static final int WINDOW_SIZE = 50;
+    private static final int SLIDE_STEP = 10;
+
+    /**
+     * 窗口按滑动步长生成，每个窗口的各通道数据与写入的样本一致
+     */
+    @Test
+    public void windowsSlideByStep() {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP);
+        for (int i = 0; i < 100; i++) {
+            manager.addData(sample(i));
+        }
+        int windows = 0;
+        SensorWindow window;
+        while ((window = manager.pollTask()) != null) {
+            assertEquals(WINDOW_SIZE, window.size());
+            for (int t = 0; t < WINDOW_SIZE; t++) {
+                long n = windows * SLIDE_STEP + t;
+                assertEquals(n, window.getTimestamp(t));
+                for (int axis = 0; axis < 3; axis++) {
+                    assertEquals(n + axis * 0.1f, window.getAccelerometer(t, axis), 1e-3f);
+                    assertEquals(-n - axis * 0.1f, window.getGyroscope(t, axis), 1e-3f);
+                    assertEquals(axis, window.getMagnetometer(t, axis), 0.0f);
+                }
+            }
+            assertTrue(window.isValid());
+            manager.release(window);
+            windows++;
+        }
+        assertEquals((100 - WINDOW_SIZE) / SLIDE_STEP + 1, windows);
+        assertEquals(0, manager.getDroppedTasks());
+    }
+
+    /**
+     * 稳定运行时写入样本、取出和归还窗口都不分配对象
+     */
+    @Test
+    public void steadyStateAllocatesNothing() {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP);
+        SensorData data = sample(0);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        feed(manager, data, 0, 20000);  // 预热，让JIT完成编译
+        long before = threads.getThreadAllocatedBytes(threadId);
+        feed(manager, data, 20000, 30000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals("生成窗口时分配了 " + allocated + " 字节", 0, allocated);
+    }
+
+    /**
+     * 队列满时丢弃最旧的任务，取出的是最新的窗口
+     */
+    @Test
+    public void fullQueueDropsOldest() {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP, 2);
+        for (int i = 0; i < WINDOW_SIZE + 4 * SLIDE_STEP; i++) {
+            manager.addData(sample(i));
+        }
+        assertEquals(3, manager.getDroppedTasks());
+        SensorWindow window = manager.pollTask();
+        assertNotNull(window);
+        assertEquals(3 * SLIDE_STEP, window.getTimestamp(0));
+        manager.release(window);
+        window = manager.pollTask();
+        assertNotNull(window);
+        assertEquals(4 * SLIDE_STEP, window.getTimestamp(0));
+        manager.release(window);
+        assertNull(manager.pollTask());
+    }
+
+    /**
+     * KEEP_LATEST策略下队列中只保留最新的窗口
+     */
+    @Test
+    public void keepLatestCoalesces() {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP, 4,
+                BackpressurePolicy.KEEP_LATEST);
+        for (int i = 0; i < WINDOW_SIZE + 4 * SLIDE_STEP; i++) {
+            manager.addData(sample(i));
+        }
+        assertEquals(1, manager.getQueueDepth());
+        assertEquals(4, manager.getDroppedTasks());
+        assertEquals(1, manager.getMaxQueueDepth());
+        SensorWindow window = manager.pollTask();
+        assertNotNull(window);
+        assertEquals(4 * SLIDE_STEP, window.getTimestamp(0));
+        manager.release(window);
+        assertNull(manager.pollTask());
+        assertEquals(0, manager.getOldestTaskAgeNs());
+    }
+
+    /**
+     * BLOCK策略下生产者等待消费者，所有窗口按顺序送达，不丢弃
+     */
+    @Test
+    public void blockNeverDrops() throws Exception {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP, 2,
+                BackpressurePolicy.BLOCK);
+        int samples = WINDOW_SIZE + 200 * SLIDE_STEP;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < samples; i++) {
+                manager.addData(sample(i));
+            }
+        });
+        producer.start();
+        for (int k = 0; k <= 200; k++) {
+            SensorWindow window = manager.getTask();
+            assertEquals(k * SLIDE_STEP, window.getTimestamp(0));
+            assertTrue(manager.getQueueDepth() <= 2);
+            if (k % 20 == 0) {
+                Thread.sleep(2);  // 消费者偶尔变慢，使生产者阻塞
+            }
+            manager.release(window);
+        }
+        producer.join();
+        assertEquals(0, manager.getDroppedTasks());
+        assertTrue(manager.getMaxQueueDepth() <= 2);
+    }
+
+    /**
+     * BLOCK策略下没有消费者时，生产者只等待有限时间，调用stop()后不再等待，超出容量的旧任务被丢弃
+     */
+    @Test
+    public void blockGivesUpWithoutConsumer() {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP, 2,
+                BackpressurePolicy.BLOCK);
+        SensorData data = sample(0);
+        long startNs = System.nanoTime();
+        for (int i = 0; i < WINDOW_SIZE + 2 * SLIDE_STEP; i++) {
+            data.setTimestamp(i);
+            manager.addData(data);  // 第3个窗口等待空位后超时
+        }
+        long blockedMs = (System.nanoTime() - startNs) / 1_000_000;
+        assertTrue("等待了 " + blockedMs + " ms", blockedMs >= 100 && blockedMs < 2000);
+
+        manager.stop();
+        startNs = System.nanoTime();
+        for (int i = WINDOW_SIZE + 2 * SLIDE_STEP; i < WINDOW_SIZE + 100 * SLIDE_STEP; i++) {
+            data.setTimestamp(i);
+            manager.addData(data);
+        }
+        assertTrue((System.nanoTime() - startNs) / 1_000_000 < 100);
+        assertEquals(2, manager.getQueueDepth());
+        SensorWindow window = manager.pollTask();
+        assertEquals(99 * SLIDE_STEP, window.getTimestamp(0));
+        assertEquals(99, manager.getDroppedTasks());
+    }
+
+    /**
+     * 最旧窗口的等待时间随时间增长
+     */
+    @Test
+    public void oldestTaskAgeGrows() throws InterruptedException {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            manager.addData(sample(i));
+        }
+        Thread.sleep(5);
+        assertTrue(manager.getOldestTaskAgeNs() >= 5_000_000L);
+    }
+
+    /**
+     * 按时间划分时，不规则到达的样本被重采样为等间隔的50个样本，数值为线性插值结果
+     */
+    @Test
+    public void timeBasedWindowsResample() {
+        WindowSpec spec = WindowSpec.ofDuration(1000, 200, WINDOW_SIZE);
+        SlidingWindowManager manager = new SlidingWindowManager(spec, 16,
+                BackpressurePolicy.DROP_OLDEST, WaitStrategy.PARK);
+        long t = 1000;
+        long last = t;
+        int windows = 0;
+        for (int i = 0; i < 500; i++) {
+            manager.addData(sample(t));  // 各通道数值与时间戳成线性关系
+            last = t;
+            t += i % 3 == 0 ? 3 : 8;  // 间隔不规则，平均约6.3ms
+            SensorWindow window;
+            while ((window = manager.pollTask()) != null) {
+                assertTrue(window.isResampled());
+                assertEquals(WINDOW_SIZE, window.size());
+                for (int k = 0; k < WINDOW_SIZE; k++) {
+                    long expected = 1000 + windows * 200L + k * 20L;
+                    assertEquals(expected, window.getTimestamp(k));
+                    assertEquals(expected + 0.1f, window.getAccelerometer(k, 1), 1e-2f);
+                    assertEquals(-expected - 0.2f, window.getGyroscope(k, 2), 1e-2f);
+                }
+                manager.release(window);
+                windows++;
+            }
+        }
+        // 最后一个窗口的最后一个重采样点不晚于最新样本
+        assertEquals((last - 1000 - (1000 - 20)) / 200 + 1, windows);
+        assertEquals(0, manager.getStaleTasks());
+    }
+
+    /**
+     * 按时间划分时稳定运行也不分配对象
+     */
+    @Test
+    public void timeBasedSteadyStateAllocatesNothing() {
+        SlidingWindowManager manager = new SlidingWindowManager(WindowSpec.ofDuration(1000, 200, WINDOW_SIZE),
+                SlidingWindowManager.DEFAULT_QUEUE_CAPACITY, BackpressurePolicy.DROP_OLDEST, WaitStrategy.PARK);
+        SensorData data = sample(0);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        feed(manager, data, 0, 100000);  // 预热，窗口对象首次重采样时分配数组
+        long before = threads.getThreadAllocatedBytes(threadId);
+        feed(manager, data, 100000, 110000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals("生成窗口时分配了 " + allocated + " 字节", 0, allocated);
+    }
+
+    /**
+     * 消费者持有窗口期间数据被覆盖时，isValid()返回false
+     */
+    @Test
+    public void overwrittenWindowIsInvalid() {
+        SensorRingBuffer buffer = new SensorRingBuffer(64);
+        SensorWindow window = new SensorWindow(buffer);
+        float[] zero = new float[3];
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            buffer.append(i, zero, zero, zero);
+        }
+        window.set(0, WINDOW_SIZE);
+        for (int i = WINDOW_SIZE; i < buffer.getCapacity(); i++) {
+            buffer.append(i, zero, zero, zero);
+        }
+        assertTrue(window.isValid());
+        buffer.append(buffer.getCapacity(), zero, zero, zero);  // 覆盖窗口的第一个样本
+        assertFalse(window.isValid());
+        assertEquals(buffer.getCapacity(), window.getTimestamp(0));
+    }
+
+    /**
+     * 缓冲区回绕后，窗口起点之前的样本已被覆盖时重采样失败，不用更晚的样本代替窗口开头
+     */
+    @Test
+    public void resampleRejectsOverwrittenStart() {
+        SensorRingBuffer buffer = new SensorRingBuffer(64);
+        SensorWindow window = new SensorWindow(buffer);
+        float[] zero = new float[3];
+        for (int i = 0; i < 100; i++) {
+            buffer.append(i * 10L, zero, zero, zero);
+        }
+        long oldest = buffer.getTimestamp(buffer.getOldestSequence());
+        assertFalse(window.resample(oldest - 10, 10, 10));
+        assertTrue(window.resample(oldest, 10, 10));
+        assertEquals(oldest, window.getTimestamp(0));
+    }
+
+    /**
+     * 处理期间数据被覆盖的窗口，归还时releaseChecked()返回false并计入过期任务数
+     */
+    @Test
+    public void releaseCheckedCountsOverwrittenWindow() {
+        SlidingWindowManager manager = new SlidingWindowManager(WINDOW_SIZE, SLIDE_STEP);
+        SensorData data = sample(0);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            data.setTimestamp(i);
+            manager.addData(data);
+        }
+        SensorWindow kept = manager.pollTask();
+        assertNotNull(kept);
+        SensorWindow other = manager.pollTask();
+        assertNull(other);
+        for (int i = WINDOW_SIZE; i < WINDOW_SIZE + 4096; i++) {
+            data.setTimestamp(i);
+            manager.addData(data);
+        }
+        long stale = manager.getStaleTasks();
+        assertFalse(manager.releaseChecked(kept));
+        assertEquals(stale + 1, manager.getStaleTasks());
+        assertTrue(manager.releaseChecked(manager.pollTask()));
+    }
+
+    private static void feed(SlidingWindowManager manager, SensorData data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            data.setTimestamp(i);
+            manager.addData(data);
+            SensorWindow window;
+            while ((window = manager.pollTask()) != null) {
+                manager.release(window);
+            }
+        }
+    }
+
+    private static SensorData sample(long n) {
+        float[] acce = new float[3];
+        float[] gyro = new float[3];
+        float[] mag = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            acce[axis] = n + axis * 0.1f;
+            gyro[axis] = -n - axis * 0.1f;
+            mag[axis] = axis;
+        }
+        return new SensorData(n, acce, gyro, mag);
+    }
+}
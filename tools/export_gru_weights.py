@@ -0,0 +1,160 @@
+"""
+从gru.onnx导出纯Java推理引擎（GruEngine）使用的权重文件gru.weights
+
+只依赖Python标准库：直接解析ONNX的protobuf，按图中的顺序取出各GRU层和全连接层（Gemm）的权重。
+要求GRU为单向、linear_before_reset=1，全连接层为transB=1，与当前gru.onnx的结构一致，否则报错退出。
+
+文件格式（小端序）：
+    int32 magic = 0x57555247 ('GRUW'), int32 version = 1
+    int32 layers, int32 input_size, int32 hidden_size
+    每个GRU层: float32 W[3H * in], float32 R[3H * H], float32 B[6H]，门顺序为ONNX的z, r, h
+    int32 dense_layers
+    每个全连接层: int32 out, int32 in, float32 W[out * in], float32 b[out]
+
+用法：
+    python tools/export_gru_weights.py app/src/main/assets/gru.onnx app/src/main/assets/gru.weights
+"""
+import struct
+import sys
+
+MAGIC = 0x57555247
+VERSION = 1
+FLOAT = 1  # TensorProto.FLOAT
+
+
+def read_varint(buf, pos):
+    result = shift = 0
+    while True:
+        b = buf[pos]
+        pos += 1
+        result |= (b & 0x7f) << shift
+        shift += 7
+        if b < 0x80:
+            return result, pos
+
+
+def fields(buf):
+    """逐个返回protobuf消息中的(字段号, 值)，长度分隔字段返回bytes"""
+    pos = 0
+    while pos < len(buf):
+        key, pos = read_varint(buf, pos)
+        number, wire_type = key >> 3, key & 7
+        if wire_type == 0:
+            value, pos = read_varint(buf, pos)
+        elif wire_type == 1:
+            value, pos = buf[pos:pos + 8], pos + 8
+        elif wire_type == 2:
+            length, pos = read_varint(buf, pos)
+            value, pos = buf[pos:pos + length], pos + length
+        elif wire_type == 5:
+            value, pos = buf[pos:pos + 4], pos + 4
+        else:
+            raise ValueError('不支持的wire type: %d' % wire_type)
+        yield number, value
+
+
+def parse_tensor(buf):
+    """解析TensorProto，返回(名称, 形状, float列表)"""
+    dims, name, data_type, raw, floats = [], None, None, None, []
+    for number, value in fields(buf):
+        if number == 1:
+            dims.append(value)
+        elif number == 2:
+            data_type = value
+        elif number == 8:
+            name = value.decode()
+        elif number == 9:
+            raw = value
+        elif number == 4:
+            # float_data为packed编码
+            floats.extend(struct.unpack('<%df' % (len(value) // 4), value))
+    if data_type != FLOAT:
+        raise ValueError('%s 不是float32张量' % name)
+    if raw is not None:
+        floats = list(struct.unpack('<%df' % (len(raw) // 4), raw))
+    return name, dims, floats
+
+
+def parse_node(buf):
+    """解析NodeProto，返回(算子类型, 输入列表, 整数属性字典)"""
+    inputs, op_type, attrs = [], None, {}
+    for number, value in fields(buf):
+        if number == 1:
+            inputs.append(value.decode())
+        elif number == 4:
+            op_type = value.decode()
+        elif number == 5:
+            attr_name, attr_int, attr_str = None, None, None
+            for n, v in fields(value):
+                if n == 1:
+                    attr_name = v.decode()
+                elif n == 3:
+                    attr_int = v
+                elif n == 4:
+                    attr_str = v.decode()
+            attrs[attr_name] = attr_int if attr_int is not None else attr_str
+    return op_type, inputs, attrs
+
+
+def load_graph(path):
+    with open(path, 'rb') as f:
+        model = f.read()
+    graph = next(v for n, v in fields(model) if n == 7)
+    nodes, initializers = [], {}
+    for number, value in fields(graph):
+        if number == 1:
+            nodes.append(parse_node(value))
+        elif number == 5:
+            name, dims, data = parse_tensor(value)
+            initializers[name] = (dims, data)
+    return nodes, initializers
+
+
+def main(src, dst):
+    nodes, initializers = load_graph(src)
+    gru_nodes = [n for n in nodes if n[0] == 'GRU']
+    gemm_nodes = [n for n in nodes if n[0] == 'Gemm']
+    if not gru_nodes:
+        raise ValueError('模型中没有GRU层')
+
+    out = bytearray()
+    hidden_size = gru_nodes[0][2]['hidden_size']
+    input_size = initializers[gru_nodes[0][1][1]][0][2]
+    out += struct.pack('<5i', MAGIC, VERSION, len(gru_nodes), input_size, hidden_size)
+    layer_input = input_size
+    for k, (_, inputs, attrs) in enumerate(gru_nodes):
+        if attrs.get('linear_before_reset', 0) != 1:
+            raise ValueError('第%d层GRU的linear_before_reset不为1' % k)
+        if attrs.get('direction', 'forward') != 'forward' or attrs.get('hidden_size') != hidden_size:
+            raise ValueError('第%d层GRU不是与第0层同尺寸的单向GRU' % k)
+        w_dims, w = initializers[inputs[1]]
+        r_dims, r = initializers[inputs[2]]
+        b_dims, b = initializers[inputs[3]] if len(inputs) > 3 and inputs[3] else ([1, 6 * hidden_size], [0.0] * 6 * hidden_size)
+        if w_dims != [1, 3 * hidden_size, layer_input] or r_dims != [1, 3 * hidden_size, hidden_size]:
+            raise ValueError('第%d层GRU权重形状不符: W%s R%s' % (k, w_dims, r_dims))
+        out += struct.pack('<%df' % len(w), *w)
+        out += struct.pack('<%df' % len(r), *r)
+        out += struct.pack('<%df' % len(b), *b)
+        layer_input = hidden_size
+
+    out += struct.pack('<i', len(gemm_nodes))
+    for k, (_, inputs, attrs) in enumerate(gemm_nodes):
+        if attrs.get('transB', 0) != 1 or attrs.get('transA', 0) != 0:
+            raise ValueError('第%d个全连接层不是transB=1的Gemm' % k)
+        w_dims, w = initializers[inputs[1]]
+        _, b = initializers[inputs[2]]
+        out += struct.pack('<2i', w_dims[0], w_dims[1])
+        out += struct.pack('<%df' % len(w), *w)
+        out += struct.pack('<%df' % len(b), *b)
+
+    with open(dst, 'wb') as f:
+        f.write(out)
+    print('GRU层数: %d, 隐状态: %d, 全连接层数: %d, %d 字节, 已保存到 %s'
+          % (len(gru_nodes), hidden_size, len(gemm_nodes), len(out), dst))
+
+
+if __name__ == '__main__':
+    if len(sys.argv) != 3:
+        print('用法: python export_gru_weights.py <gru.onnx> <gru.weights>')
+        sys.exit(1)
+    main(sys.argv[1], sys.argv[2])
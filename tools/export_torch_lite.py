@@ -0,0 +1,90 @@
+"""
+从训练检查点gru.pt导出PyTorch Lite解释器可加载的模型gru.ptl，供TorchLiteInferenceHelper使用
+
+assets中的gru.pt是torch.save保存的训练检查点（model_state_dict、optimizer_state_dict等），
+不是TorchScript模型，LiteModuleLoader无法直接加载。本脚本按state_dict中的形状重建网络：
+    GRU(batch_first=True, 多层) -> 取最后一个时间步 -> linear1 -> linear2
+与gru.onnx的图结构一致（两个Gemm之间没有激活函数），用torch.jit.trace转为TorchScript，
+经optimize_for_mobile优化后用_save_for_lite_interpreter保存。
+
+安装了onnxruntime时，额外用随机输入比较导出模型与gru.onnx的输出。
+
+依赖：torch（需要与应用中pytorch_android_lite相同或更低的版本，当前为1.13）
+
+用法：
+    python tools/export_torch_lite.py app/src/main/assets/gru.pt app/src/main/assets/gru.ptl [gru.onnx]
+"""
+import sys
+
+import torch
+from torch import nn
+from torch.utils.mobile_optimizer import optimize_for_mobile
+
+SEQ_LEN = 50  # 窗口大小，与PdrLocalOri.WINDOW_SIZE一致
+
+
+class GruModel(nn.Module):
+    def __init__(self, input_size, hidden_size, num_layers, linear1, linear2):
+        super().__init__()
+        self.gru = nn.GRU(input_size, hidden_size, num_layers, batch_first=True)
+        self.linear1 = nn.Linear(hidden_size, linear1)
+        self.linear2 = nn.Linear(linear1, linear2)
+
+    def forward(self, x):
+        out, _ = self.gru(x)
+        return self.linear2(self.linear1(out[:, -1]))
+
+
+def build_model(state):
+    num_layers = sum(1 for key in state if key.startswith('gru.weight_ih_l'))
+    hidden_size = state['gru.weight_hh_l0'].shape[1]
+    input_size = state['gru.weight_ih_l0'].shape[1]
+    model = GruModel(input_size, hidden_size, num_layers,
+                     state['linear1.weight'].shape[0], state['linear2.weight'].shape[0])
+    model.load_state_dict(state)
+    return model.eval()
+
+
+def compare_with_onnx(model, input_size, onnx_path):
+    try:
+        import onnxruntime
+    except ImportError:
+        print('未安装onnxruntime，跳过与%s的比较' % onnx_path)
+        return
+    x = torch.randn(4, SEQ_LEN, input_size)
+    with torch.no_grad():
+        expected = model(x).numpy()
+    session = onnxruntime.InferenceSession(onnx_path)
+    actual = session.run(None, {session.get_inputs()[0].name: x.numpy()})[0]
+    diff = abs(expected - actual).max()
+    print('与%s的最大误差: %.3g' % (onnx_path, diff))
+    if diff > 1e-4:
+        raise ValueError('导出模型与%s的输出不一致' % onnx_path)
+
+
+def main(src, dst, onnx_path=None):
+    checkpoint = torch.load(src, map_location='cpu')
+    state = checkpoint.get('model_state_dict', checkpoint)
+    model = build_model(state)
+    input_size = state['gru.weight_ih_l0'].shape[1]
+
+    traced = torch.jit.trace(model, torch.zeros(1, SEQ_LEN, input_size))
+    optimize_for_mobile(traced)._save_for_lite_interpreter(dst)
+
+    # 用Lite解释器重新加载，确认应用中的LiteModuleLoader能读取，并支持与导出时不同的batch大小
+    from torch.jit.mobile import _load_for_lite_interpreter
+    lite = _load_for_lite_interpreter(dst)
+    x = torch.randn(3, SEQ_LEN, input_size)
+    with torch.no_grad():
+        diff = (lite(x) - model(x)).abs().max().item()
+    print('Lite解释器最大误差: %.3g, 已保存到 %s' % (diff, dst))
+
+    if onnx_path:
+        compare_with_onnx(model, input_size, onnx_path)
+
+
+if __name__ == '__main__':
+    if len(sys.argv) not in (3, 4):
+        print('用法: python export_torch_lite.py <gru.pt> <gru.ptl> [gru.onnx]')
+        sys.exit(1)
+    main(*sys.argv[1:])
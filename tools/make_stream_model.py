@@ -0,0 +1,190 @@
+"""
+从整窗口模型gru.onnx生成流式推理模型gru_stream.onnx
+
+改动内容：
+- 输入input的序列长度维度改为动态维度seq_len，推理时每次只输入滑动步长个新样本
+- 每一层GRU的初始隐状态由常量改为图输入h0_k，形状[1, batch_size, hidden_size]
+- 每一层GRU的最终隐状态Y_h作为图输出hn_k，供下一次推理作为h0_k输入
+- 删除原来用于构造零初始隐状态、已不再使用的节点
+
+权重不变，因此输入完整的50个样本且h0全为0时，输出与gru.onnx完全一致。
+
+与export_gru_weights.py一样只依赖Python标准库，直接改写ONNX的protobuf；安装了onnx时额外用onnx.checker检查结果。
+
+用法：
+    python tools/make_stream_model.py app/src/main/assets/gru.onnx app/src/main/assets/gru_stream.onnx
+"""
+import sys
+
+from export_gru_weights import read_varint
+
+FLOAT = 1  # TensorProto.FLOAT
+
+
+def raw_fields(buf):
+    """逐个返回protobuf消息中的(字段号, 值, 原始编码)，长度分隔字段的值为bytes，未修改的字段按原始编码写回"""
+    pos = 0
+    while pos < len(buf):
+        start = pos
+        key, pos = read_varint(buf, pos)
+        number, wire_type = key >> 3, key & 7
+        if wire_type == 0:
+            value, pos = read_varint(buf, pos)
+        elif wire_type == 1:
+            value, pos = buf[pos:pos + 8], pos + 8
+        elif wire_type == 2:
+            length, pos = read_varint(buf, pos)
+            value, pos = buf[pos:pos + length], pos + length
+        elif wire_type == 5:
+            value, pos = buf[pos:pos + 4], pos + 4
+        else:
+            raise ValueError('不支持的wire type: %d' % wire_type)
+        yield number, value, buf[start:pos]
+
+
+def write_varint(value):
+    out = bytearray()
+    while True:
+        b = value & 0x7f
+        value >>= 7
+        if value:
+            out.append(b | 0x80)
+        else:
+            out.append(b)
+            return bytes(out)
+
+
+def field(number, value):
+    """编码一个字段，int为varint，str和bytes为长度分隔"""
+    if isinstance(value, int):
+        return write_varint(number << 3) + write_varint(value)
+    if isinstance(value, str):
+        value = value.encode()
+    return write_varint(number << 3 | 2) + write_varint(len(value)) + value
+
+
+def value_info(name, *shape):
+    """编码float张量的ValueInfoProto，形状中int为dim_value，str为dim_param"""
+    dims = b''.join(field(1, field(1, v) if isinstance(v, int) else field(2, v)) for v in shape)
+    tensor_type = field(1, FLOAT) + field(2, dims)
+    return field(1, name) + field(2, field(1, tensor_type))
+
+
+def parse_node(buf):
+    """解析NodeProto，返回(算子类型, 输入, 输出, 整数属性字典, 其余字段的原始编码)"""
+    op_type, inputs, outputs, attrs, rest = None, [], [], {}, b''
+    for number, value, raw in raw_fields(buf):
+        if number == 1:
+            inputs.append(value.decode())
+        elif number == 2:
+            outputs.append(value.decode())
+        else:
+            if number == 4:
+                op_type = value.decode()
+            elif number == 5:
+                attr = {n: v for n, v, _ in raw_fields(value)}
+                if 3 in attr:
+                    attrs[attr[1].decode()] = attr[3]
+            rest += raw
+    return op_type, inputs, outputs, attrs, rest
+
+
+def encode_node(inputs, outputs, rest):
+    return b''.join(field(1, i) for i in inputs) + b''.join(field(2, o) for o in outputs) + rest
+
+
+def rewrite(buf, number, transform):
+    """改写消息中第一个字段号为number的长度分隔字段，其余字段保持原始编码"""
+    out, done = b'', False
+    for n, value, raw in raw_fields(buf):
+        if n == number and not done:
+            out += field(n, transform(value))
+            done = True
+        else:
+            out += raw
+    return out
+
+
+def make_dynamic_seq_len(info):
+    """把ValueInfoProto中张量形状的第1维改为动态维度seq_len"""
+    def shape(buf):
+        dims = [raw for _, _, raw in raw_fields(buf)]
+        dims[1] = field(1, field(2, 'seq_len'))
+        return b''.join(dims)
+    # ValueInfoProto.type -> TypeProto.tensor_type -> Tensor.shape
+    return rewrite(info, 2, lambda t: rewrite(t, 1, lambda tensor: rewrite(tensor, 2, shape)))
+
+
+def remove_dead_nodes(nodes, graph_outputs):
+    """反复删除输出没有被任何节点或图输出使用的节点"""
+    while True:
+        used = set(graph_outputs)
+        for n in nodes:
+            used.update(n[1])
+        alive = [n for n in nodes if any(o in used for o in n[2])]
+        if len(alive) == len(nodes):
+            return nodes
+        nodes = alive
+
+
+def main(src, dst):
+    with open(src, 'rb') as f:
+        model = f.read()
+    graph = next(v for n, v, _ in raw_fields(model) if n == 7)
+
+    nodes, inputs, outputs, others = [], [], [], b''
+    for number, value, raw in raw_fields(graph):
+        if number == 1:
+            nodes.append(parse_node(value))
+        elif number == 11:
+            inputs.append(value)
+        elif number == 12:
+            outputs.append(value)
+        else:
+            others += raw
+
+    # 序列长度改为动态维度
+    inputs[0] = make_dynamic_seq_len(inputs[0])
+
+    gru_count = 0
+    for op_type, node_inputs, node_outputs, attrs, _ in list(nodes):
+        if op_type != 'GRU':
+            continue
+        hidden_size = attrs['hidden_size']
+        state_in = 'h0_%d' % gru_count
+        state_out = 'hn_%d' % gru_count
+        inputs.append(value_info(state_in, 1, 'batch_size', hidden_size))
+        while len(node_inputs) < 6:
+            node_inputs.append('')
+        node_inputs[5] = state_in  # GRU的第6个输入为initial_h
+        nodes.append(('Identity', [node_outputs[1]], [state_out], {},
+                      field(3, '/stream/Identity_%d' % gru_count) + field(4, 'Identity')))
+        outputs.append(value_info(state_out, 1, 'batch_size', hidden_size))
+        gru_count += 1
+    if gru_count == 0:
+        raise ValueError('模型中没有GRU层')
+
+    graph_outputs = [next(v for n, v, _ in raw_fields(o) if n == 1).decode() for o in outputs]
+    nodes = remove_dead_nodes(nodes, graph_outputs)
+
+    rebuilt = b''.join(field(1, encode_node(n[1], n[2], n[4])) for n in nodes)
+    rebuilt += others
+    rebuilt += b''.join(field(11, i) for i in inputs)
+    rebuilt += b''.join(field(12, o) for o in outputs)
+    out = rewrite(model, 7, lambda _: rebuilt)
+    with open(dst, 'wb') as f:
+        f.write(out)
+
+    try:
+        import onnx
+        onnx.checker.check_model(dst)
+    except ImportError:
+        pass
+    print('GRU层数: %d, 节点数: %d, %d 字节, 已保存到 %s' % (gru_count, len(nodes), len(out), dst))
+
+
+if __name__ == '__main__':
+    if len(sys.argv) != 3:
+        print('用法: python make_stream_model.py <gru.onnx> <gru_stream.onnx>')
+        sys.exit(1)
+    main(sys.argv[1], sys.argv[2])
@@ -0,0 +1,156 @@
+"""
+从FP32模型gru.onnx生成量化模型gru_fp16.onnx和gru_int8.onnx
+
+- fp16：所有float32权重以float16保存，图中插入Cast节点转换回float32，模型文件约为原来的1/2
+- int8：二维及以上的float32权重按输出通道（最后一维之前的每一行）对称量化为int8，
+  图中插入Cast(int8->float) + Mul(scale)节点反量化，模型文件约为原来的1/4；
+  偏置（Gemm的第3个输入、GRU的第4个输入）保持float32，它们很小，量化误差却会直接加到输出上
+
+两种变体都只改变权重的存储精度，计算仍为float32：ONNX Runtime的动态量化（quantize_dynamic）
+没有GRU的整数算子，而GRU占gru.onnx几乎全部参数；CPU执行器也没有float16的GRU实现。
+Session使用ALL_OPT图优化时，反量化节点会在加载时被常量折叠。
+
+与make_stream_model.py一样只依赖Python标准库，直接改写ONNX的protobuf；安装了onnx时额外用onnx.checker检查结果。
+
+用法：
+    python tools/quantize_models.py app/src/main/assets/gru.onnx app/src/main/assets
+"""
+import os
+import struct
+import sys
+
+from export_gru_weights import read_varint
+from make_stream_model import field, raw_fields, rewrite
+
+FLOAT = 1  # TensorProto.FLOAT
+INT8 = 3  # TensorProto.INT8
+FLOAT16 = 10  # TensorProto.FLOAT16
+BIAS_INPUTS = {'Gemm': 2, 'GRU': 3}  # 各算子偏置输入的下标
+
+
+def parse_tensor(buf):
+    """解析float32的TensorProto，返回(名称, 形状, float列表)，其他类型返回None"""
+    dims, name, data_type, raw, floats = [], None, None, None, []
+    for number, value, _ in raw_fields(buf):
+        if number == 1:
+            if isinstance(value, bytes):  # packed编码
+                pos = 0
+                while pos < len(value):
+                    dim, pos = read_varint(value, pos)
+                    dims.append(dim)
+            else:
+                dims.append(value)
+        elif number == 2:
+            data_type = value
+        elif number == 8:
+            name = value.decode()
+        elif number == 9:
+            raw = value
+        elif number == 4:
+            floats.extend(struct.unpack('<%df' % (len(value) // 4), value))
+    if data_type != FLOAT:
+        return None
+    if raw is not None:
+        floats = list(struct.unpack('<%df' % (len(raw) // 4), raw))
+    return name, dims, floats
+
+
+def tensor(name, dims, data_type, raw):
+    return b''.join(field(1, d) for d in dims) + field(2, data_type) + field(8, name) + field(9, raw)
+
+
+def node(op_type, inputs, outputs, name, to=None):
+    out = b''.join(field(1, i) for i in inputs) + b''.join(field(2, o) for o in outputs)
+    out += field(3, name) + field(4, op_type)
+    if to is not None:
+        out += field(5, field(1, 'to') + field(3, to) + field(20, 2))  # AttributeProto.INT
+    return out
+
+
+def bias_names(nodes):
+    names = set()
+    for buf in nodes:
+        inputs, op_type = [], None
+        for number, value, _ in raw_fields(buf):
+            if number == 1:
+                inputs.append(value.decode())
+            elif number == 4:
+                op_type = value.decode()
+        index = BIAS_INPUTS.get(op_type)
+        if index is not None and index < len(inputs):
+            names.add(inputs[index])
+    return names
+
+
+def to_fp16(name, dims, floats, biases):
+    stored = tensor(name + '_fp16', dims, FLOAT16, struct.pack('<%de' % len(floats), *floats))
+    return [stored], [node('Cast', [name + '_fp16'], [name], '/quant/Cast_' + name, FLOAT)]
+
+
+def to_int8(name, dims, floats, biases):
+    if len(dims) < 2 or name in biases:
+        return None
+    row = dims[-1]
+    quantized, scales = [], []
+    for start in range(0, len(floats), row):
+        values = floats[start:start + row]
+        max_abs = max(abs(v) for v in values)
+        scale = max_abs / 127.0 if max_abs > 0 else 1.0
+        scale = struct.unpack('<f', struct.pack('<f', scale))[0]  # 与推理时使用的float32一致
+        scales.append(scale)
+        quantized.extend(max(-127, min(127, int(round(v / scale)))) for v in values)
+    stored = tensor(name + '_int8', dims, INT8, struct.pack('<%db' % len(quantized), *quantized))
+    # 每一行一个缩放系数，形状保留最后一维为1以便广播
+    scale_init = tensor(name + '_scale', dims[:-1] + [1], FLOAT, struct.pack('<%df' % len(scales), *scales))
+    nodes = [node('Cast', [name + '_int8'], [name + '_cast'], '/quant/Cast_' + name, FLOAT),
+             node('Mul', [name + '_cast', name + '_scale'], [name], '/quant/Mul_' + name)]
+    return [stored, scale_init], nodes
+
+
+def convert(model, quantize):
+    """用quantize(名称, 形状, 数据, 偏置名)替换float32初始化器，返回None的保持不变"""
+    graph = next(v for n, v, _ in raw_fields(model) if n == 7)
+    nodes = [v for n, v, _ in raw_fields(graph) if n == 1]
+    biases = bias_names(nodes)
+    initializers, dequant_nodes, others = b'', b'', b''
+    for number, value, raw in raw_fields(graph):
+        if number == 1:
+            continue
+        if number != 5:
+            others += raw
+            continue
+        parsed = parse_tensor(value)
+        result = quantize(*parsed, biases) if parsed else None
+        if result is None:
+            initializers += raw
+            continue
+        stored, new_nodes = result
+        initializers += b''.join(field(5, t) for t in stored)
+        dequant_nodes += b''.join(field(1, n) for n in new_nodes)
+    # 反量化节点放在最前面，保证拓扑顺序
+    rebuilt = dequant_nodes + b''.join(field(1, n) for n in nodes) + initializers + others
+    return rewrite(model, 7, lambda _: rebuilt)
+
+
+def main(src, out_dir):
+    with open(src, 'rb') as f:
+        model = f.read()
+    base = os.path.splitext(os.path.basename(src))[0]
+    for suffix, quantize in (('fp16', to_fp16), ('int8', to_int8)):
+        out = convert(model, quantize)
+        dst = os.path.join(out_dir, '%s_%s.onnx' % (base, suffix))
+        with open(dst, 'wb') as f:
+            f.write(out)
+        try:
+            import onnx
+            onnx.checker.check_model(dst)
+        except ImportError:
+            pass
+        print('%s: %d KB -> %s: %d KB' % (src, len(model) // 1024, dst, len(out) // 1024))
+
+
+if __name__ == '__main__':
+    if len(sys.argv) != 3:
+        print('用法: python quantize_models.py <gru.onnx> <输出目录>')
+        sys.exit(1)
+    main(sys.argv[1], sys.argv[2])